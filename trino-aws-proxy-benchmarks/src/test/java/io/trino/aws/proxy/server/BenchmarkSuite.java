@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs all of the proxy benchmarks, or the ones matching the regular expressions given on the
+ * command line. Any JMH command line option can be used. Unless the command line sets them, results
+ * are written as JSON to {@code target/benchmark-results/<timestamp>.json}.
+ */
+public final class BenchmarkSuite
+{
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private BenchmarkSuite() {}
+
+    public static void main(String[] args)
+            throws CommandLineOptionException, IOException, RunnerException
+    {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        OptionsBuilder optionsBuilder = new OptionsBuilder();
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            optionsBuilder.include("io\\.trino\\.aws\\.proxy\\..*\\.Benchmark.*");
+        }
+        if (!commandLineOptions.getResult().hasValue()) {
+            Path resultDirectory = Path.of("target", "benchmark-results");
+            Files.createDirectories(resultDirectory);
+            optionsBuilder.result(resultDirectory.resolve(TIMESTAMP_FORMAT.format(LocalDateTime.now()) + ".json").toString());
+        }
+        if (!commandLineOptions.getResultFormat().hasValue()) {
+            optionsBuilder.resultFormat(ResultFormatType.JSON);
+        }
+
+        Options options = optionsBuilder.parent(commandLineOptions).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.signing.TestingChunkSigningSession;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkAwsChunkedInputStream
+{
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY");
+    private static final String SEED = "0".repeat(64);
+
+    @Param({"65536", "8388608"})
+    private int payloadSize;
+
+    @Param({"8192", "65536"})
+    private int chunkSize;
+
+    @Param("8192")
+    private int readBufferSize;
+
+    private final Instant requestDate = Instant.now();
+    private byte[] encoded;
+    private byte[] buffer;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder content = new StringBuilder(payloadSize);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < payloadSize; i++) {
+            content.append((char) ('a' + random.nextInt(26)));
+        }
+        int partitions = Math.max(2, payloadSize / chunkSize);
+        encoded = TestingChunkSigningSession.build(CREDENTIAL, SEED, requestDate)
+                .generateChunkedStream(content.toString(), partitions)
+                .getBytes(UTF_8);
+        buffer = new byte[readBufferSize];
+    }
+
+    @Benchmark
+    public long decode()
+            throws IOException
+    {
+        // chunk signatures are chained so every decode needs a new session
+        TestingChunkSigningSession chunkSigningSession = TestingChunkSigningSession.build(CREDENTIAL, SEED, requestDate);
+        try (InputStream inputStream = new AwsChunkedInputStream(new ByteArrayInputStream(encoded), chunkSigningSession, payloadSize)) {
+            return readFully(inputStream, buffer);
+        }
+    }
+
+    static long readFully(InputStream inputStream, byte[] buffer)
+            throws IOException
+    {
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkAwsChunkedInputStream.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
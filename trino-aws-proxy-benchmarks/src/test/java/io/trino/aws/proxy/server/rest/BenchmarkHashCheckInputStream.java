@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.hash.Hashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.trino.aws.proxy.server.rest.BenchmarkAwsChunkedInputStream.readFully;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkHashCheckInputStream
+{
+    @Param({"65536", "8388608"})
+    private int payloadSize;
+
+    @Param({"8192", "65536"})
+    private int readBufferSize;
+
+    private byte[] payload;
+    private String expectedHash;
+    private byte[] buffer;
+
+    @Setup
+    public void setup()
+    {
+        payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        expectedHash = Hashing.sha256().hashBytes(payload).toString();
+        buffer = new byte[readBufferSize];
+    }
+
+    @Benchmark
+    public long hashCheck()
+            throws IOException
+    {
+        try (InputStream inputStream = new HashCheckInputStream(new ByteArrayInputStream(payload), expectedHash, Optional.of((long) payloadSize))) {
+            return readFully(inputStream, buffer);
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkHashCheckInputStream.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.rest.RequestHeadersBuilder.InternalRequestHeaders;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkRequestHeadersBuilder
+{
+    @Param({"8", "32", "128"})
+    private int headerCount;
+
+    private MultiMap requestHeaders;
+
+    @Setup
+    public void setup()
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(false)
+                .add("authorization", "AWS4-HMAC-SHA256 Credential=THIS_IS_AN_ACCESS_KEY/20240516/us-east-1/s3/aws4_request, SignedHeaders=host;x-amz-content-sha256;x-amz-date, Signature=9a19c251bf4e1533174e80da59fa57c65b3149b611ec9a4104f6944767c25704")
+                .add("host", "localhost:8080")
+                .add("x-amz-date", AwsTimestamp.toRequestFormat(Instant.now()))
+                .add("x-amz-content-sha256", "UNSIGNED-PAYLOAD")
+                .add("content-length", "1048576")
+                .add("content-type", "application/octet-stream")
+                .add("user-agent", "aws-sdk-java/2.25.32 Linux/6.1 OpenJDK_64-Bit_Server_VM/21")
+                .add("x-amzn-trace-id", "Root=1-5759e988-bd862e3fe1be46a994272793");
+        for (int i = 8; i < headerCount; i++) {
+            builder.add("x-amz-meta-header" + i, "value" + i);
+        }
+        requestHeaders = builder.build();
+    }
+
+    @Benchmark
+    public InternalRequestHeaders parseHeaders()
+    {
+        return RequestHeadersBuilder.parseHeaders(requestHeaders);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkRequestHeadersBuilder.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
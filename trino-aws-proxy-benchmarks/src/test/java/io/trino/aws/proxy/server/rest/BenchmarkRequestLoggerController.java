@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkRequestLoggerController
+{
+    private static final RequestAuthorization REQUEST_AUTHORIZATION = new RequestAuthorization("dummy", "us-east-1", "/", ImmutableSet.of(), "dummy", Optional.empty(), Optional.empty());
+
+    @Param({"1000", "10000"})
+    private int savedQty;
+
+    private RequestLoggerController requestLoggerController;
+
+    @Setup
+    public void setup()
+    {
+        requestLoggerController = new RequestLoggerController(new RequestLoggerConfig().setRequestLoggerSavedQty(savedQty));
+    }
+
+    @Benchmark
+    public RequestLoggingSession logRequest()
+    {
+        // UUID.randomUUID() would serialize the writers on SecureRandom
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Request request = new Request(new UUID(random.nextLong(), random.nextLong()), REQUEST_AUTHORIZATION, Instant.now(), URI.create("http://localhost/bucket/key"), RequestHeaders.EMPTY, ImmutableMultiMap.empty(), "GET", RequestContent.EMPTY);
+        RequestLoggingSession session = requestLoggerController.newRequestSession(request, SigningServiceType.S3);
+        session.logProperty("request.parsed.bucket", "bucket");
+        session.logProperty("request.parsed.key", "key");
+        session.close();
+        return session;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkRequestLoggerController.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
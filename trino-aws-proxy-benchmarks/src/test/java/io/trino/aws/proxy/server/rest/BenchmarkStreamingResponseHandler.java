@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Compares the transfer of remote response content to the client as done by {@link StreamingResponseHandler}, a copy
+ * through a buffer of the configured size, with the previous {@link InputStream#transferTo(OutputStream)}.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkStreamingResponseHandler
+{
+    @Param({"65536", "16777216"})
+    private int payloadSize;
+
+    @Param({"8192", "65536"})
+    private int bufferSize;
+
+    // simulates a remote that delivers content in network sized pieces rather than all at once
+    @Param({"0", "16384"})
+    private int sourceChunkSize;
+
+    private final LimitStreamController limitStreamController = new LimitStreamController(new TrinoAwsProxyConfig());
+    private byte[] payload;
+
+    @Setup
+    public void setup()
+    {
+        payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+    }
+
+    @Benchmark
+    public long transferTo(Blackhole blackhole)
+            throws IOException
+    {
+        return source().transferTo(limitStreamController.wrap(new BlackholeOutputStream(blackhole)));
+    }
+
+    @Benchmark
+    public void boundedBuffer(Blackhole blackhole)
+            throws IOException
+    {
+        StreamingResponseHandler.transfer(source(), new BlackholeOutputStream(blackhole), limitStreamController, BandwidthShapingController.UNSHAPED, bufferSize);
+    }
+
+    private InputStream source()
+    {
+        InputStream inputStream = new ByteArrayInputStream(payload);
+        if (sourceChunkSize == 0) {
+            return inputStream;
+        }
+        return new FilterInputStream(inputStream)
+        {
+            @Override
+            public int read(byte[] buffer, int offset, int length)
+                    throws IOException
+            {
+                return super.read(buffer, offset, Math.min(length, sourceChunkSize));
+            }
+        };
+    }
+
+    private static class BlackholeOutputStream
+            extends OutputStream
+    {
+        private final Blackhole blackhole;
+
+        private BlackholeOutputStream(Blackhole blackhole)
+        {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int value)
+        {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length)
+        {
+            blackhole.consume(buffer);
+            blackhole.consume(length);
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkStreamingResponseHandler.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.json.ObjectMapperProvider;
+import io.trino.aws.proxy.server.rest.S3Operation;
+import io.trino.aws.proxy.server.security.opa.DefaultOpaClient;
+import io.trino.aws.proxy.server.security.opa.OpaS3SecurityConfig;
+import io.trino.aws.proxy.server.security.opa.OpaS3SecurityFacadeProvider;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+import io.trino.aws.proxy.spi.security.opa.OpaClient;
+import io.trino.aws.proxy.spi.security.opa.OpaRequest;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Compares the local policy of {@link FileBasedS3SecurityFacadeProvider} with the OPA provider. OPA is
+ * replaced by an in-process stub, so the OPA numbers are a lower bound without any network latency.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkFileBasedS3Security
+{
+    private static final String POLICY = """
+            [
+              {"group": "analysts", "bucket": "warehouse", "keyPrefix": "tables/", "actions": ["GetObject", "HeadObject", "ListObjectsV2"], "effect": "allow"},
+              {"user": "etl", "bucket": "warehouse", "effect": "allow"},
+              {"bucket": "warehouse", "keyPrefix": "tables/secret/", "effect": "deny"},
+              {"bucket": "staging", "keyPrefix": "tmp/", "effect": "allow"},
+              {"user": "admin", "effect": "allow"}
+            ]
+            """;
+
+    private record BenchmarkIdentity(String user, List<String> groups)
+            implements Identity {}
+
+    private static final Identity IDENTITY = new BenchmarkIdentity("alice", ImmutableList.of("analysts"));
+    private static final Optional<Identity> OPTIONAL_IDENTITY = Optional.of(IDENTITY);
+
+    private Path policyFile;
+    private FileBasedS3SecurityFacadeProvider fileBasedProvider;
+    private S3PolicyTrie policyTrie;
+    private OpaS3SecurityFacadeProvider opaProvider;
+    private ParsedS3Request request;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        policyFile = Files.createTempFile("policy", ".json");
+        Files.writeString(policyFile, POLICY, UTF_8);
+        fileBasedProvider = new FileBasedS3SecurityFacadeProvider(
+                new FileBasedS3SecurityConfig().setPolicyFile(policyFile.toFile()),
+                new JsonCodecFactory(new ObjectMapperProvider()).listJsonCodec(S3PolicyRule.class));
+        policyTrie = S3PolicyTrie.compile(new JsonCodecFactory(new ObjectMapperProvider()).listJsonCodec(S3PolicyRule.class).fromJson(POLICY));
+
+        OpaClient opaClient = new DefaultOpaClient(new TestingHttpClient(_ -> new TestingResponse(
+                HttpStatus.OK,
+                ImmutableListMultimap.of("Content-Type", "application/json"),
+                "{\"result\": true}".getBytes(UTF_8))));
+        opaProvider = new OpaS3SecurityFacadeProvider(
+                (parsedRequest, lowercaseAction, opaServerBaseUri, identity) -> opaClient.getSecurityResponse(new OpaRequest(opaServerBaseUri, ImmutableMap.of(
+                        "user", identity.map(Identity::user).orElse(""),
+                        "bucket", parsedRequest.bucketName(),
+                        "key", parsedRequest.keyInBucket(),
+                        "method", parsedRequest.httpVerb(),
+                        "action", lowercaseAction.orElse("")))),
+                new OpaS3SecurityConfig().setOpaServerBaseUri("http://localhost:8181/v1/data/s3/allow"));
+
+        request = new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                "warehouse",
+                "tables/orders/data/part-00000-2b6c1f4e.parquet",
+                RequestHeaders.EMPTY,
+                ImmutableMultiMap.empty(),
+                "GET",
+                "/warehouse/tables/orders/data/part-00000-2b6c1f4e.parquet",
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException
+    {
+        fileBasedProvider.shutdown();
+        Files.deleteIfExists(policyFile);
+    }
+
+    @Benchmark
+    public boolean policyTrie()
+    {
+        return policyTrie.isAllowed(IDENTITY.user(), IDENTITY.groups(), request.bucketName(), request.keyInBucket(), S3Operation.GET_OBJECT);
+    }
+
+    @Benchmark
+    public SecurityResponse fileBasedProvider()
+    {
+        return fileBasedProvider.securityFacadeForRequest(request, OPTIONAL_IDENTITY).apply(Optional.empty());
+    }
+
+    @Benchmark
+    public SecurityResponse opaProvider()
+    {
+        return opaProvider.securityFacadeForRequest(request, OPTIONAL_IDENTITY).apply(Optional.empty());
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkFileBasedS3Security.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
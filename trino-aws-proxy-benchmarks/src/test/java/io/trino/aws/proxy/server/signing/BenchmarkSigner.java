@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.SigningContext;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkSigner
+{
+    // benchmark runs take a while, the request date must not drift out of the allowed range
+    private static final Duration MAX_CLOCK_DRIFT = Duration.ofDays(1);
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY", Optional.of("THIS_IS_A_SESSION_TOKEN"));
+    private static final byte[] STS_CONTENT = "Action=AssumeRole&Version=2011-06-15&RoleArn=arn%3Aaws%3Aiam%3A%3A123456789012%3Arole%2Fexample&RoleSessionName=benchmark".getBytes(UTF_8);
+
+    public enum Variant
+    {
+        HEADER,
+        PRESIGNED,
+        LEGACY,
+        STS,
+    }
+
+    @Param({"HEADER", "PRESIGNED", "LEGACY", "STS"})
+    private Variant variant;
+
+    public enum ThreadType
+    {
+        PLATFORM,
+        // outbound requests are signed on a new virtual thread each
+        VIRTUAL,
+    }
+
+    @Param({"4", "16", "64"})
+    private int headerCount;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ThreadType threadType;
+
+    private final URI requestUri = URI.create("http://localhost:8080/api/v1/s3Proxy/s3/bucket/path/to/some%20object.parquet");
+    private final MultiMap queryParameters = ImmutableMultiMap.builder(true)
+            .add("partNumber", "3")
+            .add("uploadId", "VXBsb2FkIElEIGZvciBlbHZpbmcncyBteS1tb3ZpZS5tMnRzIHVwbG9hZA")
+            .build();
+    private final SigningKeyCache signingKeyCache = new SigningKeyCache(new SigningControllerConfig());
+    private final ExecutorService virtualThreadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private SigningHeaders signingHeaders;
+    private Instant requestDate;
+
+    @Setup
+    public void setup()
+    {
+        requestDate = Instant.now();
+
+        ImmutableMultiMap.Builder headers = ImmutableMultiMap.builder(false)
+                .add("host", requestUri.getHost() + ":" + requestUri.getPort())
+                .add("x-amz-date", AwsTimestamp.toRequestFormat(requestDate))
+                .add("x-amz-content-sha256", "UNSIGNED-PAYLOAD")
+                .add("content-type", "application/octet-stream");
+        if (variant == Variant.LEGACY) {
+            headers.add("user-agent", "aws-sdk-java/1.12.262 Linux/6.1 OpenJDK_64-Bit_Server_VM/21");
+        }
+        for (int i = 4; i < headerCount; i++) {
+            headers.add("x-amz-meta-header" + i, "  some   value " + i + "  ");
+        }
+        signingHeaders = SigningHeaders.build(headers.build());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        virtualThreadExecutor.close();
+    }
+
+    @Benchmark
+    public SigningContext sign()
+            throws ExecutionException, InterruptedException
+    {
+        return switch (threadType) {
+            case PLATFORM -> signRequest();
+            case VIRTUAL -> virtualThreadExecutor.submit(this::signRequest).get();
+        };
+    }
+
+    private SigningContext signRequest()
+    {
+        return switch (variant) {
+            case HEADER, LEGACY -> Signer.sign(SigningServiceType.S3, requestUri, signingHeaders, queryParameters, "us-east-1", requestDate, "PUT", CREDENTIAL, signingKeyCache, MAX_CLOCK_DRIFT, RequestContent.EMPTY);
+            case PRESIGNED -> Signer.presign(SigningServiceType.S3, requestUri, signingHeaders, queryParameters, "us-east-1", requestDate, requestDate.plusSeconds(3600), "GET", CREDENTIAL, signingKeyCache, MAX_CLOCK_DRIFT, RequestContent.EMPTY);
+            // STS hashes the request content
+            case STS -> Signer.sign(SigningServiceType.STS, requestUri, signingHeaders, ImmutableMultiMap.empty(), "us-east-1", requestDate, "POST", CREDENTIAL, signingKeyCache, MAX_CLOCK_DRIFT, new StsContent());
+        };
+    }
+
+    private static class StsContent
+            implements RequestContent
+    {
+        @Override
+        public ContentType contentType()
+        {
+            return ContentType.STANDARD;
+        }
+
+        @Override
+        public Optional<InputStream> inputStream()
+        {
+            return Optional.of(new ByteArrayInputStream(STS_CONTENT));
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkSigner.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
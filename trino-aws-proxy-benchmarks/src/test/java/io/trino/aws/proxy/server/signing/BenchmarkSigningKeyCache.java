@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.credentials.Credential;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkSigningKeyCache
+{
+    // number of distinct credentials signing requests
+    @Param({"1", "1000"})
+    private int credentialCount;
+
+    private Credential[] credentials;
+    private SigningKeyCache signingKeyCache;
+    private Instant requestDate;
+
+    @Setup
+    public void setup()
+    {
+        credentials = new Credential[credentialCount];
+        for (int i = 0; i < credentialCount; i++) {
+            credentials[i] = new Credential(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        }
+        signingKeyCache = new SigningKeyCache(new SigningControllerConfig());
+        requestDate = Instant.now();
+    }
+
+    @Benchmark
+    public byte[] derive()
+    {
+        return SigningKeyCache.deriveSigningKey(credential().secretKey(), "20240516", "us-east-1", "s3");
+    }
+
+    @Benchmark
+    public byte[] cached()
+    {
+        return signingKeyCache.signingKey(credential(), requestDate, "us-east-1", "s3");
+    }
+
+    private Credential credential()
+    {
+        return credentials[ThreadLocalRandom.current().nextInt(credentialCount)];
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkSigningKeyCache.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
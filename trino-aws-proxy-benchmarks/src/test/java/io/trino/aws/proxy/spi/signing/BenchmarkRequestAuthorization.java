@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.spi.signing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkRequestAuthorization
+{
+    private static final String CREDENTIAL = "THIS_IS_AN_ACCESS_KEY/20240516/us-east-1/s3/aws4_request";
+    private static final String SIGNATURE = "9a19c251bf4e1533174e80da59fa57c65b3149b611ec9a4104f6944767c25704";
+
+    @Param({"3", "16"})
+    private int signedHeaderCount;
+
+    private String signedHeaders;
+    private String authorization;
+    private final Instant requestDate = Instant.now();
+
+    @Setup
+    public void setup()
+    {
+        signedHeaders = IntStream.range(0, signedHeaderCount)
+                .mapToObj(i -> switch (i) {
+                    case 0 -> "host";
+                    case 1 -> "x-amz-content-sha256";
+                    case 2 -> "x-amz-date";
+                    default -> "x-amz-meta-header" + i;
+                })
+                .collect(Collectors.joining(";"));
+        authorization = "AWS4-HMAC-SHA256 Credential=%s, SignedHeaders=%s, Signature=%s".formatted(CREDENTIAL, signedHeaders, SIGNATURE);
+    }
+
+    @Benchmark
+    public RequestAuthorization parse()
+    {
+        return RequestAuthorization.parse(authorization, Optional.empty());
+    }
+
+    @Benchmark
+    public RequestAuthorization presignedParse()
+    {
+        return RequestAuthorization.presignedParse("AWS4-HMAC-SHA256", CREDENTIAL, signedHeaders, SIGNATURE, 3600, requestDate, Optional.empty());
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkRequestAuthorization.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
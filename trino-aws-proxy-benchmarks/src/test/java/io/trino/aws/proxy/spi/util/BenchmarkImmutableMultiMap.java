@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.spi.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkImmutableMultiMap
+{
+    @Param({"8", "32", "128"})
+    private int headerCount;
+
+    // request headers are case-insensitive, query parameters are not
+    @Param({"false", "true"})
+    private boolean caseSensitiveKeys;
+
+    private String[] names;
+    private String[] lookupNames;
+    private ImmutableMultiMap multiMap;
+
+    @Setup
+    public void setup()
+    {
+        names = new String[headerCount];
+        lookupNames = new String[headerCount];
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(caseSensitiveKeys);
+        for (int i = 0; i < headerCount; i++) {
+            names[i] = "X-Amz-Meta-Header" + i;
+            lookupNames[i] = caseSensitiveKeys ? names[i] : "x-amz-meta-header" + i;
+            builder.add(names[i], "value" + i);
+        }
+        multiMap = builder.build();
+    }
+
+    @Benchmark
+    public ImmutableMultiMap build()
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(caseSensitiveKeys);
+        for (int i = 0; i < headerCount; i++) {
+            builder.add(names[i], "value");
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public void getFirst(Blackhole blackhole)
+    {
+        for (String name : lookupNames) {
+            blackhole.consume(multiMap.getFirst(name));
+        }
+    }
+
+    @Benchmark
+    public ImmutableMultiMap copyOf()
+    {
+        return ImmutableMultiMap.copyOf(multiMap.entrySet());
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkImmutableMultiMap.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -14,6 +14,7 @@
 package io.trino.aws.proxy.spi.rest;
 
 import java.io.InputStream;
+import java.util.Locale;
 import java.util.Optional;
 
 @FunctionalInterface
@@ -30,23 +31,66 @@ public interface RequestContent
         AWS_CHUNKED_IN_W3C_CHUNKED,
     }
 
+    // https://docs.aws.amazon.com/AmazonS3/latest/userguide/checking-object-integrity.html
+    enum ChecksumAlgorithm
+    {
+        CRC32,
+        CRC32C,
+        CRC64NVME,
+        SHA1,
+        SHA256;
+
+        /**
+         * returns the name of the header, or trailer, with the base64 encoded checksum, e.g. {@code x-amz-checksum-crc32c}
+         */
+        public String headerName()
+        {
+            return "x-amz-checksum-" + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
     default ContentType contentType()
     {
         return ContentType.EMPTY;
     }
 
     /**
-     * returns content bytes iff {@code contentType() == STANDARD}
+     * returns content bytes iff {@code contentType() == STANDARD} and the content
+     * is not being streamed (i.e. the service does not have the {@code STREAM_CONTENT} trait)
      */
     default Optional<byte[]> standardBytes()
     {
         return Optional.empty();
     }
 
+    /**
+     * returns the content length if it is known and at most {@link Integer#MAX_VALUE}
+     *
+     * @deprecated content can be larger than 2 GiB, use {@link #contentLengthLong()}
+     */
+    @Deprecated
     default Optional<Integer> contentLength()
     {
         return Optional.empty();
     }
 
+    /**
+     * returns the content length if it is known. Implementations should override this method. The default
+     * implementation uses {@link #contentLength()} so that existing implementations keep working.
+     */
+    default Optional<Long> contentLengthLong()
+    {
+        return contentLength().map(Integer::longValue);
+    }
+
+    /**
+     * returns the algorithm of the checksum sent in a trailer after aws-chunked content, as declared
+     * by the {@code x-amz-trailer} header. The checksum is validated as the content is read.
+     */
+    default Optional<ChecksumAlgorithm> trailingChecksum()
+    {
+        return Optional.empty();
+    }
+
     Optional<InputStream> inputStream();
 }
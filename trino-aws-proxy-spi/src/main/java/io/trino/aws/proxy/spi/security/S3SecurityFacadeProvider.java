@@ -17,7 +17,11 @@ import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import jakarta.ws.rs.WebApplicationException;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
 
 public interface S3SecurityFacadeProvider
 {
@@ -29,4 +33,18 @@ public interface S3SecurityFacadeProvider
      */
     S3SecurityFacade securityFacadeForRequest(ParsedS3Request request, Optional<Identity> identity)
             throws WebApplicationException;
+
+    /**
+     * Return the security responses for several requests of the same identity, in the order of the requests. This is
+     * used for the variants of a request that presigned URLs are built for (one per HTTP method). Implementations
+     * that call a remote policy engine should evaluate the requests in a single call or concurrently. By default,
+     * each request is evaluated in turn.
+     */
+    default List<SecurityResponse> securityResponsesForRequests(List<ParsedS3Request> requests, Optional<Identity> identity, Function<ParsedS3Request, Optional<String>> lowercaseAction)
+            throws WebApplicationException
+    {
+        return requests.stream()
+                .map(request -> securityFacadeForRequest(request, identity).apply(lowercaseAction.apply(request)))
+                .collect(toImmutableList());
+    }
 }
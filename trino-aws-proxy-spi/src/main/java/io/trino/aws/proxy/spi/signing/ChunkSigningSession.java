@@ -13,13 +13,73 @@
  */
 package io.trino.aws.proxy.spi.signing;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
 public interface ChunkSigningSession
 {
     void startChunk(String expectedSignature);
 
+    /**
+     * Same as {@link #startChunk(String)} with the expected signature given as ASCII bytes. The bytes
+     * are only valid for the duration of the call.
+     */
+    default void startChunk(byte[] expectedSignature, int offset, int length)
+    {
+        startChunk(new String(expectedSignature, offset, length, US_ASCII));
+    }
+
     void complete();
 
     void write(byte b);
 
     void write(byte[] b, int off, int len);
+
+    /**
+     * Validates the signature of the trailing headers that follow the last chunk of signed aws-chunked content
+     * ({@code STREAMING-AWS4-HMAC-SHA256-PAYLOAD-TRAILER}). The trailer is given in its canonical form, i.e. a
+     * {@code name:value\n} line per header. The last chunk is completed first, and a signature that doesn't match
+     * must fail the same way as a chunk signature that doesn't match.
+     * <p>
+     * The default implementation throws {@link UnsupportedOperationException}: sessions of a custom {@link SigningController}
+     * that don't override it can't be used for uploads with signed trailers, see {@link #supportsTrailerValidation()}.
+     */
+    default void validateTrailer(String canonicalTrailer, String expectedSignature)
+    {
+        throw new UnsupportedOperationException("%s does not support the validation of signed trailers".formatted(getClass().getName()));
+    }
+
+    /**
+     * Whether the session implements {@link #validateTrailer(String, String)}. Uploads with signed trailers are rejected
+     * with {@code 501 Not Implemented} before their content is read if it doesn't. Sessions that override
+     * {@link #validateTrailer(String, String)} must override this as well.
+     */
+    default boolean supportsTrailerValidation()
+    {
+        return false;
+    }
+
+    /**
+     * Signs the content written since the previous chunk as the next chunk of outbound aws-chunked content, writing the
+     * hex encoded signature into {@code signature} starting at {@code offset}. The session of the {@link SigningContext}
+     * of a signed request is seeded with the request signature. A session either signs or validates chunks.
+     * <p>
+     * This is only used to forward uploads without {@code x-amz-decoded-content-length}, which must be enabled with
+     * {@code aws.proxy.request.chunked-without-decoded-length.enabled}. The default implementation throws
+     * {@link UnsupportedOperationException}: sessions of a custom {@link SigningController} that don't override it
+     * can't be used to forward such uploads, see {@link #supportsChunkSigning()}.
+     */
+    default void signChunk(byte[] signature, int offset)
+    {
+        throw new UnsupportedOperationException("%s does not support the signing of outbound chunks".formatted(getClass().getName()));
+    }
+
+    /**
+     * Whether the session implements {@link #signChunk(byte[], int)}. Uploads that would be forwarded with signed chunks
+     * are rejected with {@code 501 Not Implemented} before their content is read if it doesn't. Sessions that override
+     * {@link #signChunk(byte[], int)} must override this as well.
+     */
+    default boolean supportsChunkSigning()
+    {
+        return false;
+    }
 }
@@ -17,6 +17,8 @@ import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
 import io.airlift.units.MinDuration;
 import jakarta.validation.constraints.NotNull;
 
@@ -35,6 +37,8 @@ public class TrinoAwsProxyConfig
     private String logsPath = "/api/v1/s3Proxy/logs";
     private Optional<DataSize> maxPayloadSize = Optional.empty();
     private String statusPath = "/api/v1/s3Proxy/status";
+    private DataSize responseStreamBufferSize = DataSize.of(64, DataSize.Unit.KILOBYTE);
+    private boolean chunkedUploadsWithoutDecodedLengthEnabled;
 
     @Config("aws.proxy.s3.hostname")
     @ConfigDescription("Hostname to use for S3 REST operations, virtual-host style addressing is only supported if this is set")
@@ -146,4 +150,32 @@ public class TrinoAwsProxyConfig
         this.statusPath = statusPath;
         return this;
     }
+
+    @MinDataSize("1kB")
+    @MaxDataSize("16MB")
+    public DataSize getResponseStreamBufferSize()
+    {
+        return responseStreamBufferSize;
+    }
+
+    @Config("aws.proxy.response.stream-buffer-size")
+    @ConfigDescription("Size of the buffer used to stream each remote response body to the client")
+    public TrinoAwsProxyConfig setResponseStreamBufferSize(DataSize responseStreamBufferSize)
+    {
+        this.responseStreamBufferSize = requireNonNull(responseStreamBufferSize, "responseStreamBufferSize is null");
+        return this;
+    }
+
+    public boolean isChunkedUploadsWithoutDecodedLengthEnabled()
+    {
+        return chunkedUploadsWithoutDecodedLengthEnabled;
+    }
+
+    @Config("aws.proxy.request.chunked-without-decoded-length.enabled")
+    @ConfigDescription("Whether chunked uploads without x-amz-decoded-content-length are forwarded as signed aws-chunked content of unknown length instead of being rejected with 411. The remote must accept such uploads, AWS S3 does not")
+    public TrinoAwsProxyConfig setChunkedUploadsWithoutDecodedLengthEnabled(boolean chunkedUploadsWithoutDecodedLengthEnabled)
+    {
+        this.chunkedUploadsWithoutDecodedLengthEnabled = chunkedUploadsWithoutDecodedLengthEnabled;
+        return this;
+    }
 }
@@ -29,6 +29,10 @@ import io.airlift.configuration.AbstractConfigurationAwareModule;
 import io.airlift.http.server.HttpServerBinder;
 import io.airlift.jaxrs.JaxrsBinder;
 import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.cache.MetadataCache;
+import io.trino.aws.proxy.server.cache.MetadataCacheConfig;
+import io.trino.aws.proxy.server.cache.RangeCache;
+import io.trino.aws.proxy.server.cache.RangeCacheConfig;
 import io.trino.aws.proxy.server.credentials.CredentialsModule;
 import io.trino.aws.proxy.server.credentials.file.FileBasedCredentialsModule;
 import io.trino.aws.proxy.server.credentials.http.HttpCredentialsModule;
@@ -37,9 +41,19 @@ import io.trino.aws.proxy.server.remote.RemoteS3ConnectionController;
 import io.trino.aws.proxy.server.remote.provider.file.FileBasedRemoteS3ConnectionModule;
 import io.trino.aws.proxy.server.remote.provider.http.HttpRemoteS3ConnectionProviderModule;
 import io.trino.aws.proxy.server.remote.provider.preset.StaticRemoteS3ConnectionProviderModule;
+import io.trino.aws.proxy.server.rest.AdmissionController;
+import io.trino.aws.proxy.server.rest.AdmissionControllerConfig;
+import io.trino.aws.proxy.server.rest.BandwidthShapingConfig;
+import io.trino.aws.proxy.server.rest.BandwidthShapingController;
+import io.trino.aws.proxy.server.rest.HedgingConfig;
+import io.trino.aws.proxy.server.rest.HedgingController;
 import io.trino.aws.proxy.server.rest.LimitStreamController;
+import io.trino.aws.proxy.server.rest.RequestCoalescer;
+import io.trino.aws.proxy.server.rest.RequestCoalescingConfig;
 import io.trino.aws.proxy.server.rest.ResourceSecurityDynamicFeature;
 import io.trino.aws.proxy.server.rest.RestModule;
+import io.trino.aws.proxy.server.rest.RetryConfig;
+import io.trino.aws.proxy.server.rest.RetryController;
 import io.trino.aws.proxy.server.rest.S3PresignController;
 import io.trino.aws.proxy.server.rest.ThrowableMapper;
 import io.trino.aws.proxy.server.rest.TrinoLogsResource;
@@ -49,6 +63,7 @@ import io.trino.aws.proxy.server.rest.TrinoS3Resource;
 import io.trino.aws.proxy.server.rest.TrinoStatusResource;
 import io.trino.aws.proxy.server.rest.TrinoStsResource;
 import io.trino.aws.proxy.server.security.S3SecurityController;
+import io.trino.aws.proxy.server.security.file.FileBasedS3SecurityModule;
 import io.trino.aws.proxy.server.security.opa.OpaS3SecurityModule;
 import io.trino.aws.proxy.server.signing.SigningControllerConfig;
 import io.trino.aws.proxy.server.signing.SigningModule;
@@ -102,6 +117,26 @@ public class TrinoAwsProxyServerModule
         bindResourceAtPath(jaxrsBinder, TrinoStatusResource.class, builtConfig.getStatusPath());
 
         binder.bind(LimitStreamController.class).in(Scopes.SINGLETON);
+        configBinder(binder).bindConfig(BandwidthShapingConfig.class);
+        binder.bind(BandwidthShapingController.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(AdmissionControllerConfig.class);
+        binder.bind(AdmissionController.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(HedgingConfig.class);
+        binder.bind(HedgingController.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(RetryConfig.class);
+        binder.bind(RetryController.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(RangeCacheConfig.class);
+        binder.bind(RangeCache.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(MetadataCacheConfig.class);
+        binder.bind(MetadataCache.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(RequestCoalescingConfig.class);
+        binder.bind(RequestCoalescer.class).in(Scopes.SINGLETON);
 
         // TODO config, etc.
         httpClientBinder(binder).bindHttpClient("ProxyClient", ForProxyClient.class);
@@ -136,6 +171,7 @@ public class TrinoAwsProxyServerModule
         // provided implementations
         install(new FileBasedCredentialsModule());
         install(new OpaS3SecurityModule());
+        install(new FileBasedS3SecurityModule());
         install(new HttpCredentialsModule());
         install(new FileBasedRemoteS3ConnectionModule());
         install(new StaticRemoteS3ConnectionProviderModule());
@@ -159,6 +195,13 @@ public class TrinoAwsProxyServerModule
         newExporter(binder).export(RemoteS3ConnectionController.class).withGeneratedName();
         newExporter(binder).export(ResourceSecurityDynamicFeature.class).withGeneratedName();
         newExporter(binder).export(TrinoS3ProxyClient.class).withGeneratedName();
+        newExporter(binder).export(AdmissionController.class).withGeneratedName();
+        newExporter(binder).export(BandwidthShapingController.class).withGeneratedName();
+        newExporter(binder).export(HedgingController.class).withGeneratedName();
+        newExporter(binder).export(RetryController.class).withGeneratedName();
+        newExporter(binder).export(RangeCache.class).withGeneratedName();
+        newExporter(binder).export(MetadataCache.class).withGeneratedName();
+        newExporter(binder).export(RequestCoalescer.class).withGeneratedName();
     }
 
     @Provides
@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.Closer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A byte range of a remote object that is served from the {@link RangeCache}. The cached blocks are held open
+ * until the range is closed so that they can't be removed by an eviction while they are being read. Blocks that
+ * were missing are streamed from the remote response while they are being written to the cache.
+ */
+public class CachedRange
+        implements Closeable
+{
+    private final ListMultimap<String, String> headers;
+    private final List<Segment> segments;
+
+    /**
+     * A contiguous part of the range
+     */
+    interface Segment
+            extends Closeable
+    {
+        long length();
+
+        void transferTo(OutputStream output)
+                throws IOException;
+    }
+
+    /**
+     * Part of the range that is read from a cached block
+     */
+    record BlockSegment(FileChannel channel, long position, long length)
+            implements Segment
+    {
+        BlockSegment
+        {
+            requireNonNull(channel, "channel is null");
+        }
+
+        /**
+         * Uses {@link FileChannel#transferTo(long, long, WritableByteChannel)} so that the cached data isn't copied
+         * through the heap when the output allows it.
+         */
+        @Override
+        public void transferTo(OutputStream output)
+                throws IOException
+        {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = this.position;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new EOFException("Cached block is shorter than expected");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    CachedRange(ListMultimap<String, String> headers, List<Segment> segments)
+    {
+        this.headers = ImmutableListMultimap.copyOf(headers);
+        this.segments = ImmutableList.copyOf(segments);
+    }
+
+    /**
+     * Response headers for the range, including {@code Content-Range} and {@code Content-Length}
+     */
+    public ListMultimap<String, String> headers()
+    {
+        return headers;
+    }
+
+    public long contentLength()
+    {
+        return segments.stream().mapToLong(Segment::length).sum();
+    }
+
+    public void transferTo(OutputStream output)
+            throws IOException
+    {
+        for (Segment segment : segments) {
+            segment.transferTo(output);
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try (Closer closer = Closer.create()) {
+            segments.forEach(closer::register);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.inject.Inject;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.server.cache.RemoteObjectCache.CacheKey;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.RESPONSE_HEADERS;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.bucketPrefix;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.isPlainObjectRequest;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.objectKey;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches successful responses of HEAD requests for objects for a short time. Responses are cached per remote credential,
+ * as a cached response is served without the remote authorizing the request. Objects that are modified through
+ * the proxy are removed from the cache for all credentials, modifications made by other clients of the remote are
+ * visible after the TTL.
+ * <p>
+ * Callers must only read from the cache after the request has been authorized.
+ */
+public class MetadataCache
+{
+    private final boolean enabled;
+    private final Ticker ticker;
+    private final RemoteObjectCache<CachedMetadata> cache;
+    // when objects and buckets were last invalidated, so that a HEAD that was in flight during the invalidation isn't cached
+    private final Cache<String, Long> invalidations;
+    private final Cache<String, Long> bucketInvalidations;
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+
+    @Inject
+    public MetadataCache(MetadataCacheConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    MetadataCache(MetadataCacheConfig config, Ticker ticker)
+    {
+        enabled = config.isEnabled();
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        cache = new RemoteObjectCache<>(newBuilder()
+                .expireAfterWrite(config.getTtl().toJavaTime())
+                .maximumSize(config.getMaxEntries())
+                .ticker(ticker::read));
+        invalidations = newBuilder()
+                .expireAfterWrite(config.getTtl().toJavaTime())
+                .maximumSize(config.getMaxEntries())
+                .ticker(ticker::read)
+                .build();
+        bucketInvalidations = newBuilder()
+                .expireAfterWrite(config.getTtl().toJavaTime())
+                .ticker(ticker::read)
+                .build();
+    }
+
+    public boolean isCacheable(ParsedS3Request request)
+    {
+        return enabled && isPlainObjectRequest(request, "HEAD") && request.requestHeaders().passthroughHeaders().getFirst("range").isEmpty();
+    }
+
+    public Optional<CachedMetadata> get(String remoteAccessKey, URI remoteUri)
+    {
+        Optional<CachedMetadata> metadata = cache.get(new CacheKey(remoteAccessKey, objectKey(remoteUri)));
+        if (metadata.isEmpty()) {
+            misses.update(1);
+            return Optional.empty();
+        }
+        hits.update(1);
+        return metadata;
+    }
+
+    /**
+     * Returns a response handler that caches successful responses for {@code remoteAccessKey} before passing them
+     * to {@code delegate}
+     */
+    public <T, E extends Exception> ResponseHandler<T, E> caching(String remoteAccessKey, URI remoteUri, ResponseHandler<T, E> delegate)
+    {
+        if (!enabled) {
+            return delegate;
+        }
+        CacheKey cacheKey = new CacheKey(remoteAccessKey, objectKey(remoteUri));
+        long startNanos = ticker.read();
+        return new ResponseHandler<>()
+        {
+            @Override
+            public T handleException(Request request, Exception exception)
+                    throws E
+            {
+                return delegate.handleException(request, exception);
+            }
+
+            @Override
+            public T handle(Request request, Response response)
+                    throws E
+            {
+                if (response.getStatusCode() == 200) {
+                    put(cacheKey, startNanos, response);
+                }
+                return delegate.handle(request, response);
+            }
+        };
+    }
+
+    /**
+     * Removes the object from the cache for all remote credentials, call after the object has been modified
+     */
+    public void invalidate(URI remoteUri)
+    {
+        if (enabled) {
+            String objectKey = objectKey(remoteUri);
+            invalidations.put(objectKey, ticker.read());
+            cache.invalidateObject(objectKey);
+        }
+    }
+
+    /**
+     * Removes all objects of the bucket from the cache, call after objects of the bucket have been modified
+     */
+    public void invalidateBucket(URI remoteBucketUri)
+    {
+        if (enabled) {
+            String prefix = bucketPrefix(remoteBucketUri);
+            bucketInvalidations.put(prefix, ticker.read());
+            cache.invalidateObjects(prefix);
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.size();
+    }
+
+    private void put(CacheKey cacheKey, long startNanos, Response response)
+    {
+        if (isInvalidatedSince(cacheKey.objectKey(), startNanos)) {
+            return;
+        }
+        ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+        response.getHeaders().forEach((name, value) -> {
+            String lowerCaseName = name.toString().toLowerCase(Locale.ROOT);
+            // HEAD responses have the Content-Length of the object
+            if (lowerCaseName.equals("content-length") || !RESPONSE_HEADERS.contains(lowerCaseName)) {
+                headers.put(name.toString(), value);
+            }
+        });
+        cache.put(cacheKey, new CachedMetadata(response.getStatusCode(), headers.build()));
+    }
+
+    private boolean isInvalidatedSince(String objectKey, long startNanos)
+    {
+        Long invalidatedNanos = invalidations.getIfPresent(objectKey);
+        if ((invalidatedNanos != null) && (invalidatedNanos - startNanos >= 0)) {
+            return true;
+        }
+        return bucketInvalidations.asMap().entrySet().stream()
+                .anyMatch(entry -> objectKey.startsWith(entry.getKey()) && (entry.getValue() - startNanos >= 0));
+    }
+}
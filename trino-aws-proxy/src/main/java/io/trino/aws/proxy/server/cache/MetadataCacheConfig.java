@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class MetadataCacheConfig
+{
+    private boolean enabled;
+    private Duration ttl = new Duration(5, SECONDS);
+    private long maxEntries = 100_000;
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("aws.proxy.metadata-cache.enabled")
+    @ConfigDescription("Whether or not to cache the responses of HEAD requests for objects")
+    public MetadataCacheConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getTtl()
+    {
+        return ttl;
+    }
+
+    @Config("aws.proxy.metadata-cache.ttl")
+    @ConfigDescription("How long a HEAD response is cached, objects modified through the proxy are removed from the cache immediately")
+    public MetadataCacheConfig setTtl(Duration ttl)
+    {
+        this.ttl = requireNonNull(ttl, "ttl is null");
+        return this;
+    }
+
+    @Min(1)
+    public long getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    @Config("aws.proxy.metadata-cache.max-entries")
+    @ConfigDescription("Max number of cached HEAD responses")
+    public MetadataCacheConfig setMaxEntries(long maxEntries)
+    {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+}
@@ -0,0 +1,721 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.inject.Inject;
+import io.airlift.http.client.StreamingResponse;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.server.cache.CachedRange.BlockSegment;
+import io.trino.aws.proxy.server.cache.CachedRange.Segment;
+import io.trino.aws.proxy.server.cache.RemoteObjectCache.CacheKey;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.RESPONSE_HEADERS;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.bucketPrefix;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.isPlainObjectRequest;
+import static io.trino.aws.proxy.server.cache.RemoteObjects.objectKey;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Read-through cache for ranged GETs of remote objects, stored as block-aligned files in a local directory.
+ * Blocks are keyed by the remote credential, the remote object's URI and ETag: blocks read with one remote credential
+ * are never served to another, and a changed object never serves stale blocks once its new ETag is known. The ETag of an object is trusted for the configured TTL, after which missing blocks
+ * are read with {@code If-Match} and the object's blocks are dropped if it changed. Missing blocks are streamed to the
+ * client while they are written to the cache, and remote error responses are passed to the client instead of sending
+ * the request again.
+ * <p>
+ * Callers must only read from the cache after the request has been authorized.
+ */
+public class RangeCache
+{
+    private static final Logger log = Logger.get(RangeCache.class);
+
+    private static final String BLOCK_FILE_SUFFIX = ".block";
+
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    private static final ReadResult NOT_SERVED = new ReadResult.NotServed();
+
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final Optional<Path> directory;
+    private final long blockSize;
+    private final long maxRangeSize;
+    private final RemoteObjectCache<ObjectInfo> objectInfos;
+    private final Cache<BlockKey, Block> blocks;
+    private final AtomicLong nextBlockId = new AtomicLong();
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat bytesSaved = new CounterStat();
+    private final CounterStat failures = new CounterStat();
+
+    /**
+     * Reads a range of the remote object. {@code range} is a {@code Range} header value.
+     */
+    public interface RangeReader
+    {
+        StreamingResponse read(String range, Optional<String> ifMatch);
+    }
+
+    /**
+     * Result of {@link #read(String, URI, String, RangeReader)}
+     */
+    public sealed interface ReadResult
+    {
+        /**
+         * The range is served by the cache, the range must be closed
+         */
+        record Served(CachedRange range)
+                implements ReadResult
+        {
+            public Served
+            {
+                requireNonNull(range, "range is null");
+            }
+        }
+
+        /**
+         * The remote responded with an error that does not depend on the range. The response must be passed
+         * to the client and closed.
+         */
+        record RemoteResponse(StreamingResponse response)
+                implements ReadResult
+        {
+            public RemoteResponse
+            {
+                requireNonNull(response, "response is null");
+            }
+        }
+
+        /**
+         * The range can't be served from the cache, the request should be sent to the remote as is
+         */
+        record NotServed()
+                implements ReadResult {}
+    }
+
+    @Inject
+    public RangeCache(RangeCacheConfig config)
+    {
+        directory = config.getDirectory().map(File::toPath);
+        blockSize = config.getBlockSize().toBytes();
+        maxRangeSize = config.getMaxRangeSize().toBytes();
+
+        objectInfos = new RemoteObjectCache<>(newBuilder()
+                .expireAfterWrite(config.getObjectInfoTtl().toJavaTime())
+                .maximumSize(100_000));
+        blocks = newBuilder()
+                .maximumWeight(config.getMaxSize().toBytes())
+                .weigher((BlockKey key, Block block) -> block.length())
+                .removalListener((_, block, _) -> {
+                    if (block != null) {
+                        deleteBlockFile(block.path());
+                    }
+                })
+                .build();
+
+        directory.ifPresent(RangeCache::clearDirectory);
+    }
+
+    /**
+     * Returns true if the request is a ranged GET of an object that can be served from the cache
+     */
+    public boolean isCacheable(ParsedS3Request request)
+    {
+        return directory.isPresent()
+                && isPlainObjectRequest(request, "GET")
+                && request.requestHeaders().passthroughHeaders().getFirst("range").flatMap(ByteRange::parse).isPresent();
+    }
+
+    /**
+     * Reads the range from the cache with the blocks read by {@code remoteAccessKey}, reading missing blocks from the remote when the range is transferred
+     */
+    public ReadResult read(String remoteAccessKey, URI remoteUri, String rangeHeader, RangeReader rangeReader)
+    {
+        Optional<ByteRange> byteRange = ByteRange.parse(rangeHeader);
+        if (byteRange.isEmpty()) {
+            return NOT_SERVED;
+        }
+        CacheKey cacheKey = new CacheKey(remoteAccessKey, objectKey(remoteUri));
+        try {
+            return read(cacheKey, byteRange.get(), rangeReader);
+        }
+        catch (IOException | RuntimeException e) {
+            failures.update(1);
+            log.debug(e, "Failed to read range %s of %s from cache", rangeHeader, remoteUri);
+            objectInfos.invalidate(cacheKey);
+            return NOT_SERVED;
+        }
+    }
+
+    /**
+     * Drops what is known about the remote object, call after the object has been modified
+     */
+    public void invalidate(URI remoteUri)
+    {
+        if (directory.isPresent()) {
+            objectInfos.invalidateObject(objectKey(remoteUri));
+        }
+    }
+
+    /**
+     * Drops what is known about all objects of the bucket, call after objects of the bucket have been modified
+     */
+    public void invalidateBucket(URI remoteBucketUri)
+    {
+        if (directory.isPresent()) {
+            objectInfos.invalidateObjects(bucketPrefix(remoteBucketUri));
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBytesSaved()
+    {
+        return bytesSaved;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailures()
+    {
+        return failures;
+    }
+
+    @Managed
+    public long getCachedBytes()
+    {
+        return blocks.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private ReadResult read(CacheKey cacheKey, ByteRange byteRange, RangeReader rangeReader)
+            throws IOException
+    {
+        ObjectInfo objectInfo = objectInfos.get(cacheKey).orElse(null);
+        if ((objectInfo == null) && !byteRange.isBounded()) {
+            // the object's size is needed to resolve the range
+            Optional<ObjectInfo> probed = fetchObjectInfo(rangeReader);
+            if (probed.isEmpty()) {
+                return NOT_SERVED;
+            }
+            objectInfo = probed.get();
+            objectInfos.put(cacheKey, objectInfo);
+        }
+
+        long start;
+        long end;
+        if (objectInfo != null) {
+            Optional<ByteRange> resolved = byteRange.resolve(objectInfo.size());
+            if (resolved.isEmpty()) {
+                // let the remote respond to an unsatisfiable range
+                return NOT_SERVED;
+            }
+            start = resolved.get().start();
+            end = resolved.get().end();
+        }
+        else {
+            start = byteRange.start();
+            end = byteRange.end();
+        }
+        if (end - start + 1 > maxRangeSize) {
+            return NOT_SERVED;
+        }
+
+        long firstBlock = start / blockSize;
+        long lastBlock = end / blockSize;
+        List<Segment> segments = new ArrayList<>();
+        try {
+            long saved = 0;
+            if (objectInfo == null) {
+                // the first read of the object tells its ETag and size
+                long rangeStart = firstBlock * blockSize;
+                StreamingResponse response = rangeReader.read(blockRange(firstBlock, lastBlock, Optional.empty()), Optional.empty());
+                if (isPassThrough(response, Optional.empty())) {
+                    return new ReadResult.RemoteResponse(response);
+                }
+                RemoteSegment segment = new RemoteSegment(cacheKey, response);
+                segments.add(segment);
+                Optional<ObjectInfo> fetched = objectInfo(response, rangeStart);
+                if (fetched.isEmpty()) {
+                    log.debug("Remote response for blocks %s-%s of %s can't be cached. Status: %s", firstBlock, lastBlock, cacheKey.objectKey(), response.getStatusCode());
+                    return NOT_SERVED;
+                }
+                objectInfo = fetched.get();
+                objectInfos.put(cacheKey, objectInfo);
+                if (start >= objectInfo.size()) {
+                    return NOT_SERVED;
+                }
+                end = min(end, objectInfo.size() - 1);
+                if (!segment.setRange(objectInfo.eTag(), rangeStart, start, end)) {
+                    return NOT_SERVED;
+                }
+            }
+            else {
+                for (long block = firstBlock; block <= lastBlock; block++) {
+                    Optional<OpenBlock> openBlock = openCachedBlock(new BlockKey(cacheKey, objectInfo.eTag(), block));
+                    if (openBlock.isPresent()) {
+                        long blockStart = block * blockSize;
+                        long segmentLength = min(end, blockStart + openBlock.get().length() - 1) - max(start, blockStart) + 1;
+                        segments.add(new BlockSegment(openBlock.get().channel(), max(start, blockStart) - blockStart, segmentLength));
+                        if (segmentLength <= 0) {
+                            throw new IOException("Cached block %s of %s is too short".formatted(block, cacheKey.objectKey()));
+                        }
+                        saved += segmentLength;
+                        continue;
+                    }
+
+                    // missing blocks next to each other are read with a single request
+                    long runEnd = block;
+                    while ((runEnd < lastBlock) && (blocks.getIfPresent(new BlockKey(cacheKey, objectInfo.eTag(), runEnd + 1)) == null)) {
+                        runEnd++;
+                    }
+                    long rangeStart = block * blockSize;
+                    StreamingResponse response = rangeReader.read(blockRange(block, runEnd, Optional.of(objectInfo)), Optional.of(objectInfo.eTag()));
+                    if (isPassThrough(response, Optional.of(objectInfo.eTag()))) {
+                        return new ReadResult.RemoteResponse(response);
+                    }
+                    RemoteSegment segment = new RemoteSegment(cacheKey, response);
+                    segments.add(segment);
+                    Optional<ObjectInfo> fetched = objectInfo(response, rangeStart);
+                    if (fetched.isEmpty() || !fetched.get().eTag().equals(objectInfo.eTag()) || !segment.setRange(objectInfo.eTag(), rangeStart, max(start, rangeStart), min(end, (runEnd + 1) * blockSize - 1))) {
+                        log.debug("Remote response for blocks %s-%s of %s can't be cached. Status: %s", block, runEnd, cacheKey.objectKey(), response.getStatusCode());
+                        objectInfos.invalidate(cacheKey);
+                        return NOT_SERVED;
+                    }
+                    block = runEnd;
+                }
+            }
+
+            if (saved == end - start + 1) {
+                hits.update(1);
+            }
+            else {
+                misses.update(1);
+            }
+            bytesSaved.update(saved);
+
+            ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+            headers.putAll(objectInfo.headers());
+            headers.put("Content-Range", "bytes %s-%s/%s".formatted(start, end, objectInfo.size()));
+            headers.put("Content-Length", Long.toString(end - start + 1));
+            CachedRange cachedRange = new CachedRange(headers.build(), segments);
+            segments = ImmutableList.of();
+            return new ReadResult.Served(cachedRange);
+        }
+        finally {
+            closeAll(segments);
+        }
+    }
+
+    private Optional<OpenBlock> openCachedBlock(BlockKey blockKey)
+            throws IOException
+    {
+        Block block = blocks.getIfPresent(blockKey);
+        if (block == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new OpenBlock(FileChannel.open(block.path(), READ), block.length()));
+        }
+        catch (NoSuchFileException _) {
+            // evicted after the lookup
+            return Optional.empty();
+        }
+    }
+
+    private Optional<ObjectInfo> fetchObjectInfo(RangeReader rangeReader)
+    {
+        try (StreamingResponse response = rangeReader.read("bytes=0-0", Optional.empty())) {
+            return objectInfo(response, 0);
+        }
+    }
+
+    private String blockRange(long firstBlock, long lastBlock, Optional<ObjectInfo> knownObjectInfo)
+    {
+        long rangeStart = firstBlock * blockSize;
+        long rangeEnd = (lastBlock + 1) * blockSize - 1;
+        if (knownObjectInfo.isPresent()) {
+            rangeEnd = min(rangeEnd, knownObjectInfo.get().size() - 1);
+        }
+        return "bytes=%s-%s".formatted(rangeStart, rangeEnd);
+    }
+
+    private static boolean isPassThrough(StreamingResponse response, Optional<String> ifMatch)
+    {
+        // errors such as a missing object or a denied access are the same for any range. A failed If-Match only means
+        // that the cached object changed, the client's request has to be sent again.
+        int statusCode = response.getStatusCode();
+        return ((statusCode < 200) || (statusCode >= 300)) && !((statusCode == 412) && ifMatch.isPresent());
+    }
+
+    private static Optional<ObjectInfo> objectInfo(StreamingResponse response, long expectedStart)
+    {
+        if (response.getStatusCode() != 206) {
+            return Optional.empty();
+        }
+        Optional<ContentRange> contentRange = contentRange(response);
+        String eTag = response.getHeader("ETag");
+        if (contentRange.isEmpty() || (contentRange.get().start() != expectedStart) || (eTag == null)) {
+            return Optional.empty();
+        }
+
+        ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+        response.getHeaders().forEach((name, value) -> {
+            if (!RESPONSE_HEADERS.contains(name.toString().toLowerCase(Locale.ROOT))) {
+                headers.put(name.toString(), value);
+            }
+        });
+        return Optional.of(new ObjectInfo(eTag, contentRange.get().size(), headers.build()));
+    }
+
+    private static Optional<ContentRange> contentRange(StreamingResponse response)
+    {
+        String value = response.getHeader("Content-Range");
+        if (value == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = CONTENT_RANGE_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(new ContentRange(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3))));
+    }
+
+    private static void closeAll(List<Segment> segments)
+    {
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            }
+            catch (IOException e) {
+                log.warn(e, "Failed to close cached block");
+            }
+        }
+    }
+
+    private static void deleteBlockFile(Path path)
+    {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            log.warn(e, "Failed to delete cached block %s", path);
+        }
+    }
+
+    private static void clearDirectory(Path directory)
+    {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> path.getFileName().toString().endsWith(BLOCK_FILE_SUFFIX)).forEach(RangeCache::deleteBlockFile);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare range cache directory " + directory, e);
+        }
+    }
+
+    private record ObjectInfo(String eTag, long size, ListMultimap<String, String> headers)
+    {
+        private ObjectInfo
+        {
+            requireNonNull(eTag, "eTag is null");
+            headers = ImmutableListMultimap.copyOf(headers);
+        }
+    }
+
+    private record BlockKey(CacheKey object, String eTag, long index)
+    {
+        private BlockKey
+        {
+            requireNonNull(object, "object is null");
+            requireNonNull(eTag, "eTag is null");
+        }
+    }
+
+    private record Block(Path path, int length)
+    {
+        private Block
+        {
+            requireNonNull(path, "path is null");
+        }
+    }
+
+    private record OpenBlock(FileChannel channel, int length)
+    {
+        private OpenBlock
+        {
+            requireNonNull(channel, "channel is null");
+        }
+    }
+
+    private record ContentRange(long start, long end, long size) {}
+
+    /**
+     * Part of the range that is read from a remote response. The response is streamed to the client while its blocks
+     * are written to the cache. If a block can't be written the rest of the response is still streamed to the client,
+     * but no longer cached.
+     */
+    private final class RemoteSegment
+            implements Segment
+    {
+        private final CacheKey cacheKey;
+        private final StreamingResponse response;
+        private String eTag;
+        // the response starts at a block and ends at a block or the end of the object
+        private long responseStart;
+        private long responseEnd;
+        private long outputStart;
+        private long outputEnd;
+
+        private boolean caching = true;
+        private Path blockPath;
+        private OutputStream blockOutput;
+
+        private RemoteSegment(CacheKey cacheKey, StreamingResponse response)
+        {
+            this.cacheKey = requireNonNull(cacheKey, "cacheKey is null");
+            this.response = requireNonNull(response, "response is null");
+        }
+
+        /**
+         * Sets the part of the response that is sent to the client, returns false if the response doesn't contain it
+         */
+        private boolean setRange(String eTag, long responseStart, long outputStart, long outputEnd)
+        {
+            this.eTag = requireNonNull(eTag, "eTag is null");
+            this.responseStart = responseStart;
+            this.responseEnd = contentRange(response).orElseThrow().end();
+            this.outputStart = outputStart;
+            this.outputEnd = outputEnd;
+            return (outputStart <= outputEnd) && (outputEnd <= responseEnd);
+        }
+
+        @Override
+        public long length()
+        {
+            return outputEnd - outputStart + 1;
+        }
+
+        @Override
+        public void transferTo(OutputStream output)
+                throws IOException
+        {
+            InputStream input = response.getInputStream();
+            byte[] buffer = new byte[toIntExact(min(blockSize, TRANSFER_BUFFER_SIZE))];
+            for (long blockStart = responseStart; (blockStart <= responseEnd) && (caching || (blockStart <= outputEnd)); blockStart += blockSize) {
+                long blockEnd = min(blockStart + blockSize - 1, responseEnd);
+                startBlock();
+                for (long position = blockStart; (position <= blockEnd) && (caching || (position <= outputEnd)); ) {
+                    int count = input.read(buffer, 0, toIntExact(min(buffer.length, blockEnd - position + 1)));
+                    if (count < 0) {
+                        throw new EOFException("Remote response ended before the end of the range");
+                    }
+                    writeBlock(buffer, count);
+
+                    long from = max(position, outputStart);
+                    long to = min(position + count - 1, outputEnd);
+                    if (from <= to) {
+                        output.write(buffer, toIntExact(from - position), toIntExact(to - from + 1));
+                        if (to == outputEnd) {
+                            // the rest of the block is only read for the cache
+                            output.flush();
+                        }
+                    }
+                    position += count;
+                }
+                finishBlock(blockStart / blockSize, toIntExact(blockEnd - blockStart + 1));
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            discardBlock();
+            response.close();
+        }
+
+        private void startBlock()
+        {
+            if (!caching) {
+                return;
+            }
+            blockPath = directory.orElseThrow().resolve(nextBlockId.incrementAndGet() + BLOCK_FILE_SUFFIX);
+            try {
+                blockOutput = Files.newOutputStream(blockPath, CREATE_NEW, WRITE);
+            }
+            catch (IOException e) {
+                stopCaching(e);
+            }
+        }
+
+        private void writeBlock(byte[] buffer, int count)
+        {
+            if (blockOutput == null) {
+                return;
+            }
+            try {
+                blockOutput.write(buffer, 0, count);
+            }
+            catch (IOException e) {
+                stopCaching(e);
+            }
+        }
+
+        private void finishBlock(long block, int length)
+        {
+            if (blockOutput == null) {
+                return;
+            }
+            try {
+                blockOutput.close();
+            }
+            catch (IOException e) {
+                stopCaching(e);
+                return;
+            }
+            blockOutput = null;
+            if (blocks.asMap().putIfAbsent(new BlockKey(cacheKey, eTag, block), new Block(blockPath, length)) != null) {
+                // another request read the same block
+                deleteBlockFile(blockPath);
+            }
+        }
+
+        private void stopCaching(IOException e)
+        {
+            failures.update(1);
+            log.debug(e, "Failed to write block of %s to the cache", cacheKey.objectKey());
+            caching = false;
+            discardBlock();
+        }
+
+        private void discardBlock()
+        {
+            if (blockOutput == null) {
+                return;
+            }
+            try {
+                blockOutput.close();
+            }
+            catch (IOException e) {
+                log.debug(e, "Failed to close block of %s", cacheKey.objectKey());
+            }
+            blockOutput = null;
+            deleteBlockFile(blockPath);
+        }
+    }
+
+    /**
+     * A single range of a {@code Range} header: {@code bytes=start-end}, {@code bytes=start-} or {@code bytes=-suffixLength}.
+     * An unbounded end is {@code -1} and a suffix range has a negative start.
+     */
+    @VisibleForTesting
+    record ByteRange(long start, long end)
+    {
+        private static final Pattern PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+        static Optional<ByteRange> parse(String value)
+        {
+            Matcher matcher = PATTERN.matcher(value.trim());
+            if (!matcher.matches()) {
+                return Optional.empty();
+            }
+            String start = matcher.group(1);
+            String end = matcher.group(2);
+            try {
+                if (start.isEmpty()) {
+                    // suffix range
+                    long suffixLength = Long.parseLong(end);
+                    return (suffixLength > 0) ? Optional.of(new ByteRange(-suffixLength, -1)) : Optional.empty();
+                }
+                if (end.isEmpty()) {
+                    return Optional.of(new ByteRange(Long.parseLong(start), -1));
+                }
+                ByteRange range = new ByteRange(Long.parseLong(start), Long.parseLong(end));
+                return (range.start() <= range.end()) ? Optional.of(range) : Optional.empty();
+            }
+            catch (NumberFormatException _) {
+                return Optional.empty();
+            }
+        }
+
+        boolean isBounded()
+        {
+            return (start >= 0) && (end >= 0);
+        }
+
+        /**
+         * Resolves the range against the object size, empty if the range is not satisfiable
+         */
+        Optional<ByteRange> resolve(long size)
+        {
+            long resolvedStart = (start < 0) ? max(0, size + start) : start;
+            long resolvedEnd = (end < 0) ? size - 1 : min(end, size - 1);
+            if ((resolvedStart >= size) || (resolvedStart > resolvedEnd)) {
+                return Optional.empty();
+            }
+            return Optional.of(new ByteRange(resolvedStart, resolvedEnd));
+        }
+    }
+}
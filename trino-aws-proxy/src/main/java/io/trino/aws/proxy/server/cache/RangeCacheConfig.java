@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+
+import java.io.File;
+import java.util.Optional;
+
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public class RangeCacheConfig
+{
+    private Optional<File> directory = Optional.empty();
+    private DataSize maxSize = DataSize.of(10, GIGABYTE);
+    private DataSize blockSize = DataSize.of(1, MEGABYTE);
+    private DataSize maxRangeSize = DataSize.of(64, MEGABYTE);
+    private Duration objectInfoTtl = new Duration(1, MINUTES);
+
+    @NotNull
+    public Optional<File> getDirectory()
+    {
+        return directory;
+    }
+
+    @Config("aws.proxy.range-cache.directory")
+    @ConfigDescription("Local directory for the cache of ranged GET responses, the cache is disabled if not set. Blocks left in the directory are deleted on startup")
+    public RangeCacheConfig setDirectory(File directory)
+    {
+        this.directory = Optional.ofNullable(directory);
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1MB")
+    public DataSize getMaxSize()
+    {
+        return maxSize;
+    }
+
+    @Config("aws.proxy.range-cache.max-size")
+    @ConfigDescription("Max size of the cached data, least recently used blocks are evicted beyond this size")
+    public RangeCacheConfig setMaxSize(DataSize maxSize)
+    {
+        this.maxSize = requireNonNull(maxSize, "maxSize is null");
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("4kB")
+    @MaxDataSize("64MB")
+    public DataSize getBlockSize()
+    {
+        return blockSize;
+    }
+
+    @Config("aws.proxy.range-cache.block-size")
+    @ConfigDescription("Objects are read from the remote and cached in blocks of this size")
+    public RangeCacheConfig setBlockSize(DataSize blockSize)
+    {
+        this.blockSize = requireNonNull(blockSize, "blockSize is null");
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMaxRangeSize()
+    {
+        return maxRangeSize;
+    }
+
+    @Config("aws.proxy.range-cache.max-range-size")
+    @ConfigDescription("Larger ranges are not cached")
+    public RangeCacheConfig setMaxRangeSize(DataSize maxRangeSize)
+    {
+        this.maxRangeSize = requireNonNull(maxRangeSize, "maxRangeSize is null");
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getObjectInfoTtl()
+    {
+        return objectInfoTtl;
+    }
+
+    @Config("aws.proxy.range-cache.object-info-ttl")
+    @ConfigDescription("How long the ETag of a remote object is trusted before cached blocks are revalidated against the remote")
+    public RangeCacheConfig setObjectInfoTtl(Duration objectInfoTtl)
+    {
+        this.objectInfoTtl = requireNonNull(objectInfoTtl, "objectInfoTtl is null");
+        return this;
+    }
+
+    @AssertTrue(message = "aws.proxy.range-cache.max-size must not be smaller than aws.proxy.range-cache.block-size")
+    public boolean isMaxSizeValid()
+    {
+        return maxSize.compareTo(blockSize) >= 0;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Entries of remote objects, kept per remote credential: the remote only authorizes the credential that a response
+ * was read with, so an entry must never be served to another credential. All entries of an object are invalidated
+ * together when the object is modified.
+ */
+final class RemoteObjectCache<V>
+{
+    record CacheKey(String remoteAccessKey, String objectKey)
+    {
+        CacheKey
+        {
+            requireNonNull(remoteAccessKey, "remoteAccessKey is null");
+            requireNonNull(objectKey, "objectKey is null");
+        }
+    }
+
+    private final Cache<CacheKey, V> cache;
+    // remote access keys with an entry of each object, only updated while the cache holds the lock of the entry
+    private final ConcurrentMap<String, Set<String>> remoteAccessKeys = new ConcurrentHashMap<>();
+
+    RemoteObjectCache(Caffeine<Object, Object> builder)
+    {
+        cache = builder.<CacheKey, V>evictionListener((key, _, _) -> {
+            if (key != null) {
+                removeIndexed(key);
+            }
+        }).build();
+    }
+
+    Optional<V> get(CacheKey key)
+    {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    void put(CacheKey key, V value)
+    {
+        requireNonNull(value, "value is null");
+        cache.asMap().compute(key, (_, _) -> {
+            remoteAccessKeys.compute(key.objectKey(), (_, accessKeys) -> {
+                Set<String> indexed = (accessKeys == null) ? ConcurrentHashMap.newKeySet() : accessKeys;
+                indexed.add(key.remoteAccessKey());
+                return indexed;
+            });
+            return value;
+        });
+    }
+
+    void invalidate(CacheKey key)
+    {
+        cache.asMap().computeIfPresent(key, (_, _) -> {
+            removeIndexed(key);
+            return null;
+        });
+    }
+
+    /**
+     * Removes the entries of all remote credentials of the object
+     */
+    void invalidateObject(String objectKey)
+    {
+        Set<String> accessKeys = remoteAccessKeys.get(objectKey);
+        if (accessKeys != null) {
+            ImmutableList.copyOf(accessKeys).forEach(accessKey -> invalidate(new CacheKey(accessKey, objectKey)));
+        }
+    }
+
+    /**
+     * Removes the entries of all remote credentials of the objects whose key starts with {@code prefix}
+     */
+    void invalidateObjects(String prefix)
+    {
+        remoteAccessKeys.keySet().stream()
+                .filter(objectKey -> objectKey.startsWith(prefix))
+                .collect(toImmutableList())
+                .forEach(this::invalidateObject);
+    }
+
+    long size()
+    {
+        return cache.estimatedSize();
+    }
+
+    private void removeIndexed(CacheKey key)
+    {
+        remoteAccessKeys.computeIfPresent(key.objectKey(), (_, accessKeys) -> {
+            accessKeys.remove(key.remoteAccessKey());
+            return accessKeys.isEmpty() ? null : accessKeys;
+        });
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent.ContentType;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Set;
+
+final class RemoteObjects
+{
+    // headers of a remote response that describe the response rather than the object
+    static final Set<String> RESPONSE_HEADERS = ImmutableSet.of(
+            "content-range",
+            "content-length",
+            "connection",
+            "date",
+            "keep-alive",
+            "server",
+            "transfer-encoding",
+            "x-amz-id-2",
+            "x-amz-request-id");
+
+    private RemoteObjects() {}
+
+    /**
+     * Returns true for requests of an object without query parameters, conditional or SSE-C headers,
+     * i.e. requests whose response only depends on the object
+     */
+    static boolean isPlainObjectRequest(ParsedS3Request request, String httpVerb)
+    {
+        if (!request.httpVerb().equalsIgnoreCase(httpVerb)
+                || request.keyInBucket().isEmpty()
+                || (request.requestContent().contentType() != ContentType.EMPTY)
+                || !request.queryParameters().keySet().isEmpty()) {
+            return false;
+        }
+        return request.requestHeaders().passthroughHeaders().keySet().stream().noneMatch(RemoteObjects::isUncacheableHeader);
+    }
+
+    static String objectKey(URI remoteUri)
+    {
+        return remoteUri.getScheme() + "://" + remoteUri.getRawAuthority() + remoteUri.getRawPath();
+    }
+
+    /**
+     * Key prefix of all objects of the bucket addressed by {@code remoteUri}
+     */
+    static String bucketPrefix(URI remoteUri)
+    {
+        String key = objectKey(remoteUri);
+        return key.endsWith("/") ? key : key + "/";
+    }
+
+    private static boolean isUncacheableHeader(String name)
+    {
+        // conditional requests and SSE-C keys must be checked by the remote
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        return lowerCaseName.startsWith("if-")
+                || lowerCaseName.startsWith("x-amz-server-side-encryption-customer-")
+                || lowerCaseName.equals("x-amz-checksum-mode");
+    }
+}
@@ -14,13 +14,18 @@
 package io.trino.aws.proxy.server.credentials.http;
 
 import com.google.inject.Binder;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
+import io.trino.aws.proxy.server.credentials.http.HttpCredentialsProvider.CredentialsKey;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
 import io.trino.aws.proxy.spi.credentials.IdentityCredential;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
 import static io.airlift.http.client.HttpClientBinder.httpClientBinder;
 import static io.airlift.json.JsonCodecBinder.jsonCodecBinder;
 import static io.trino.aws.proxy.spi.plugin.TrinoAwsProxyServerBinding.credentialsProviderModule;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class HttpCredentialsModule
         extends AbstractConfigurationAwareModule
@@ -29,6 +34,9 @@ public class HttpCredentialsModule
     public static final String HTTP_CREDENTIALS_PROVIDER_IDENTIFIER = "http";
     public static final String HTTP_CREDENTIALS_PROVIDER_HTTP_CLIENT_NAME = "http-credentials-provider";
 
+    // not created in the binding lambda, which would capture the module and defeat the deduplication of installs
+    private static final TypeLiteral<BulkSyncPage<IdentityCredential, CredentialsKey>> BULK_SYNC_PAGE_TYPE = new TypeLiteral<>() {};
+
     @Override
     protected void setup(Binder binder)
     {
@@ -39,6 +47,9 @@ public class HttpCredentialsModule
                     configBinder(innerBinder).bindConfig(HttpCredentialsProviderConfig.class);
                     httpClientBinder(innerBinder).bindHttpClient(HTTP_CREDENTIALS_PROVIDER_HTTP_CLIENT_NAME, ForHttpCredentialsProvider.class);
                     jsonCodecBinder(innerBinder).bindJsonCodec(IdentityCredential.class);
+                    jsonCodecBinder(innerBinder).bindJsonCodec(BULK_SYNC_PAGE_TYPE);
+                    innerBinder.bind(HttpCredentialsProvider.class).in(Scopes.SINGLETON);
+                    newExporter(innerBinder).export(HttpCredentialsProvider.class).withGeneratedName();
                 }));
     }
 }
@@ -13,95 +13,278 @@
  */
 package io.trino.aws.proxy.server.credentials.http;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimaps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
 import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpClient.HttpResponseFuture;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
 import io.airlift.json.JsonCodec;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
+import io.trino.aws.proxy.server.sync.HttpBulkSync;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
 import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.core.UriBuilder;
+import org.weakref.jmx.Managed;
 
 import java.net.URI;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.prepareGet;
+import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class HttpCredentialsProvider
         implements CredentialsProvider
 {
-    private record CredentialsKey(String emulatedAccessKey, Optional<String> session)
+    // also the key of removed credentials in delta listings of the bulk endpoint
+    public record CredentialsKey(String emulatedAccessKey, Optional<String> session)
     {
-        private CredentialsKey {
+        public CredentialsKey {
             requireNonNull(emulatedAccessKey, "emulatedAccessKey is null");
             requireNonNull(session, "session is null");
         }
     }
 
+    // unknown credentials get their own, usually much shorter, TTL. Every entry loses a random
+    // share of its TTL, scaled to the TTL of its kind, so that entries loaded together do not expire together
+    private record CredentialsExpiry(long ttlNanos, long negativeTtlNanos, long jitterNanos)
+            implements Expiry<CredentialsKey, Optional<IdentityCredential>>
+    {
+        @Override
+        public long expireAfterCreate(CredentialsKey key, Optional<IdentityCredential> value, long currentTime)
+        {
+            if (value.isPresent()) {
+                return ttlNanos - jitter(jitterNanos);
+            }
+            return negativeTtlNanos - jitter((long) (jitterNanos * ((double) negativeTtlNanos / ttlNanos)));
+        }
+
+        @Override
+        public long expireAfterUpdate(CredentialsKey key, Optional<IdentityCredential> value, long currentTime, long currentDuration)
+        {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(CredentialsKey key, Optional<IdentityCredential> value, long currentTime, long currentDuration)
+        {
+            return currentDuration;
+        }
+
+        private static long jitter(long maxJitterNanos)
+        {
+            return (maxJitterNanos > 0) ? ThreadLocalRandom.current().nextLong(maxJitterNanos + 1) : 0;
+        }
+    }
+
     private final HttpClient httpClient;
     private final JsonCodec<IdentityCredential> jsonCodec;
     private final URI httpCredentialsProviderEndpoint;
     private final Map<String, String> httpHeaders;
-    private final Optional<LoadingCache<CredentialsKey, Optional<IdentityCredential>>> credentialsCache;
-    private final Function<CredentialsKey, Optional<IdentityCredential>> credentialsFetcher;
+    private final Optional<AsyncLoadingCache<CredentialsKey, Optional<IdentityCredential>>> credentialsCache;
+    private final Optional<HttpBulkSync<IdentityCredential, CredentialsKey, IdentityCredential>> bulkSync;
 
     @Inject
-    public HttpCredentialsProvider(@ForHttpCredentialsProvider HttpClient httpClient, HttpCredentialsProviderConfig config, JsonCodec<IdentityCredential> jsonCodec)
+    public HttpCredentialsProvider(
+            @ForHttpCredentialsProvider HttpClient httpClient,
+            HttpCredentialsProviderConfig config,
+            JsonCodec<IdentityCredential> jsonCodec,
+            JsonCodec<BulkSyncPage<IdentityCredential, CredentialsKey>> bulkPageCodec)
+    {
+        this(httpClient, config, jsonCodec, bulkPageCodec, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    HttpCredentialsProvider(
+            HttpClient httpClient,
+            HttpCredentialsProviderConfig config,
+            JsonCodec<IdentityCredential> jsonCodec,
+            JsonCodec<BulkSyncPage<IdentityCredential, CredentialsKey>> bulkPageCodec,
+            Ticker ticker)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.jsonCodec = requireNonNull(jsonCodec, "jsonCodec is null");
         this.httpCredentialsProviderEndpoint = config.getEndpoint();
         this.httpHeaders = ImmutableMap.copyOf(config.getHttpHeaders());
+        requireNonNull(ticker, "ticker is null");
         if (config.getCacheSize() > 0 && config.getCacheTtl().toMillis() > 0) {
-            LoadingCache<CredentialsKey, Optional<IdentityCredential>> cache = Caffeine.newBuilder()
+            long ttlNanos = config.getCacheTtl().roundTo(NANOSECONDS);
+            long negativeTtlNanos = min(config.getNegativeCacheTtl().roundTo(NANOSECONDS), ttlNanos);
+            Caffeine<CredentialsKey, Optional<IdentityCredential>> builder = Caffeine.newBuilder()
                     .maximumSize(config.getCacheSize())
-                    .expireAfterWrite(config.getCacheTtl().toJavaTime())
-                    .build(this::fetchCredentials);
-            this.credentialsCache = Optional.of(cache);
-            this.credentialsFetcher = cache::get;
+                    .ticker(ticker)
+                    .recordStats()
+                    .expireAfter(new CredentialsExpiry(ttlNanos, negativeTtlNanos, config.getCacheTtlJitter().roundTo(NANOSECONDS)));
+            if (config.getCacheRefreshAfter().toMillis() > 0) {
+                // a refresh keeps serving the current value until the reload completes, a failed reload keeps it until it expires
+                builder.refreshAfterWrite(config.getCacheRefreshAfter().toJavaTime());
+            }
+            // concurrent lookups of a key that is being loaded share the same in-flight request
+            this.credentialsCache = Optional.of(builder.buildAsync((key, _) -> fetchCredentials(key)));
         }
         else {
             this.credentialsCache = Optional.empty();
-            this.credentialsFetcher = this::fetchCredentials;
         }
+        requireNonNull(bulkPageCodec, "bulkPageCodec is null");
+        this.bulkSync = config.getBulkEndpoint().map(bulkEndpoint -> new HttpBulkSync<>(
+                "credentials",
+                httpClient,
+                bulkEndpoint,
+                httpHeaders,
+                config.getBulkPageSize(),
+                config.getBulkSyncInterval(),
+                bulkPageCodec,
+                credential -> new CredentialsKey(credential.emulated().accessKey(), credential.emulated().session()),
+                credential -> credential));
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        bulkSync.ifPresent(HttpBulkSync::start);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        bulkSync.ifPresent(HttpBulkSync::shutdown);
     }
 
     @Override
     public Optional<IdentityCredential> credentials(String emulatedAccessKey, Optional<String> session)
     {
-        return credentialsFetcher.apply(new CredentialsKey(emulatedAccessKey, session));
+        CredentialsKey credentialsKey = new CredentialsKey(emulatedAccessKey, session);
+        // the bulk index only knows the credentials that were listed, anything else is looked up individually
+        Optional<IdentityCredential> indexedCredentials = bulkSync.flatMap(sync -> sync.get(credentialsKey));
+        if (indexedCredentials.isPresent()) {
+            return indexedCredentials;
+        }
+        CompletableFuture<Optional<IdentityCredential>> credentials = credentialsCache
+                .map(cache -> cache.get(credentialsKey))
+                .orElseGet(() -> fetchCredentials(credentialsKey));
+        try {
+            return credentials.join();
+        }
+        catch (CompletionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return credentialsCache.map(actualCache -> actualCache.synchronous().stats().hitCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return credentialsCache.map(actualCache -> actualCache.synchronous().stats().missCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getLoadFailureCount()
+    {
+        return credentialsCache.map(actualCache -> actualCache.synchronous().stats().loadFailureCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return credentialsCache.map(actualCache -> actualCache.synchronous().estimatedSize()).orElse(0L);
+    }
+
+    @Managed
+    public long getBulkIndexSize()
+    {
+        return bulkSync.map(HttpBulkSync::getIndexSize).orElse(0L);
+    }
+
+    @Managed
+    public long getBulkVersion()
+    {
+        return bulkSync.map(HttpBulkSync::getVersion).orElse(-1L);
+    }
+
+    @Managed
+    public long getBulkSyncFailureCount()
+    {
+        return bulkSync.map(HttpBulkSync::getSyncFailureCount).orElse(0L);
+    }
+
+    @VisibleForTesting
+    Optional<HttpBulkSync<IdentityCredential, CredentialsKey, IdentityCredential>> getBulkSync()
+    {
+        return bulkSync;
     }
 
     @VisibleForTesting
     void resetCache()
     {
         credentialsCache.ifPresent(instantiatedCache -> {
-            instantiatedCache.invalidateAll();
-            instantiatedCache.cleanUp();
+            instantiatedCache.synchronous().invalidateAll();
+            instantiatedCache.synchronous().cleanUp();
         });
     }
 
-    private Optional<IdentityCredential> fetchCredentials(CredentialsKey credentialsKey)
+    private CompletableFuture<Optional<IdentityCredential>> fetchCredentials(CredentialsKey credentialsKey)
     {
         UriBuilder uriBuilder = UriBuilder.fromUri(httpCredentialsProviderEndpoint).path(credentialsKey.emulatedAccessKey());
         credentialsKey.session().ifPresent(sessionToken -> uriBuilder.queryParam("sessionToken", sessionToken));
         Request.Builder requestBuilder = prepareGet()
                 .addHeaders(Multimaps.forMap(httpHeaders))
                 .setUri(uriBuilder.build());
-        JsonResponse<IdentityCredential> response = httpClient.execute(requestBuilder.build(), createFullJsonResponseHandler(jsonCodec));
-        if (response.getStatusCode() == HttpStatus.NOT_FOUND.code() || !response.hasValue()) {
-            return Optional.empty();
-        }
-        return Optional.of(response.getValue());
+        HttpResponseFuture<JsonResponse<IdentityCredential>> responseFuture = httpClient.executeAsync(requestBuilder.build(), createFullJsonResponseHandler(jsonCodec));
+
+        CompletableFuture<Optional<IdentityCredential>> credentials = new CompletableFuture<>();
+        Futures.addCallback(responseFuture, new FutureCallback<>()
+        {
+            @Override
+            public void onSuccess(JsonResponse<IdentityCredential> response)
+            {
+                int statusCode = response.getStatusCode();
+                if (statusCode == HttpStatus.NOT_FOUND.code()) {
+                    credentials.complete(Optional.empty());
+                }
+                else if (HttpStatus.familyForStatusCode(statusCode) != HttpStatus.Family.SUCCESSFUL) {
+                    // fails the load, a refresh keeps the current value instead of caching the credentials as unknown
+                    credentials.completeExceptionally(new RuntimeException("Failed to get credentials with HTTP plugin. Response code: " + statusCode + "; body: \n" + response.getResponseBody()));
+                }
+                else if (!response.hasValue()) {
+                    credentials.complete(Optional.empty());
+                }
+                else {
+                    credentials.complete(Optional.of(response.getValue()));
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                credentials.completeExceptionally(t);
+            }
+        }, directExecutor());
+        return credentials;
     }
 }
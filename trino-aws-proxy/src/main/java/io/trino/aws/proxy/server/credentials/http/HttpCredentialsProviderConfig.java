@@ -19,11 +19,14 @@ import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
@@ -33,6 +36,12 @@ public class HttpCredentialsProviderConfig
     private Map<String, String> httpHeaders = ImmutableMap.of();
     private long cacheSize;
     private Duration cacheTtl = Duration.ZERO;
+    private Duration cacheRefreshAfter = Duration.ZERO;
+    private Duration negativeCacheTtl = new Duration(30, TimeUnit.SECONDS);
+    private Duration cacheTtlJitter = Duration.ZERO;
+    private Optional<URI> bulkEndpoint = Optional.empty();
+    private int bulkPageSize = 1000;
+    private Duration bulkSyncInterval = new Duration(30, TimeUnit.SECONDS);
 
     @NotNull
     public URI getEndpoint()
@@ -101,4 +110,100 @@ public class HttpCredentialsProviderConfig
     {
         return cacheTtl;
     }
+
+    @Config("credentials-provider.http.cache-refresh-after")
+    @ConfigDescription("Age after which a cached entry is reloaded in the background on its next access while the current value keeps being served, defaults to 0 seconds (no refresh)")
+    public HttpCredentialsProviderConfig setCacheRefreshAfter(Duration cacheRefreshAfter)
+    {
+        this.cacheRefreshAfter = cacheRefreshAfter;
+        return this;
+    }
+
+    @MinDuration("0s")
+    public Duration getCacheRefreshAfter()
+    {
+        return cacheRefreshAfter;
+    }
+
+    @Config("credentials-provider.http.negative-cache-ttl")
+    @ConfigDescription("In-memory cache TTL for unknown credentials, capped by the cache TTL, defaults to 30 seconds")
+    public HttpCredentialsProviderConfig setNegativeCacheTtl(Duration negativeCacheTtl)
+    {
+        this.negativeCacheTtl = negativeCacheTtl;
+        return this;
+    }
+
+    @MinDuration("0s")
+    public Duration getNegativeCacheTtl()
+    {
+        return negativeCacheTtl;
+    }
+
+    @Config("credentials-provider.http.cache-ttl-jitter")
+    @ConfigDescription("Maximum random amount subtracted from the TTL of each cache entry so that entries loaded together do not expire together, defaults to 0 seconds")
+    public HttpCredentialsProviderConfig setCacheTtlJitter(Duration cacheTtlJitter)
+    {
+        this.cacheTtlJitter = cacheTtlJitter;
+        return this;
+    }
+
+    @MinDuration("0s")
+    public Duration getCacheTtlJitter()
+    {
+        return cacheTtlJitter;
+    }
+
+    public Optional<URI> getBulkEndpoint()
+    {
+        return bulkEndpoint;
+    }
+
+    @Config("credentials-provider.http.bulk-endpoint")
+    @ConfigDescription("URL to list all credentials from, page by page, at startup and to poll for changes afterward. Credentials missing from the listing are retrieved from the endpoint")
+    public HttpCredentialsProviderConfig setBulkEndpoint(URI bulkEndpoint)
+    {
+        this.bulkEndpoint = Optional.ofNullable(bulkEndpoint);
+        return this;
+    }
+
+    @Min(1)
+    public int getBulkPageSize()
+    {
+        return bulkPageSize;
+    }
+
+    @Config("credentials-provider.http.bulk-page-size")
+    @ConfigDescription("Number of credentials requested per page from the bulk endpoint")
+    public HttpCredentialsProviderConfig setBulkPageSize(int bulkPageSize)
+    {
+        this.bulkPageSize = bulkPageSize;
+        return this;
+    }
+
+    @MinDuration("1s")
+    public Duration getBulkSyncInterval()
+    {
+        return bulkSyncInterval;
+    }
+
+    @Config("credentials-provider.http.bulk-sync-interval")
+    @ConfigDescription("Interval between polls of the bulk endpoint for changed credentials")
+    public HttpCredentialsProviderConfig setBulkSyncInterval(Duration bulkSyncInterval)
+    {
+        this.bulkSyncInterval = bulkSyncInterval;
+        return this;
+    }
+
+    @AssertTrue(message = "credentials-provider.http.cache-refresh-after must be less than credentials-provider.http.cache-ttl")
+    public boolean isCacheRefreshAfterValid()
+    {
+        return cacheRefreshAfter.toMillis() == 0 || cacheRefreshAfter.compareTo(cacheTtl) < 0;
+    }
+
+    // an entry must not expire before it is refreshed
+    @AssertTrue(message = "credentials-provider.http.cache-refresh-after plus credentials-provider.http.cache-ttl-jitter must be less than credentials-provider.http.cache-ttl")
+    public boolean isCacheTtlJitterValid()
+    {
+        return cacheTtlJitter.toMillis() == 0 || cacheRefreshAfter.toMillis() + cacheTtlJitter.toMillis() < cacheTtl.toMillis();
+    }
 }
@@ -22,12 +22,17 @@ import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.json.JsonCodec;
 import io.trino.aws.proxy.server.remote.provider.SerializableRemoteS3Connection;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
+import io.trino.aws.proxy.server.sync.HttpBulkSync;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.remote.RemoteS3Connection;
 import io.trino.aws.proxy.spi.remote.RemoteS3ConnectionProvider;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.core.UriBuilder;
+import org.weakref.jmx.Managed;
 
 import java.net.URI;
 import java.net.URLEncoder;
@@ -39,6 +44,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.prepareGet;
@@ -54,12 +60,14 @@ public class HttpRemoteS3ConnectionProvider
     private final JsonCodec<SerializableRemoteS3Connection> responseCodec;
     private final ObjectMapper objectMapper;
     private final Optional<LoadingCache<Set<Entry<String, String>>, Optional<SerializableRemoteS3Connection>>> cache;
+    private final Optional<HttpBulkSync<RemoteS3ConnectionEntry, Map<String, String>, SerializableRemoteS3Connection>> bulkSync;
 
     @Inject
     public HttpRemoteS3ConnectionProvider(
             @ForHttpRemoteS3ConnectionProvider HttpClient httpClient,
             HttpRemoteS3ConnectionProviderConfig config,
             JsonCodec<SerializableRemoteS3Connection> responseCodec,
+            JsonCodec<BulkSyncPage<RemoteS3ConnectionEntry, Map<String, String>>> bulkPageCodec,
             ObjectMapper objectMapper)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
@@ -71,21 +79,98 @@ public class HttpRemoteS3ConnectionProvider
             this.cache = Optional.of(newBuilder()
                     .maximumSize(config.getCacheSize())
                     .expireAfterWrite(config.getCacheTtl().toJavaTime())
+                    .recordStats()
                     .build(this::requestRemoteConnection));
         }
         else {
             this.cache = Optional.empty();
         }
+        requireNonNull(bulkPageCodec, "bulkPageCodec is null");
+        this.bulkSync = config.getBulkEndpoint().map(bulkEndpoint -> new HttpBulkSync<>(
+                "remote-s3-connections",
+                httpClient,
+                bulkEndpoint,
+                Map.of(),
+                config.getBulkPageSize(),
+                config.getBulkSyncInterval(),
+                bulkPageCodec,
+                RemoteS3ConnectionEntry::query,
+                RemoteS3ConnectionEntry::connection));
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        bulkSync.ifPresent(HttpBulkSync::start);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        bulkSync.ifPresent(HttpBulkSync::shutdown);
     }
 
     @Override
     public Optional<? extends RemoteS3Connection> remoteConnection(SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request)
     {
         Set<Map.Entry<String, String>> requestQueries = buildRequestQueries(signingMetadata, identity, request);
+        // the bulk index only knows the connections that were listed, anything else is requested individually
+        Optional<SerializableRemoteS3Connection> indexedConnection = bulkSync.flatMap(sync -> sync.get(bulkIndexKey(requestQueries)));
+        if (indexedConnection.isPresent()) {
+            return indexedConnection;
+        }
         return cache.map(actualCache -> actualCache.get(requestQueries))
                 .orElseGet(() -> requestRemoteConnection(requestQueries));
     }
 
+    @Managed
+    public long getHitCount()
+    {
+        return cache.map(actualCache -> actualCache.stats().hitCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.map(actualCache -> actualCache.stats().missCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getLoadFailureCount()
+    {
+        return cache.map(actualCache -> actualCache.stats().loadFailureCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.map(LoadingCache::estimatedSize).orElse(0L);
+    }
+
+    @Managed
+    public long getBulkIndexSize()
+    {
+        return bulkSync.map(HttpBulkSync::getIndexSize).orElse(0L);
+    }
+
+    @Managed
+    public long getBulkVersion()
+    {
+        return bulkSync.map(HttpBulkSync::getVersion).orElse(-1L);
+    }
+
+    @Managed
+    public long getBulkSyncFailureCount()
+    {
+        return bulkSync.map(HttpBulkSync::getSyncFailureCount).orElse(0L);
+    }
+
+    @VisibleForTesting
+    Optional<HttpBulkSync<RemoteS3ConnectionEntry, Map<String, String>, SerializableRemoteS3Connection>> getBulkSync()
+    {
+        return bulkSync;
+    }
+
     @VisibleForTesting
     void resetCache()
     {
@@ -102,6 +187,13 @@ public class HttpRemoteS3ConnectionProvider
                 .collect(toImmutableSet());
     }
 
+    private static Map<String, String> bulkIndexKey(Set<Map.Entry<String, String>> requestQueries)
+    {
+        // listed connections name their request fields like the query parameters
+        return requestQueries.stream()
+                .collect(toImmutableMap(entry -> entry.getKey().toLowerCase(Locale.ROOT), Map.Entry::getValue));
+    }
+
     private Optional<SerializableRemoteS3Connection> requestRemoteConnection(Set<Map.Entry<String, String>> requestQueryParams)
     {
         UriBuilder uriBuilder = UriBuilder.fromUri(endpoint);
@@ -15,6 +15,7 @@ package io.trino.aws.proxy.server.remote.provider.http;
 
 import io.airlift.configuration.Config;
 import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -22,6 +23,8 @@ import jakarta.validation.constraints.NotNull;
 import java.net.URI;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class HttpRemoteS3ConnectionProviderConfig
 {
@@ -29,6 +32,9 @@ public class HttpRemoteS3ConnectionProviderConfig
     private EnumSet<RequestQuery> requestFields = EnumSet.allOf(RequestQuery.class);
     private long cacheSize;
     private Duration cacheTtl = Duration.valueOf("1s");
+    private Optional<URI> bulkEndpoint = Optional.empty();
+    private int bulkPageSize = 1000;
+    private Duration bulkSyncInterval = new Duration(30, TimeUnit.SECONDS);
 
     @NotNull
     public URI getEndpoint()
@@ -87,4 +93,42 @@ public class HttpRemoteS3ConnectionProviderConfig
         this.cacheTtl = cacheTtl;
         return this;
     }
+
+    public Optional<URI> getBulkEndpoint()
+    {
+        return bulkEndpoint;
+    }
+
+    @Config("remote-s3-connection-provider.http.bulk-endpoint")
+    public HttpRemoteS3ConnectionProviderConfig setBulkEndpoint(URI bulkEndpoint)
+    {
+        this.bulkEndpoint = Optional.ofNullable(bulkEndpoint);
+        return this;
+    }
+
+    @Min(1)
+    public int getBulkPageSize()
+    {
+        return bulkPageSize;
+    }
+
+    @Config("remote-s3-connection-provider.http.bulk-page-size")
+    public HttpRemoteS3ConnectionProviderConfig setBulkPageSize(int bulkPageSize)
+    {
+        this.bulkPageSize = bulkPageSize;
+        return this;
+    }
+
+    @MinDuration("1s")
+    public Duration getBulkSyncInterval()
+    {
+        return bulkSyncInterval;
+    }
+
+    @Config("remote-s3-connection-provider.http.bulk-sync-interval")
+    public HttpRemoteS3ConnectionProviderConfig setBulkSyncInterval(Duration bulkSyncInterval)
+    {
+        this.bulkSyncInterval = bulkSyncInterval;
+        return this;
+    }
 }
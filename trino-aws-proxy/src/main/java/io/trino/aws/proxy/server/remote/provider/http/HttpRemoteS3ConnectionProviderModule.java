@@ -14,19 +14,27 @@
 package io.trino.aws.proxy.server.remote.provider.http;
 
 import com.google.inject.Binder;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
 import io.trino.aws.proxy.server.remote.provider.SerializableRemoteS3Connection;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
+
+import java.util.Map;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
 import static io.airlift.http.client.HttpClientBinder.httpClientBinder;
 import static io.airlift.json.JsonCodecBinder.jsonCodecBinder;
 import static io.trino.aws.proxy.spi.plugin.TrinoAwsProxyServerBinding.remoteS3ConnectionProviderModule;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class HttpRemoteS3ConnectionProviderModule
         extends AbstractConfigurationAwareModule
 {
     public static final String HTTP_REMOTE_S3_CONNECTION_PROVIDER = "http";
 
+    private static final TypeLiteral<BulkSyncPage<RemoteS3ConnectionEntry, Map<String, String>>> BULK_SYNC_PAGE_TYPE = new TypeLiteral<>() {};
+
     @Override
     protected void setup(Binder binder)
     {
@@ -36,8 +44,10 @@ public class HttpRemoteS3ConnectionProviderModule
                 innerBinder -> {
                     httpClientBinder(innerBinder).bindHttpClient("remote-s3-connection-provider.http", ForHttpRemoteS3ConnectionProvider.class);
                     configBinder(innerBinder).bindConfig(HttpRemoteS3ConnectionProviderConfig.class);
-                    innerBinder.bind(HttpRemoteS3ConnectionProvider.class);
+                    innerBinder.bind(HttpRemoteS3ConnectionProvider.class).in(Scopes.SINGLETON);
+                    newExporter(innerBinder).export(HttpRemoteS3ConnectionProvider.class).withGeneratedName();
                     jsonCodecBinder(innerBinder).bindJsonCodec(SerializableRemoteS3Connection.class);
+                    jsonCodecBinder(innerBinder).bindJsonCodec(BULK_SYNC_PAGE_TYPE);
                 }));
     }
 }
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote.provider.http;
+
+import com.google.common.collect.ImmutableMap;
+import io.trino.aws.proxy.server.remote.provider.SerializableRemoteS3Connection;
+
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A remote S3 connection listed by the bulk endpoint, together with the request fields it is returned for,
+ * named like the query parameters of the per request endpoint, e.g. {@code {"bucket": "b", "emulated_access_key": "k"}}.
+ */
+public record RemoteS3ConnectionEntry(Map<String, String> query, SerializableRemoteS3Connection connection)
+{
+    public RemoteS3ConnectionEntry
+    {
+        query = ImmutableMap.copyOf(query);
+        requireNonNull(connection, "connection is null");
+    }
+}
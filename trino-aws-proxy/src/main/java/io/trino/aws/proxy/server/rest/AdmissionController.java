@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import io.trino.aws.proxy.server.rest.AdmissionControllerConfig.FairShareKey;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Limits the number of concurrent requests to the remote S3 endpoint. Requests that can't be admitted immediately
+ * are queued and admitted in weighted fair order (self-clocked fair queueing) across their fair share keys so
+ * that a single busy key can't starve the others.
+ */
+public class AdmissionController
+{
+    private static final Logger log = Logger.get(AdmissionController.class);
+
+    private static final Comparator<QueuedAdmission> FAIR_ORDER = Comparator.<QueuedAdmission>comparingDouble(admission -> admission.finishTag)
+            .thenComparingLong(admission -> admission.sequence);
+
+    private final Optional<Integer> maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final int maxQueuedRequestsPerKey;
+    private final FairShareKey fairShareKey;
+    private final Map<String, Integer> weights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<QueuedAdmission> queue = new PriorityQueue<>(FAIR_ORDER);
+    private final Map<String, KeyState> keyStates = new HashMap<>();
+    private int runningRequests;
+    private double virtualTime;
+    private long sequence;
+
+    private final TimeStat queueWaitTime = new TimeStat(MILLISECONDS);
+    private final CounterStat rejectedRequests = new CounterStat();
+
+    public interface Admission
+            extends AutoCloseable
+    {
+        /**
+         * Blocks until the request is admitted
+         */
+        void awaitAdmission()
+                throws InterruptedException;
+
+        boolean isAdmitted();
+
+        /**
+         * Releases the admission, or removes the request from the queue if it has not been admitted yet
+         */
+        @Override
+        void close();
+    }
+
+    private static final Admission UNLIMITED = new Admission()
+    {
+        @Override
+        public void awaitAdmission() {}
+
+        @Override
+        public boolean isAdmitted()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    };
+
+    @Inject
+    public AdmissionController(AdmissionControllerConfig config)
+    {
+        maxConcurrentRequests = config.getMaxConcurrentRequests();
+        maxQueuedRequests = config.getMaxQueuedRequests();
+        maxQueuedRequestsPerKey = config.getMaxQueuedRequestsPerKey();
+        fairShareKey = config.getFairShareKey();
+        weights = ImmutableMap.copyOf(config.getWeights());
+    }
+
+    /**
+     * Reserves an admission for the request, either running or queued. Throws an S3 {@code SlowDown} error
+     * if the request can't be queued.
+     */
+    public Admission reserve(Optional<Identity> identity, SigningMetadata signingMetadata)
+    {
+        if (maxConcurrentRequests.isEmpty()) {
+            return UNLIMITED;
+        }
+        return reserve(fairShareKey.key(identity, signingMetadata));
+    }
+
+    Admission reserve(String key)
+    {
+        int maxConcurrent = maxConcurrentRequests.orElseThrow();
+
+        lock.lock();
+        try {
+            if ((runningRequests < maxConcurrent) && queue.isEmpty()) {
+                runningRequests += 1;
+                queueWaitTime.add(0, MILLISECONDS);
+                return new QueuedAdmission(key, 0, 0, true);
+            }
+
+            KeyState keyState = keyStates.get(key);
+            int queuedForKey = (keyState == null) ? 0 : keyState.queued;
+            if ((queue.size() >= maxQueuedRequests) || (queuedForKey >= maxQueuedRequestsPerKey)) {
+                rejectedRequests.update(1);
+                log.debug("Admission queue is full. Key: %s, Queued: %s, Queued for key: %s", key, queue.size(), queuedForKey);
+                throw S3ErrorException.slowDown("Too many queued requests");
+            }
+
+            if (keyState == null) {
+                keyState = new KeyState();
+                keyStates.put(key, keyState);
+            }
+            double startTag = Math.max(virtualTime, keyState.lastFinishTag);
+            double finishTag = startTag + (1.0 / weights.getOrDefault(key, 1));
+            keyState.lastFinishTag = finishTag;
+            keyState.queued += 1;
+
+            QueuedAdmission admission = new QueuedAdmission(key, finishTag, sequence++, false);
+            queue.add(admission);
+            return admission;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getQueueWaitTime()
+    {
+        return queueWaitTime;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejectedRequests()
+    {
+        return rejectedRequests;
+    }
+
+    @Managed
+    public int getRunningRequests()
+    {
+        lock.lock();
+        try {
+            return runningRequests;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Managed
+    public int getQueuedRequests()
+    {
+        lock.lock();
+        try {
+            return queue.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // must be called with the lock held
+    private void releaseRunning()
+    {
+        QueuedAdmission next = queue.poll();
+        if (next == null) {
+            runningRequests -= 1;
+            return;
+        }
+        // the running slot is handed over directly to the next request
+        virtualTime = next.finishTag;
+        dequeued(next);
+        next.admit();
+    }
+
+    // must be called with the lock held
+    private void dequeued(QueuedAdmission admission)
+    {
+        KeyState keyState = keyStates.get(admission.key);
+        keyState.queued -= 1;
+        if (keyState.queued == 0) {
+            // all of the key's requests have been dequeued so its finish tag can't be ahead of the virtual time anymore
+            keyStates.remove(admission.key);
+        }
+    }
+
+    private static class KeyState
+    {
+        private int queued;
+        private double lastFinishTag;
+    }
+
+    private class QueuedAdmission
+            implements Admission
+    {
+        private final String key;
+        private final double finishTag;
+        private final long sequence;
+        private final long queuedNanos = System.nanoTime();
+        private final CountDownLatch admitted = new CountDownLatch(1);
+        private boolean running;
+        private boolean closed;
+
+        private QueuedAdmission(String key, double finishTag, long sequence, boolean running)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.running = running;
+            if (running) {
+                admitted.countDown();
+            }
+        }
+
+        @Override
+        public void awaitAdmission()
+                throws InterruptedException
+        {
+            admitted.await();
+        }
+
+        @Override
+        public boolean isAdmitted()
+        {
+            return admitted.getCount() == 0;
+        }
+
+        @Override
+        public void close()
+        {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (running) {
+                    releaseRunning();
+                }
+                else if (queue.remove(this)) {
+                    dequeued(this);
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        // must be called with the lock held
+        private void admit()
+        {
+            running = true;
+            queueWaitTime.add(System.nanoTime() - queuedNanos, NANOSECONDS);
+            admitted.countDown();
+        }
+    }
+}
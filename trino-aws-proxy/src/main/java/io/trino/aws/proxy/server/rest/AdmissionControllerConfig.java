@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+public class AdmissionControllerConfig
+{
+    public enum FairShareKey
+    {
+        EMULATED_ACCESS_KEY,
+        IDENTITY;
+
+        public String key(Optional<Identity> identity, SigningMetadata signingMetadata)
+        {
+            return switch (this) {
+                case EMULATED_ACCESS_KEY -> signingMetadata.credential().accessKey();
+                case IDENTITY -> identity.map(Identity::user).orElseGet(() -> signingMetadata.credential().accessKey());
+            };
+        }
+    }
+
+    private Optional<Integer> maxConcurrentRequests = Optional.empty();
+    private int maxQueuedRequests = 1000;
+    private int maxQueuedRequestsPerKey = 100;
+    private FairShareKey fairShareKey = FairShareKey.EMULATED_ACCESS_KEY;
+    private Map<String, Integer> weights = ImmutableMap.of();
+
+    @NotNull
+    public Optional<@Min(1) Integer> getMaxConcurrentRequests()
+    {
+        return maxConcurrentRequests;
+    }
+
+    @Config("aws.proxy.admission.max-concurrent-requests")
+    @ConfigDescription("Max number of concurrent requests to the remote S3 endpoint, optional. Admission control is disabled if not set")
+    public AdmissionControllerConfig setMaxConcurrentRequests(Integer maxConcurrentRequests)
+    {
+        this.maxConcurrentRequests = Optional.ofNullable(maxConcurrentRequests);
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxQueuedRequests()
+    {
+        return maxQueuedRequests;
+    }
+
+    @Config("aws.proxy.admission.max-queued-requests")
+    @ConfigDescription("Max number of requests waiting for admission, additional requests are rejected with 503 SlowDown")
+    public AdmissionControllerConfig setMaxQueuedRequests(int maxQueuedRequests)
+    {
+        this.maxQueuedRequests = maxQueuedRequests;
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxQueuedRequestsPerKey()
+    {
+        return maxQueuedRequestsPerKey;
+    }
+
+    @Config("aws.proxy.admission.max-queued-requests-per-key")
+    @ConfigDescription("Max number of requests waiting for admission for a single fair share key, additional requests are rejected with 503 SlowDown")
+    public AdmissionControllerConfig setMaxQueuedRequestsPerKey(int maxQueuedRequestsPerKey)
+    {
+        this.maxQueuedRequestsPerKey = maxQueuedRequestsPerKey;
+        return this;
+    }
+
+    @NotNull
+    public FairShareKey getFairShareKey()
+    {
+        return fairShareKey;
+    }
+
+    @Config("aws.proxy.admission.fair-share-key")
+    @ConfigDescription("What queued requests are grouped by for fair scheduling: EMULATED_ACCESS_KEY or IDENTITY (the identity's user, falls back to the emulated access key)")
+    public AdmissionControllerConfig setFairShareKey(FairShareKey fairShareKey)
+    {
+        this.fairShareKey = requireNonNull(fairShareKey, "fairShareKey is null");
+        return this;
+    }
+
+    public Map<String, Integer> getWeights()
+    {
+        return weights;
+    }
+
+    @Config("aws.proxy.admission.weights")
+    @ConfigDescription("Scheduling weights in the format key-1:weight-1,key-2:weight-2. Keys that are not listed have a weight of 1")
+    public AdmissionControllerConfig setWeights(String weights)
+    {
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        try {
+            Splitter.on(",").trimResults().omitEmptyStrings().withKeyValueSeparator(Splitter.on(":").trimResults())
+                    .split(weights)
+                    .forEach((key, value) -> builder.put(key, Integer.parseInt(value)));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid weight list: " + weights, e);
+        }
+        this.weights = builder.buildOrThrow();
+        this.weights.values().forEach(weight -> checkArgument(weight > 0, "Invalid weight list, weights must be positive: %s", weights));
+        return this;
+    }
+}
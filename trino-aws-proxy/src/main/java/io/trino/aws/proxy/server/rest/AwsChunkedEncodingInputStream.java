@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
+import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.toIntExact;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes content as aws-chunked content, see <a href="https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html">sigv4-streaming</a>.
+ * Either every chunk is signed, or the chunks are unsigned and followed by a trailing checksum of the content
+ * ({@code STREAMING-UNSIGNED-PAYLOAD-TRAILER}). Every chunk, but the last one, has the same size. A chunk is encoded
+ * in place: its content is read into the buffer after the space reserved for the longest possible header and the
+ * header is written right before the content.
+ */
+class AwsChunkedEncodingInputStream
+        extends InputStream
+{
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final byte[] CHUNK_SIGNATURE = ";chunk-signature=".getBytes(US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(US_ASCII);
+    private static final int SIGNATURE_LENGTH = 64;
+    // "<hex size>;chunk-signature=<signature>\r\n" where the size is an int
+    private static final int MAX_HEADER_LENGTH = 8 + CHUNK_SIGNATURE.length + SIGNATURE_LENGTH + 2;
+
+    private final InputStream delegate;
+    private final Optional<ChunkSigningSession> chunkSigningSession;
+    private final Optional<ChecksumAlgorithm> trailingChecksum;
+    private final Optional<PayloadChecksum> checksum;
+    private final int chunkSize;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean lastChunk;
+
+    AwsChunkedEncodingInputStream(InputStream delegate, ChunkSigningSession chunkSigningSession)
+    {
+        this(delegate, chunkSigningSession, DEFAULT_CHUNK_SIZE);
+    }
+
+    AwsChunkedEncodingInputStream(InputStream delegate, ChunkSigningSession chunkSigningSession, int chunkSize)
+    {
+        this(delegate, Optional.of(chunkSigningSession), Optional.empty(), chunkSize);
+    }
+
+    AwsChunkedEncodingInputStream(InputStream delegate, ChecksumAlgorithm trailingChecksum)
+    {
+        this(delegate, trailingChecksum, DEFAULT_CHUNK_SIZE);
+    }
+
+    AwsChunkedEncodingInputStream(InputStream delegate, ChecksumAlgorithm trailingChecksum, int chunkSize)
+    {
+        this(delegate, Optional.empty(), Optional.of(trailingChecksum), chunkSize);
+    }
+
+    private AwsChunkedEncodingInputStream(InputStream delegate, Optional<ChunkSigningSession> chunkSigningSession, Optional<ChecksumAlgorithm> trailingChecksum, int chunkSize)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.chunkSigningSession = requireNonNull(chunkSigningSession, "chunkSigningSession is null");
+        this.trailingChecksum = requireNonNull(trailingChecksum, "trailingChecksum is null");
+        // fail before any content is read rather than with the first chunk
+        if (chunkSigningSession.isPresent() && !chunkSigningSession.get().supportsChunkSigning()) {
+            throw S3ErrorException.notImplemented("Forwarding uploads of unknown length is not supported");
+        }
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        this.chunkSize = chunkSize;
+        checksum = trailingChecksum.map(PayloadChecksum::create);
+        // the trailer is written after the (empty) content of the last chunk
+        int trailerLength = trailingChecksum.map(AwsChunkedEncodingInputStream::trailerLength).orElse(0);
+        buffer = new byte[MAX_HEADER_LENGTH + Math.max(chunkSize, trailerLength) + 2];
+    }
+
+    /**
+     * Returns the length of the unsigned content with a trailing checksum that encodes {@code decodedContentLength} bytes.
+     */
+    static long encodedContentLength(long decodedContentLength, ChecksumAlgorithm trailingChecksum, int chunkSize)
+    {
+        long fullChunks = decodedContentLength / chunkSize;
+        int lastChunkSize = toIntExact(decodedContentLength % chunkSize);
+        long length = fullChunks * unsignedChunkLength(chunkSize);
+        if (lastChunkSize > 0) {
+            length += unsignedChunkLength(lastChunkSize);
+        }
+        // "0\r\n<trailer>\r\n"
+        return length + 3 + trailerLength(trailingChecksum) + 2;
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        if ((position == limit) && !encodeNextChunk()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if ((position == limit) && !encodeNextChunk()) {
+            return -1;
+        }
+
+        len = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, len);
+        position += len;
+        return len;
+    }
+
+    @Override
+    public int available()
+    {
+        return limit - position;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        delegate.close();
+    }
+
+    private boolean encodeNextChunk()
+            throws IOException
+    {
+        if (lastChunk) {
+            return false;
+        }
+
+        int contentLength = delegate.readNBytes(buffer, MAX_HEADER_LENGTH, chunkSize);
+        chunkSigningSession.ifPresent(session -> session.write(buffer, MAX_HEADER_LENGTH, contentLength));
+        checksum.ifPresent(payloadChecksum -> payloadChecksum.update(buffer, MAX_HEADER_LENGTH, contentLength));
+        // the last chunk is empty
+        lastChunk = (contentLength == 0);
+
+        int sizeLength = hexLength(contentLength);
+        int headerLength = sizeLength + (chunkSigningSession.isPresent() ? CHUNK_SIGNATURE.length + SIGNATURE_LENGTH : 0) + 2;
+        position = MAX_HEADER_LENGTH - headerLength;
+        int index = position;
+        for (int shift = (sizeLength - 1) * 4; shift >= 0; shift -= 4) {
+            buffer[index++] = HEX_DIGITS[(contentLength >>> shift) & 0xF];
+        }
+        if (chunkSigningSession.isPresent()) {
+            System.arraycopy(CHUNK_SIGNATURE, 0, buffer, index, CHUNK_SIGNATURE.length);
+            index += CHUNK_SIGNATURE.length;
+            chunkSigningSession.get().signChunk(buffer, index);
+            index += SIGNATURE_LENGTH;
+        }
+        buffer[index++] = '\r';
+        buffer[index] = '\n';
+
+        limit = MAX_HEADER_LENGTH + contentLength;
+        if (lastChunk && trailingChecksum.isPresent()) {
+            byte[] trailer = (trailingChecksum.get().headerName() + ":" + checksum.orElseThrow().base64()).getBytes(US_ASCII);
+            System.arraycopy(trailer, 0, buffer, limit, trailer.length);
+            limit += trailer.length;
+            buffer[limit++] = '\r';
+            buffer[limit++] = '\n';
+        }
+        buffer[limit++] = '\r';
+        buffer[limit++] = '\n';
+        return true;
+    }
+
+    private static int hexLength(int value)
+    {
+        return Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(value) + 3) / 4);
+    }
+
+    // "<hex size>\r\n<content>\r\n"
+    private static long unsignedChunkLength(int chunkSize)
+    {
+        return hexLength(chunkSize) + 2L + chunkSize + 2;
+    }
+
+    // "<header name>:<base64 checksum>\r\n"
+    private static int trailerLength(ChecksumAlgorithm trailingChecksum)
+    {
+        return trailingChecksum.headerName().length() + 1 + PayloadChecksum.base64Length(trailingChecksum) + 2;
+    }
+}
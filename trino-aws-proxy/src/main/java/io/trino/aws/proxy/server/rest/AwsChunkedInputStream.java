@@ -13,24 +13,56 @@
  */
 package io.trino.aws.proxy.server.rest;
 
-import com.google.common.base.Splitter;
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
 import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
 import jakarta.ws.rs.WebApplicationException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
 
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Decodes aws-chunked content, validating chunk signatures and the trailing checksum, if any. The delegate is read through
+ * a buffer from which chunk headers are parsed in place, so decoding doesn't allocate per chunk. The chunks of
+ * {@code STREAMING-UNSIGNED-PAYLOAD-TRAILER} content are not signed.
+ */
 class AwsChunkedInputStream
         extends InputStream
 {
+    // chunk headers must fit into the buffer. They are usually less than 100 bytes.
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] CHUNK_SIGNATURE = "chunk-signature".getBytes(ISO_8859_1);
+    private static final String TRAILER_SIGNATURE = "x-amz-trailer-signature";
+
+    private static final ChunkSigningSession UNSIGNED_CHUNKS = new ChunkSigningSession()
+    {
+        @Override
+        public void startChunk(String expectedSignature)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void complete() {}
+
+        @Override
+        public void write(byte b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
     private final InputStream delegate;
     private final ChunkSigningSession chunkSigningSession;
+    private final boolean signedChunks;
+    private final Optional<ChecksumAlgorithm> trailingChecksum;
+    private final Optional<PayloadChecksum> checksum;
 
     private enum State
     {
@@ -39,17 +71,39 @@ class AwsChunkedInputStream
         LAST_CHUNK,
     }
 
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
     private State state = State.FIRST_CHUNK;
     private boolean delegateIsDone;
-    private int bytesRemainingInChunk;
-    private int bytesAccountedFor;
-    private final int decodedContentLength;
+    private long bytesRemainingInChunk;
+    private long bytesAccountedFor;
+    private final long decodedContentLength;
+
+    AwsChunkedInputStream(InputStream delegate, ChunkSigningSession chunkSigningSession)
+    {
+        this(delegate, Optional.of(chunkSigningSession), Optional.empty(), Optional.empty());
+    }
+
+    AwsChunkedInputStream(InputStream delegate, ChunkSigningSession chunkSigningSession, long decodedContentLength)
+    {
+        this(delegate, Optional.of(chunkSigningSession), Optional.of(decodedContentLength), Optional.empty());
+    }
 
-    AwsChunkedInputStream(InputStream delegate, ChunkSigningSession chunkSigningSession, int decodedContentLength)
+    // the decoded content length is not known when the x-amz-decoded-content-length header is missing
+    AwsChunkedInputStream(InputStream delegate, Optional<ChunkSigningSession> chunkSigningSession, Optional<Long> decodedContentLength, Optional<ChecksumAlgorithm> trailingChecksum)
     {
         this.delegate = requireNonNull(delegate, "delegate is null");
-        this.chunkSigningSession = requireNonNull(chunkSigningSession, "chunkSigningSession is null");
-        this.decodedContentLength = decodedContentLength;
+        this.chunkSigningSession = requireNonNull(chunkSigningSession, "chunkSigningSession is null").orElse(UNSIGNED_CHUNKS);
+        signedChunks = chunkSigningSession.isPresent();
+        this.decodedContentLength = requireNonNull(decodedContentLength, "decodedContentLength is null").orElse(Long.MAX_VALUE);
+        this.trailingChecksum = requireNonNull(trailingChecksum, "trailingChecksum is null");
+        checksum = trailingChecksum.map(PayloadChecksum::create);
+        // fail before any content is read rather than after the last chunk
+        if (signedChunks && trailingChecksum.isPresent() && !this.chunkSigningSession.supportsTrailerValidation()) {
+            throw S3ErrorException.notImplemented("Uploads with signed trailers are not supported");
+        }
     }
 
     @Override
@@ -60,38 +114,68 @@ class AwsChunkedInputStream
             return -1;
         }
 
-        int i = delegate.read();
-        if (i < 0) {
-            throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
+        if (position == limit) {
+            fillBuffer();
         }
+        byte b = buffer[position++];
 
-        chunkSigningSession.write((byte) (i & 0xff));
+        chunkSigningSession.write(b);
+        if (checksum.isPresent()) {
+            checksum.get().update(b);
+        }
         updateBytesRemaining(1);
 
-        return i;
+        return b & 0xff;
     }
 
     @Override
     public int read(byte[] b, int off, int len)
             throws IOException
     {
+        Objects.checkFromIndexSize(off, len, b.length);
         if (isEndOfStream()) {
             return -1;
         }
+        if (len == 0) {
+            return 0;
+        }
 
-        len = Math.min(len, bytesRemainingInChunk);
+        len = (int) Math.min(len, bytesRemainingInChunk);
 
-        int count = delegate.read(b, off, len);
-        if (count < 0) {
-            throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
+        int count;
+        if ((position == limit) && (len >= buffer.length)) {
+            // large reads bypass the buffer
+            count = delegate.read(b, off, len);
+            if (count < 0) {
+                delegateIsDone = true;
+                throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
+            }
+        }
+        else {
+            if (position == limit) {
+                fillBuffer();
+            }
+            count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
         }
 
         chunkSigningSession.write(b, off, count);
+        if (checksum.isPresent()) {
+            checksum.get().update(b, off, count);
+        }
         updateBytesRemaining(count);
 
         return count;
     }
 
+    @Override
+    public int available()
+            throws IOException
+    {
+        return (int) Math.min(limit - position, bytesRemainingInChunk);
+    }
+
     @Override
     public void close()
             throws IOException
@@ -150,90 +234,232 @@ class AwsChunkedInputStream
             }
         }
 
-        String header = readLine();
+        int headerEnd = readLine();
+        long chunkSize = parseChunkHeader(position, headerEnd);
+        position = headerEnd + 2;
 
-        boolean success = false;
-        do {
-            List<String> parts = Splitter.on(';').trimResults().limit(2).splitToList(header);
-            if (parts.size() != 2) {
-                break;
-            }
+        bytesRemainingInChunk = chunkSize;
+        if (chunkSize == 0) {
+            chunkSigningSession.complete();
+            readTrailer();
+            state = State.LAST_CHUNK;
+        }
+        bytesAccountedFor += chunkSize;
 
-            int chunkSize;
-            try {
-                chunkSize = Integer.parseInt(parts.getFirst(), 16);
-                if (chunkSize < 0) {
-                    break;
-                }
+        if (bytesAccountedFor > decodedContentLength) {
+            throw new WebApplicationException("chunked data headers report a larger size than originally declared in the request: declared %s sent %s".formatted(decodedContentLength, bytesAccountedFor),
+                    BAD_REQUEST);
+        }
+    }
+
+    // parses a "<hex size>;chunk-signature=<signature>[;...]" header, starting the chunk in the signing session. Unsigned chunks
+    // have a "<hex size>[;...]" header.
+    private long parseChunkHeader(int start, int end)
+    {
+        int separator = indexOf(';', start, end);
+        if ((separator < 0) && signedChunks) {
+            throw invalidChunkHeader(start, end);
+        }
+
+        long chunkSize = parseChunkSize(start, (separator < 0) ? end : separator);
+        if (chunkSize < 0) {
+            throw invalidChunkHeader(start, end);
+        }
+        if (!signedChunks) {
+            // extensions are ignored
+            return chunkSize;
+        }
+
+        int extensionStart = separator + 1;
+        while (extensionStart <= end) {
+            int extensionEnd = indexOf(';', extensionStart, end);
+            if (extensionEnd < 0) {
+                extensionEnd = end;
             }
-            catch (NumberFormatException ignore) {
-                break;
+            int equals = indexOf('=', extensionStart, extensionEnd);
+            if (equals < 0) {
+                throw invalidChunkHeader(start, end);
             }
+            int keyStart = skipWhitespace(extensionStart, equals);
+            int keyEnd = trimWhitespace(keyStart, equals);
+            if (equalsIgnoreCase(CHUNK_SIGNATURE, keyStart, keyEnd)) {
+                int valueStart = skipWhitespace(equals + 1, extensionEnd);
+                int valueEnd = trimWhitespace(valueStart, extensionEnd);
+                chunkSigningSession.startChunk(buffer, valueStart, valueEnd - valueStart);
+                return chunkSize;
+            }
+            extensionStart = extensionEnd + 1;
+        }
+        throw invalidChunkHeader(start, end);
+    }
 
-            Optional<String> chunkSignature = Splitter.on(';').trimResults().withKeyValueSeparator('=').split(parts.get(1))
-                    .entrySet()
-                    .stream()
-                    .filter(entry -> entry.getKey().equalsIgnoreCase("chunk-signature"))
-                    .map(Map.Entry::getValue)
-                    .findFirst();
-
-            if (chunkSignature.isEmpty()) {
-                break;
+    // returns -1 if the size is not a valid hex number
+    private long parseChunkSize(int start, int end)
+    {
+        start = skipWhitespace(start, end);
+        end = trimWhitespace(start, end);
+        if (start == end) {
+            return -1;
+        }
+        long size = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(buffer[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            if (size > (Long.MAX_VALUE >> 4)) {
+                return -1;
             }
+            size = (size << 4) | digit;
+        }
+        return size;
+    }
 
-            chunkSigningSession.startChunk(chunkSignature.get());
-            bytesRemainingInChunk = chunkSize;
+    private WebApplicationException invalidChunkHeader(int start, int end)
+    {
+        return new WebApplicationException("Invalid chunk header: " + new String(buffer, start, end - start, ISO_8859_1), BAD_REQUEST);
+    }
 
-            if (chunkSize == 0) {
-                readEmptyLine();
-                chunkSigningSession.complete();
-                state = State.LAST_CHUNK;
+    // reads the trailing headers that follow the last chunk up to the final empty line, e.g. "x-amz-checksum-crc32c:<checksum>" and,
+    // when the chunks are signed, "x-amz-trailer-signature:<signature>". The trailer is read once, so it can allocate.
+    private void readTrailer()
+            throws IOException
+    {
+        Optional<String> checksumTrailer = Optional.empty();
+        Optional<String> trailerSignature = Optional.empty();
+        for (int lineEnd = readLine(); lineEnd != position; lineEnd = readLine()) {
+            int colon = indexOf(':', position, lineEnd);
+            if (colon < 0) {
+                throw new WebApplicationException("Invalid trailer: " + new String(buffer, position, lineEnd - position, ISO_8859_1), BAD_REQUEST);
             }
-            bytesAccountedFor += chunkSize;
+            String name = new String(buffer, position, colon - position, ISO_8859_1).trim().toLowerCase(Locale.ROOT);
+            String value = new String(buffer, colon + 1, lineEnd - colon - 1, ISO_8859_1).trim();
+            position = lineEnd + 2;
 
-            success = true;
+            if (name.equals(TRAILER_SIGNATURE)) {
+                trailerSignature = Optional.of(value);
+            }
+            else if (trailingChecksum.filter(algorithm -> algorithm.headerName().equals(name)).isPresent()) {
+                checksumTrailer = Optional.of(value);
+            }
+            else {
+                throw new WebApplicationException("Unexpected trailer: " + name, BAD_REQUEST);
+            }
         }
-        while (false);
+        position += 2;
 
-        if (!success) {
-            throw new WebApplicationException("Invalid chunk header: " + header, BAD_REQUEST);
+        if (trailingChecksum.isEmpty()) {
+            return;
         }
-        if (bytesAccountedFor > decodedContentLength) {
-            throw new WebApplicationException("chunked data headers report a larger size than originally declared in the request: declared %s sent %s".formatted(decodedContentLength, bytesAccountedFor),
-                    BAD_REQUEST);
+        String expectedChecksum = checksumTrailer.orElseThrow(() -> new WebApplicationException("Missing trailer: " + trailingChecksum.get().headerName(), BAD_REQUEST));
+        if (signedChunks) {
+            String signature = trailerSignature.orElseThrow(() -> new WebApplicationException("Missing trailer: " + TRAILER_SIGNATURE, BAD_REQUEST));
+            chunkSigningSession.validateTrailer(trailingChecksum.get().headerName() + ":" + expectedChecksum + "\n", signature);
+        }
+        String actualChecksum = checksum.orElseThrow().base64();
+        if (!actualChecksum.equals(expectedChecksum)) {
+            throw new WebApplicationException("Checksum mismatch. Expected: %s, Actual: %s".formatted(expectedChecksum, actualChecksum), BAD_REQUEST);
         }
     }
 
     private void readEmptyLine()
             throws IOException
     {
-        String crLf = readLine();
-        if (!crLf.isEmpty()) {
-            throw new WebApplicationException("Expected CR/LF. Instead read: " + crLf, BAD_REQUEST);
+        int lineEnd = readLine();
+        if (lineEnd != position) {
+            throw new WebApplicationException("Expected CR/LF. Instead read: " + new String(buffer, position, lineEnd - position, ISO_8859_1), BAD_REQUEST);
         }
+        position = lineEnd + 2;
     }
 
-    private String readLine()
+    // finds the next CR/LF terminated line, reading from the delegate as needed. The line starts at the
+    // current position and ends at the returned index of its CR. The caller must move the position past the CR/LF.
+    private int readLine()
             throws IOException
     {
-        StringBuilder line = new StringBuilder();
+        int index = position;
         while (true) {
-            int i = delegate.read();
-            if (i < 0) {
-                delegateIsDone = true;
-                throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
+            while ((index < limit) && (buffer[index] != '\r')) {
+                index++;
             }
-            if (i == '\r') {
-                break;
+            if (index + 1 < limit) {
+                if (buffer[index + 1] != '\n') {
+                    throw new WebApplicationException("Expected LF. Instead read: " + buffer[index + 1], BAD_REQUEST);
+                }
+                return index;
             }
-            line.append((char) (i & 0xff));
+            index -= fillBuffer();
         }
+    }
 
-        int i = delegate.read();
-        if (i != '\n') {
-            throw new WebApplicationException("Expected LF. Instead read: " + i, BAD_REQUEST);
+    // moves the unread bytes to the start of the buffer and reads more after them. Returns the number of bytes the unread bytes moved by.
+    private int fillBuffer()
+            throws IOException
+    {
+        int shift = position;
+        if (shift > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= shift;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            throw new WebApplicationException("Chunk header is longer than %s bytes".formatted(buffer.length), BAD_REQUEST);
         }
 
-        return line.toString();
+        int count = delegate.read(buffer, limit, buffer.length - limit);
+        if (count < 0) {
+            delegateIsDone = true;
+            throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
+        }
+        limit += count;
+        return shift;
+    }
+
+    private int indexOf(char c, int start, int end)
+    {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int start, int end)
+    {
+        while ((start < end) && isWhitespace(buffer[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimWhitespace(int start, int end)
+    {
+        while ((end > start) && isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean equalsIgnoreCase(byte[] lowerCaseValue, int start, int end)
+    {
+        if (end - start != lowerCaseValue.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseValue.length; i++) {
+            byte b = buffer[start + i];
+            if ((b >= 'A') && (b <= 'Z')) {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCaseValue[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return (b == ' ') || (b == '\t');
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.MinDataSize;
+import io.trino.aws.proxy.server.rest.AdmissionControllerConfig.FairShareKey;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Objects.requireNonNull;
+
+public class BandwidthShapingConfig
+{
+    private Optional<DataSize> requestRate = Optional.empty();
+    private Optional<DataSize> responseRate = Optional.empty();
+    private Map<String, DataSize> keyRequestRates = ImmutableMap.of();
+    private Map<String, DataSize> keyResponseRates = ImmutableMap.of();
+    private DataSize burstSize = DataSize.of(1, MEGABYTE);
+    private FairShareKey shapingKey = FairShareKey.EMULATED_ACCESS_KEY;
+
+    @NotNull
+    public Optional<@MinDataSize("1kB") DataSize> getRequestRate()
+    {
+        return requestRate;
+    }
+
+    @Config("aws.proxy.bandwidth.request-rate")
+    @ConfigDescription("Max bytes per second at which the request content of a single shaping key is read, optional. Request content is not shaped if not set")
+    public BandwidthShapingConfig setRequestRate(DataSize requestRate)
+    {
+        this.requestRate = Optional.ofNullable(requestRate);
+        return this;
+    }
+
+    @NotNull
+    public Optional<@MinDataSize("1kB") DataSize> getResponseRate()
+    {
+        return responseRate;
+    }
+
+    @Config("aws.proxy.bandwidth.response-rate")
+    @ConfigDescription("Max bytes per second at which the response content of a single shaping key is written, optional. Response content is not shaped if not set")
+    public BandwidthShapingConfig setResponseRate(DataSize responseRate)
+    {
+        this.responseRate = Optional.ofNullable(responseRate);
+        return this;
+    }
+
+    public Map<String, DataSize> getKeyRequestRates()
+    {
+        return keyRequestRates;
+    }
+
+    @Config("aws.proxy.bandwidth.key-request-rates")
+    @ConfigDescription("Request rates of specific shaping keys in the format key-1:rate-1,key-2:rate-2, overriding aws.proxy.bandwidth.request-rate")
+    public BandwidthShapingConfig setKeyRequestRates(String keyRequestRates)
+    {
+        this.keyRequestRates = parseRates(keyRequestRates);
+        return this;
+    }
+
+    public Map<String, DataSize> getKeyResponseRates()
+    {
+        return keyResponseRates;
+    }
+
+    @Config("aws.proxy.bandwidth.key-response-rates")
+    @ConfigDescription("Response rates of specific shaping keys in the format key-1:rate-1,key-2:rate-2, overriding aws.proxy.bandwidth.response-rate")
+    public BandwidthShapingConfig setKeyResponseRates(String keyResponseRates)
+    {
+        this.keyResponseRates = parseRates(keyResponseRates);
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    public DataSize getBurstSize()
+    {
+        return burstSize;
+    }
+
+    @Config("aws.proxy.bandwidth.burst-size")
+    @ConfigDescription("Number of bytes a shaping key can transfer at once without being throttled after having been idle")
+    public BandwidthShapingConfig setBurstSize(DataSize burstSize)
+    {
+        this.burstSize = requireNonNull(burstSize, "burstSize is null");
+        return this;
+    }
+
+    @NotNull
+    public FairShareKey getShapingKey()
+    {
+        return shapingKey;
+    }
+
+    @Config("aws.proxy.bandwidth.shaping-key")
+    @ConfigDescription("What bandwidth is shaped by: EMULATED_ACCESS_KEY or IDENTITY (the identity's user, falls back to the emulated access key)")
+    public BandwidthShapingConfig setShapingKey(FairShareKey shapingKey)
+    {
+        this.shapingKey = requireNonNull(shapingKey, "shapingKey is null");
+        return this;
+    }
+
+    private static Map<String, DataSize> parseRates(String rates)
+    {
+        ImmutableMap.Builder<String, DataSize> builder = ImmutableMap.builder();
+        try {
+            Splitter.on(",").trimResults().omitEmptyStrings().withKeyValueSeparator(Splitter.on(":").trimResults())
+                    .split(rates)
+                    .forEach((key, value) -> builder.put(key, DataSize.valueOf(value)));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid rate list: " + rates, e);
+        }
+        Map<String, DataSize> result = builder.buildOrThrow();
+        result.values().forEach(rate -> checkArgument(rate.toBytes() >= 1024, "Invalid rate list, rates must be at least 1kB: %s", rates));
+        return result;
+    }
+}
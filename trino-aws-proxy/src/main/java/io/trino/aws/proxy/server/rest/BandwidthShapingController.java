@@ -0,0 +1,486 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import io.airlift.stats.DecayCounter;
+import io.airlift.stats.ExponentialDecay;
+import io.airlift.stats.TimeStat;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.AdmissionControllerConfig.FairShareKey;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Shapes the bandwidth of request and response content with a token bucket per shaping key and direction so that
+ * the bulk transfers of a single key can't saturate the proxy's network. A stream that exceeds its key's rate
+ * reserves the bytes anyway and then sleeps until the bucket would have had them. The sleep always happens on a
+ * virtual thread, which unmounts rather than blocking a carrier thread: response content is written by the proxy's
+ * virtual threads, and request content, which is read by the HTTP client's threads, is pumped through a bounded buffer
+ * by a virtual thread of its own.
+ */
+public class BandwidthShapingController
+{
+    public interface StreamShaper
+    {
+        InputStream shape(InputStream inputStream);
+
+        OutputStream shape(OutputStream outputStream);
+    }
+
+    static final StreamShaper UNSHAPED = new StreamShaper()
+    {
+        @Override
+        public InputStream shape(InputStream inputStream)
+        {
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream shape(OutputStream outputStream)
+        {
+            return outputStream;
+        }
+    };
+
+    private final FairShareKey shapingKey;
+    private final long burstSize;
+    private final Ticker ticker;
+    private final Function<String, Optional<TokenBucket>> requestBuckets;
+    private final Function<String, Optional<TokenBucket>> responseBuckets;
+    private final Cache<String, TokenBucket> requestBucketCache;
+    private final Cache<String, TokenBucket> responseBucketCache;
+
+    private final TimeStat throttleTime = new TimeStat(MILLISECONDS);
+
+    @Inject
+    public BandwidthShapingController(BandwidthShapingConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    BandwidthShapingController(BandwidthShapingConfig config, Ticker ticker)
+    {
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        shapingKey = config.getShapingKey();
+        burstSize = config.getBurstSize().toBytes();
+
+        // buckets of keys that haven't transferred anything for a while are full anyway
+        requestBucketCache = newBuilder().expireAfterAccess(Duration.ofMinutes(10)).build();
+        responseBucketCache = newBuilder().expireAfterAccess(Duration.ofMinutes(10)).build();
+        requestBuckets = buckets(requestBucketCache, config.getRequestRate(), config.getKeyRequestRates());
+        responseBuckets = buckets(responseBucketCache, config.getResponseRate(), config.getKeyResponseRates());
+    }
+
+    /**
+     * Returns the shaper of the request's and response's content of a request. Every stream of the same shaping key
+     * draws from the same buckets.
+     */
+    public StreamShaper shaper(Optional<Identity> identity, SigningMetadata signingMetadata)
+    {
+        return shaper(shapingKey.key(identity, signingMetadata));
+    }
+
+    @VisibleForTesting
+    StreamShaper shaper(String key)
+    {
+        Optional<TokenBucket> requestBucket = requestBuckets.apply(key);
+        Optional<TokenBucket> responseBucket = responseBuckets.apply(key);
+        if (requestBucket.isEmpty() && responseBucket.isEmpty()) {
+            return UNSHAPED;
+        }
+        return new StreamShaper()
+        {
+            @Override
+            public InputStream shape(InputStream inputStream)
+            {
+                return requestBucket.<InputStream>map(bucket -> new PumpedInputStream(new ShapedInputStream(inputStream, bucket))).orElse(inputStream);
+            }
+
+            @Override
+            public OutputStream shape(OutputStream outputStream)
+            {
+                return responseBucket.<OutputStream>map(bucket -> new ShapedOutputStream(outputStream, bucket)).orElse(outputStream);
+            }
+        };
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getThrottleTime()
+    {
+        return throttleTime;
+    }
+
+    @Managed(description = "Recent request content bytes per second by shaping key")
+    public Map<String, Double> getRequestRates()
+    {
+        return rates(requestBucketCache);
+    }
+
+    @Managed(description = "Recent response content bytes per second by shaping key")
+    public Map<String, Double> getResponseRates()
+    {
+        return rates(responseBucketCache);
+    }
+
+    private Function<String, Optional<TokenBucket>> buckets(Cache<String, TokenBucket> cache, Optional<DataSize> defaultRate, Map<String, DataSize> keyRates)
+    {
+        Map<String, DataSize> rates = ImmutableMap.copyOf(keyRates);
+        return key -> Optional.ofNullable(rates.get(key))
+                .or(() -> defaultRate)
+                .map(rate -> cache.get(key, _ -> new TokenBucket(rate.toBytes())));
+    }
+
+    private static Map<String, Double> rates(Cache<String, TokenBucket> cache)
+    {
+        return cache.asMap().entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().transferred.getRate()));
+    }
+
+    private class TokenBucket
+    {
+        private final double bytesPerNanosecond;
+        private final DecayCounter transferred = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+        private final ReentrantLock lock = new ReentrantLock();
+        private double tokens = burstSize;
+        private long lastRefillNanos = ticker.read();
+
+        private TokenBucket(long bytesPerSecond)
+        {
+            bytesPerNanosecond = (double) bytesPerSecond / SECONDS.toNanos(1);
+        }
+
+        /**
+         * Takes the bytes from the bucket, possibly leaving it in debt. Returns how long the caller has to wait
+         * until the debt would have been refilled.
+         */
+        private long reserve(long bytes)
+        {
+            transferred.add(bytes);
+
+            lock.lock();
+            try {
+                long now = ticker.read();
+                tokens = Math.min(burstSize, tokens + ((now - lastRefillNanos) * bytesPerNanosecond));
+                lastRefillNanos = now;
+                tokens -= bytes;
+                return (tokens >= 0) ? 0 : (long) Math.ceil(-tokens / bytesPerNanosecond);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private void acquire(long bytes)
+                throws InterruptedIOException
+        {
+            long waitNanos = reserve(bytes);
+            if (waitNanos == 0) {
+                return;
+            }
+            throttleTime.add(waitNanos, NANOSECONDS);
+            try {
+                NANOSECONDS.sleep(waitNanos);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while shaping bandwidth");
+            }
+        }
+    }
+
+    private static class ShapedInputStream
+            extends FilterInputStream
+    {
+        private final TokenBucket bucket;
+
+        private ShapedInputStream(InputStream delegate, TokenBucket bucket)
+        {
+            super(requireNonNull(delegate, "delegate is null"));
+            this.bucket = requireNonNull(bucket, "bucket is null");
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            int b = super.read();
+            if (b >= 0) {
+                bucket.acquire(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+                throws IOException
+        {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                bucket.acquire(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n)
+                throws IOException
+        {
+            long skipped = super.skip(n);
+            if (skipped > 0) {
+                bucket.acquire(skipped);
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            // bytes that are read again would be counted twice
+            return false;
+        }
+    }
+
+    /**
+     * Reads the source on a virtual thread into a bounded buffer. The reader only waits while the buffer is empty,
+     * any sleep of a shaped source happens on the virtual thread.
+     */
+    private static class PumpedInputStream
+            extends InputStream
+    {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final int CHUNK_SIZE = 8 * 1024;
+
+        private final InputStream source;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition readable = lock.newCondition();
+        private final Condition writable = lock.newCondition();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int readPosition;
+        private int count;
+        private boolean finished;
+        private Throwable failure;
+        private boolean closed;
+        private Thread pump;
+
+        private PumpedInputStream(InputStream source)
+        {
+            this.source = requireNonNull(source, "source is null");
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            byte[] single = new byte[1];
+            int length = read(single, 0, 1);
+            return (length < 0) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+                throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IOException("Stream is closed");
+                }
+                if (pump == null) {
+                    pump = Thread.ofVirtual().name("bandwidth-shaping-pump").start(this::pump);
+                }
+                while ((count == 0) && !finished) {
+                    readable.await();
+                }
+                if (count == 0) {
+                    if (failure != null) {
+                        throwIfInstanceOf(failure, IOException.class);
+                        throwIfUnchecked(failure);
+                        throw new IOException(failure);
+                    }
+                    return -1;
+                }
+                int length = Math.min(len, Math.min(count, BUFFER_SIZE - readPosition));
+                System.arraycopy(buffer, readPosition, b, off, length);
+                readPosition = (readPosition + length) % BUFFER_SIZE;
+                count -= length;
+                writable.signal();
+                return length;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading shaped content");
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int available()
+        {
+            lock.lock();
+            try {
+                return count;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            Thread pumpThread;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pumpThread = pump;
+                writable.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+            if (pumpThread == null) {
+                source.close();
+            }
+            else {
+                // the pump closes the source once it stops
+                pumpThread.interrupt();
+            }
+        }
+
+        private void pump()
+        {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            Throwable pumpFailure = null;
+            try (source) {
+                while (true) {
+                    int length = source.read(chunk);
+                    if ((length < 0) || !write(chunk, length)) {
+                        break;
+                    }
+                }
+            }
+            catch (Throwable e) {
+                pumpFailure = e;
+            }
+            lock.lock();
+            try {
+                finished = true;
+                failure = pumpFailure;
+                readable.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean write(byte[] chunk, int length)
+                throws InterruptedIOException
+        {
+            int written = 0;
+            lock.lock();
+            try {
+                while (written < length) {
+                    while ((count == BUFFER_SIZE) && !closed) {
+                        writable.await();
+                    }
+                    if (closed) {
+                        return false;
+                    }
+                    int writePosition = (readPosition + count) % BUFFER_SIZE;
+                    int part = Math.min(length - written, Math.min(BUFFER_SIZE - count, BUFFER_SIZE - writePosition));
+                    System.arraycopy(chunk, written, buffer, writePosition, part);
+                    count += part;
+                    written += part;
+                    readable.signal();
+                }
+                return true;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while pumping shaped content");
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class ShapedOutputStream
+            extends FilterOutputStream
+    {
+        private final TokenBucket bucket;
+
+        private ShapedOutputStream(OutputStream delegate, TokenBucket bucket)
+        {
+            super(requireNonNull(delegate, "delegate is null"));
+            this.bucket = requireNonNull(bucket, "bucket is null");
+        }
+
+        @Override
+        public void write(int b)
+                throws IOException
+        {
+            bucket.acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+                throws IOException
+        {
+            bucket.acquire(len);
+            out.write(b, off, len);
+        }
+    }
+}
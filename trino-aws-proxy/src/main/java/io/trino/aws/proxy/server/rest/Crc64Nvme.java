@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.zip.Checksum;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * CRC-64/NVME, the 64-bit CRC of the S3 {@code x-amz-checksum-crc64nvme} checksum. The JDK has no implementation
+ * so this one processes 8 bytes at a time using 8 lookup tables ("slicing-by-8").
+ */
+final class Crc64Nvme
+        implements Checksum
+{
+    // the bit reflected polynomial 0xad93d23594c93659
+    private static final long POLYNOMIAL = 0x9a6c9329ac4bc9b5L;
+    private static final long[][] TABLES = new long[8][256];
+    private static final VarHandle LONG_HANDLE = MethodHandles.byteArrayViewVarHandle(long[].class, LITTLE_ENDIAN);
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            long crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 1) != 0) ? ((crc >>> 1) ^ POLYNOMIAL) : (crc >>> 1);
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int table = 1; table < TABLES.length; table++) {
+            for (int i = 0; i < 256; i++) {
+                long previous = TABLES[table - 1][i];
+                TABLES[table][i] = (previous >>> 8) ^ TABLES[0][(int) (previous & 0xFF)];
+            }
+        }
+    }
+
+    private long crc = -1;
+
+    @Override
+    public void update(int b)
+    {
+        crc = TABLES[0][(int) ((crc ^ b) & 0xFF)] ^ (crc >>> 8);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len)
+    {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        long[] t0 = TABLES[0];
+        long[] t1 = TABLES[1];
+        long[] t2 = TABLES[2];
+        long[] t3 = TABLES[3];
+        long[] t4 = TABLES[4];
+        long[] t5 = TABLES[5];
+        long[] t6 = TABLES[6];
+        long[] t7 = TABLES[7];
+
+        long value = crc;
+        int end = off + len;
+        for (; off + 8 <= end; off += 8) {
+            long x = value ^ (long) LONG_HANDLE.get(b, off);
+            value = t7[(int) (x & 0xFF)] ^
+                    t6[(int) ((x >>> 8) & 0xFF)] ^
+                    t5[(int) ((x >>> 16) & 0xFF)] ^
+                    t4[(int) ((x >>> 24) & 0xFF)] ^
+                    t3[(int) ((x >>> 32) & 0xFF)] ^
+                    t2[(int) ((x >>> 40) & 0xFF)] ^
+                    t1[(int) ((x >>> 48) & 0xFF)] ^
+                    t0[(int) (x >>> 56)];
+        }
+        for (; off < end; off++) {
+            value = t0[(int) ((value ^ b[off]) & 0xFF)] ^ (value >>> 8);
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue()
+    {
+        return ~crc;
+    }
+
+    @Override
+    public void reset()
+    {
+        crc = -1;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.lang.Math.min;
+
+/**
+ * Buffer that a single writer fills for a fixed number of readers that each read all of the data at their own pace.
+ * At most {@code capacity} bytes that have not been read by every reader are held, the writer blocks until the
+ * slowest reader catches up.
+ */
+final class FanOutBuffer
+{
+    private final long capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    // offset of the first chunk
+    private long bufferStart;
+    // offset after the last chunk
+    private long bufferEnd;
+    private final long[] readerPositions;
+    private final boolean[] readerClosed;
+    private int openReaders;
+    private boolean finished;
+    private IOException failure;
+
+    FanOutBuffer(int readers, long capacity)
+    {
+        checkArgument(readers >= 0, "readers is negative");
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.capacity = capacity;
+        readerPositions = new long[readers];
+        readerClosed = new boolean[readers];
+        openReaders = readers;
+    }
+
+    /**
+     * Appends the data, blocking while the buffer is full
+     */
+    void write(byte[] buffer, int offset, int length)
+            throws InterruptedIOException
+    {
+        if (length == 0) {
+            return;
+        }
+        byte[] chunk = Arrays.copyOfRange(buffer, offset, offset + length);
+        lock.lock();
+        try {
+            // a chunk larger than the capacity is accepted once everything else has been read
+            while ((openReaders > 0) && (bufferEnd > bufferStart) && (bufferEnd - bufferStart + length > capacity)) {
+                changed.await();
+            }
+            if (openReaders == 0) {
+                bufferStart += length;
+                bufferEnd += length;
+                return;
+            }
+            chunks.addLast(chunk);
+            bufferEnd += length;
+            changed.signalAll();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for readers");
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    void finish()
+    {
+        lock.lock();
+        try {
+            finished = true;
+            changed.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    void fail(IOException failure)
+    {
+        lock.lock();
+        try {
+            if (!finished && (this.failure == null)) {
+                this.failure = failure;
+                changed.signalAll();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    InputStream reader(int reader)
+    {
+        checkElementIndex(reader, readerPositions.length);
+        return new InputStream()
+        {
+            @Override
+            public int read()
+                    throws IOException
+            {
+                byte[] buffer = new byte[1];
+                int count = read(buffer, 0, 1);
+                return (count < 0) ? -1 : (buffer[0] & 0xFF);
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length)
+                    throws IOException
+            {
+                return FanOutBuffer.this.read(reader, buffer, offset, length);
+            }
+
+            @Override
+            public void close()
+            {
+                closeReader(reader);
+            }
+        };
+    }
+
+    private int read(int reader, byte[] buffer, int offset, int length)
+            throws IOException
+    {
+        if (length == 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            if (readerClosed[reader]) {
+                throw new IOException("Reader is closed");
+            }
+            while ((readerPositions[reader] == bufferEnd) && !finished && (failure == null)) {
+                changed.await();
+            }
+            if (failure != null) {
+                throw new IOException("Shared response failed", failure);
+            }
+            if (readerPositions[reader] == bufferEnd) {
+                return -1;
+            }
+
+            // find the chunk that contains the reader's position
+            long chunkStart = bufferStart;
+            for (byte[] chunk : chunks) {
+                if (readerPositions[reader] < chunkStart + chunk.length) {
+                    int chunkOffset = (int) (readerPositions[reader] - chunkStart);
+                    int count = min(length, chunk.length - chunkOffset);
+                    System.arraycopy(chunk, chunkOffset, buffer, offset, count);
+                    readerPositions[reader] += count;
+                    releaseReadChunks();
+                    return count;
+                }
+                chunkStart += chunk.length;
+            }
+            throw new IllegalStateException("Reader position is not buffered");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data");
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    void closeReader(int reader)
+    {
+        lock.lock();
+        try {
+            if (!readerClosed[reader]) {
+                readerClosed[reader] = true;
+                openReaders--;
+                releaseReadChunks();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // must be called with the lock held
+    private void releaseReadChunks()
+    {
+        long minPosition = bufferEnd;
+        for (int reader = 0; reader < readerPositions.length; reader++) {
+            if (!readerClosed[reader]) {
+                minPosition = min(minPosition, readerPositions[reader]);
+            }
+        }
+        boolean released = false;
+        while (!chunks.isEmpty() && (bufferStart + chunks.peekFirst().length <= minPosition)) {
+            bufferStart += chunks.removeFirst().length;
+            released = true;
+        }
+        if (released) {
+            changed.signalAll();
+        }
+    }
+}
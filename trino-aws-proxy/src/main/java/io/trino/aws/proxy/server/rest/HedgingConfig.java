@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class HedgingConfig
+{
+    private boolean enabled;
+    private double delayPercentile = 95;
+    private Duration minDelay = new Duration(20, MILLISECONDS);
+    private Duration maxDelay = new Duration(1, SECONDS);
+    private double budget = 0.05;
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("aws.proxy.hedging.enabled")
+    @ConfigDescription("Whether or not to send a second request to the remote S3 endpoint for GET/HEAD requests that are slow to respond")
+    public HedgingConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    @DecimalMin("1")
+    @DecimalMax("99.99")
+    public double getDelayPercentile()
+    {
+        return delayPercentile;
+    }
+
+    @Config("aws.proxy.hedging.delay-percentile")
+    @ConfigDescription("Percentile of recent remote response latencies after which a hedged request is sent")
+    public HedgingConfig setDelayPercentile(double delayPercentile)
+    {
+        this.delayPercentile = delayPercentile;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getMinDelay()
+    {
+        return minDelay;
+    }
+
+    @Config("aws.proxy.hedging.min-delay")
+    @ConfigDescription("Minimum time to wait for a remote response before sending a hedged request")
+    public HedgingConfig setMinDelay(Duration minDelay)
+    {
+        this.minDelay = requireNonNull(minDelay, "minDelay is null");
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getMaxDelay()
+    {
+        return maxDelay;
+    }
+
+    @Config("aws.proxy.hedging.max-delay")
+    @ConfigDescription("Maximum time to wait for a remote response before sending a hedged request, also used until enough latencies have been recorded")
+    public HedgingConfig setMaxDelay(Duration maxDelay)
+    {
+        this.maxDelay = requireNonNull(maxDelay, "maxDelay is null");
+        return this;
+    }
+
+    @DecimalMin("0")
+    @DecimalMax("1")
+    public double getBudget()
+    {
+        return budget;
+    }
+
+    @Config("aws.proxy.hedging.budget")
+    @ConfigDescription("Max ratio of hedged requests to hedgeable requests, e.g. 0.05 allows at most 5% extra requests")
+    public HedgingConfig setBudget(double budget)
+    {
+        this.budget = budget;
+        return this;
+    }
+
+    @AssertTrue(message = "aws.proxy.hedging.min-delay must not be greater than aws.proxy.hedging.max-delay")
+    public boolean isDelayRangeValid()
+    {
+        return minDelay.compareTo(maxDelay) <= 0;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.inject.Inject;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.StreamingResponse;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.DecayCounter;
+import io.airlift.stats.DecayTDigest;
+import io.airlift.stats.ExponentialDecay;
+import io.airlift.stats.TDigest;
+import io.trino.aws.proxy.server.rest.TrinoS3ProxyClient.ForProxyClient;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent.ContentType;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Hedges GET/HEAD requests to the remote S3 endpoint: if the remote has not responded within a percentile of
+ * recent response latencies a second, freshly signed, request is sent. Whichever response arrives first
+ * is used and the other request is aborted. The number of hedged requests is limited by a budget.
+ */
+public class HedgingController
+{
+    private static final Logger log = Logger.get(HedgingController.class);
+
+    // below this many recorded latencies the max delay is used
+    private static final int MIN_LATENCY_SAMPLES = 100;
+
+    private final HttpClient httpClient;
+    private final boolean enabled;
+    private final double delayQuantile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double budget;
+    private final Ticker ticker;
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ReentrantLock latencyLock = new ReentrantLock();
+    private final DecayTDigest latencies;
+    private final DecayCounter hedgeableRequests;
+    private final DecayCounter recentHedgedRequests;
+
+    private final CounterStat hedgedRequests = new CounterStat();
+    private final CounterStat hedgeWins = new CounterStat();
+    private final CounterStat budgetExhausted = new CounterStat();
+
+    @Inject
+    public HedgingController(@ForProxyClient HttpClient httpClient, HedgingConfig config)
+    {
+        this(httpClient, config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    HedgingController(HttpClient httpClient, HedgingConfig config, Ticker ticker)
+    {
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        enabled = config.isEnabled();
+        delayQuantile = config.getDelayPercentile() / 100;
+        minDelayNanos = config.getMinDelay().roundTo(NANOSECONDS);
+        maxDelayNanos = config.getMaxDelay().roundTo(NANOSECONDS);
+        budget = config.getBudget();
+
+        latencies = new DecayTDigest(TDigest.DEFAULT_COMPRESSION, ExponentialDecay.oneMinute(), ticker);
+        hedgeableRequests = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+        recentHedgedRequests = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+    }
+
+    @PreDestroy
+    public void shutDown()
+    {
+        if (!shutdownAndAwaitTermination(executorService, Duration.ofSeconds(30))) {
+            log.warn("Could not shutdown executor service");
+        }
+    }
+
+    public boolean isHedgeable(ParsedS3Request request)
+    {
+        // only idempotent requests without a body can be sent twice
+        return enabled
+                && (request.httpVerb().equalsIgnoreCase("GET") || request.httpVerb().equalsIgnoreCase("HEAD"))
+                && (request.requestContent().contentType() == ContentType.EMPTY);
+    }
+
+    /**
+     * Executes the request like {@link HttpClient#execute(Request, ResponseHandler)}, sending a request
+     * obtained from {@code hedgeRequestSupplier} if {@code request} is slow to respond.
+     */
+    public <T, E extends Exception> T execute(Request request, Supplier<Request> hedgeRequestSupplier, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        hedgeableRequests.add(1);
+
+        Race race = new Race();
+        race.start(request);
+
+        Attempt winner;
+        try {
+            winner = race.await(hedgeDelayNanos());
+            if (winner == null) {
+                if (tryAcquireHedge()) {
+                    hedgedRequests.update(1);
+                    race.start(hedgeRequestSupplier.get());
+                }
+                winner = race.await();
+            }
+        }
+        catch (Exception e) {
+            race.abort();
+            return responseHandler.handleException(request, e);
+        }
+        race.cancelLosers();
+
+        if (winner.request() != request) {
+            hedgeWins.update(1);
+        }
+        try (StreamingResponse response = winner.response()) {
+            return responseHandler.handle(winner.request(), response);
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHedgedRequests()
+    {
+        return hedgedRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHedgeWins()
+    {
+        return hedgeWins;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBudgetExhausted()
+    {
+        return budgetExhausted;
+    }
+
+    @Managed
+    public double getHedgeDelayMillis()
+    {
+        return hedgeDelayNanos() / 1_000_000.0;
+    }
+
+    @VisibleForTesting
+    long hedgeDelayNanos()
+    {
+        double delay;
+        latencyLock.lock();
+        try {
+            if (latencies.getCount() < MIN_LATENCY_SAMPLES) {
+                return maxDelayNanos;
+            }
+            delay = latencies.valueAt(delayQuantile);
+        }
+        finally {
+            latencyLock.unlock();
+        }
+        return Math.clamp((long) delay, minDelayNanos, maxDelayNanos);
+    }
+
+    private boolean tryAcquireHedge()
+    {
+        // check-then-add is racy, but the budget only needs to hold approximately
+        if (recentHedgedRequests.getCount() + 1 > budget * hedgeableRequests.getCount()) {
+            budgetExhausted.update(1);
+            return false;
+        }
+        recentHedgedRequests.add(1);
+        return true;
+    }
+
+    private void recordLatency(long latencyNanos)
+    {
+        latencyLock.lock();
+        try {
+            latencies.add(latencyNanos);
+        }
+        finally {
+            latencyLock.unlock();
+        }
+    }
+
+    private record Attempt(Request request, StreamingResponse response) {}
+
+    private class Race
+    {
+        private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        private final List<Future<?>> futures = new ArrayList<>();
+        private final AtomicInteger remaining = new AtomicInteger();
+
+        private void start(Request request)
+        {
+            remaining.incrementAndGet();
+            futures.add(executorService.submit(() -> {
+                long start = ticker.read();
+                StreamingResponse response;
+                try {
+                    response = httpClient.executeStreaming(request);
+                }
+                catch (Throwable e) {
+                    // the race is only lost once every request has failed
+                    if (remaining.decrementAndGet() == 0) {
+                        winner.completeExceptionally(e);
+                    }
+                    return;
+                }
+                recordLatency(ticker.read() - start);
+                if (!winner.complete(new Attempt(request, response))) {
+                    response.close();
+                }
+            }));
+        }
+
+        private Attempt await(long timeoutNanos)
+                throws Exception
+        {
+            try {
+                return await(() -> winner.get(timeoutNanos, NANOSECONDS));
+            }
+            catch (TimeoutException _) {
+                return null;
+            }
+        }
+
+        private Attempt await()
+                throws Exception
+        {
+            return await(winner::get);
+        }
+
+        private Attempt await(WinnerSupplier supplier)
+                throws Exception
+        {
+            try {
+                return supplier.get();
+            }
+            catch (ExecutionException e) {
+                throwIfUnchecked(e.getCause());
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        private void cancelLosers()
+        {
+            // interrupting a request that is still waiting for its response aborts it. Requests
+            // that complete regardless close their response as the winner has already been picked.
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        private void abort()
+        {
+            cancelLosers();
+            if (!winner.cancel(false) && (winner.state() == Future.State.SUCCESS)) {
+                winner.resultNow().response().close();
+            }
+        }
+    }
+
+    private interface WinnerSupplier
+    {
+        Attempt get()
+                throws Exception;
+    }
+}
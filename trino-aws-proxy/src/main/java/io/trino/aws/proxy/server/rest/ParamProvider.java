@@ -36,7 +36,7 @@ public class ParamProvider
         implements ValueParamProvider
 {
     private static final List<TypeToken<?>> SUPPORTED_TYPES =
-            Stream.of(Request.class, SigningMetadata.class, Identity.class, RequestLoggingSession.class).map(TypeToken::of).collect(toImmutableList());
+            Stream.of(Request.class, SigningMetadata.class, Identity.class, RequestLoggingSession.class, RequestStatsSession.class).map(TypeToken::of).collect(toImmutableList());
 
     @Override
     public Function<ContainerRequest, ?> getValueProvider(Parameter parameter)
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Incrementally computes a flexible checksum of a payload (see {@link ChecksumAlgorithm}). The CRCs use the JDK
+ * implementations, which are intrinsified, where possible.
+ */
+interface PayloadChecksum
+{
+    void update(int b);
+
+    void update(byte[] b, int off, int len);
+
+    /**
+     * returns the checksum as it is sent in {@code x-amz-checksum-*} headers and trailers
+     */
+    String base64();
+
+    static PayloadChecksum create(ChecksumAlgorithm algorithm)
+    {
+        return switch (algorithm) {
+            case CRC32 -> new CrcChecksum(new CRC32(), Integer.BYTES);
+            case CRC32C -> new CrcChecksum(new CRC32C(), Integer.BYTES);
+            case CRC64NVME -> new CrcChecksum(new Crc64Nvme(), Long.BYTES);
+            case SHA1 -> new DigestChecksum("SHA-1");
+            case SHA256 -> new DigestChecksum("SHA-256");
+        };
+    }
+
+    static int base64Length(ChecksumAlgorithm algorithm)
+    {
+        int bytes = switch (algorithm) {
+            case CRC32, CRC32C -> Integer.BYTES;
+            case CRC64NVME -> Long.BYTES;
+            case SHA1 -> 20;
+            case SHA256 -> 32;
+        };
+        return 4 * Math.ceilDiv(bytes, 3);
+    }
+
+    final class CrcChecksum
+            implements PayloadChecksum
+    {
+        private final Checksum checksum;
+        private final int bytes;
+
+        private CrcChecksum(Checksum checksum, int bytes)
+        {
+            this.checksum = checksum;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void update(int b)
+        {
+            checksum.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len)
+        {
+            checksum.update(b, off, len);
+        }
+
+        @Override
+        public String base64()
+        {
+            // big endian, the checksum is in the low order bytes of the value
+            long value = checksum.getValue();
+            byte[] encoded = new byte[bytes];
+            for (int i = bytes - 1; i >= 0; i--) {
+                encoded[i] = (byte) value;
+                value >>>= 8;
+            }
+            return Base64.getEncoder().encodeToString(encoded);
+        }
+    }
+
+    final class DigestChecksum
+            implements PayloadChecksum
+    {
+        private final MessageDigest digest;
+
+        private DigestChecksum(String algorithm)
+        {
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void update(int b)
+        {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len)
+        {
+            digest.update(b, off, len);
+        }
+
+        @Override
+        public String base64()
+        {
+            return Base64.getEncoder().encodeToString(digest.digest());
+        }
+    }
+}
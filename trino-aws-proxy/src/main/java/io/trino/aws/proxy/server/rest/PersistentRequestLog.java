@@ -0,0 +1,641 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.Range;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.Iterators.peekingIterator;
+import static java.lang.Math.toIntExact;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toUnmodifiableMap;
+
+/**
+ * Append-only log of saved entries in rotating memory-mapped segment files. Request threads only hand
+ * entries over to a bounded queue - entries are dropped when it is full - and a single appender thread
+ * encodes them into the active segment. Sealed segments are deleted, oldest first, once the log
+ * exceeds its max size or all of their entries are older than the max age.
+ */
+class PersistentRequestLog
+{
+    private static final Logger log = Logger.get(PersistentRequestLog.class);
+
+    private static final String SEGMENT_PREFIX = "request-log-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    // each record is the length and the CRC32C of the payload followed by the payload, the
+    // mapped file is zero filled so a zero length marks the end of the records
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final Map<String, SigningServiceType> KNOWN_SERVICE_TYPES = Stream.of(SigningServiceType.S3, SigningServiceType.STS, SigningServiceType.LOGS)
+            .collect(toUnmodifiableMap(SigningServiceType::serviceName, serviceType -> serviceType));
+
+    private final Path directory;
+    private final long maxSize;
+    private final Duration maxAge;
+    private final int segmentSize;
+    private final Clock clock;
+    private final BlockingQueue<SaveEntry> queue;
+    // oldest first, only the appender thread adds or removes segments
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong offeredEntries = new AtomicLong();
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final Thread appender;
+    private volatile long appendedEntries;
+    private volatile boolean closed;
+    private long nextSegmentId;
+    private Segment activeSegment;
+
+    PersistentRequestLog(Path directory, RequestLoggerConfig config, Clock clock)
+    {
+        this.directory = requireNonNull(directory, "directory is null");
+        this.maxSize = config.getPersistentMaxSize().toBytes();
+        this.maxAge = Duration.ofMillis(config.getPersistentMaxAge().toMillis());
+        this.segmentSize = toIntExact(config.getPersistentSegmentSize().toBytes());
+        this.clock = requireNonNull(clock, "clock is null");
+        this.queue = new ArrayBlockingQueue<>(config.getPersistentQueueSize());
+
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recoverSegments();
+        enforceRetention();
+
+        appender = Thread.ofPlatform().daemon().name("request-log-appender").start(this::appendEntries);
+    }
+
+    /**
+     * Queues the entry to be written, returns false if the entry was dropped because the appender fell behind
+     */
+    boolean append(SaveEntry entry)
+    {
+        if (closed || !queue.offer(entry)) {
+            droppedEntries.incrementAndGet();
+            return false;
+        }
+        offeredEntries.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the persisted entries of the given services (ignoring case) whose event ids are in the range, in
+     * event id order. Segments are only read once the iteration reaches the event ids they contain.
+     */
+    Iterator<SaveEntry> entries(Set<String> serviceNames, Range<String> eventIdRange, boolean ascending)
+    {
+        Set<String> serviceKeys = serviceNames.stream().map(PersistentRequestLog::serviceKey).collect(toImmutableSet());
+        Comparator<String> order = ascending ? naturalOrder() : Comparator.<String>naturalOrder().reversed();
+
+        List<SegmentView> views = segments.stream()
+                .map(Segment::view)
+                .filter(view -> view.contains(serviceKeys, eventIdRange))
+                .sorted(Comparator.comparing(view -> view.firstEventId(ascending), order))
+                .collect(toImmutableList());
+
+        return new MergingIterator(views, order, ascending, view -> view.entries(serviceKeys, eventIdRange, order));
+    }
+
+    void close()
+    {
+        closed = true;
+        try {
+            appender.join(SECONDS.toMillis(10));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (appender.isAlive()) {
+            log.warn("Request log appender did not finish, %s queued entries are lost", queue.size());
+        }
+    }
+
+    @VisibleForTesting
+    void awaitAppended()
+            throws InterruptedException
+    {
+        long offered = offeredEntries.get();
+        while (appendedEntries < offered) {
+            checkState(appender.isAlive(), "Request log appender is not running");
+            MILLISECONDS.sleep(1);
+        }
+    }
+
+    long getDroppedEntries()
+    {
+        return droppedEntries.get();
+    }
+
+    long getSize()
+    {
+        return segments.stream().mapToLong(Segment::capacity).sum();
+    }
+
+    int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    private void appendEntries()
+    {
+        Encoder encoder = new Encoder();
+        while (!closed || !queue.isEmpty()) {
+            SaveEntry entry;
+            try {
+                entry = queue.poll(1, SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                if (entry == null) {
+                    // idle, segments may have expired in the meantime
+                    enforceRetention();
+                    continue;
+                }
+                write(encoder.encode(entry));
+            }
+            catch (RuntimeException e) {
+                log.error(e, "Could not write request log entry");
+            }
+            finally {
+                if (entry != null) {
+                    appendedEntries++;
+                }
+            }
+        }
+        if (activeSegment != null) {
+            activeSegment.buffer.force();
+        }
+    }
+
+    private void write(Encoder encoder)
+    {
+        int recordSize = RECORD_HEADER_SIZE + encoder.size();
+        // always leave room for the zero length that marks the end of the records
+        if (recordSize + Integer.BYTES > segmentSize) {
+            droppedEntries.incrementAndGet();
+            log.warn("Request log entry of %s bytes does not fit into a segment", recordSize);
+            return;
+        }
+        if ((activeSegment == null) || (activeSegment.position + recordSize + Integer.BYTES > activeSegment.capacity())) {
+            rollSegment();
+        }
+        activeSegment.append(encoder);
+    }
+
+    private void rollSegment()
+    {
+        if (activeSegment != null) {
+            activeSegment.buffer.force();
+        }
+        Path path = directory.resolve("%s%016x%s".formatted(SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE)) {
+            activeSegment = new Segment(path, channel.map(READ_WRITE, 0, segmentSize));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.add(activeSegment);
+        enforceRetention();
+    }
+
+    private void enforceRetention()
+    {
+        long size = getSize();
+        Instant expiration = clock.instant().minus(maxAge);
+        for (Segment segment : segments) {
+            if (segment == activeSegment) {
+                break;
+            }
+            boolean expired = (segment.newestTimestamp != null) && segment.newestTimestamp.isBefore(expiration);
+            if ((size <= maxSize) && !expired) {
+                break;
+            }
+            // readers still holding the segment keep reading the mapping, which outlives the file
+            segments.remove(segment);
+            size -= segment.capacity();
+            try {
+                Files.deleteIfExists(segment.path);
+            }
+            catch (IOException e) {
+                log.warn(e, "Could not delete request log segment: %s", segment.path);
+            }
+        }
+    }
+
+    private void recoverSegments()
+    {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> segmentId(path).isPresent())
+                    .sorted(Comparator.comparing(path -> segmentId(path).orElseThrow()))
+                    .collect(toImmutableList());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (Path path : paths) {
+            nextSegmentId = Math.max(nextSegmentId, segmentId(path).orElseThrow() + 1);
+            try (FileChannel channel = FileChannel.open(path, READ)) {
+                Segment segment = new Segment(path, channel.map(READ_ONLY, 0, channel.size()));
+                segment.recover();
+                segments.add(segment);
+            }
+            catch (IOException e) {
+                log.warn(e, "Could not read request log segment: %s", path);
+            }
+        }
+    }
+
+    private static Optional<Long> segmentId(Path path)
+    {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), 16));
+        }
+        catch (NumberFormatException _) {
+            return Optional.empty();
+        }
+    }
+
+    private static String serviceKey(String serviceName)
+    {
+        return serviceName.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Segment
+    {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // summary of the records, updated before the position is published
+        private final Set<String> serviceKeys = ConcurrentHashMap.newKeySet();
+        private volatile String minEventId;
+        private volatile String maxEventId;
+        private volatile Instant newestTimestamp;
+        // end of the records that can be read
+        private volatile int position;
+
+        private Segment(Path path, MappedByteBuffer buffer)
+        {
+            this.path = requireNonNull(path, "path is null");
+            this.buffer = requireNonNull(buffer, "buffer is null");
+        }
+
+        private int capacity()
+        {
+            return buffer.capacity();
+        }
+
+        private void append(Encoder encoder)
+        {
+            int start = position;
+            buffer.putInt(start + Integer.BYTES, encoder.checksum());
+            buffer.put(start + RECORD_HEADER_SIZE, encoder.bytes(), 0, encoder.size());
+            buffer.putInt(start, encoder.size());
+            summarize(encoder.entry());
+            position = start + RECORD_HEADER_SIZE + encoder.size();
+        }
+
+        private void recover()
+        {
+            int start = 0;
+            while (true) {
+                Optional<SaveEntry> entry = readRecord(buffer, start, buffer.capacity());
+                if (entry.isEmpty()) {
+                    break;
+                }
+                summarize(entry.get());
+                start += RECORD_HEADER_SIZE + buffer.getInt(start);
+            }
+            position = start;
+        }
+
+        private void summarize(SaveEntry entry)
+        {
+            serviceKeys.add(serviceKey(entry.serviceType().serviceName()));
+            if ((minEventId == null) || (entry.entryId().compareTo(minEventId) < 0)) {
+                minEventId = entry.entryId();
+            }
+            if ((maxEventId == null) || (entry.entryId().compareTo(maxEventId) > 0)) {
+                maxEventId = entry.entryId();
+            }
+            if ((newestTimestamp == null) || entry.timestamp().isAfter(newestTimestamp)) {
+                newestTimestamp = entry.timestamp();
+            }
+        }
+
+        private SegmentView view()
+        {
+            // read the position first, the summary covers at least the records before it
+            int end = position;
+            return new SegmentView(this, end, Set.copyOf(serviceKeys), minEventId, maxEventId);
+        }
+    }
+
+    private record SegmentView(Segment segment, int end, Set<String> serviceKeys, String minEventId, String maxEventId)
+    {
+        private boolean contains(Set<String> requestedServiceKeys, Range<String> eventIdRange)
+        {
+            return (end > 0)
+                    && (minEventId != null)
+                    && requestedServiceKeys.stream().anyMatch(serviceKeys::contains)
+                    && eventIdRange.isConnected(Range.closed(minEventId, maxEventId))
+                    && !eventIdRange.intersection(Range.closed(minEventId, maxEventId)).isEmpty();
+        }
+
+        private String firstEventId(boolean ascending)
+        {
+            return ascending ? minEventId : maxEventId;
+        }
+
+        private Iterator<SaveEntry> entries(Set<String> requestedServiceKeys, Range<String> eventIdRange, Comparator<String> order)
+        {
+            ByteBuffer records = segment.buffer.duplicate();
+            List<SaveEntry> entries = new ArrayList<>();
+            int start = 0;
+            while (start < end) {
+                Optional<SaveEntry> entry = readRecord(records, start, end);
+                if (entry.isEmpty()) {
+                    break;
+                }
+                if (requestedServiceKeys.contains(serviceKey(entry.get().serviceType().serviceName())) && eventIdRange.contains(entry.get().entryId())) {
+                    entries.add(entry.get());
+                }
+                start += RECORD_HEADER_SIZE + records.getInt(start);
+            }
+            entries.sort(Comparator.comparing(SaveEntry::entryId, order));
+            return entries.iterator();
+        }
+    }
+
+    // lazily merges the entries of the segments, which are sorted by the first event id they contain
+    private static class MergingIterator
+            extends AbstractIterator<SaveEntry>
+    {
+        private final Deque<SegmentView> pending;
+        private final Comparator<String> order;
+        private final boolean ascending;
+        private final Function<SegmentView, Iterator<SaveEntry>> reader;
+        private final PriorityQueue<PeekingIterator<SaveEntry>> open;
+
+        private MergingIterator(List<SegmentView> views, Comparator<String> order, boolean ascending, Function<SegmentView, Iterator<SaveEntry>> reader)
+        {
+            this.pending = new ArrayDeque<>(views);
+            this.order = requireNonNull(order, "order is null");
+            this.ascending = ascending;
+            this.reader = requireNonNull(reader, "reader is null");
+            this.open = new PriorityQueue<>(Comparator.comparing(entries -> entries.peek().entryId(), order));
+        }
+
+        @Override
+        protected SaveEntry computeNext()
+        {
+            // a pending segment must be read once its first event id could come before the next open entry
+            while (!pending.isEmpty() && (open.isEmpty() || order.compare(pending.peekFirst().firstEventId(ascending), open.peek().peek().entryId()) <= 0)) {
+                PeekingIterator<SaveEntry> entries = peekingIterator(reader.apply(pending.removeFirst()));
+                if (entries.hasNext()) {
+                    open.add(entries);
+                }
+            }
+
+            PeekingIterator<SaveEntry> next = open.poll();
+            if (next == null) {
+                return endOfData();
+            }
+            SaveEntry entry = next.next();
+            if (next.hasNext()) {
+                open.add(next);
+            }
+            return entry;
+        }
+    }
+
+    private static Optional<SaveEntry> readRecord(ByteBuffer buffer, int start, int end)
+    {
+        if (start + RECORD_HEADER_SIZE > end) {
+            return Optional.empty();
+        }
+        int length = buffer.getInt(start);
+        if ((length <= 0) || (start + RECORD_HEADER_SIZE + length > end)) {
+            return Optional.empty();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + RECORD_HEADER_SIZE, length));
+        if ((int) crc.getValue() != buffer.getInt(start + Integer.BYTES)) {
+            // a torn write of the last record before a crash
+            return Optional.empty();
+        }
+        return Optional.of(decode(buffer.slice(start + RECORD_HEADER_SIZE, length)));
+    }
+
+    /*
+     * The payload of a record: sequence, timestamp seconds and nanos, event id, service name, message, a
+     * bitmap of the present fields by EntryField ordinal and the present field values. Strings are a
+     * varint length followed by UTF-8 bytes.
+     */
+    private static SaveEntry decode(ByteBuffer payload)
+    {
+        long sequence = payload.getLong();
+        Instant timestamp = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+        String entryId = readString(payload);
+        String serviceName = readString(payload);
+        String message = readString(payload);
+        int presentFields = readVarInt(payload);
+        String[] fields = new String[RequestLoggerController.ENTRY_FIELDS.length];
+        for (int i = 0; i < fields.length; i++) {
+            if ((presentFields & (1 << i)) != 0) {
+                fields[i] = readString(payload);
+            }
+        }
+        SigningServiceType serviceType = KNOWN_SERVICE_TYPES.getOrDefault(serviceName, new SigningServiceType(serviceName));
+        return new SaveEntry(sequence, entryId, serviceType, message, fields, timestamp);
+    }
+
+    private static String readString(ByteBuffer payload)
+    {
+        byte[] bytes = new byte[readVarInt(payload)];
+        payload.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer payload)
+    {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = payload.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    // reused by the appender thread for all records
+    private static class Encoder
+    {
+        private final Output output = new Output();
+        private final CRC32C crc = new CRC32C();
+        private SaveEntry entry;
+
+        private Encoder encode(SaveEntry entry)
+        {
+            this.entry = entry;
+            output.reset();
+            output.writeLong(entry.sequence());
+            output.writeLong(entry.timestamp().getEpochSecond());
+            output.writeInt(entry.timestamp().getNano());
+            output.writeString(entry.entryId());
+            output.writeString(entry.serviceType().serviceName());
+            output.writeString(entry.message());
+            String[] fields = entry.fields();
+            int presentFields = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    presentFields |= 1 << i;
+                }
+            }
+            output.writeVarInt(presentFields);
+            for (String field : fields) {
+                if (field != null) {
+                    output.writeString(field);
+                }
+            }
+            crc.reset();
+            crc.update(output.bytes(), 0, output.size());
+            return this;
+        }
+
+        private SaveEntry entry()
+        {
+            return entry;
+        }
+
+        private byte[] bytes()
+        {
+            return output.bytes();
+        }
+
+        private int size()
+        {
+            return output.size();
+        }
+
+        private int checksum()
+        {
+            return (int) crc.getValue();
+        }
+    }
+
+    private static class Output
+            extends ByteArrayOutputStream
+    {
+        private Output()
+        {
+            super(1024);
+        }
+
+        private byte[] bytes()
+        {
+            return buf;
+        }
+
+        private void writeLong(long value)
+        {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeInt(int value)
+        {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeVarInt(int value)
+        {
+            checkArgument(value >= 0, "value is negative");
+            while ((value & ~0x7f) != 0) {
+                write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        private void writeString(String value)
+        {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
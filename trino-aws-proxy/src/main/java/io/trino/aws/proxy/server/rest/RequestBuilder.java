@@ -21,9 +21,11 @@ import io.trino.aws.proxy.server.signing.SigningQueryParameters;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
 import io.trino.aws.proxy.spi.rest.RequestContent.ContentType;
 import io.trino.aws.proxy.spi.rest.RequestHeaders;
 import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
 import io.trino.aws.proxy.spi.util.MultiMap;
 import jakarta.ws.rs.WebApplicationException;
@@ -43,7 +45,9 @@ import java.util.function.Supplier;
 
 import static com.google.common.io.ByteStreams.toByteArray;
 import static io.trino.aws.proxy.server.signing.SigningQueryParameters.splitQueryParameters;
+import static io.trino.aws.proxy.spi.signing.SigningTrait.STREAM_CONTENT;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static jakarta.ws.rs.core.Response.Status.LENGTH_REQUIRED;
 
 class RequestBuilder
 {
@@ -51,12 +55,12 @@ class RequestBuilder
 
     private RequestBuilder() {}
 
-    static Request fromRequest(ContainerRequest request)
+    static Request fromRequest(ContainerRequest request, SigningServiceType signingServiceType)
     {
         InternalRequestHeaders requestHeaders = RequestHeadersBuilder.parseHeaders(ImmutableMultiMap.copyOfCaseInsensitive(request.getHeaders().entrySet()));
         Optional<Instant> requestTimestamp;
 
-        RequestContent requestContent = request.hasEntity() ? buildRequestContent(request.getEntityStream(), requestHeaders) : RequestContent.EMPTY;
+        RequestContent requestContent = request.hasEntity() ? buildRequestContent(request.getEntityStream(), requestHeaders, signingServiceType.hasTrait(STREAM_CONTENT)) : RequestContent.EMPTY;
         SigningQueryParameters signingQueryParameters = splitQueryParameters(ImmutableMultiMap.copyOf(request.getUriInfo().getQueryParameters(true).entrySet()));
 
         Optional<RequestAuthorization> requestAuthorization = requestHeaders.requestAuthorization();
@@ -130,10 +134,17 @@ class RequestBuilder
     }
 
     @SuppressWarnings("SwitchStatementWithTooFewBranches")
-    private static RequestContent buildRequestContent(InputStream requestEntityStream, InternalRequestHeaders requestHeaders)
+    private static RequestContent buildRequestContent(InputStream requestEntityStream, InternalRequestHeaders requestHeaders, boolean streamContent)
     {
         ContentType contentType = requestHeaders.requestPayloadContentType().orElse(ContentType.STANDARD);
 
+        if (streamContent && (contentType == ContentType.STANDARD)) {
+            // streamed content is forwarded as it is read - the payload hash is checked inline (see HashCheckInputStream)
+            long contentLength = requestHeaders.contentLength()
+                    .orElseThrow(() -> new WebApplicationException(LENGTH_REQUIRED));
+            return streamedRequestContent(requestEntityStream, contentLength);
+        }
+
         Supplier<Optional<byte[]>> bytesSupplier = switch (contentType) {
             case STANDARD -> Suppliers.memoize(() -> {
                 try {
@@ -147,16 +158,12 @@ class RequestBuilder
             default -> Optional::empty;
         };
 
-        Supplier<Optional<Integer>> contentLengthSupplier = switch (contentType) {
-            case STANDARD -> () -> bytesSupplier.get().map(bytes -> bytes.length);
+        Supplier<Optional<Long>> contentLengthSupplier = switch (contentType) {
+            case STANDARD -> () -> bytesSupplier.get().map(bytes -> (long) bytes.length);
 
-            // AWS does not mandate x-amz-decoded-content length is required for chunked transfer encoding
-            // But we require it for simplicity (Content-Length is needed since we don't do chunking on outbound requests)
-            case AWS_CHUNKED, W3C_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> () -> {
-                int contentLength = requestHeaders.decodedContentLength()
-                        .orElseThrow(() -> new WebApplicationException(BAD_REQUEST));
-                return Optional.of(contentLength);
-            };
+            // AWS does not mandate x-amz-decoded-content-length for chunked transfer encoding. Content of unknown
+            // length is forwarded as aws-chunked content (see TrinoS3ProxyClient)
+            case AWS_CHUNKED, W3C_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> requestHeaders::decodedContentLength;
 
             default -> Optional::empty;
         };
@@ -164,17 +171,30 @@ class RequestBuilder
         return new RequestContent()
         {
             @Override
-            public Optional<Integer> contentLength()
+            public Optional<Long> contentLengthLong()
             {
                 return contentLengthSupplier.get();
             }
 
+            @Deprecated
+            @Override
+            public Optional<Integer> contentLength()
+            {
+                return intContentLength(contentLengthLong());
+            }
+
             @Override
             public ContentType contentType()
             {
                 return contentType;
             }
 
+            @Override
+            public Optional<ChecksumAlgorithm> trailingChecksum()
+            {
+                return requestHeaders.trailingChecksum();
+            }
+
             @Override
             public Optional<byte[]> standardBytes()
             {
@@ -190,4 +210,41 @@ class RequestBuilder
             }
         };
     }
+
+    private static RequestContent streamedRequestContent(InputStream requestEntityStream, long contentLength)
+    {
+        return new RequestContent()
+        {
+            @Override
+            public Optional<Long> contentLengthLong()
+            {
+                return Optional.of(contentLength);
+            }
+
+            @Deprecated
+            @Override
+            public Optional<Integer> contentLength()
+            {
+                return intContentLength(contentLengthLong());
+            }
+
+            @Override
+            public ContentType contentType()
+            {
+                return ContentType.STANDARD;
+            }
+
+            @Override
+            public Optional<InputStream> inputStream()
+            {
+                return Optional.of(requestEntityStream);
+            }
+        };
+    }
+
+    // for plugins still using the int content length. Like ServletRequest.getContentLength(), lengths that don't fit are not reported.
+    private static Optional<Integer> intContentLength(Optional<Long> contentLength)
+    {
+        return contentLength.filter(length -> length <= Integer.MAX_VALUE).map(Long::intValue);
+    }
 }
@@ -0,0 +1,428 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.inject.Inject;
+import io.airlift.http.client.HeaderName;
+import io.airlift.http.client.HttpVersion;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent.ContentType;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collapses identical concurrent GET/HEAD requests to the remote S3 endpoint into a single remote request. The first
+ * request (the leader) calls the remote, requests arriving before its response are followers and read the leader's
+ * response body through a bounded {@link FanOutBuffer}. If the leader fails before its response arrives the followers
+ * call the remote themselves.
+ */
+public class RequestCoalescer
+{
+    // headers that select which representation, or which part of it, is returned
+    private static final List<String> KEY_HEADERS = ImmutableList.of(
+            "range",
+            "if-match",
+            "if-none-match",
+            "if-modified-since",
+            "if-unmodified-since",
+            "x-amz-checksum-mode",
+            "x-amz-request-payer",
+            "x-amz-expected-bucket-owner");
+
+    private final boolean enabled;
+    private final long bufferSize;
+    private final Map<CoalescingKey, Flight> flights = new ConcurrentHashMap<>();
+
+    private final CounterStat collapsedRequests = new CounterStat();
+    private final CounterStat fallbacks = new CounterStat();
+
+    public record CoalescingKey(String remoteAccessKey, String httpVerb, URI remoteUri, Map<String, String> headers)
+    {
+        public CoalescingKey
+        {
+            requireNonNull(remoteAccessKey, "remoteAccessKey is null");
+            requireNonNull(httpVerb, "httpVerb is null");
+            requireNonNull(remoteUri, "remoteUri is null");
+            headers = ImmutableMap.copyOf(headers);
+        }
+    }
+
+    @Inject
+    public RequestCoalescer(RequestCoalescingConfig config)
+    {
+        enabled = config.isEnabled();
+        bufferSize = config.getBufferSize().toBytes();
+    }
+
+    public boolean isCoalesceable(ParsedS3Request request)
+    {
+        // requests with customer provided encryption keys are never shared
+        return enabled
+                && (request.httpVerb().equalsIgnoreCase("GET") || request.httpVerb().equalsIgnoreCase("HEAD"))
+                && (request.requestContent().contentType() == ContentType.EMPTY)
+                && request.requestHeaders().passthroughHeaders().getFirst("x-amz-server-side-encryption-customer-key").isEmpty();
+    }
+
+    public static CoalescingKey coalescingKey(String remoteAccessKey, ParsedS3Request request, URI remoteUri)
+    {
+        ImmutableMap.Builder<String, String> headers = ImmutableMap.builder();
+        for (String header : KEY_HEADERS) {
+            request.requestHeaders().passthroughHeaders().getFirst(header).ifPresent(value -> headers.put(header, value));
+        }
+        return new CoalescingKey(remoteAccessKey, request.httpVerb().toUpperCase(), remoteUri, headers.buildOrThrow());
+    }
+
+    /**
+     * Executes the call, or shares the response of an identical call that is already in flight. {@code remoteCall}
+     * is only invoked if this request leads, or if the leader fails before its response arrives.
+     */
+    public <T, E extends Exception> T execute(CoalescingKey key, RemoteCall<T, E> remoteCall, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        if (!enabled) {
+            return remoteCall.execute(responseHandler);
+        }
+
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing == null) {
+            LeaderResponseHandler<T, E> leaderResponseHandler = new LeaderResponseHandler<>(key, flight, responseHandler);
+            try {
+                return remoteCall.execute(leaderResponseHandler);
+            }
+            finally {
+                // the followers can't be served if the response never reached the handler
+                leaderResponseHandler.abandon();
+            }
+        }
+
+        Optional<Integer> reader = existing.join();
+        if (reader.isEmpty()) {
+            // the leader's response has already arrived
+            return remoteCall.execute(responseHandler);
+        }
+
+        Optional<SharedResponse> sharedResponse;
+        try {
+            sharedResponse = existing.awaitResponse();
+        }
+        catch (InterruptedException e) {
+            existing.leave(reader.get());
+            Thread.currentThread().interrupt();
+            // the interrupted call fails immediately and reports the failure to the handler
+            return remoteCall.execute(responseHandler);
+        }
+        if (sharedResponse.isEmpty()) {
+            fallbacks.update(1);
+            return remoteCall.execute(responseHandler);
+        }
+
+        collapsedRequests.update(1);
+        SharedResponse response = sharedResponse.get();
+        try {
+            return responseHandler.handle(response.request(), new FollowerResponse(response, response.buffer().reader(reader.get())));
+        }
+        finally {
+            response.buffer().closeReader(reader.get());
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCollapsedRequests()
+    {
+        return collapsedRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFallbacks()
+    {
+        return fallbacks;
+    }
+
+    @Managed
+    public int getInFlightRequests()
+    {
+        return flights.size();
+    }
+
+    private record SharedResponse(Request request, HttpVersion httpVersion, int statusCode, ListMultimap<HeaderName, String> headers, FanOutBuffer buffer)
+    {
+        private SharedResponse
+        {
+            requireNonNull(request, "request is null");
+            headers = ImmutableListMultimap.copyOf(headers);
+            requireNonNull(buffer, "buffer is null");
+        }
+    }
+
+    private static class Flight
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final CompletableFuture<Optional<SharedResponse>> response = new CompletableFuture<>();
+        private int followers;
+        private boolean closed;
+
+        private Optional<Integer> join()
+        {
+            lock.lock();
+            try {
+                if (closed) {
+                    return Optional.empty();
+                }
+                return Optional.of(followers++);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Closes the flight to new followers and returns the number of followers
+         */
+        private int close()
+        {
+            lock.lock();
+            try {
+                closed = true;
+                return followers;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private Optional<SharedResponse> awaitResponse()
+                throws InterruptedException
+        {
+            try {
+                return response.get();
+            }
+            catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void leave(int reader)
+        {
+            // release the reader so that the leader is not blocked by it
+            response.thenAccept(sharedResponse -> sharedResponse.ifPresent(shared -> shared.buffer().closeReader(reader)));
+        }
+    }
+
+    private class LeaderResponseHandler<T, E extends Exception>
+            implements ResponseHandler<T, E>
+    {
+        private final CoalescingKey key;
+        private final Flight flight;
+        private final ResponseHandler<T, E> delegate;
+
+        private LeaderResponseHandler(CoalescingKey key, Flight flight, ResponseHandler<T, E> delegate)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.flight = requireNonNull(flight, "flight is null");
+            this.delegate = requireNonNull(delegate, "delegate is null");
+        }
+
+        @Override
+        public T handleException(Request request, Exception exception)
+                throws E
+        {
+            abandon();
+            return delegate.handleException(request, exception);
+        }
+
+        @Override
+        public T handle(Request request, Response response)
+                throws E
+        {
+            int followers = closeFlight();
+            if (followers == 0) {
+                flight.response.complete(Optional.empty());
+                return delegate.handle(request, response);
+            }
+
+            FanOutBuffer buffer = new FanOutBuffer(followers, bufferSize);
+            checkState(flight.response.complete(Optional.of(new SharedResponse(request, response.getHttpVersion(), response.getStatusCode(), response.getHeaders(), buffer))), "flight already completed");
+
+            TeeInputStream teeInputStream = new TeeInputStream(response, buffer);
+            try {
+                return delegate.handle(request, new Response()
+                {
+                    @Override
+                    public HttpVersion getHttpVersion()
+                    {
+                        return response.getHttpVersion();
+                    }
+
+                    @Override
+                    public int getStatusCode()
+                    {
+                        return response.getStatusCode();
+                    }
+
+                    @Override
+                    public ListMultimap<HeaderName, String> getHeaders()
+                    {
+                        return response.getHeaders();
+                    }
+
+                    @Override
+                    public long getBytesRead()
+                    {
+                        return response.getBytesRead();
+                    }
+
+                    @Override
+                    public InputStream getInputStream()
+                    {
+                        return teeInputStream;
+                    }
+                });
+            }
+            finally {
+                // the followers still need the rest of the body even if this request's client is gone
+                try {
+                    teeInputStream.transferTo(OutputStream.nullOutputStream());
+                    buffer.finish();
+                }
+                catch (IOException e) {
+                    buffer.fail(e);
+                }
+            }
+        }
+
+        private void abandon()
+        {
+            closeFlight();
+            flight.response.complete(Optional.empty());
+        }
+
+        private int closeFlight()
+        {
+            flights.remove(key, flight);
+            return flight.close();
+        }
+    }
+
+    private static class TeeInputStream
+            extends InputStream
+    {
+        private final Response response;
+        private final FanOutBuffer buffer;
+        private InputStream delegate;
+
+        private TeeInputStream(Response response, FanOutBuffer buffer)
+        {
+            this.response = requireNonNull(response, "response is null");
+            this.buffer = requireNonNull(buffer, "buffer is null");
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return (count < 0) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+                throws IOException
+        {
+            if (delegate == null) {
+                delegate = response.getInputStream();
+            }
+            int count = delegate.read(bytes, offset, length);
+            if (count > 0) {
+                buffer.write(bytes, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public void close()
+        {
+            // the remaining body is drained for the followers, the response is closed by the HTTP client
+        }
+    }
+
+    private static class FollowerResponse
+            implements Response
+    {
+        private final SharedResponse sharedResponse;
+        private final InputStream inputStream;
+
+        private FollowerResponse(SharedResponse sharedResponse, InputStream inputStream)
+        {
+            this.sharedResponse = requireNonNull(sharedResponse, "sharedResponse is null");
+            this.inputStream = requireNonNull(inputStream, "inputStream is null");
+        }
+
+        @Override
+        public HttpVersion getHttpVersion()
+        {
+            return sharedResponse.httpVersion();
+        }
+
+        @Override
+        public int getStatusCode()
+        {
+            return sharedResponse.statusCode();
+        }
+
+        @Override
+        public ListMultimap<HeaderName, String> getHeaders()
+        {
+            return sharedResponse.headers();
+        }
+
+        @Override
+        public long getBytesRead()
+        {
+            return 0;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return inputStream;
+        }
+    }
+}
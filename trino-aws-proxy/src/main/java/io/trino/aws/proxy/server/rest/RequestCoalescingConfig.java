@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.MinDataSize;
+import jakarta.validation.constraints.NotNull;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Objects.requireNonNull;
+
+public class RequestCoalescingConfig
+{
+    private boolean enabled;
+    private DataSize bufferSize = DataSize.of(4, MEGABYTE);
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("aws.proxy.coalescing.enabled")
+    @ConfigDescription("Whether or not identical concurrent GET/HEAD requests share a single request to the remote S3 endpoint")
+    public RequestCoalescingConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("64kB")
+    public DataSize getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    @Config("aws.proxy.coalescing.buffer-size")
+    @ConfigDescription("Max amount of a shared response body that is buffered for requests reading it slower than the others")
+    public RequestCoalescingConfig setBufferSize(DataSize bufferSize)
+    {
+        this.bufferSize = requireNonNull(bufferSize, "bufferSize is null");
+        return this;
+    }
+}
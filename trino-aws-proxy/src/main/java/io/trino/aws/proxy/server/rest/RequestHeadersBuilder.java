@@ -16,6 +16,7 @@ package io.trino.aws.proxy.server.rest;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
 import io.trino.aws.proxy.spi.rest.RequestContent.ContentType;
 import io.trino.aws.proxy.spi.rest.RequestHeaders;
 import io.trino.aws.proxy.spi.signing.RequestAuthorization;
@@ -31,10 +32,11 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
-import static jakarta.ws.rs.core.Response.Status.LENGTH_REQUIRED;
 import static java.util.Objects.requireNonNull;
 import static java.util.function.Function.identity;
 
@@ -56,9 +58,10 @@ final class RequestHeadersBuilder
             RequestHeaders requestHeaders,
             Optional<RequestAuthorization> requestAuthorization,
             Optional<Instant> requestDate,
-            Optional<Integer> contentLength,
-            Optional<Integer> decodedContentLength,
-            Optional<ContentType> requestPayloadContentType)
+            Optional<Long> contentLength,
+            Optional<Long> decodedContentLength,
+            Optional<ContentType> requestPayloadContentType,
+            Optional<ChecksumAlgorithm> trailingChecksum)
     {
         InternalRequestHeaders {
             requireNonNull(requestHeaders, "requestHeaders is null");
@@ -67,6 +70,7 @@ final class RequestHeadersBuilder
             requireNonNull(contentLength, "contentLength is null");
             requireNonNull(decodedContentLength, "decodedContentLength is null");
             requireNonNull(requestPayloadContentType, "requestPayloadContentType is null");
+            requireNonNull(trailingChecksum, "trailingChecksum is null");
         }
     }
 
@@ -82,6 +86,7 @@ final class RequestHeadersBuilder
                 case "transfer-encoding" -> builder.transferEncoding(headerValues);
                 case "x-amz-date" -> builder.requestDate(headerValues);
                 case "x-amz-content-sha256" -> builder.contentSha256(headerValues);
+                case "x-amz-trailer" -> builder.trailer(headerValues);
                 default -> {
                     if (!IGNORED_HEADERS.contains(headerName)) {
                         builder.addPassthroughHeader(headerName, headerValues);
@@ -99,9 +104,10 @@ final class RequestHeadersBuilder
         private final ImmutableMultiMap.Builder passthroughHeadersBuilder = ImmutableMultiMap.builder(false);
         private Optional<RequestAuthorization> requestAuthorization = Optional.empty();
         private Optional<Instant> requestDate = Optional.empty();
-        private Optional<Integer> contentLength = Optional.empty();
-        private Optional<Integer> decodedContentLength = Optional.empty();
+        private Optional<Long> contentLength = Optional.empty();
+        private Optional<Long> decodedContentLength = Optional.empty();
         private Optional<String> contentSha256 = Optional.empty();
+        private Optional<ChecksumAlgorithm> trailingChecksum = Optional.empty();
         private Set<ContentType> seenRequestPayloadContentTypes = new HashSet<>();
 
         private Builder() {}
@@ -141,12 +147,20 @@ final class RequestHeadersBuilder
 
         private void contentLength(List<String> values)
         {
-            this.contentLength = parseHeaderValuesAsSingle(values, Integer::parseUnsignedInt);
+            this.contentLength = parseHeaderValuesAsSingle(values, Builder::parseLength);
         }
 
         private void decodedContentLength(List<String> values)
         {
-            this.decodedContentLength = parseHeaderValuesAsSingle(values, Integer::parseUnsignedInt);
+            this.decodedContentLength = parseHeaderValuesAsSingle(values, Builder::parseLength);
+        }
+
+        private static long parseLength(String value)
+        {
+            // values that don't fit into a long are parsed as negative numbers
+            long length = Long.parseUnsignedLong(value);
+            checkArgument(length >= 0, "Invalid length: %s", value);
+            return length;
         }
 
         private void contentEncoding(List<String> values)
@@ -183,6 +197,15 @@ final class RequestHeadersBuilder
             this.contentSha256 = parseHeaderValuesAsSingle(values, identity());
         }
 
+        private void trailer(List<String> values)
+        {
+            // S3 only supports a single checksum trailer
+            this.trailingChecksum = parseHeaderValuesAsSingle(values, value -> Stream.of(ChecksumAlgorithm.values())
+                    .filter(algorithm -> algorithm.headerName().equalsIgnoreCase(value.trim()))
+                    .findFirst()
+                    .orElseThrow());
+        }
+
         private void requestPayloadContentType(ContentType value)
         {
             this.seenRequestPayloadContentTypes.add(value);
@@ -196,9 +219,6 @@ final class RequestHeadersBuilder
         private void assertContentTypeValid(ContentType actualContentType)
         {
             if (actualContentType == ContentType.AWS_CHUNKED || actualContentType == ContentType.AWS_CHUNKED_IN_W3C_CHUNKED || actualContentType == ContentType.W3C_CHUNKED) {
-                if (decodedContentLength.isEmpty()) {
-                    throw new WebApplicationException(LENGTH_REQUIRED);
-                }
                 String sha256 = contentSha256.orElseThrow(() -> new WebApplicationException(BAD_REQUEST));
                 if (actualContentType != ContentType.W3C_CHUNKED && !sha256.startsWith("STREAMING-")) {
                     throw new WebApplicationException(BAD_REQUEST);
@@ -206,6 +226,17 @@ final class RequestHeadersBuilder
             }
         }
 
+        private void assertTrailerValid(Optional<ContentType> actualContentType)
+        {
+            // trailers are only supported by aws-chunked content
+            if (trailingChecksum.isPresent()) {
+                boolean awsChunked = actualContentType.filter(contentType -> contentType == ContentType.AWS_CHUNKED || contentType == ContentType.AWS_CHUNKED_IN_W3C_CHUNKED).isPresent();
+                if (!awsChunked || !contentSha256.orElseThrow().endsWith("-TRAILER")) {
+                    throw new WebApplicationException(BAD_REQUEST);
+                }
+            }
+        }
+
         private InternalRequestHeaders build(MultiMap allHeaders)
         {
             Optional<ContentType> applicableContentType = switch (seenRequestPayloadContentTypes.size()) {
@@ -219,11 +250,12 @@ final class RequestHeadersBuilder
                 default -> throw new WebApplicationException(BAD_REQUEST);
             };
             applicableContentType.ifPresent(this::assertContentTypeValid);
+            assertTrailerValid(applicableContentType);
 
             return new InternalRequestHeaders(
                     new RequestHeaders(passthroughHeadersBuilder.build(), allHeaders),
                     requestAuthorization, requestDate, contentLength, decodedContentLength,
-                    applicableContentType);
+                    applicableContentType, trailingChecksum);
         }
     }
 }
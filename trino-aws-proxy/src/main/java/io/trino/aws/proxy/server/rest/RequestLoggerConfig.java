@@ -15,11 +15,31 @@ package io.trino.aws.proxy.server.rest;
 
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.io.File;
+import java.util.Optional;
+
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.DAYS;
 
 public class RequestLoggerConfig
 {
     private int requestLoggerSavedQty = 10000;
+    private Optional<File> persistentDirectory = Optional.empty();
+    private DataSize persistentSegmentSize = DataSize.of(64, MEGABYTE);
+    private DataSize persistentMaxSize = DataSize.of(1, GIGABYTE);
+    private Duration persistentMaxAge = new Duration(7, DAYS);
+    private int persistentQueueSize = 10000;
 
     @Min(0)
     public int getRequestLoggerSavedQty()
@@ -34,4 +54,83 @@ public class RequestLoggerConfig
         this.requestLoggerSavedQty = requestLoggerSavedQty;
         return this;
     }
+
+    @NotNull
+    public Optional<File> getPersistentDirectory()
+    {
+        return persistentDirectory;
+    }
+
+    @Config("aws.proxy.request.logger.persistent.directory")
+    @ConfigDescription("Local directory for the persistent request log, saved entries are only kept in memory if not set")
+    public RequestLoggerConfig setPersistentDirectory(File persistentDirectory)
+    {
+        this.persistentDirectory = Optional.ofNullable(persistentDirectory);
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("4kB")
+    @MaxDataSize("1GB")
+    public DataSize getPersistentSegmentSize()
+    {
+        return persistentSegmentSize;
+    }
+
+    @Config("aws.proxy.request.logger.persistent.segment-size")
+    @ConfigDescription("Size of the memory-mapped segment files of the persistent request log")
+    public RequestLoggerConfig setPersistentSegmentSize(DataSize persistentSegmentSize)
+    {
+        this.persistentSegmentSize = requireNonNull(persistentSegmentSize, "persistentSegmentSize is null");
+        return this;
+    }
+
+    @NotNull
+    public DataSize getPersistentMaxSize()
+    {
+        return persistentMaxSize;
+    }
+
+    @Config("aws.proxy.request.logger.persistent.max-size")
+    @ConfigDescription("Max total size of the segment files of the persistent request log, the oldest segments are deleted beyond this size")
+    public RequestLoggerConfig setPersistentMaxSize(DataSize persistentMaxSize)
+    {
+        this.persistentMaxSize = requireNonNull(persistentMaxSize, "persistentMaxSize is null");
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1m")
+    public Duration getPersistentMaxAge()
+    {
+        return persistentMaxAge;
+    }
+
+    @Config("aws.proxy.request.logger.persistent.max-age")
+    @ConfigDescription("Segments of the persistent request log are deleted once all of their entries are older than this")
+    public RequestLoggerConfig setPersistentMaxAge(Duration persistentMaxAge)
+    {
+        this.persistentMaxAge = requireNonNull(persistentMaxAge, "persistentMaxAge is null");
+        return this;
+    }
+
+    @Min(1)
+    public int getPersistentQueueSize()
+    {
+        return persistentQueueSize;
+    }
+
+    @Config("aws.proxy.request.logger.persistent.queue-size")
+    @ConfigDescription("Max number of entries waiting to be written to the persistent request log, entries are dropped when the queue is full")
+    public RequestLoggerConfig setPersistentQueueSize(int persistentQueueSize)
+    {
+        this.persistentQueueSize = persistentQueueSize;
+        return this;
+    }
+
+    @AssertTrue(message = "aws.proxy.request.logger.persistent.max-size must not be smaller than aws.proxy.request.logger.persistent.segment-size")
+    public boolean isPersistentMaxSizeValid()
+    {
+        return persistentMaxSize.compareTo(persistentSegmentSize) >= 0;
+    }
 }
@@ -16,29 +16,51 @@ package io.trino.aws.proxy.server.rest;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
-import com.google.common.collect.EvictingQueue;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Queues;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.Range;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.WebApplicationException;
+import org.weakref.jmx.Managed;
 
+import java.time.Clock;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
 import java.util.function.Predicate;
 
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.padStart;
+import static com.google.common.collect.BoundType.CLOSED;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterators.peekingIterator;
 import static io.trino.aws.proxy.server.rest.RequestLoggerController.EventType.REQUEST_END;
 import static io.trino.aws.proxy.server.rest.RequestLoggerController.EventType.REQUEST_START;
 import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.EMPTY;
@@ -52,9 +74,6 @@ public class RequestLoggerController
 
     private static final AtomicLong requestCounter = new AtomicLong();
 
-    private static final Comparator<SaveEntry> COMPARATOR = comparing(SaveEntry::entryId);
-    private static final Comparator<SaveEntry> REVERSED_COMPARATOR = COMPARATOR.reversed();
-
     private interface LoggerProc
     {
         void log(String format, Object... args);
@@ -107,18 +126,120 @@ public class RequestLoggerController
         }
     };
 
-    public record SaveEntry(String entryId, SigningServiceType serviceType, String message, Map<String, String> entries, Instant timestamp)
+    /**
+     * A saved log event. The fields are stored in a compact array indexed by {@link EntryField}, the
+     * map of the entries is only built when it is read.
+     */
+    public static final class SaveEntry
+    {
+        private final long sequence;
+        private final String entryId;
+        private final SigningServiceType serviceType;
+        private final String message;
+        private final String[] fields;
+        private final Instant timestamp;
+
+        SaveEntry(long sequence, String entryId, SigningServiceType serviceType, String message, String[] fields, Instant timestamp)
+        {
+            this.sequence = sequence;
+            this.entryId = requireNonNull(entryId, "entryId is null");
+            this.serviceType = requireNonNull(serviceType, "serviceType is null");
+            this.message = requireNonNull(message, "message is null");
+            this.fields = requireNonNull(fields, "fields is null");
+            this.timestamp = requireNonNull(timestamp, "timestamp is null");
+        }
+
+        /**
+         * The position of the entry in the log, entries are saved in sequence order
+         */
+        public long sequence()
+        {
+            return sequence;
+        }
+
+        public String entryId()
+        {
+            return entryId;
+        }
+
+        public SigningServiceType serviceType()
+        {
+            return serviceType;
+        }
+
+        public String message()
+        {
+            return message;
+        }
+
+        public Map<String, String> entries()
+        {
+            ImmutableMap.Builder<String, String> entries = ImmutableMap.builderWithExpectedSize(fields.length);
+            for (EntryField field : ENTRY_FIELDS) {
+                String value = fields[field.ordinal()];
+                if (value != null) {
+                    entries.put(field.key(), value);
+                }
+            }
+            return entries.buildOrThrow();
+        }
+
+        public Instant timestamp()
+        {
+            return timestamp;
+        }
+
+        String[] fields()
+        {
+            return fields;
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("sequence", sequence)
+                    .add("entryId", entryId)
+                    .add("serviceType", serviceType)
+                    .add("message", message)
+                    .add("entries", entries())
+                    .add("timestamp", timestamp)
+                    .toString();
+        }
+    }
+
+    // the dictionary of the keys of saved entries
+    enum EntryField
     {
-        public SaveEntry
+        REQUEST_ID("request.id"),
+        REQUEST_NUMBER("request.number"),
+        REQUEST_TIMESTAMP("request.timestamp"),
+        REQUEST_TYPE("request.type"),
+        REQUEST_URI("request.uri"),
+        REQUEST_HTTP_METHOD("request.http.method"),
+        REQUEST_HTTP_ENTITY("request.http.entity"),
+        REQUEST_ELAPSED_MS("request.elapsed.ms"),
+        REQUEST_PROPERTIES("request.properties"),
+        REQUEST_ERRORS("request.errors"),
+        REQUEST_EVENT_ID("request.eventId");
+
+        private final String key;
+
+        EntryField(String key)
         {
-            requireNonNull(serviceType, "serviceType is null");
-            requireNonNull(entryId, "entryId is null");
-            requireNonNull(message, "message is null");
-            entries = ImmutableMap.copyOf(entries);
-            requireNonNull(timestamp, "timestamp is null");
+            this.key = requireNonNull(key, "key is null");
+        }
+
+        private String key()
+        {
+            return key;
         }
     }
 
+    static final EntryField[] ENTRY_FIELDS = EntryField.values();
+
+    private static final Comparator<SaveEntry> ENTRY_ID_ORDER = comparing(SaveEntry::entryId);
+
     public enum EventType
     {
         REQUEST_START,
@@ -132,22 +253,37 @@ public class RequestLoggerController
             case REQUEST_END -> 1;
         };
 
-        return "%s.%s.%s".formatted(padStart(toHexString(timestamp.toEpochMilli()), 16, '0'), padStart(toHexString(requestNumber), 16, '0'), typeKey);
+        return "%s.%s.%s".formatted(eventIdPrefix(timestamp.toEpochMilli()), padStart(toHexString(requestNumber), 16, '0'), typeKey);
+    }
+
+    /**
+     * Event ids start with the timestamp, the prefix sorts before all event ids of that millisecond
+     * and after all event ids of earlier ones
+     */
+    public static String eventIdPrefix(long epochMillis)
+    {
+        return padStart(toHexString(epochMillis), 16, '0');
     }
 
     private static final RequestLoggingSession NOP_REQUEST_LOGGING_SESSION = () -> {};
 
     private volatile LoggerProc loggerProc = nopLogger;
     private final Map<UUID, RequestLoggingSession> sessions = new ConcurrentHashMap<>();
-    private final Queue<SaveEntry> saveQueue;
-    private final boolean saveQueueEnabled;
+    private final Optional<SaveBuffer> saveBuffer;
+    private final Optional<PersistentRequestLog> persistentLog;
 
     @Inject
     public RequestLoggerController(RequestLoggerConfig config)
+    {
+        this(config, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    RequestLoggerController(RequestLoggerConfig config, Clock clock)
     {
         // *2 because we log request/response
-        saveQueue = Queues.synchronizedQueue(EvictingQueue.create(config.getRequestLoggerSavedQty() * 2));
-        saveQueueEnabled = (config.getRequestLoggerSavedQty() > 0);
+        saveBuffer = (config.getRequestLoggerSavedQty() > 0) ? Optional.of(new SaveBuffer(config.getRequestLoggerSavedQty() * 2)) : Optional.empty();
+        persistentLog = config.getPersistentDirectory().map(directory -> new PersistentRequestLog(directory.toPath(), config, clock));
     }
 
     @PreDestroy
@@ -156,6 +292,30 @@ public class RequestLoggerController
         checkState(sessions.isEmpty(), "Some logging sessions were not closed: " + sessions);
     }
 
+    @PreDestroy
+    public void closePersistentLog()
+    {
+        persistentLog.ifPresent(PersistentRequestLog::close);
+    }
+
+    @Managed
+    public long getPersistentDroppedEntries()
+    {
+        return persistentLog.map(PersistentRequestLog::getDroppedEntries).orElse(0L);
+    }
+
+    @Managed
+    public long getPersistentSize()
+    {
+        return persistentLog.map(PersistentRequestLog::getSize).orElse(0L);
+    }
+
+    @Managed
+    public int getPersistentSegmentCount()
+    {
+        return persistentLog.map(PersistentRequestLog::getSegmentCount).orElse(0);
+    }
+
     // TODO - allow levels to be set for only certain users, IPs, etc.
 
     public void setLevelInfo()
@@ -181,64 +341,84 @@ public class RequestLoggerController
         return requireNonNull(sessions.get(requestId), "No RequestLoggingSession for requestId: " + requestId);
     }
 
+    /**
+     * Returns the saved entries that match the predicate in the order they were saved, or in reverse
+     * order if {@code startFromHead} is false
+     */
     public List<SaveEntry> savedEntries(boolean startFromHead, Predicate<SaveEntry> predicate)
     {
-        return saveQueue
-                .stream()
-                .filter(predicate)
-                .sorted(startFromHead ? COMPARATOR : REVERSED_COMPARATOR)
-                .collect(toImmutableList());
+        return saveBuffer.map(buffer -> buffer.entries(startFromHead, predicate)).orElseGet(ImmutableList::of);
+    }
+
+    /**
+     * Returns the saved entries of the given services (ignoring case) whose event ids are in the range. Entries
+     * are looked up in an index of each service, and returned lazily in event id order - i.e. by timestamp. If
+     * the persistent log is enabled the entries on disk are merged in, entries that are both in memory and on
+     * disk are only returned once.
+     */
+    public Iterator<SaveEntry> indexedEntries(Set<String> serviceNames, Range<String> eventIdRange, boolean ascending)
+    {
+        Iterator<SaveEntry> savedEntries = saveBuffer.map(buffer -> buffer.indexedEntries(serviceNames, eventIdRange, ascending)).orElseGet(Collections::emptyIterator);
+        if (persistentLog.isEmpty()) {
+            return savedEntries;
+        }
+        Iterator<SaveEntry> persistedEntries = persistentLog.get().entries(serviceNames, eventIdRange, ascending);
+        return withoutDuplicates(Iterators.mergeSorted(ImmutableList.of(savedEntries, persistedEntries), ascending ? ENTRY_ID_ORDER : ENTRY_ID_ORDER.reversed()));
+    }
+
+    @VisibleForTesting
+    void awaitPersisted()
+            throws InterruptedException
+    {
+        if (persistentLog.isPresent()) {
+            persistentLog.get().awaitAppended();
+        }
     }
 
     @VisibleForTesting
     public void clearSavedEntries()
     {
-        saveQueue.clear();
+        saveBuffer.ifPresent(SaveBuffer::clear);
     }
 
     private RequestLoggingSession internalNewRequestSession(Request request, SigningServiceType serviceType)
     {
-        if (!loggerProc.isEnabled() && !saveQueueEnabled) {
+        if (!loggerProc.isEnabled() && saveBuffer.isEmpty() && persistentLog.isEmpty()) {
             return NOP_REQUEST_LOGGING_SESSION;
         }
 
         Instant now = Instant.now();
         long requestNumber = requestCounter.getAndIncrement();
 
-        Map<String, String> entries = new ConcurrentHashMap<>();
-
-        Map<String, String> properties = new ConcurrentHashMap<>();
-
-        Map<String, String> errors = new ConcurrentHashMap<>();
-
-        Map<String, Object> requestDetails = ImmutableMap.of(
-                "request.id", request.requestId(),
-                "request.number", requestNumber,
-                "request.timestamp", now,
-                "request.type", serviceType,
-                "request.uri", request.requestUri(),
-                "request.http.method", request.httpVerb(),
-                "request.http.entity", request.requestContent().contentType() != EMPTY);
+        String[] requestDetails = new String[ENTRY_FIELDS.length];
+        requestDetails[EntryField.REQUEST_ID.ordinal()] = request.requestId().toString();
+        requestDetails[EntryField.REQUEST_NUMBER.ordinal()] = Long.toString(requestNumber);
+        requestDetails[EntryField.REQUEST_TIMESTAMP.ordinal()] = now.toString();
+        requestDetails[EntryField.REQUEST_TYPE.ordinal()] = serviceType.toString();
+        requestDetails[EntryField.REQUEST_URI.ordinal()] = request.requestUri().toString();
+        requestDetails[EntryField.REQUEST_HTTP_METHOD.ordinal()] = request.httpVerb();
+        requestDetails[EntryField.REQUEST_HTTP_ENTITY.ordinal()] = Boolean.toString(request.requestContent().contentType() != EMPTY);
 
-        addAll(entries, requestDetails);
-
-        logAndClear(requestNumber, serviceType, "RequestStart", entries, now, REQUEST_START);
+        log(requestNumber, serviceType, "RequestStart", requestDetails.clone(), now, REQUEST_START);
 
         return new RequestLoggingSession()
         {
             private final Stopwatch stopwatch = Stopwatch.createStarted();
+            // most requests don't log errors, the maps are only allocated when needed
+            private final AtomicReference<Map<String, String>> properties = new AtomicReference<>();
+            private final AtomicReference<Map<String, String>> errors = new AtomicReference<>();
             private volatile boolean closed;
 
             @Override
             public void logProperty(String name, Object value)
             {
-                properties.put(name, String.valueOf(value));
+                values(properties).put(name, String.valueOf(value));
             }
 
             @Override
             public void logError(String name, Object value)
             {
-                errors.put(name, String.valueOf(value));
+                values(errors).put(name, String.valueOf(value));
             }
 
             @SuppressWarnings({"ThrowableNotThrown", "SwitchStatementWithTooFewBranches"})
@@ -247,13 +427,13 @@ public class RequestLoggerController
             {
                 switch (Throwables.getRootCause(e)) {
                     case WebApplicationException webApplicationException -> {
-                        errors.put("webException.status", Integer.toString(webApplicationException.getResponse().getStatus()));
-                        errors.put("webException.message", webApplicationException.getMessage());
+                        logError("webException.status", Integer.toString(webApplicationException.getResponse().getStatus()));
+                        logError("webException.message", webApplicationException.getMessage());
                     }
 
                     default -> {
-                        errors.put("exception.type", e.getClass().getName());
-                        errors.put("exception.message", e.getMessage());
+                        logError("exception.type", e.getClass().getName());
+                        logError("exception.message", e.getMessage());
                     }
                 }
             }
@@ -268,12 +448,12 @@ public class RequestLoggerController
                 closed = true;
 
                 try {
-                    addAll(entries, requestDetails);
-                    add(entries, "request.elapsed.ms", stopwatch.elapsed().toMillis());
-                    add(entries, "request.properties", properties);
-                    add(entries, "request.errors", errors);
+                    String[] fields = requestDetails.clone();
+                    fields[EntryField.REQUEST_ELAPSED_MS.ordinal()] = Long.toString(stopwatch.elapsed().toMillis());
+                    fields[EntryField.REQUEST_PROPERTIES.ordinal()] = String.valueOf(firstNonNull(properties.get(), ImmutableMap.of()));
+                    fields[EntryField.REQUEST_ERRORS.ordinal()] = String.valueOf(firstNonNull(errors.get(), ImmutableMap.of()));
 
-                    logAndClear(requestNumber, serviceType, "RequestEnd", entries, now, REQUEST_END);
+                    log(requestNumber, serviceType, "RequestEnd", fields, now, REQUEST_END);
                 }
                 finally {
                     sessions.remove(request.requestId());
@@ -282,29 +462,153 @@ public class RequestLoggerController
         };
     }
 
-    private void addAll(Map<String, String> entries, Map<String, Object> values)
+    private static Map<String, String> values(AtomicReference<Map<String, String>> reference)
     {
-        values.forEach((key, value) -> add(entries, key, value));
+        Map<String, String> values = reference.get();
+        if (values == null) {
+            reference.compareAndSet(null, new ConcurrentHashMap<>());
+            values = reference.get();
+        }
+        return values;
     }
 
-    private void add(Map<String, String> entries, String key, Object value)
+    private void log(long requestNumber, SigningServiceType serviceType, String message, String[] fields, Instant now, EventType eventType)
     {
-        entries.put(key, String.valueOf(value));
+        String eventId = eventId(now, requestNumber, eventType);
+        fields[EntryField.REQUEST_EVENT_ID.ordinal()] = eventId;
+
+        SaveEntry entry = saveBuffer.map(buffer -> buffer.add(sequence -> new SaveEntry(sequence, eventId, serviceType, message, fields, now)))
+                .orElseGet(() -> new SaveEntry(-1, eventId, serviceType, message, fields, now));
+        persistentLog.ifPresent(persistent -> persistent.append(entry));
+        if (loggerProc.isEnabled()) {
+            loggerProc.log("%s: %s", message, entry.entries());
+        }
     }
 
-    private void logAndClear(long requestNumber, SigningServiceType serviceType, String message, Map<String, String> entries, Instant now, EventType eventType)
+    // merged entries are in event id order, so the copies of an entry are adjacent
+    private static Iterator<SaveEntry> withoutDuplicates(Iterator<SaveEntry> entries)
     {
-        String eventId = eventId(now, requestNumber, eventType);
+        PeekingIterator<SaveEntry> peekingEntries = peekingIterator(entries);
+        return new AbstractIterator<>()
+        {
+            @Override
+            protected SaveEntry computeNext()
+            {
+                if (!peekingEntries.hasNext()) {
+                    return endOfData();
+                }
+                SaveEntry entry = peekingEntries.next();
+                while (peekingEntries.hasNext() && peekingEntries.peek().entryId().equals(entry.entryId())) {
+                    peekingEntries.next();
+                }
+                return entry;
+            }
+        };
+    }
 
-        Map<String, String> copy = ImmutableMap.<String, String>builder()
-                .putAll(entries)
-                .put("request.eventId", eventId)
-                .build();
-        entries.clear();
+    /**
+     * A bounded multi-producer ring buffer of the most recent entries. Writers claim the next sequence
+     * number and publish their entry into the slot of that sequence, so entries are in sequence order
+     * without any locking. Readers skip slots whose entry has not been published yet or has already been
+     * replaced by a newer one. The entries in the buffer are also indexed by service and event id.
+     */
+    private static class SaveBuffer
+    {
+        private final int capacity;
+        private final AtomicReferenceArray<SaveEntry> slots;
+        private final AtomicLong nextSequence = new AtomicLong();
+        private final ConcurrentMap<String, ConcurrentNavigableMap<String, SaveEntry>> index = new ConcurrentHashMap<>();
+        private volatile long clearedSequence;
 
-        loggerProc.log("%s: %s", message, copy);
-        if (saveQueueEnabled) {
-            saveQueue.add(new SaveEntry(eventId, serviceType, message, copy, now));
+        private SaveBuffer(int capacity)
+        {
+            checkArgument(capacity > 0, "capacity must be positive");
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        private SaveEntry add(LongFunction<SaveEntry> entryFactory)
+        {
+            long sequence = nextSequence.getAndIncrement();
+            SaveEntry entry = entryFactory.apply(sequence);
+            int slot = slot(sequence);
+            while (true) {
+                SaveEntry current = slots.get(slot);
+                // a writer that was stalled for a whole lap of the buffer must not replace a newer entry
+                if ((current != null) && (current.sequence() > sequence)) {
+                    return entry;
+                }
+                if (slots.compareAndSet(slot, current, entry)) {
+                    index.computeIfAbsent(indexKey(entry.serviceType().serviceName()), _ -> new ConcurrentSkipListMap<>()).put(entry.entryId(), entry);
+                    if (current != null) {
+                        unindex(current);
+                    }
+                    // the entry may have been replaced, and not unindexed, before it was indexed
+                    if (slots.get(slot) != entry) {
+                        unindex(entry);
+                    }
+                    return entry;
+                }
+            }
+        }
+
+        private void unindex(SaveEntry entry)
+        {
+            ConcurrentNavigableMap<String, SaveEntry> serviceIndex = index.get(indexKey(entry.serviceType().serviceName()));
+            if (serviceIndex != null) {
+                serviceIndex.remove(entry.entryId(), entry);
+            }
+        }
+
+        private Iterator<SaveEntry> indexedEntries(Set<String> serviceNames, Range<String> eventIdRange, boolean ascending)
+        {
+            List<Iterator<SaveEntry>> iterators = serviceNames.stream()
+                    .map(serviceName -> index.get(indexKey(serviceName)))
+                    .filter(Objects::nonNull)
+                    .map(serviceIndex -> {
+                        NavigableMap<String, SaveEntry> entries = serviceIndex;
+                        if (eventIdRange.hasLowerBound()) {
+                            entries = entries.tailMap(eventIdRange.lowerEndpoint(), eventIdRange.lowerBoundType() == CLOSED);
+                        }
+                        if (eventIdRange.hasUpperBound()) {
+                            entries = entries.headMap(eventIdRange.upperEndpoint(), eventIdRange.upperBoundType() == CLOSED);
+                        }
+                        return (ascending ? entries : entries.descendingMap()).values().iterator();
+                    })
+                    .collect(toImmutableList());
+            return Iterators.mergeSorted(iterators, ascending ? ENTRY_ID_ORDER : ENTRY_ID_ORDER.reversed());
+        }
+
+        private static String indexKey(String serviceName)
+        {
+            return serviceName.toLowerCase(Locale.ROOT);
+        }
+
+        private List<SaveEntry> entries(boolean startFromHead, Predicate<SaveEntry> predicate)
+        {
+            long end = nextSequence.get();
+            long start = Math.max(end - capacity, clearedSequence);
+
+            ImmutableList.Builder<SaveEntry> entries = ImmutableList.builder();
+            for (long i = 0; i < (end - start); i++) {
+                long sequence = startFromHead ? (start + i) : (end - 1 - i);
+                SaveEntry entry = slots.get(slot(sequence));
+                if ((entry != null) && (entry.sequence() == sequence) && predicate.test(entry)) {
+                    entries.add(entry);
+                }
+            }
+            return entries.build();
+        }
+
+        private void clear()
+        {
+            clearedSequence = nextSequence.get();
+            index.values().forEach(Map::clear);
+        }
+
+        private int slot(long sequence)
+        {
+            return (int) (sequence % capacity);
         }
     }
 }
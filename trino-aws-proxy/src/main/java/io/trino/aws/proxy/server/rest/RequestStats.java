@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.MBeanExport;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Latencies of the stages of requests and their outcomes by service and operation. The stats of every operation are
+ * exported as an MBean named {@code <service>_<operation>} when the operation is first seen, which makes them available
+ * to the OpenMetrics endpoint too. Operation names can be chosen by clients (e.g. the {@code X-Amz-Target} header), so
+ * the number of operations per service is limited.
+ */
+public class RequestStats
+{
+    private static final Logger log = Logger.get(RequestStats.class);
+
+    static final String OTHER_OPERATION = "Other";
+    private static final int MAX_OPERATIONS_PER_SERVICE = 64;
+
+    public enum Stage
+    {
+        HEADER_PARSING,
+        SIGNATURE_VALIDATION,
+        SECURITY_CHECK,
+        REWRITE,
+        REMOTE_CONNECTION,
+        REMOTE_TIME_TO_FIRST_BYTE,
+        STREAM,
+    }
+
+    private final Optional<MBeanExporter> mbeanExporter;
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationStats>> services = new ConcurrentHashMap<>();
+    private final ConcurrentMap<OperationStats, MBeanExport> exports = new ConcurrentHashMap<>();
+
+    @Inject
+    public RequestStats(Optional<MBeanExporter> mbeanExporter)
+    {
+        this.mbeanExporter = requireNonNull(mbeanExporter, "mbeanExporter is null");
+    }
+
+    @PreDestroy
+    public void shutDown()
+    {
+        exports.values().forEach(MBeanExport::unexport);
+        exports.clear();
+    }
+
+    public RequestStatsSession newSession(SigningServiceType signingServiceType)
+    {
+        return new RequestStatsSession(this, signingServiceType.serviceName());
+    }
+
+    @VisibleForTesting
+    OperationStats operationStats(String serviceName, String operation)
+    {
+        ConcurrentMap<String, OperationStats> operations = services.computeIfAbsent(serviceName, _ -> new ConcurrentHashMap<>());
+        OperationStats stats = operations.get(operation);
+        if (stats != null) {
+            return stats;
+        }
+        // racy, the limit only needs to hold approximately
+        String boundedOperation = (operations.size() < MAX_OPERATIONS_PER_SERVICE) ? operation : OTHER_OPERATION;
+        return operations.computeIfAbsent(boundedOperation, _ -> export(serviceName, boundedOperation, new OperationStats()));
+    }
+
+    private OperationStats export(String serviceName, String operation, OperationStats stats)
+    {
+        mbeanExporter.ifPresent(exporter -> {
+            try {
+                exports.put(stats, exporter.exportWithGeneratedName(stats, OperationStats.class, serviceName + "_" + operation));
+            }
+            catch (RuntimeException e) {
+                log.warn(e, "Failed to export the stats of %s operation %s", serviceName, operation);
+            }
+        });
+        return stats;
+    }
+
+    public static class OperationStats
+    {
+        private final Map<Stage, TimeStat> stageTimes = new EnumMap<>(Stage.class);
+        private final TimeStat requestTime = new TimeStat(MILLISECONDS);
+        private final CounterStat informationalResponses = new CounterStat();
+        private final CounterStat successfulResponses = new CounterStat();
+        private final CounterStat redirectionResponses = new CounterStat();
+        private final CounterStat clientErrorResponses = new CounterStat();
+        private final CounterStat serverErrorResponses = new CounterStat();
+        private final CounterStat bytesIn = new CounterStat();
+        private final CounterStat bytesOut = new CounterStat();
+
+        private OperationStats()
+        {
+            for (Stage stage : Stage.values()) {
+                stageTimes.put(stage, new TimeStat(MILLISECONDS));
+            }
+        }
+
+        TimeStat stageTime(Stage stage)
+        {
+            return stageTimes.get(stage);
+        }
+
+        void recordResponse(int statusCode, long requestNanos, long bytesInCount, long bytesOutCount)
+        {
+            checkArgument(statusCode >= 100, "invalid status code: %s", statusCode);
+            CounterStat responses = switch (statusCode / 100) {
+                case 1 -> informationalResponses;
+                case 2 -> successfulResponses;
+                case 3 -> redirectionResponses;
+                case 4 -> clientErrorResponses;
+                default -> serverErrorResponses;
+            };
+            responses.update(1);
+            requestTime.addNanos(requestNanos);
+            bytesIn.update(bytesInCount);
+            bytesOut.update(bytesOutCount);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getHeaderParsing()
+        {
+            return stageTime(Stage.HEADER_PARSING);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getSignatureValidation()
+        {
+            return stageTime(Stage.SIGNATURE_VALIDATION);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getSecurityCheck()
+        {
+            return stageTime(Stage.SECURITY_CHECK);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getRewrite()
+        {
+            return stageTime(Stage.REWRITE);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getRemoteConnection()
+        {
+            return stageTime(Stage.REMOTE_CONNECTION);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getRemoteTimeToFirstByte()
+        {
+            return stageTime(Stage.REMOTE_TIME_TO_FIRST_BYTE);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getStream()
+        {
+            return stageTime(Stage.STREAM);
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getRequestTime()
+        {
+            return requestTime;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getInformationalResponses()
+        {
+            return informationalResponses;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getSuccessfulResponses()
+        {
+            return successfulResponses;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getRedirectionResponses()
+        {
+            return redirectionResponses;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getClientErrorResponses()
+        {
+            return clientErrorResponses;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getServerErrorResponses()
+        {
+            return serverErrorResponses;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getBytesIn()
+        {
+            return bytesIn;
+        }
+
+        @Managed
+        @Nested
+        public CounterStat getBytesOut()
+        {
+            return bytesOut;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.base.CharMatcher;
+import io.trino.aws.proxy.server.rest.RequestStats.OperationStats;
+import io.trino.aws.proxy.server.rest.RequestStats.Stage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collects the stage latencies, sizes and outcome of a single request. They are recorded in the stats of the request's
+ * operation once the request completes, as the operation isn't known before the request has been parsed.
+ */
+public class RequestStatsSession
+{
+    private static final CharMatcher OPERATION_CHARACTERS = CharMatcher.inRange('a', 'z').or(CharMatcher.inRange('A', 'Z')).or(CharMatcher.inRange('0', '9'));
+
+    private final RequestStats requestStats;
+    private final String serviceName;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong remoteRequestStartNanos = new AtomicLong(-1);
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile String operation = RequestStats.OTHER_OPERATION;
+
+    RequestStatsSession(RequestStats requestStats, String serviceName)
+    {
+        this.requestStats = requireNonNull(requestStats, "requestStats is null");
+        this.serviceName = requireNonNull(serviceName, "serviceName is null");
+        for (int i = 0; i < stageNanos.length(); i++) {
+            stageNanos.set(i, -1);
+        }
+    }
+
+    public void setOperation(String operation)
+    {
+        String sanitized = OPERATION_CHARACTERS.retainFrom(operation);
+        this.operation = sanitized.isEmpty() ? RequestStats.OTHER_OPERATION : sanitized;
+    }
+
+    public <T> T time(Stage stage, Supplier<T> supplier)
+    {
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        }
+        finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void record(Stage stage, long nanos)
+    {
+        stageNanos.set(stage.ordinal(), nanos);
+    }
+
+    public void remoteRequestStarted()
+    {
+        remoteRequestStartNanos.compareAndSet(-1, System.nanoTime());
+    }
+
+    public void remoteResponseReceived()
+    {
+        long start = remoteRequestStartNanos.get();
+        if ((start >= 0) && (stageNanos.get(Stage.REMOTE_TIME_TO_FIRST_BYTE.ordinal()) < 0)) {
+            record(Stage.REMOTE_TIME_TO_FIRST_BYTE, System.nanoTime() - start);
+        }
+    }
+
+    public void addBytesIn(long bytes)
+    {
+        bytesIn.addAndGet(bytes);
+    }
+
+    public void addBytesOut(long bytes)
+    {
+        bytesOut.addAndGet(bytes);
+    }
+
+    public InputStream countBytesIn(InputStream delegate)
+    {
+        return new FilterInputStream(delegate)
+        {
+            @Override
+            public int read()
+                    throws IOException
+            {
+                int b = super.read();
+                if (b >= 0) {
+                    addBytesIn(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len)
+                    throws IOException
+            {
+                int count = super.read(b, off, len);
+                if (count > 0) {
+                    addBytesIn(count);
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long n)
+                    throws IOException
+            {
+                long skipped = super.skip(n);
+                addBytesIn(skipped);
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported()
+            {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Records the request in the stats of its operation. Only the first call has an effect.
+     */
+    public void complete(int statusCode)
+    {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        OperationStats stats = requestStats.operationStats(serviceName, operation);
+        for (Stage stage : Stage.values()) {
+            long nanos = stageNanos.get(stage.ordinal());
+            if (nanos >= 0) {
+                stats.stageTime(stage).addNanos(nanos);
+            }
+        }
+        stats.recordResponse(statusCode, System.nanoTime() - startNanos, bytesIn.get(), bytesOut.get());
+    }
+}
@@ -32,12 +32,14 @@ public class ResourceSecurityDynamicFeature
 {
     private final SigningController signingController;
     private final RequestLoggerController requestLoggerController;
+    private final RequestStats requestStats;
 
     @Inject
-    public ResourceSecurityDynamicFeature(SigningController signingController, RequestLoggerController requestLoggerController)
+    public ResourceSecurityDynamicFeature(SigningController signingController, RequestLoggerController requestLoggerController, RequestStats requestStats)
     {
         this.signingController = requireNonNull(signingController);
         this.requestLoggerController = requireNonNull(requestLoggerController);
+        this.requestStats = requireNonNull(requestStats);
     }
 
     @Override
@@ -48,7 +50,7 @@ public class ResourceSecurityDynamicFeature
             switch (accessType) {
                 case Public _ -> {}
                 case SigV4AccessType sigV4AccessType ->
-                        context.register(new SecurityFilter(signingController, sigV4AccessType.signingServiceType(), requestLoggerController));
+                        context.register(new SecurityFilter(signingController, sigV4AccessType.signingServiceType(), requestLoggerController, requestStats));
             }
         }
     }
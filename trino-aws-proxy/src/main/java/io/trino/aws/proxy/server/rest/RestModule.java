@@ -17,9 +17,12 @@ import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Scopes;
 import io.airlift.jaxrs.JaxrsBinder;
+import org.weakref.jmx.MBeanExporter;
 
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
 import static io.airlift.configuration.ConfigBinder.configBinder;
 import static io.airlift.jaxrs.JaxrsBinder.jaxrsBinder;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class RestModule
         implements Module
@@ -33,5 +36,10 @@ public class RestModule
 
         configBinder(binder).bindConfig(RequestLoggerConfig.class);
         binder.bind(RequestLoggerController.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(RequestLoggerController.class).withGeneratedName();
+
+        // request stats are exported per service and operation when JMX is available
+        newOptionalBinder(binder, MBeanExporter.class);
+        binder.bind(RequestStats.class).in(Scopes.SINGLETON);
     }
 }
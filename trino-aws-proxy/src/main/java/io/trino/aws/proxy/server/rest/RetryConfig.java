@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class RetryConfig
+{
+    private int maxAttempts = 1;
+    private Duration initialBackoff = new Duration(50, MILLISECONDS);
+    private Duration maxBackoff = new Duration(2, SECONDS);
+    private double budget = 0.1;
+    private int minRetriesPerEndpoint = 10;
+    private DataSize maxBufferedBodySize = DataSize.of(1, MEGABYTE);
+
+    @Min(1)
+    public int getMaxAttempts()
+    {
+        return maxAttempts;
+    }
+
+    @Config("aws.proxy.retry.max-attempts")
+    @ConfigDescription("Max number of attempts for requests to the remote S3 endpoint that fail with a retryable error, 1 disables retries")
+    public RetryConfig setMaxAttempts(int maxAttempts)
+    {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getInitialBackoff()
+    {
+        return initialBackoff;
+    }
+
+    @Config("aws.proxy.retry.initial-backoff")
+    @ConfigDescription("Upper bound of the randomized delay before the first retry, doubled for each further retry")
+    public RetryConfig setInitialBackoff(Duration initialBackoff)
+    {
+        this.initialBackoff = requireNonNull(initialBackoff, "initialBackoff is null");
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getMaxBackoff()
+    {
+        return maxBackoff;
+    }
+
+    @Config("aws.proxy.retry.max-backoff")
+    @ConfigDescription("Max upper bound of the randomized delay before a retry")
+    public RetryConfig setMaxBackoff(Duration maxBackoff)
+    {
+        this.maxBackoff = requireNonNull(maxBackoff, "maxBackoff is null");
+        return this;
+    }
+
+    @DecimalMin("0")
+    @DecimalMax("1")
+    public double getBudget()
+    {
+        return budget;
+    }
+
+    @Config("aws.proxy.retry.budget")
+    @ConfigDescription("Max ratio of retries to requests per remote endpoint, e.g. 0.1 allows at most 10% extra requests")
+    public RetryConfig setBudget(double budget)
+    {
+        this.budget = budget;
+        return this;
+    }
+
+    @Min(0)
+    public int getMinRetriesPerEndpoint()
+    {
+        return minRetriesPerEndpoint;
+    }
+
+    @Config("aws.proxy.retry.min-retries-per-endpoint")
+    @ConfigDescription("Number of retries per minute per remote endpoint that are allowed regardless of the budget")
+    public RetryConfig setMinRetriesPerEndpoint(int minRetriesPerEndpoint)
+    {
+        this.minRetriesPerEndpoint = minRetriesPerEndpoint;
+        return this;
+    }
+
+    @NotNull
+    @MaxDataSize("64MB")
+    public DataSize getMaxBufferedBodySize()
+    {
+        return maxBufferedBodySize;
+    }
+
+    @Config("aws.proxy.retry.max-buffered-body-size")
+    @ConfigDescription("Requests with a body are only retried if the body is at most this size, as the body is buffered in memory to be replayed")
+    public RetryConfig setMaxBufferedBodySize(DataSize maxBufferedBodySize)
+    {
+        this.maxBufferedBodySize = requireNonNull(maxBufferedBodySize, "maxBufferedBodySize is null");
+        return this;
+    }
+
+    @AssertTrue(message = "aws.proxy.retry.initial-backoff must not be greater than aws.proxy.retry.max-backoff")
+    public boolean isBackoffRangeValid()
+    {
+        return initialBackoff.compareTo(maxBackoff) <= 0;
+    }
+}
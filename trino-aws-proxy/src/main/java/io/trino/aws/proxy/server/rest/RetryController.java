@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.DecayCounter;
+import io.airlift.stats.ExponentialDecay;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serial;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static com.google.common.base.Throwables.getCausalChain;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Retries requests to the remote S3 endpoint that fail with a 500 or 503 response or an I/O error
+ * (e.g. a connection reset) before a response is received. Only requests with an idempotent verb and a body that
+ * can be replayed from memory are retried. Retries use exponential backoff with full jitter and are limited by a
+ * budget per remote endpoint so that retries can't multiply the load of an endpoint that is already failing.
+ */
+public class RetryController
+{
+    private static final Logger log = Logger.get(RetryController.class);
+
+    private static final Set<String> IDEMPOTENT_VERBS = ImmutableSet.of("GET", "HEAD", "PUT", "DELETE");
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = ImmutableSet.of(500, 503);
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double budget;
+    private final int minRetriesPerEndpoint;
+    private final long maxBufferedBodySize;
+    private final Ticker ticker;
+    private final Cache<String, RetryBudget> retryBudgets;
+
+    private final CounterStat retries = new CounterStat();
+    private final CounterStat budgetExhausted = new CounterStat();
+
+    @Inject
+    public RetryController(RetryConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    RetryController(RetryConfig config, Ticker ticker)
+    {
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        maxAttempts = config.getMaxAttempts();
+        initialBackoffNanos = config.getInitialBackoff().roundTo(NANOSECONDS);
+        maxBackoffNanos = config.getMaxBackoff().roundTo(NANOSECONDS);
+        budget = config.getBudget();
+        minRetriesPerEndpoint = config.getMinRetriesPerEndpoint();
+        maxBufferedBodySize = config.getMaxBufferedBodySize().toBytes();
+
+        // budgets of endpoints that haven't been used for a while have decayed to nothing anyway
+        retryBudgets = newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .maximumSize(10_000)
+                .build();
+    }
+
+    public boolean isRetryable(ParsedS3Request request)
+    {
+        return (maxAttempts > 1)
+                && IDEMPOTENT_VERBS.contains(request.httpVerb().toUpperCase(Locale.ROOT))
+                && isReplayable(request.requestContent());
+    }
+
+    /**
+     * Executes the call, retrying it if it fails with a retryable error while the budget of the endpoint allows.
+     * The response of the last attempt, or its failure, is passed to {@code responseHandler}. Every invocation
+     * of {@code remoteCall} must send a freshly signed request.
+     */
+    public <T, E extends Exception> T execute(URI remoteUri, RemoteCall<T, E> remoteCall, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        RetryBudget retryBudget = retryBudgets.get(endpoint(remoteUri), _ -> new RetryBudget());
+        retryBudget.recentRequests.add(1);
+
+        for (int attempt = 1; ; attempt++) {
+            if (attempt == maxAttempts) {
+                return remoteCall.execute(responseHandler);
+            }
+
+            Request failedRequest;
+            try {
+                return remoteCall.execute(new RetryingResponseHandler<>(responseHandler, retryBudget));
+            }
+            catch (RetryException e) {
+                retries.update(1);
+                log.debug("Retrying request to %s after: %s", remoteUri, e.getMessage());
+                failedRequest = e.request;
+            }
+
+            try {
+                NANOSECONDS.sleep(backoffNanos(attempt));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return responseHandler.handleException(failedRequest, e);
+            }
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRetries()
+    {
+        return retries;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBudgetExhausted()
+    {
+        return budgetExhausted;
+    }
+
+    @VisibleForTesting
+    long backoffNanos(int attempt)
+    {
+        // full jitter: a random delay up to the exponential backoff spreads out retries of requests that failed together
+        long backoff = initialBackoffNanos;
+        for (int i = 1; (i < attempt) && (backoff < maxBackoffNanos); i++) {
+            backoff *= 2;
+        }
+        return ThreadLocalRandom.current().nextLong(Math.min(backoff, maxBackoffNanos) + 1);
+    }
+
+    private boolean isReplayable(RequestContent requestContent)
+    {
+        return switch (requestContent.contentType()) {
+            case EMPTY -> true;
+            case STANDARD, W3C_CHUNKED, AWS_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> requestContent.contentLengthLong().filter(length -> length <= maxBufferedBodySize).isPresent();
+        };
+    }
+
+    private static boolean isRetryableFailure(Exception exception)
+    {
+        // an I/O error before the response was received, e.g. a connection reset. Timeouts are not retried
+        // as retrying them would add load to an endpoint that is already slow.
+        return getCausalChain(exception).stream()
+                .anyMatch(cause -> (cause instanceof IOException) && !(cause instanceof InterruptedIOException));
+    }
+
+    private static String endpoint(URI remoteUri)
+    {
+        return remoteUri.getHost() + ":" + remoteUri.getPort();
+    }
+
+    private class RetryBudget
+    {
+        private final DecayCounter recentRequests = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+        private final DecayCounter recentRetries = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+
+        private boolean tryAcquire()
+        {
+            // check-then-add is racy, but the budget only needs to hold approximately
+            if (recentRetries.getCount() + 1 > minRetriesPerEndpoint + (budget * recentRequests.getCount())) {
+                budgetExhausted.update(1);
+                return false;
+            }
+            recentRetries.add(1);
+            return true;
+        }
+    }
+
+    private static class RetryException
+            extends RuntimeException
+    {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // only used within the retry loop, never serialized
+        private final transient Request request;
+
+        private RetryException(Request request, String message)
+        {
+            super(message, null, false, false);
+            this.request = request;
+        }
+    }
+
+    private static class RetryingResponseHandler<T, E extends Exception>
+            implements ResponseHandler<T, E>
+    {
+        private final ResponseHandler<T, E> delegate;
+        private final RetryBudget retryBudget;
+
+        private RetryingResponseHandler(ResponseHandler<T, E> delegate, RetryBudget retryBudget)
+        {
+            this.delegate = requireNonNull(delegate, "delegate is null");
+            this.retryBudget = requireNonNull(retryBudget, "retryBudget is null");
+        }
+
+        @Override
+        public T handleException(Request request, Exception exception)
+                throws E
+        {
+            if (isRetryableFailure(exception) && retryBudget.tryAcquire()) {
+                throw new RetryException(request, exception.toString());
+            }
+            return delegate.handleException(request, exception);
+        }
+
+        @Override
+        public T handle(Request request, Response response)
+                throws E
+        {
+            // the response is closed by the caller when this throws
+            if (RETRYABLE_STATUS_CODES.contains(response.getStatusCode()) && retryBudget.tryAcquire()) {
+                throw new RetryException(request, "status " + response.getStatusCode());
+            }
+            return delegate.handle(request, response);
+        }
+    }
+}
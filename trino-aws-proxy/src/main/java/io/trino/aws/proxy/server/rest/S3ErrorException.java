@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A failure that is reported to the client with a specific S3 error code (e.g. {@code SlowDown})
+ * rather than the reason phrase of its status
+ */
+public class S3ErrorException
+        extends WebApplicationException
+{
+    private final String errorCode;
+
+    public S3ErrorException(String errorCode, String message, Response.Status status)
+    {
+        super(message, status);
+        this.errorCode = requireNonNull(errorCode, "errorCode is null");
+    }
+
+    public static S3ErrorException slowDown(String message)
+    {
+        return new S3ErrorException("SlowDown", message, Response.Status.SERVICE_UNAVAILABLE);
+    }
+
+    public static S3ErrorException notImplemented(String message)
+    {
+        return new S3ErrorException("NotImplemented", message, Response.Status.NOT_IMPLEMENTED);
+    }
+
+    public String errorCode()
+    {
+        return errorCode;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+
+import java.util.Locale;
+import java.util.Set;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The S3 API operation of a request, as far as it can be told from the verb, path and query of the request.
+ * Requests for sub-resources that are not listed (ACLs, tagging, etc.) are {@link #OTHER}.
+ */
+public enum S3Operation
+{
+    LIST_BUCKETS("ListBuckets"),
+    CREATE_BUCKET("CreateBucket"),
+    DELETE_BUCKET("DeleteBucket"),
+    HEAD_BUCKET("HeadBucket"),
+    GET_BUCKET_LOCATION("GetBucketLocation"),
+    LIST_OBJECTS("ListObjects"),
+    LIST_OBJECTS_V2("ListObjectsV2"),
+    LIST_MULTIPART_UPLOADS("ListMultipartUploads"),
+    DELETE_OBJECTS("DeleteObjects"),
+    GET_OBJECT("GetObject"),
+    HEAD_OBJECT("HeadObject"),
+    PUT_OBJECT("PutObject"),
+    COPY_OBJECT("CopyObject"),
+    DELETE_OBJECT("DeleteObject"),
+    CREATE_MULTIPART_UPLOAD("CreateMultipartUpload"),
+    UPLOAD_PART("UploadPart"),
+    UPLOAD_PART_COPY("UploadPartCopy"),
+    COMPLETE_MULTIPART_UPLOAD("CompleteMultipartUpload"),
+    ABORT_MULTIPART_UPLOAD("AbortMultipartUpload"),
+    LIST_PARTS("ListParts"),
+    OTHER("Other");
+
+    private static final Set<String> LIST_OBJECTS_PARAMETERS = ImmutableSet.of("delimiter", "encoding-type", "marker", "max-keys", "prefix");
+
+    private final String apiName;
+
+    S3Operation(String apiName)
+    {
+        this.apiName = requireNonNull(apiName, "apiName is null");
+    }
+
+    public String apiName()
+    {
+        return apiName;
+    }
+
+    public static S3Operation of(ParsedS3Request request)
+    {
+        // the signature parameters of presigned URLs don't make a difference
+        Set<String> parameters = request.queryParameters().keySet().stream()
+                .filter(name -> !name.toLowerCase(Locale.ROOT).startsWith("x-amz-"))
+                .collect(toImmutableSet());
+        boolean copy = request.requestHeaders().unmodifiedHeaders().containsKey("x-amz-copy-source");
+        String verb = request.httpVerb().toUpperCase(Locale.ROOT);
+
+        if (request.bucketName().isEmpty()) {
+            return verb.equals("GET") ? LIST_BUCKETS : OTHER;
+        }
+
+        if (request.keyInBucket().isEmpty()) {
+            return switch (verb) {
+                case "GET" -> {
+                    if (request.queryParameters().getFirst("list-type").filter("2"::equals).isPresent()) {
+                        yield LIST_OBJECTS_V2;
+                    }
+                    if (parameters.contains("uploads")) {
+                        yield LIST_MULTIPART_UPLOADS;
+                    }
+                    if (parameters.contains("location")) {
+                        yield GET_BUCKET_LOCATION;
+                    }
+                    yield parameters.stream().allMatch(LIST_OBJECTS_PARAMETERS::contains) ? LIST_OBJECTS : OTHER;
+                }
+                case "HEAD" -> parameters.isEmpty() ? HEAD_BUCKET : OTHER;
+                case "PUT" -> parameters.isEmpty() ? CREATE_BUCKET : OTHER;
+                case "DELETE" -> parameters.isEmpty() ? DELETE_BUCKET : OTHER;
+                case "POST" -> parameters.contains("delete") ? DELETE_OBJECTS : OTHER;
+                default -> OTHER;
+            };
+        }
+
+        if (parameters.contains("uploadId")) {
+            return switch (verb) {
+                case "PUT" -> parameters.contains("partNumber") ? (copy ? UPLOAD_PART_COPY : UPLOAD_PART) : OTHER;
+                case "POST" -> COMPLETE_MULTIPART_UPLOAD;
+                case "DELETE" -> ABORT_MULTIPART_UPLOAD;
+                case "GET" -> LIST_PARTS;
+                default -> OTHER;
+            };
+        }
+        if (verb.equals("POST") && parameters.contains("uploads")) {
+            return CREATE_MULTIPART_UPLOAD;
+        }
+        if (!parameters.stream().allMatch(name -> name.equals("versionId") || name.equals("partNumber") || name.startsWith("response-"))) {
+            // a sub-resource of the object, e.g. ?tagging
+            return OTHER;
+        }
+        return switch (verb) {
+            case "GET" -> GET_OBJECT;
+            case "HEAD" -> HEAD_OBJECT;
+            case "PUT" -> copy ? COPY_OBJECT : PUT_OBJECT;
+            case "DELETE" -> DELETE_OBJECT;
+            default -> OTHER;
+        };
+    }
+}
@@ -13,11 +13,14 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.security.SecurityResponse.Failure;
 import io.trino.aws.proxy.spi.security.SecurityResponse.Success;
 import io.trino.aws.proxy.spi.signing.SigningContext;
@@ -27,15 +30,18 @@ import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
 public class S3PresignController
 {
+    private static final List<String> PRESIGNED_HTTP_METHODS = ImmutableList.of("GET", "PUT", "POST", "DELETE");
+
     private final SigningController signingController;
     private final Duration presignUrlDuration;
     private final S3SecurityController s3SecurityController;
@@ -54,40 +60,43 @@ public class S3PresignController
     {
         Optional<Instant> signatureExpiry = Optional.of(Instant.now().plusMillis(presignUrlDuration.toMillis()));
 
-        return Stream.of("GET", "PUT", "POST", "DELETE")
-                .flatMap(httpMethod -> buildPresignedRemoteUrl(httpMethod, signingMetadata, identity, request, targetRequestTimestamp, remoteUri, signatureExpiry))
-                .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
-
-    private Stream<Map.Entry<String, URI>> buildPresignedRemoteUrl(String httpMethod, SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request,
-            Instant targetRequestTimestamp, URI remoteUri, Optional<Instant> signatureExpiry)
-    {
-        SigningContext signingContext = signingController.presignRequest(
-                signingMetadata,
-                request.requestAuthorization().region(),
-                targetRequestTimestamp,
-                signatureExpiry,
-                remoteUri,
-                request.queryParameters(),
-                httpMethod);
+        List<SigningContext> signingContexts = PRESIGNED_HTTP_METHODS.stream()
+                .map(httpMethod -> signingController.presignRequest(
+                        signingMetadata,
+                        request.requestAuthorization().region(),
+                        targetRequestTimestamp,
+                        signatureExpiry,
+                        remoteUri,
+                        request.queryParameters(),
+                        httpMethod))
+                .collect(toImmutableList());
 
         // everything is the same (for security check purposes) as the current request except the HTTP method and the authorization
-        ParsedS3Request checkRequest = new ParsedS3Request(
-                request.requestId(),
-                signingContext.signingAuthorization(),
-                request.requestDate(),
-                request.bucketName(),
-                request.keyInBucket(),
-                request.requestHeaders(),
-                request.queryParameters(),
-                httpMethod,
-                request.rawPath(),
-                request.rawQuery(),
-                request.requestContent());
+        List<ParsedS3Request> checkRequests = IntStream.range(0, PRESIGNED_HTTP_METHODS.size())
+                .mapToObj(index -> new ParsedS3Request(
+                        request.requestId(),
+                        signingContexts.get(index).signingAuthorization(),
+                        request.requestDate(),
+                        request.bucketName(),
+                        request.keyInBucket(),
+                        request.requestHeaders(),
+                        request.queryParameters(),
+                        PRESIGNED_HTTP_METHODS.get(index),
+                        request.rawPath(),
+                        request.rawQuery(),
+                        request.requestContent()))
+                .collect(toImmutableList());
+
+        // the methods are authorized together, so that security facades can batch their policy lookups
+        List<SecurityResponse> securityResponses = s3SecurityController.applyAll(checkRequests, identity);
 
-        return switch (s3SecurityController.apply(checkRequest, identity)) {
-            case Success _ -> Stream.of(Map.entry(httpMethod, signingContext.signingUri()));
-            case Failure _ -> Stream.empty();
-        };
+        ImmutableMap.Builder<String, URI> presignedUrls = ImmutableMap.builder();
+        for (int index = 0; index < PRESIGNED_HTTP_METHODS.size(); index++) {
+            switch (securityResponses.get(index)) {
+                case Success _ -> presignedUrls.put(PRESIGNED_HTTP_METHODS.get(index), signingContexts.get(index).signingUri());
+                case Failure _ -> {}
+            }
+        }
+        return presignedUrls.buildOrThrow();
     }
 }
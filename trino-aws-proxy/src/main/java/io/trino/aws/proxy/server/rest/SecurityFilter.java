@@ -35,6 +35,10 @@ import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.Optional;
 
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.HEADER_PARSING;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.SIGNATURE_VALIDATION;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.STREAM;
+import static io.trino.aws.proxy.spi.signing.SigningTrait.STREAM_CONTENT;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static java.util.Objects.requireNonNull;
 
@@ -46,12 +50,14 @@ public class SecurityFilter
     private final SigningController signingController;
     private final SigningServiceType signingServiceType;
     private final RequestLoggerController requestLoggerController;
+    private final RequestStats requestStats;
 
-    public SecurityFilter(SigningController signingController, SigningServiceType signingServiceType, RequestLoggerController requestLoggerController)
+    public SecurityFilter(SigningController signingController, SigningServiceType signingServiceType, RequestLoggerController requestLoggerController, RequestStats requestStats)
     {
         this.signingController = requireNonNull(signingController, "signingController is null");
         this.signingServiceType = requireNonNull(signingServiceType, "signingServiceType is null");
         this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
+        this.requestStats = requireNonNull(requestStats, "requestStats is null");
     }
 
     @SuppressWarnings("ThrowableNotThrown")
@@ -65,15 +71,26 @@ public class SecurityFilter
                 throw new WebApplicationException(INTERNAL_SERVER_ERROR);
             }
 
-            Request request = RequestBuilder.fromRequest(containerRequest);
+            RequestStatsSession requestStatsSession = requestStats.newSession(signingServiceType);
+            containerRequest.setProperty(RequestStatsSession.class.getName(), requestStatsSession);
+            // e.g. AWSGlue.GetTable, resources can set a more specific operation
+            Optional.ofNullable(containerRequest.getHeaderString("x-amz-target"))
+                    .map(target -> target.substring(target.lastIndexOf('.') + 1))
+                    .ifPresent(requestStatsSession::setOperation);
+
+            // the content of services that don't stream it is read while parsing
+            Request request = requestStatsSession.time(HEADER_PARSING, () -> RequestBuilder.fromRequest(containerRequest, signingServiceType));
             containerRequest.setProperty(Request.class.getName(), request);
+            if (!signingServiceType.hasTrait(STREAM_CONTENT)) {
+                request.requestContent().contentLengthLong().ifPresent(requestStatsSession::addBytesIn);
+            }
 
             RequestLoggingSession requestLoggingSession = requestLoggerController.newRequestSession(request, signingServiceType);
             containerRequest.setProperty(RequestLoggingSession.class.getName(), requestLoggingSession);
 
             SigningIdentity signingIdentity;
             try {
-                signingIdentity = signingController.validateAndParseAuthorization(request, signingServiceType);
+                signingIdentity = requestStatsSession.time(SIGNATURE_VALIDATION, () -> signingController.validateAndParseAuthorization(request, signingServiceType));
             }
             catch (Exception e) {
                 requestLoggingSession.logException(e);
@@ -100,21 +117,32 @@ public class SecurityFilter
             throws IOException
     {
         if ((requestContext.getRequest() instanceof ContainerRequest containerRequest) && (responseContext instanceof ContainerResponse containerResponse)) {
-            Optional.ofNullable(unwrap(containerRequest, RequestLoggingSession.class))
-                    .ifPresent(requestLoggingSession -> {
-                        OutputStream entityStream = (containerResponse.isCommitted() || !containerResponse.hasEntity()) ? null : responseContext.getEntityStream();
-                        if (entityStream != null) {
-                            responseContext.setEntityStream(closingStream(requestLoggingSession, entityStream));
-                        }
-                        else {
-                            requestLoggingSession.close();
-                        }
-                    });
+            RequestLoggingSession requestLoggingSession = unwrap(containerRequest, RequestLoggingSession.class);
+            RequestStatsSession requestStatsSession = unwrap(containerRequest, RequestStatsSession.class);
+            int status = responseContext.getStatus();
+            Closeable completion = () -> {
+                try (requestLoggingSession) {
+                    if (requestStatsSession != null) {
+                        requestStatsSession.complete(status);
+                    }
+                }
+            };
+
+            if ((requestLoggingSession != null) || (requestStatsSession != null)) {
+                OutputStream entityStream = (containerResponse.isCommitted() || !containerResponse.hasEntity()) ? null : responseContext.getEntityStream();
+                if (entityStream != null) {
+                    responseContext.setEntityStream(closingStream(completion, Optional.ofNullable(requestStatsSession), entityStream));
+                }
+                else {
+                    completion.close();
+                }
+            }
         }
     }
 
-    private static OutputStream closingStream(Closeable closeable, OutputStream delegate)
+    private static OutputStream closingStream(Closeable closeable, Optional<RequestStatsSession> requestStatsSession, OutputStream delegate)
     {
+        long startNanos = System.nanoTime();
         return new OutputStream()
         {
             @Override
@@ -122,13 +150,14 @@ public class SecurityFilter
                     throws IOException
             {
                 delegate.write(b);
+                requestStatsSession.ifPresent(session -> session.addBytesOut(1));
             }
 
             @Override
             public void write(byte[] b)
                     throws IOException
             {
-                delegate.write(b);
+                write(b, 0, b.length);
             }
 
             @Override
@@ -136,6 +165,7 @@ public class SecurityFilter
                     throws IOException
             {
                 delegate.write(b, off, len);
+                requestStatsSession.ifPresent(session -> session.addBytesOut(len));
             }
 
             @Override
@@ -149,6 +179,7 @@ public class SecurityFilter
             public void close()
                     throws IOException
             {
+                requestStatsSession.ifPresent(session -> session.record(STREAM, System.nanoTime() - startNanos));
                 try (closeable) {
                     delegate.close();
                 }
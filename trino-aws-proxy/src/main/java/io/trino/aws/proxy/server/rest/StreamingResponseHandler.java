@@ -19,17 +19,24 @@ import io.airlift.http.client.HeaderName;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.Response;
 import io.airlift.http.client.ResponseHandler;
+import io.trino.aws.proxy.server.cache.CachedMetadata;
+import io.trino.aws.proxy.server.cache.CachedRange;
+import io.trino.aws.proxy.server.rest.BandwidthShapingController.StreamShaper;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.core.StreamingOutput;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static jakarta.ws.rs.core.Response.Status.PARTIAL_CONTENT;
 import static java.util.Objects.requireNonNull;
 
 class StreamingResponseHandler
@@ -40,15 +47,23 @@ class StreamingResponseHandler
     private final AsyncResponse asyncResponse;
     private final Map<String, URI> presignedUrls;
     private final RequestLoggingSession requestLoggingSession;
+    private final RequestStatsSession requestStatsSession;
     private final AtomicBoolean hasBeenResumed = new AtomicBoolean(false);
     private final LimitStreamController limitStreamController;
+    private final StreamShaper streamShaper;
+    private final int streamBufferSize;
 
-    StreamingResponseHandler(AsyncResponse asyncResponse, Map<String, URI> presignedUrls, RequestLoggingSession requestLoggingSession, LimitStreamController limitStreamController)
+    StreamingResponseHandler(AsyncResponse asyncResponse, Map<String, URI> presignedUrls, RequestLoggingSession requestLoggingSession, RequestStatsSession requestStatsSession,
+            LimitStreamController limitStreamController, StreamShaper streamShaper, int streamBufferSize)
     {
         this.asyncResponse = requireNonNull(asyncResponse, "asyncResponse is null");
         this.presignedUrls = ImmutableMap.copyOf(presignedUrls);
         this.requestLoggingSession = requireNonNull(requestLoggingSession, "requestLoggingSession is null");
+        this.requestStatsSession = requireNonNull(requestStatsSession, "requestStatsSession is null");
         this.limitStreamController = requireNonNull(limitStreamController, "quotaStreamController is null");
+        this.streamShaper = requireNonNull(streamShaper, "streamShaper is null");
+        checkArgument(streamBufferSize > 0, "streamBufferSize must be positive");
+        this.streamBufferSize = streamBufferSize;
     }
 
     @Override
@@ -66,18 +81,20 @@ class StreamingResponseHandler
     public Void handle(Request request, Response response)
             throws RuntimeException
     {
-        StreamingOutput streamingOutput = output -> {
-            InputStream inputStream = response.getInputStream();
+        requestStatsSession.remoteResponseReceived();
 
+        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(response.getStatusCode());
+        if (hasResponseBody(response)) {
+            // This blocks the thread that resumes the AsyncResponse (a virtual thread, see TrinoS3ProxyClient) for the whole
+            // transfer: the HttpClient only offers the remote content as an InputStream. The copy uses blocking reads and writes,
+            // so the remote is only read as fast as the client accepts the content, with one buffer per transfer.
+            //
             // HttpClient/Jersey timeouts control behavior. The configured HttpClient idle timeout
             // controls whether the InputStream will time out. Jersey configuration controls
             // OutputStream and general request timeouts.
-            inputStream.transferTo(limitStreamController.wrap(output));
-            output.flush();
-        };
-
-        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(response.getStatusCode());
-        responseBuilder.entity(streamingOutput);
+            StreamingOutput streamingOutput = output -> transfer(response.getInputStream(), output, limitStreamController, streamShaper, streamBufferSize);
+            responseBuilder.entity(streamingOutput);
+        }
         response.getHeaders()
                 .keySet()
                 .stream()
@@ -96,6 +113,70 @@ class StreamingResponseHandler
         return null;
     }
 
+    void handle(CachedRange cachedRange)
+    {
+        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(PARTIAL_CONTENT);
+        StreamingOutput streamingOutput = output -> {
+            cachedRange.transferTo(streamShaper.shape(limitStreamController.wrap(output)));
+            output.flush();
+        };
+        responseBuilder.entity(streamingOutput);
+        cachedRange.headers().forEach(responseBuilder::header);
+
+        requestLoggingSession.logProperty("response.status", PARTIAL_CONTENT.getStatusCode());
+        requestLoggingSession.logProperty("response.headers", cachedRange.headers());
+        requestLoggingSession.logProperty("response.cached", true);
+
+        // this will block until StreamingOutput completes
+        resume(responseBuilder.build());
+    }
+
+    void handle(CachedMetadata cachedMetadata)
+    {
+        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(cachedMetadata.statusCode());
+        // like for remote HEAD responses, an entity is needed to keep the container from replacing the Content-Length
+        StreamingOutput streamingOutput = OutputStream::flush;
+        responseBuilder.entity(streamingOutput);
+        cachedMetadata.headers().forEach(responseBuilder::header);
+
+        requestLoggingSession.logProperty("response.status", cachedMetadata.statusCode());
+        requestLoggingSession.logProperty("response.headers", cachedMetadata.headers());
+        requestLoggingSession.logProperty("response.cached", true);
+
+        presignedUrls.forEach((method, uri) -> responseBuilder.header(PRESIGNED_URL_HEADER_BASE + method, uri.toString()));
+
+        resume(responseBuilder.build());
+    }
+
+    static void transfer(InputStream inputStream, OutputStream output, LimitStreamController limitStreamController, StreamShaper streamShaper, int bufferSize)
+            throws IOException
+    {
+        stream(inputStream, streamShaper.shape(limitStreamController.wrap(output)), new byte[bufferSize]);
+        output.flush();
+    }
+
+    static long stream(InputStream inputStream, OutputStream outputStream, byte[] buffer)
+            throws IOException
+    {
+        long transferred = 0;
+        int count;
+        while ((count = inputStream.read(buffer, 0, buffer.length)) >= 0) {
+            outputStream.write(buffer, 0, count);
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    private static boolean hasResponseBody(Response response)
+    {
+        // HEAD responses keep their entity: without one the container would replace the remote's Content-Length with 0
+        int statusCode = response.getStatusCode();
+        if ((statusCode == 204) || (statusCode == 304)) {
+            return false;
+        }
+        return !"0".equals(response.getHeader("Content-Length"));
+    }
+
     @SuppressWarnings("ThrowableNotThrown")
     private void resume(Object result)
     {
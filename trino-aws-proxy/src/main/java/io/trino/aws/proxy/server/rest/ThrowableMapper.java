@@ -66,9 +66,11 @@ public class ThrowableMapper
             }
         };
 
+        String errorCode = (throwable instanceof S3ErrorException s3ErrorException) ? s3ErrorException.errorCode() : status.reason();
+
         try {
             ErrorResponse response = new ErrorResponse(
-                                status.reason(),
+                                errorCode,
                                 Optional.ofNullable(throwable.getMessage()),
                                 containerRequest.getRequestUri().getPath(),
                                 requestId);
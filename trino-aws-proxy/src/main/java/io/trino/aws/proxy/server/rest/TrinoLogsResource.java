@@ -13,15 +13,18 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.Range;
 import com.google.inject.Inject;
 import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
 import io.trino.aws.proxy.server.rest.ResourceSecurity.Logs;
-import io.trino.aws.proxy.server.rest.TrinoLogsResource.GetLogEventsResponse.Event;
 import io.trino.aws.proxy.spi.rest.Request;
 import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
@@ -30,15 +33,14 @@ import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Predicate;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.trino.aws.proxy.server.rest.RequestLoggerController.eventIdPrefix;
 import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
 import static io.trino.aws.proxy.spi.signing.SigningServiceType.STS;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
@@ -49,21 +51,51 @@ public class TrinoLogsResource
 {
     private static final Set<String> DEFAULT_STREAMS = ImmutableSet.of(S3.serviceName(), STS.serviceName());
 
-    private enum TokenType
+    private static final CharMatcher EVENT_ID_CHARACTERS = CharMatcher.inRange('0', '9').or(CharMatcher.inRange('a', 'f')).or(CharMatcher.is('.'));
+
+    /**
+     * Tokens are the event id of the last event that has been returned in the direction of the token, an
+     * empty event id is the head or the tail of the log. Event ids of evicted entries stay valid positions.
+     */
+    private record Token(boolean forwards, String eventId)
     {
-        BACKWARDS("b/"),
-        FORWARDS("f/");
+        private Token
+        {
+            requireNonNull(eventId, "eventId is null");
+        }
 
-        private final String prefix;
+        private static Token parse(String token)
+        {
+            boolean forwards;
+            if (token.startsWith("f/")) {
+                forwards = true;
+            }
+            else if (token.startsWith("b/")) {
+                forwards = false;
+            }
+            else {
+                throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
+            }
+            String eventId = token.substring(2);
+            if (!EVENT_ID_CHARACTERS.matchesAllOf(eventId)) {
+                throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
+            }
+            return new Token(forwards, eventId);
+        }
 
-        private Optional<String> atIndex(int index)
+        // the events after the token in its direction
+        private Range<String> range()
         {
-            return Optional.of(prefix + index);
+            if (eventId.isEmpty()) {
+                return Range.all();
+            }
+            return forwards ? Range.greaterThan(eventId) : Range.lessThan(eventId);
         }
 
-        TokenType(String prefix)
+        @Override
+        public String toString()
         {
-            this.prefix = requireNonNull(prefix, "prefix is null");
+            return (forwards ? "f/" : "b/") + eventId;
         }
     }
 
@@ -96,24 +128,13 @@ public class TrinoLogsResource
         }
     }
 
-    // see https://docs.aws.amazon.com/AmazonCloudWatchLogs/latest/APIReference/API_GetLogEvents.html
-    public record GetLogEventsResponse(List<Event> events, Optional<String> nextBackwardToken, Optional<String> nextForwardToken)
+    public record Event(String logStreamName, String eventId, long ingestionTime, long timestamp, String message)
     {
-        public GetLogEventsResponse
-        {
-            events = ImmutableList.copyOf(events);
-            requireNonNull(nextBackwardToken, "nextBackwardToken is null");
-            requireNonNull(nextForwardToken, "nextForwardToken is null");
-        }
-
-        public record Event(String logStreamName, String eventId, long ingestionTime, long timestamp, String message)
+        public Event
         {
-            public Event
-            {
-                requireNonNull(logStreamName, "logStreamName is null");
-                requireNonNull(eventId, "eventId is null");
-                requireNonNull(message, "message is null");
-            }
+            requireNonNull(logStreamName, "logStreamName is null");
+            requireNonNull(eventId, "eventId is null");
+            requireNonNull(message, "message is null");
         }
     }
 
@@ -150,98 +171,70 @@ public class TrinoLogsResource
 
         // TODO - support filter patterns
 
+        Optional<Token> token = getLogEvents.nextToken().map(Token::parse);
         boolean startFromHead = getLogEvents.startFromHead.orElse(false);
-        Predicate<SaveEntry> predicate = entry -> startTimePasses(getLogEvents, entry) &&
-                endTimePasses(getLogEvents, entry) &&
-                logStreamNamesPasses(entry, getLogEvents);
+        // The AWS spec mandates startFromHead must be true if using a forward token
+        if (!startFromHead && token.map(Token::forwards).orElse(false)) {
+            throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
+        }
+        boolean forwards = token.map(Token::forwards).orElse(startFromHead);
         int limit = getLogEvents.limit.orElse(Integer.MAX_VALUE);
+        if (limit <= 0) {
+            throw new WebApplicationException("Invalid limit", BAD_REQUEST);
+        }
 
-        List<SaveEntry> filteredEntries = loggerController.savedEntries(startFromHead, predicate);
+        // event ids start with the timestamp of the request so the time range is a range of event ids
+        Range<String> eventIdRange = token.map(Token::range).orElseGet(Range::all);
+        if (getLogEvents.startTime.isPresent()) {
+            eventIdRange = intersection(eventIdRange, Range.atLeast(eventIdPrefix(getLogEvents.startTime.get())));
+        }
+        if (getLogEvents.endTime.isPresent()) {
+            eventIdRange = intersection(eventIdRange, Range.lessThan(eventIdPrefix(getLogEvents.endTime.get())));
+        }
 
-        record StartIndex(TokenType tokenType, int index) {}
+        Set<String> logStreamNames = getLogEvents.logStreamName.<Set<String>>map(ImmutableSet::of).orElseGet(() -> getLogEvents.logStreamNames.orElse(ImmutableSet.of()));
+        PeekingIterator<SaveEntry> entries = Iterators.peekingIterator(loggerController.indexedEntries(logStreamNames, eventIdRange, forwards));
+
+        StreamingOutput streamingOutput = output -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("events");
+                Optional<String> firstEventId = Optional.empty();
+                Optional<String> lastEventId = Optional.empty();
+                for (int count = 0; (count < limit) && entries.hasNext(); count++) {
+                    SaveEntry entry = entries.next();
+                    generator.writeObject(new Event("trino", entry.entryId(), entry.timestamp().toEpochMilli(), entry.timestamp().toEpochMilli(), format(entry)));
+                    if (firstEventId.isEmpty()) {
+                        firstEventId = Optional.of(entry.entryId());
+                    }
+                    lastEventId = Optional.of(entry.entryId());
+                }
+                generator.writeEndArray();
 
-        // next token is merely an index
-        StartIndex startIndex = getLogEvents.nextToken().map(nextToken -> {
-            try {
-                TokenType tokenType;
-                if (nextToken.startsWith(TokenType.FORWARDS.prefix)) {
-                    tokenType = TokenType.FORWARDS;
+                Token nextToken;
+                if (entries.hasNext()) {
+                    nextToken = new Token(forwards, lastEventId.orElseThrow());
                 }
-                else if (nextToken.startsWith(TokenType.BACKWARDS.prefix)) {
-                    tokenType = TokenType.BACKWARDS;
+                else if (token.isPresent()) {
+                    // AWS considers pagination to be done when the next token equals the token provided
+                    nextToken = token.get();
                 }
                 else {
-                    throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
+                    nextToken = new Token(forwards, lastEventId.orElse(""));
                 }
-                return new StartIndex(tokenType, Integer.parseInt(nextToken.substring(2)));
-            }
-            catch (NumberFormatException _) {
-                throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
+                Token reverseToken = new Token(!forwards, firstEventId.orElse(token.map(Token::eventId).orElse("")));
+                generator.writeStringField("nextForwardToken", (forwards ? nextToken : reverseToken).toString());
+                generator.writeStringField("nextBackwardToken", (forwards ? reverseToken : nextToken).toString());
+                generator.writeEndObject();
             }
-        }).orElseGet(() -> startFromHead ? new StartIndex(TokenType.FORWARDS, 0) : new StartIndex(TokenType.BACKWARDS, Math.max(filteredEntries.size() - 1, 0)));
-
-        // Track the number of items we need to skip depending on the token we received
-        // and the order of iteration
-        int positionInFilteredStream;
-        if (startFromHead) {
-            positionInFilteredStream = startIndex.index;
-        }
-        else {
-            // The AWS spec mandates startFromHead must be true if using a forward token
-            if (startIndex.tokenType == TokenType.FORWARDS) {
-                throw new WebApplicationException("Invalid startIndex", BAD_REQUEST);
-            }
-            // If traversing backwards, the index in the reversed stream needs to be computed based on its size
-            positionInFilteredStream = Math.max(filteredEntries.size() - startIndex.index - 1, 0);
-        }
-        List<Event> events = filteredEntries.stream()
-                .skip(positionInFilteredStream)
-                .limit(limit)
-                .map(entry -> new Event("trino", entry.entryId(), entry.timestamp().toEpochMilli(), entry.timestamp().toEpochMilli(), format(entry)))
-                .collect(toImmutableList());
-
-        Optional<String> nextBackwardToken;
-        Optional<String> nextForwardToken;
-        if (startFromHead) {
-            nextForwardToken = ((startIndex.index + limit) < filteredEntries.size()) ? TokenType.FORWARDS.atIndex(startIndex.index + limit) : TokenType.FORWARDS.atIndex(startIndex.index);
-            nextBackwardToken = (startIndex.index - 1 >= 0) ? TokenType.BACKWARDS.atIndex(startIndex.index - 1) : TokenType.BACKWARDS.atIndex(startIndex.index);
-        }
-        else {
-            nextBackwardToken = ((startIndex.index - limit) >= 0) ? TokenType.BACKWARDS.atIndex(startIndex.index - limit) : TokenType.BACKWARDS.atIndex(startIndex.index);
-            nextForwardToken = (startIndex.index + 1) < filteredEntries.size() ? TokenType.FORWARDS.atIndex(startIndex.index + 1) : TokenType.FORWARDS.atIndex(startIndex.index);
-        }
-        GetLogEventsResponse response = new GetLogEventsResponse(events, nextBackwardToken, nextForwardToken);
-
-        return Response.ok(response).build();
-    }
-
-    private static boolean logStreamNamesPasses(SaveEntry entry, GetLogEventsRequest getLogEvents)
-    {
-        return getLogEvents.logStreamName.map(logStreamName -> logStreamNamePasses(logStreamName, entry))
-                .orElseGet(() -> getLogEvents.logStreamNames
-                        .map(logStreamNames -> logStreamNames.stream().anyMatch(logStreamName -> logStreamNamePasses(logStreamName, entry)))
-                        .orElse(true));
-    }
-
-    private static boolean logStreamNamePasses(String logStreamName, SaveEntry entry)
-    {
-        return entry.serviceType().serviceName().equalsIgnoreCase(logStreamName);
-    }
+        };
 
-    private static boolean startTimePasses(GetLogEventsRequest getLogEvents, SaveEntry entry)
-    {
-        long timestamp = entry.timestamp().toEpochMilli();
-        return getLogEvents.startTime
-                .map(startTime -> startTime <= timestamp)
-                .orElse(true);
+        return Response.ok(streamingOutput, MediaType.APPLICATION_JSON_TYPE).build();
     }
 
-    private static boolean endTimePasses(GetLogEventsRequest getLogEvents, SaveEntry entry)
+    private static Range<String> intersection(Range<String> range, Range<String> other)
     {
-        long timestamp = entry.timestamp().toEpochMilli();
-        return getLogEvents.endTime
-                .map(endTime -> endTime > timestamp)
-                .orElse(true);
+        return range.isConnected(other) ? range.intersection(other) : Range.closedOpen("", "");
     }
 
     private String format(SaveEntry entry)
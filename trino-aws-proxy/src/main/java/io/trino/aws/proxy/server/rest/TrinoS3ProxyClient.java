@@ -16,19 +16,36 @@ package io.trino.aws.proxy.server.rest;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
+import io.airlift.http.client.BodyGenerator;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.Request;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.StreamingBodyGenerator;
+import io.airlift.http.client.StreamingResponse;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
+import io.trino.aws.proxy.server.cache.CachedMetadata;
+import io.trino.aws.proxy.server.cache.CachedRange;
+import io.trino.aws.proxy.server.cache.MetadataCache;
+import io.trino.aws.proxy.server.cache.RangeCache;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult.NotServed;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult.RemoteResponse;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult.Served;
 import io.trino.aws.proxy.server.remote.RemoteS3ConnectionController;
+import io.trino.aws.proxy.server.rest.AdmissionController.Admission;
+import io.trino.aws.proxy.server.rest.BandwidthShapingController.StreamShaper;
+import io.trino.aws.proxy.server.rest.RequestCoalescer.CoalescingKey;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
 import io.trino.aws.proxy.spi.rest.S3RequestRewriter;
 import io.trino.aws.proxy.spi.rest.S3RequestRewriter.S3RewriteResult;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.security.SecurityResponse.Failure;
+import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
 import io.trino.aws.proxy.spi.signing.SigningContext;
 import io.trino.aws.proxy.spi.signing.SigningController;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
@@ -42,7 +59,9 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
 import software.amazon.awssdk.utils.http.SdkHttpUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.net.URI;
@@ -52,9 +71,15 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
-import static io.airlift.http.client.StreamingBodyGenerator.streamingBodyGenerator;
+import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
+import static io.trino.aws.proxy.server.rest.RequestCoalescer.coalescingKey;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.REMOTE_CONNECTION;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.REWRITE;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.SECURITY_CHECK;
+import static java.lang.Math.toIntExact;
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.ElementType.PARAMETER;
@@ -72,10 +97,18 @@ public class TrinoS3ProxyClient
     private final S3SecurityController s3SecurityController;
     private final S3PresignController s3PresignController;
     private final LimitStreamController limitStreamController;
+    private final BandwidthShapingController bandwidthShapingController;
     private final S3RequestRewriter s3RequestRewriter;
     private final RemoteS3ConnectionController remoteS3ConnectionController;
+    private final AdmissionController admissionController;
+    private final HedgingController hedgingController;
+    private final RetryController retryController;
+    private final RangeCache rangeCache;
+    private final MetadataCache metadataCache;
+    private final RequestCoalescer requestCoalescer;
     private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
     private final boolean generatePresignedUrlsOnHead;
+    private final int responseStreamBufferSize;
 
     @Retention(RUNTIME)
     @Target({FIELD, PARAMETER, METHOD})
@@ -92,18 +125,33 @@ public class TrinoS3ProxyClient
             TrinoAwsProxyConfig trinoAwsProxyConfig,
             S3PresignController s3PresignController,
             LimitStreamController limitStreamController,
+            BandwidthShapingController bandwidthShapingController,
             S3RequestRewriter s3RequestRewriter,
-            RemoteS3ConnectionController remoteS3ConnectionController)
+            RemoteS3ConnectionController remoteS3ConnectionController,
+            AdmissionController admissionController,
+            HedgingController hedgingController,
+            RetryController retryController,
+            RangeCache rangeCache,
+            MetadataCache metadataCache,
+            RequestCoalescer requestCoalescer)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.signingController = requireNonNull(signingController, "signingController is null");
         this.s3SecurityController = requireNonNull(s3SecurityController, "securityController is null");
         this.s3PresignController = requireNonNull(s3PresignController, "presignController is null");
         this.limitStreamController = requireNonNull(limitStreamController, "quotaStreamController is null");
+        this.bandwidthShapingController = requireNonNull(bandwidthShapingController, "bandwidthShapingController is null");
         this.s3RequestRewriter = requireNonNull(s3RequestRewriter, "s3RequestRewriter is null");
         this.remoteS3ConnectionController = requireNonNull(remoteS3ConnectionController, "remoteS3ConnectionController is null");
+        this.admissionController = requireNonNull(admissionController, "admissionController is null");
+        this.hedgingController = requireNonNull(hedgingController, "hedgingController is null");
+        this.retryController = requireNonNull(retryController, "retryController is null");
+        this.rangeCache = requireNonNull(rangeCache, "rangeCache is null");
+        this.metadataCache = requireNonNull(metadataCache, "metadataCache is null");
+        this.requestCoalescer = requireNonNull(requestCoalescer, "requestCoalescer is null");
 
         generatePresignedUrlsOnHead = trinoAwsProxyConfig.isGeneratePresignedUrlsOnHead();
+        responseStreamBufferSize = toIntExact(trinoAwsProxyConfig.getResponseStreamBufferSize().toBytes());
     }
 
     @PreDestroy
@@ -115,9 +163,9 @@ public class TrinoS3ProxyClient
     }
 
     public void proxyRequest(Optional<Identity> identity, SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse,
-            RequestLoggingSession requestLoggingSession)
+            RequestLoggingSession requestLoggingSession, RequestStatsSession requestStatsSession)
     {
-        SecurityResponse securityResponse = s3SecurityController.apply(request, identity);
+        SecurityResponse securityResponse = requestStatsSession.time(SECURITY_CHECK, () -> s3SecurityController.apply(request, identity));
         if (securityResponse instanceof Failure(var error)) {
             log.debug("SecurityController check failed. AccessKey: %s, Request: %s, SecurityResponse: %s", signingMetadata.credential().accessKey(), request, securityResponse);
             requestLoggingSession.logError("request.security.fail.credentials", signingMetadata.credential());
@@ -127,100 +175,315 @@ public class TrinoS3ProxyClient
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
 
-        Optional<S3RewriteResult> rewriteResult = s3RequestRewriter.rewrite(identity, signingMetadata, request);
+        Optional<S3RewriteResult> rewriteResult = requestStatsSession.time(REWRITE, () -> s3RequestRewriter.rewrite(identity, signingMetadata, request));
+        // shaped by the emulated credential, the remote credential may be shared by many keys
+        StreamShaper streamShaper = bandwidthShapingController.shaper(identity, signingMetadata);
         String targetBucket = rewriteResult.map(S3RewriteResult::finalRequestBucket).orElse(request.bucketName());
         String targetKey = rewriteResult
                 .map(S3RewriteResult::finalRequestKey)
                 .map(SdkHttpUtils::urlEncodeIgnoreSlashes)
                 .orElse(request.rawPath());
 
-        RemoteRequestWithPresignedURIs remoteRequest = remoteS3ConnectionController.withRemoteConnection(signingMetadata, identity, request, (remoteCredential, remoteS3Facade) -> {
+        RemoteS3Request remoteRequest = requestStatsSession.time(REMOTE_CONNECTION, () -> remoteS3ConnectionController.withRemoteConnection(signingMetadata, identity, request, (remoteCredential, remoteS3Facade) -> {
             URI remoteUri = remoteS3Facade.buildEndpoint(uriBuilder(request.queryParameters()), targetKey, targetBucket, request.requestAuthorization().region());
 
-            Request.Builder remoteRequestBuilder = new Request.Builder()
-                    .setMethod(request.httpVerb())
-                    .setUri(remoteUri)
-                    .setFollowRedirects(true);
-
             if (remoteUri.getHost() == null) {
                 log.debug("RemoteURI missing host. AccessKey: %s, Request: %s", signingMetadata.credential().accessKey(), request);
                 throw new WebApplicationException(Response.Status.BAD_REQUEST);
             }
 
-            ImmutableMultiMap.Builder remoteRequestHeadersBuilder = ImmutableMultiMap.builder(false);
-            Instant targetRequestTimestamp = Instant.now();
-            request.requestHeaders().passthroughHeaders().forEach(remoteRequestHeadersBuilder::addAll);
-            remoteRequestHeadersBuilder.putOrReplaceSingle("Host", buildRemoteHost(remoteUri));
-
-            // Use now for the remote request
-            remoteRequestHeadersBuilder.putOrReplaceSingle("X-Amz-Date", AwsTimestamp.toRequestFormat(targetRequestTimestamp));
-
-            request.requestContent().contentLength().ifPresent(length -> remoteRequestHeadersBuilder.putOrReplaceSingle("content-length", Integer.toString(length)));
-            // All SigV4 requests require an x-amz-content-sha256
-            remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-content-sha256", "UNSIGNED-PAYLOAD");
-
             SigningMetadata remoteSigningMetadata = signingMetadata.withCredential(remoteCredential);
 
             Map<String, URI> presignedUrls;
             if (generatePresignedUrlsOnHead && request.httpVerb().equalsIgnoreCase("HEAD")) {
-                presignedUrls = s3PresignController.buildPresignedRemoteUrls(identity, remoteSigningMetadata, request, targetRequestTimestamp, remoteUri);
+                presignedUrls = s3PresignController.buildPresignedRemoteUrls(identity, remoteSigningMetadata, request, Instant.now(), remoteUri);
             }
             else {
                 presignedUrls = ImmutableMap.of();
             }
 
-            remoteCredential
-                    .session()
-                    .ifPresent(sessionToken -> remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-security-token", sessionToken));
-
-            contentInputStream(request.requestContent(), remoteSigningMetadata).ifPresent(inputStream -> remoteRequestBuilder.setBodyGenerator(streamingBodyGenerator(inputStream)));
-
-            // set the new signed request auth header
-            MultiMap remoteRequestHeaders = remoteRequestHeadersBuilder.build();
-            String signature = signingController.signRequest(
-                    remoteSigningMetadata,
-                    request.requestAuthorization().region(),
-                    targetRequestTimestamp,
-                    Optional.empty(),
-                    remoteUri,
-                    remoteRequestHeaders,
-                    request.queryParameters(),
-                    request.httpVerb()).signingAuthorization().authorization();
-
-            // remoteRequestHeaders now has correct values, copy to the remote request
-            remoteRequestHeaders.forEachEntry(remoteRequestBuilder::addHeader);
-            remoteRequestBuilder.addHeader("Authorization", signature);
-
-            return new RemoteRequestWithPresignedURIs(remoteRequestBuilder.build(), presignedUrls);
-        }).orElseThrow(() -> {
+            return new RemoteS3Request(request, remoteUri, remoteSigningMetadata, presignedUrls, contentInputStream(request.requestContent(), remoteSigningMetadata, streamShaper, requestStatsSession));
+        })).orElseThrow(() -> {
             requestLoggingSession.logError("request.remote.fail.resolution", "Failed to resolve remote");
             return new WebApplicationException(Response.Status.NOT_FOUND);
         });
 
-        executorService.submit(() -> {
-            StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, remoteRequest.presignedUrls(), requestLoggingSession, limitStreamController);
+        // the admission is held until the response has been streamed to the client
+        Admission admission = admissionController.reserve(identity, signingMetadata);
+        try {
+            executorService.submit(() -> {
+                StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, remoteRequest.presignedUrls(), requestLoggingSession, requestStatsSession,
+                        limitStreamController, streamShaper, responseStreamBufferSize);
+                try (admission) {
+                    admission.awaitAdmission();
+                    requestStatsSession.remoteRequestStarted();
+                    executeRemoteRequest(remoteRequest, responseHandler);
+                }
+                catch (Throwable e) {
+                    // TODO: if responseHandler is null this will throw an NPE inside a catch clause, so the request doesn't terminate properly; fix; also we should have a timeout
+                    //  for request processing
+                    responseHandler.handleException(new Request.Builder().setMethod(request.httpVerb()).setUri(remoteRequest.remoteUri()).build(), new RuntimeException(e));
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // the task never runs, so neither closes the admission nor resumes the response
+            admission.close();
+            throw S3ErrorException.slowDown("The proxy is shutting down");
+        }
+    }
+
+    private void executeRemoteRequest(RemoteS3Request remoteRequest, StreamingResponseHandler responseHandler)
+            throws IOException
+    {
+        ParsedS3Request request = remoteRequest.request();
+        if (rangeCache.isCacheable(request)) {
+            // the request has already been authorized by the S3SecurityController
+            ReadResult readResult = rangeCache.read(
+                    remoteRequest.remoteSigningMetadata().credential().accessKey(),
+                    remoteRequest.remoteUri(),
+                    request.requestHeaders().passthroughHeaders().getFirst("range").orElseThrow(),
+                    (range, ifMatch) -> httpClient.executeStreaming(signedRemoteRequest(remoteRequest, Optional.empty(), rangeHeaders(range, ifMatch))));
+            switch (readResult) {
+                case Served(CachedRange cachedRange) -> {
+                    try (cachedRange) {
+                        responseHandler.handle(cachedRange);
+                    }
+                    return;
+                }
+                case RemoteResponse(StreamingResponse response) -> {
+                    try (response) {
+                        responseHandler.handle(new Request.Builder().setMethod(request.httpVerb()).setUri(remoteRequest.remoteUri()).build(), response);
+                    }
+                    return;
+                }
+                case NotServed _ -> {}
+            }
+        }
+
+        if (metadataCache.isCacheable(request)) {
+            // presigned URLs have already been generated for this request, only the remote call is skipped
+            String remoteAccessKey = remoteRequest.remoteSigningMetadata().credential().accessKey();
+            Optional<CachedMetadata> cachedMetadata = metadataCache.get(remoteAccessKey, remoteRequest.remoteUri());
+            if (cachedMetadata.isPresent()) {
+                responseHandler.handle(cachedMetadata.get());
+                return;
+            }
+            executeReadRemoteCall(remoteRequest, metadataCache.caching(remoteAccessKey, remoteRequest.remoteUri(), responseHandler));
+            return;
+        }
+
+        if (request.httpVerb().equalsIgnoreCase("GET") || request.httpVerb().equalsIgnoreCase("HEAD")) {
+            executeReadRemoteCall(remoteRequest, responseHandler);
+            return;
+        }
+        // reads that follow the write must not be served stale entries: they are dropped before the write is sent and
+        // again once the remote has responded, before the response is passed to the client
+        invalidateCaches(remoteRequest);
+        executeRemoteCall(remoteRequest, invalidatingCaches(remoteRequest, responseHandler));
+    }
+
+    private ResponseHandler<Void, RuntimeException> invalidatingCaches(RemoteS3Request remoteRequest, ResponseHandler<Void, RuntimeException> delegate)
+    {
+        return new ResponseHandler<>()
+        {
+            @Override
+            public Void handleException(Request request, Exception exception)
+            {
+                // the write may have been applied even if its response was lost
+                invalidateCaches(remoteRequest);
+                return delegate.handleException(request, exception);
+            }
+
+            @Override
+            public Void handle(Request request, io.airlift.http.client.Response response)
+            {
+                invalidateCaches(remoteRequest);
+                return delegate.handle(request, response);
+            }
+        };
+    }
+
+    private void invalidateCaches(RemoteS3Request remoteRequest)
+    {
+        URI remoteUri = remoteRequest.remoteUri();
+        if (remoteRequest.request().keyInBucket().isEmpty()) {
+            // bucket requests such as DeleteObjects modify objects of the bucket
+            rangeCache.invalidateBucket(remoteUri);
+            metadataCache.invalidateBucket(remoteUri);
+        }
+        else {
+            rangeCache.invalidate(remoteUri);
+            metadataCache.invalidate(remoteUri);
+        }
+    }
+
+    private void executeReadRemoteCall(RemoteS3Request remoteRequest, ResponseHandler<Void, RuntimeException> responseHandler)
+            throws IOException
+    {
+        if (!requestCoalescer.isCoalesceable(remoteRequest.request())) {
+            executeRemoteCall(remoteRequest, responseHandler);
+            return;
+        }
+
+        CoalescingKey key = coalescingKey(remoteRequest.remoteSigningMetadata().credential().accessKey(), remoteRequest.request(), remoteRequest.remoteUri());
+        requestCoalescer.execute(key, handler -> {
             try {
-                httpClient.execute(remoteRequest.remoteRequest(), responseHandler);
+                executeRemoteCall(remoteRequest, handler);
+                return null;
             }
-            catch (Throwable e) {
-                // TODO: if responseHandler is null this will throw an NPE inside a catch clause, so the request doesn't terminate properly; fix; also we should have a timeout
-                //  for request processing
-                responseHandler.handleException(remoteRequest.remoteRequest(), new RuntimeException(e));
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        });
+        }, responseHandler);
+    }
+
+    private void executeRemoteCall(RemoteS3Request remoteRequest, ResponseHandler<Void, RuntimeException> responseHandler)
+            throws IOException
+    {
+        if (!retryController.isRetryable(remoteRequest.request())) {
+            remoteCall(remoteRequest, remoteRequest.content().map(StreamingBodyGenerator::streamingBodyGenerator), ImmutableMap.of()).execute(responseHandler);
+            return;
+        }
+
+        // retried requests replay their body from memory
+        Optional<BodyGenerator> body = Optional.empty();
+        Map<String, String> checksumHeaders = ImmutableMap.of();
+        if (remoteRequest.content().isPresent()) {
+            byte[] content;
+            try (InputStream inputStream = remoteRequest.content().get()) {
+                content = inputStream.readAllBytes();
+            }
+            body = Optional.of(createStaticBodyGenerator(content));
+            // the trailing checksum has been validated while reading the content. As the content is known it is sent in a header.
+            checksumHeaders = remoteRequest.request().requestContent().trailingChecksum()
+                    .map(algorithm -> {
+                        PayloadChecksum checksum = PayloadChecksum.create(algorithm);
+                        checksum.update(content, 0, content.length);
+                        return ImmutableMap.of(algorithm.headerName(), checksum.base64());
+                    })
+                    .orElse(ImmutableMap.of());
+        }
+        retryController.execute(remoteRequest.remoteUri(), remoteCall(remoteRequest, body, checksumHeaders), responseHandler);
+    }
+
+    private RemoteCall<Void, RuntimeException> remoteCall(RemoteS3Request remoteRequest, Optional<BodyGenerator> body, Map<String, String> additionalHeaders)
+    {
+        // every call, and every hedged request, is signed with a fresh timestamp
+        return responseHandler -> {
+            Request signedRequest = signedRemoteRequest(remoteRequest, body, additionalHeaders);
+            if (hedgingController.isHedgeable(remoteRequest.request())) {
+                return hedgingController.execute(signedRequest, () -> signedRemoteRequest(remoteRequest, body, additionalHeaders), responseHandler);
+            }
+            return httpClient.execute(signedRequest, responseHandler);
+        };
     }
 
-    private Optional<InputStream> contentInputStream(RequestContent requestContent, SigningMetadata signingMetadata)
+    private Request signedRemoteRequest(RemoteS3Request remoteRequest, Optional<BodyGenerator> body, Map<String, String> additionalHeaders)
+    {
+        ParsedS3Request request = remoteRequest.request();
+        URI remoteUri = remoteRequest.remoteUri();
+        SigningMetadata remoteSigningMetadata = remoteRequest.remoteSigningMetadata();
+
+        Request.Builder remoteRequestBuilder = new Request.Builder()
+                .setMethod(request.httpVerb())
+                .setUri(remoteUri)
+                .setFollowRedirects(true);
+
+        ImmutableMultiMap.Builder remoteRequestHeadersBuilder = ImmutableMultiMap.builder(false);
+        Instant targetRequestTimestamp = Instant.now();
+        request.requestHeaders().passthroughHeaders().forEach(remoteRequestHeadersBuilder::addAll);
+        additionalHeaders.forEach(remoteRequestHeadersBuilder::putOrReplaceSingle);
+        remoteRequestHeadersBuilder.putOrReplaceSingle("Host", buildRemoteHost(remoteUri));
+
+        // Use now for the remote request
+        remoteRequestHeadersBuilder.putOrReplaceSingle("X-Amz-Date", AwsTimestamp.toRequestFormat(targetRequestTimestamp));
+
+        // content of unknown length is streamed as aws-chunked content (with chunked transfer encoding) where each chunk is signed
+        // with the remote credential. This way neither the client nor the proxy needs to know the length up front. Streamed content
+        // with a trailing checksum is forwarded as unsigned aws-chunked content with the same trailer instead.
+        Optional<Long> contentLength = request.requestContent().contentLengthLong();
+        Optional<ChecksumAlgorithm> trailingChecksum = request.requestContent().trailingChecksum();
+        Optional<InputStream> awsChunkedContent = body
+                .filter(_ -> contentLength.isEmpty() || trailingChecksum.isPresent())
+                .filter(StreamingBodyGenerator.class::isInstance)
+                .map(bodyGenerator -> ((StreamingBodyGenerator) bodyGenerator).source());
+
+        if (awsChunkedContent.isPresent()) {
+            String contentEncoding = request.requestHeaders().passthroughHeaders().getFirst("content-encoding")
+                    .map(encoding -> "aws-chunked," + encoding)
+                    .orElse("aws-chunked");
+            remoteRequestHeadersBuilder.putOrReplaceSingle("content-encoding", contentEncoding);
+            if (trailingChecksum.isPresent()) {
+                remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-content-sha256", "STREAMING-UNSIGNED-PAYLOAD-TRAILER");
+                remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-trailer", trailingChecksum.get().headerName());
+                contentLength.ifPresent(length -> {
+                    remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-decoded-content-length", Long.toString(length));
+                    long encodedLength = AwsChunkedEncodingInputStream.encodedContentLength(length, trailingChecksum.get(), AwsChunkedEncodingInputStream.DEFAULT_CHUNK_SIZE);
+                    remoteRequestHeadersBuilder.putOrReplaceSingle("content-length", Long.toString(encodedLength));
+                });
+            }
+            else {
+                remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-content-sha256", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD");
+            }
+        }
+        else {
+            contentLength.ifPresent(length -> remoteRequestHeadersBuilder.putOrReplaceSingle("content-length", Long.toString(length)));
+            // All SigV4 requests require an x-amz-content-sha256
+            remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-content-sha256", "UNSIGNED-PAYLOAD");
+        }
+
+        remoteSigningMetadata.credential()
+                .session()
+                .ifPresent(sessionToken -> remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-security-token", sessionToken));
+
+        // set the new signed request auth header
+        MultiMap remoteRequestHeaders = remoteRequestHeadersBuilder.build();
+        SigningContext signingContext = signingController.signRequest(
+                remoteSigningMetadata,
+                request.requestAuthorization().region(),
+                targetRequestTimestamp,
+                Optional.empty(),
+                remoteUri,
+                remoteRequestHeaders,
+                request.queryParameters(),
+                request.httpVerb());
+        String signature = signingContext.signingAuthorization().authorization();
+
+        // the chunk signatures are seeded with the signature of the request
+        awsChunkedContent
+                .map(content -> trailingChecksum
+                        .map(algorithm -> new AwsChunkedEncodingInputStream(content, algorithm))
+                        .orElseGet(() -> new AwsChunkedEncodingInputStream(content, signingContext.chunkSigningSession())))
+                .map(content -> (BodyGenerator) StreamingBodyGenerator.streamingBodyGenerator(content))
+                .or(() -> body)
+                .ifPresent(remoteRequestBuilder::setBodyGenerator);
+
+        // remoteRequestHeaders now has correct values, copy to the remote request
+        remoteRequestHeaders.forEachEntry(remoteRequestBuilder::addHeader);
+        remoteRequestBuilder.addHeader("Authorization", signature);
+
+        return remoteRequestBuilder.build();
+    }
+
+    private Optional<InputStream> contentInputStream(RequestContent requestContent, SigningMetadata signingMetadata, StreamShaper streamShaper, RequestStatsSession requestStatsSession)
     {
         return switch (requestContent.contentType()) {
-            case AWS_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> requestContent.inputStream()
-                    .map(inputStream -> new AwsChunkedInputStream(limitStreamController.wrap(inputStream), signingMetadata.requiredSigningContext().chunkSigningSession(), requestContent.contentLength().orElseThrow()));
+            case AWS_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> requestContent.inputStream().map(inputStream -> {
+                SigningContext signingContext = signingMetadata.requiredSigningContext();
+                // the chunks of STREAMING-UNSIGNED-PAYLOAD-TRAILER content are not signed
+                Optional<ChunkSigningSession> chunkSigningSession = signingContext.contentHash()
+                        .filter(contentHash -> !contentHash.startsWith("STREAMING-UNSIGNED-"))
+                        .map(_ -> signingContext.chunkSigningSession());
+                return new AwsChunkedInputStream(streamShaper.shape(limitStreamController.wrap(requestStatsSession.countBytesIn(inputStream))), chunkSigningSession, requestContent.contentLengthLong(), requestContent.trailingChecksum());
+            });
 
-            case STANDARD, W3C_CHUNKED -> requestContent.inputStream().map(inputStream -> {
+            // STANDARD content is not spooled for S3 requests - the payload hash, when signed, is checked as the content is forwarded
+            case STANDARD, W3C_CHUNKED -> requestContent.inputStream().map(requestStatsSession::countBytesIn).map(limitStreamController::wrap).map(streamShaper::shape).map(inputStream -> {
                 SigningContext signingContext = signingMetadata.requiredSigningContext();
                 return signingContext.contentHash()
                         .filter(contentHash -> !contentHash.startsWith("STREAMING-") && !contentHash.startsWith("UNSIGNED-"))
-                        .map(contentHash -> (InputStream) new HashCheckInputStream(limitStreamController.wrap(inputStream), contentHash, requestContent.contentLength()))
+                        .map(contentHash -> (InputStream) new HashCheckInputStream(inputStream, contentHash, requestContent.contentLengthLong()))
                         .orElse(inputStream);
             });
 
@@ -228,6 +491,14 @@ public class TrinoS3ProxyClient
         };
     }
 
+    private static Map<String, String> rangeHeaders(String range, Optional<String> ifMatch)
+    {
+        ImmutableMap.Builder<String, String> headers = ImmutableMap.builder();
+        headers.put("range", range);
+        ifMatch.ifPresent(eTag -> headers.put("if-match", eTag));
+        return headers.buildOrThrow();
+    }
+
     private static String buildRemoteHost(URI remoteUri)
     {
         int port = remoteUri.getPort();
@@ -244,12 +515,15 @@ public class TrinoS3ProxyClient
         return uriBuilder;
     }
 
-    private record RemoteRequestWithPresignedURIs(Request remoteRequest, Map<String, URI> presignedUrls)
+    private record RemoteS3Request(ParsedS3Request request, URI remoteUri, SigningMetadata remoteSigningMetadata, Map<String, URI> presignedUrls, Optional<InputStream> content)
     {
-        private RemoteRequestWithPresignedURIs
+        private RemoteS3Request
         {
-            requireNonNull(remoteRequest, "remoteRequest is null");
-            requireNonNull(presignedUrls, "presignedUrls is null");
+            requireNonNull(request, "request is null");
+            requireNonNull(remoteUri, "remoteUri is null");
+            requireNonNull(remoteSigningMetadata, "remoteSigningMetadata is null");
+            presignedUrls = ImmutableMap.copyOf(presignedUrls);
+            requireNonNull(content, "content is null");
         }
     }
 }
@@ -19,6 +19,7 @@ import io.trino.aws.proxy.server.rest.ResourceSecurity.S3;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
@@ -43,6 +44,7 @@ public class TrinoS3Resource
     private final TrinoS3ProxyClient proxyClient;
     private final Optional<String> serverHostName;
     private final String s3Path;
+    private final boolean chunkedUploadsWithoutDecodedLengthEnabled;
 
     @Inject
     public TrinoS3Resource(TrinoS3ProxyClient proxyClient, TrinoAwsProxyConfig trinoS3ProxyConfig)
@@ -51,93 +53,95 @@ public class TrinoS3Resource
         this.serverHostName = trinoS3ProxyConfig.getS3HostName();
 
         s3Path = trinoS3ProxyConfig.getS3Path();
+        chunkedUploadsWithoutDecodedLengthEnabled = trinoS3ProxyConfig.isChunkedUploadsWithoutDecodedLengthEnabled();
     }
 
     @GET
     public void s3Get(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @GET
     @Path("{path:.*}")
     public void s3GetWithPath(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @HEAD
     public void s3Head(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @HEAD
     @Path("{path:.*}")
     public void s3HeadWithPath(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @PUT
     public void s3Put(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @PUT
     @Path("{path:.*}")
     public void s3PutWithPath(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @POST
     public void s3Post(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @POST
     @Path("{path:.*}")
     public void s3PostWithPath(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @DELETE
     public void s3Delete(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
     @DELETE
     @Path("{path:.*}")
     public void s3DeleteWithPath(@Context Request request, @Context Optional<Identity> identity, @Context SigningMetadata signingMetadata,
-            @Context RequestLoggingSession requestLoggingSession, @Suspended AsyncResponse asyncResponse)
+            @Context RequestLoggingSession requestLoggingSession, @Context RequestStatsSession requestStatsSession, @Suspended AsyncResponse asyncResponse)
     {
-        handler(request, identity, signingMetadata, requestLoggingSession, asyncResponse);
+        handler(request, identity, signingMetadata, requestLoggingSession, requestStatsSession, asyncResponse);
     }
 
-    private void handler(Request request, Optional<Identity> identity, SigningMetadata signingMetadata, RequestLoggingSession requestLoggingSession, AsyncResponse asyncResponse)
+    private void handler(Request request, Optional<Identity> identity, SigningMetadata signingMetadata, RequestLoggingSession requestLoggingSession, RequestStatsSession requestStatsSession, AsyncResponse asyncResponse)
     {
         try {
             ParsedS3Request parsedS3Request = parseRequest(request);
+            requestStatsSession.setOperation(S3Operation.of(parsedS3Request).apiName());
 
             requestLoggingSession.logProperty("request.parsed.bucket", parsedS3Request.bucketName());
             requestLoggingSession.logProperty("request.parsed.key", parsedS3Request.keyInBucket());
             requestLoggingSession.logProperty("request.emulated.access-key", signingMetadata.credential().accessKey());
 
-            proxyClient.proxyRequest(identity, signingMetadata, parsedS3Request, asyncResponse, requestLoggingSession);
+            proxyClient.proxyRequest(identity, signingMetadata, parsedS3Request, asyncResponse, requestLoggingSession, requestStatsSession);
         }
         catch (Throwable e) {
             requestLoggingSession.logException(e);
@@ -160,6 +164,19 @@ public class TrinoS3Resource
             path = path.substring(1);
         }
 
-        return fromRequest(request, path, serverHostName);
+        ParsedS3Request parsedS3Request = fromRequest(request, path, serverHostName);
+        if (!chunkedUploadsWithoutDecodedLengthEnabled && isChunked(parsedS3Request.requestContent()) && parsedS3Request.requestContent().contentLengthLong().isEmpty()) {
+            // without x-amz-decoded-content-length the content would have to be forwarded as aws-chunked content of unknown length
+            throw new WebApplicationException(Response.Status.LENGTH_REQUIRED);
+        }
+        return parsedS3Request;
+    }
+
+    private static boolean isChunked(RequestContent requestContent)
+    {
+        return switch (requestContent.contentType()) {
+            case AWS_CHUNKED, W3C_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> true;
+            case EMPTY, STANDARD -> false;
+        };
     }
 }
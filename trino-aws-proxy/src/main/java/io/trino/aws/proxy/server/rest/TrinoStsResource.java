@@ -57,11 +57,13 @@ public class TrinoStsResource
 
     @SuppressWarnings("SwitchStatementWithTooFewBranches")
     @POST
-    public Response post(@Context Request request, @Context SigningMetadata signingMetadata, @Context RequestLoggingSession requestLoggingSession)
+    public Response post(@Context Request request, @Context SigningMetadata signingMetadata, @Context RequestLoggingSession requestLoggingSession,
+            @Context RequestStatsSession requestStatsSession)
     {
         Map<String, String> arguments = deserializeRequest(request.requestQueryParameters(), request.requestContent().standardBytes());
 
         String action = Optional.ofNullable(arguments.get("Action")).orElse("");
+        requestStatsSession.setOperation(action);
 
         return switch (action) {
             case "AssumeRole" -> assumeRole(request.requestAuthorization().region(), signingMetadata, arguments, requestLoggingSession);
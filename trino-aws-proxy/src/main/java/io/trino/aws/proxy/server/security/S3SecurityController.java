@@ -22,6 +22,7 @@ import io.trino.aws.proxy.spi.security.S3SecurityFacade;
 import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
@@ -49,6 +50,14 @@ public class S3SecurityController
         return s3SecurityFacade.apply(lowercaseAction);
     }
 
+    /**
+     * Returns the security responses of the requests, in the order of the requests
+     */
+    public List<SecurityResponse> applyAll(List<ParsedS3Request> requests, Optional<Identity> identity)
+    {
+        return currentProvider().securityResponsesForRequests(requests, identity, request -> request.rawQuery().flatMap(S3SecurityController::parseAction));
+    }
+
     @VisibleForTesting
     protected S3SecurityFacadeProvider currentProvider()
     {
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.configuration.validation.FileExists;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.NotNull;
+
+import java.io.File;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class FileBasedS3SecurityConfig
+{
+    private File policyFile;
+    private Duration refreshPeriod = new Duration(10, SECONDS);
+
+    @NotNull
+    @FileExists
+    public File getPolicyFile()
+    {
+        return policyFile;
+    }
+
+    @Config("file-s3-security.policy-file-path")
+    @ConfigDescription("JSON file with the rules that allow or deny S3 operations by identity, bucket and key prefix")
+    public FileBasedS3SecurityConfig setPolicyFile(File policyFile)
+    {
+        this.policyFile = policyFile;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getRefreshPeriod()
+    {
+        return refreshPeriod;
+    }
+
+    @Config("file-s3-security.refresh-period")
+    @ConfigDescription("How often the policy file is checked for changes")
+    public FileBasedS3SecurityConfig setRefreshPeriod(Duration refreshPeriod)
+    {
+        this.refreshPeriod = refreshPeriod;
+        return this;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.rest.S3Operation;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.security.S3SecurityFacade;
+import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.WebApplicationException;
+import org.weakref.jmx.Managed;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.trino.aws.proxy.spi.security.SecurityResponse.FAILURE;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Evaluates requests locally against the rules of a policy file, see {@link S3PolicyTrie}. The file is checked
+ * for changes periodically, a changed file is compiled in the background and swapped in atomically. If the
+ * changed file can't be read the current policy is kept.
+ */
+public final class FileBasedS3SecurityFacadeProvider
+        implements S3SecurityFacadeProvider
+{
+    private static final Logger log = Logger.get(FileBasedS3SecurityFacadeProvider.class);
+
+    private static final S3SecurityFacade ALLOW = _ -> SUCCESS;
+    private static final S3SecurityFacade DENY = _ -> FAILURE;
+
+    private record FileVersion(FileTime lastModified, long size) {}
+
+    private final Path policyFile;
+    private final JsonCodec<List<S3PolicyRule>> jsonCodec;
+    private final long refreshMillis;
+    private final ScheduledExecutorService refreshExecutor;
+    private final AtomicLong reloadCount = new AtomicLong();
+    private final AtomicLong reloadFailureCount = new AtomicLong();
+    private volatile S3PolicyTrie policy = S3PolicyTrie.DENY_ALL;
+    private volatile Optional<FileVersion> loadedVersion = Optional.empty();
+
+    @Inject
+    public FileBasedS3SecurityFacadeProvider(FileBasedS3SecurityConfig config, JsonCodec<List<S3PolicyRule>> jsonCodec)
+    {
+        this.policyFile = config.getPolicyFile().toPath();
+        this.jsonCodec = requireNonNull(jsonCodec, "jsonCodec is null");
+
+        // an invalid policy file fails the startup
+        reload();
+
+        refreshMillis = config.getRefreshPeriod().toMillis();
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("file-s3-security-refresh").factory());
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Override
+    public S3SecurityFacade securityFacadeForRequest(ParsedS3Request request, Optional<Identity> identity)
+            throws WebApplicationException
+    {
+        // the operation tells apart all actions, e.g. ?uploads or ?delete
+        S3Operation operation = S3Operation.of(request);
+        String user = identity.map(Identity::user).orElse(null);
+        List<String> groups = identity.map(Identity::groups).orElse(ImmutableList.of());
+        boolean allowed = switch (operation) {
+            // listings have no key, they are matched by the requested prefix
+            case LIST_OBJECTS, LIST_OBJECTS_V2, LIST_MULTIPART_UPLOADS -> {
+                String prefix = request.queryParameters().getFirst("prefix").orElse("");
+                yield policy.isListingAllowed(user, groups, request.bucketName(), prefix, operation);
+            }
+            default -> policy.isAllowed(user, groups, request.bucketName(), request.keyInBucket(), operation);
+        };
+        return allowed ? ALLOW : DENY;
+    }
+
+    @Managed
+    public long getReloadCount()
+    {
+        return reloadCount.get();
+    }
+
+    @Managed
+    public long getReloadFailureCount()
+    {
+        return reloadFailureCount.get();
+    }
+
+    @VisibleForTesting
+    void refresh()
+    {
+        try {
+            if (!loadedVersion.equals(Optional.of(fileVersion()))) {
+                reload();
+            }
+        }
+        catch (RuntimeException e) {
+            reloadFailureCount.incrementAndGet();
+            log.error(e, "Failed to reload S3 security policy file %s, keeping the current policy", policyFile);
+        }
+    }
+
+    private void reload()
+    {
+        // read the version first, a change while reading is picked up by the next refresh
+        FileVersion version = fileVersion();
+        List<S3PolicyRule> rules;
+        try {
+            rules = jsonCodec.fromJson(Files.readAllBytes(policyFile));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to read S3 security policy file", e);
+        }
+        policy = S3PolicyTrie.compile(rules);
+        loadedVersion = Optional.of(version);
+        reloadCount.incrementAndGet();
+    }
+
+    private FileVersion fileVersion()
+    {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(policyFile, BasicFileAttributes.class);
+            return new FileVersion(attributes.lastModifiedTime(), attributes.size());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to read S3 security policy file", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.google.inject.Binder;
+import com.google.inject.Scopes;
+import io.airlift.configuration.AbstractConfigurationAwareModule;
+
+import static io.airlift.configuration.ConfigBinder.configBinder;
+import static io.airlift.json.JsonCodecBinder.jsonCodecBinder;
+import static io.trino.aws.proxy.spi.plugin.TrinoAwsProxyServerBinding.s3SecurityFacadeProviderModule;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
+
+public class FileBasedS3SecurityModule
+        extends AbstractConfigurationAwareModule
+{
+    // set as config value for "s3-security.type"
+    public static final String FILE_BASED_S3_SECURITY_IDENTIFIER = "file";
+
+    @Override
+    protected void setup(Binder binder)
+    {
+        install(s3SecurityFacadeProviderModule(
+                FILE_BASED_S3_SECURITY_IDENTIFIER,
+                FileBasedS3SecurityFacadeProvider.class,
+                innerBinder -> {
+                    configBinder(innerBinder).bindConfig(FileBasedS3SecurityConfig.class);
+                    innerBinder.bind(FileBasedS3SecurityFacadeProvider.class).in(Scopes.SINGLETON);
+                    newExporter(innerBinder).export(FileBasedS3SecurityFacadeProvider.class).withGeneratedName();
+                    jsonCodecBinder(innerBinder).bindListJsonCodec(S3PolicyRule.class);
+                }));
+    }
+}
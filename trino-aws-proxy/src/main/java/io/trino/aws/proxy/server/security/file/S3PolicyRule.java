@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A rule of the policy file. Absent fields match anything, {@code actions} are S3 API operation names
+ * such as {@code GetObject} or {@code *} for all operations.
+ */
+public record S3PolicyRule(Optional<String> user, Optional<String> group, Optional<String> bucket, Optional<String> keyPrefix, Set<String> actions, Effect effect)
+{
+    public enum Effect
+    {
+        ALLOW,
+        DENY;
+
+        @JsonCreator
+        public static Effect fromString(String value)
+        {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public S3PolicyRule
+    {
+        requireNonNull(user, "user is null");
+        requireNonNull(group, "group is null");
+        requireNonNull(bucket, "bucket is null");
+        requireNonNull(keyPrefix, "keyPrefix is null");
+        actions = (actions == null) ? ImmutableSet.of() : ImmutableSet.copyOf(actions);
+        requireNonNull(effect, "effect is null");
+    }
+}
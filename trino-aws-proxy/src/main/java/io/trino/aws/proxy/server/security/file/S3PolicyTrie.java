@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.google.common.collect.ImmutableMap;
+import io.trino.aws.proxy.server.rest.S3Operation;
+import io.trino.aws.proxy.server.security.file.S3PolicyRule.Effect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The rules of a policy compiled into a key prefix trie per bucket. A request is allowed if at least one
+ * rule matches it with {@link Effect#ALLOW} and no rule matches it with {@link Effect#DENY}. Evaluating a
+ * request walks the characters of its key once and does not allocate.
+ * <p>
+ * A listing is evaluated against its requested prefix: it is allowed by rules whose key prefix the requested
+ * prefix starts with, and it is denied by any rule that could match a listed key, including rules of longer
+ * key prefixes below the requested prefix.
+ */
+final class S3PolicyTrie
+{
+    static final S3PolicyTrie DENY_ALL = compile(List.of());
+
+    private static final String ANY = "*";
+    private static final int ALLOWED = 1;
+    private static final int DENIED = 2;
+
+    static {
+        checkState(S3Operation.values().length <= Long.SIZE, "S3 operations do not fit into the action mask");
+    }
+
+    private final Map<String, Node> buckets;
+    private final Node anyBucket;
+
+    private S3PolicyTrie(Map<String, Node> buckets, Node anyBucket)
+    {
+        this.buckets = ImmutableMap.copyOf(buckets);
+        this.anyBucket = requireNonNull(anyBucket, "anyBucket is null");
+    }
+
+    static S3PolicyTrie compile(List<S3PolicyRule> rules)
+    {
+        Map<String, NodeBuilder> buckets = new HashMap<>();
+        NodeBuilder anyBucket = new NodeBuilder();
+        for (S3PolicyRule rule : rules) {
+            String bucket = rule.bucket().orElse(ANY);
+            NodeBuilder node = bucket.equals(ANY) ? anyBucket : buckets.computeIfAbsent(bucket, _ -> new NodeBuilder());
+            for (char c : rule.keyPrefix().orElse("").toCharArray()) {
+                node = node.children.computeIfAbsent(c, _ -> new NodeBuilder());
+            }
+            node.rules.add(new Rule(
+                    rule.user().filter(user -> !user.equals(ANY)).orElse(null),
+                    rule.group().filter(group -> !group.equals(ANY)).orElse(null),
+                    actionMask(rule),
+                    rule.effect() == Effect.ALLOW));
+        }
+
+        Map<String, Node> compiledBuckets = new HashMap<>();
+        buckets.forEach((bucket, node) -> compiledBuckets.put(bucket, node.build()));
+        return new S3PolicyTrie(compiledBuckets, anyBucket.build());
+    }
+
+    /**
+     * @param user the user of the request or {@code null} if the request has no identity
+     */
+    boolean isAllowed(String user, List<String> groups, String bucket, String key, S3Operation operation)
+    {
+        long action = 1L << operation.ordinal();
+        return evaluate(user, groups, bucket, key, action, false) == ALLOWED;
+    }
+
+    /**
+     * @param user the user of the request or {@code null} if the request has no identity
+     * @param prefix the key prefix of the listed objects
+     */
+    boolean isListingAllowed(String user, List<String> groups, String bucket, String prefix, S3Operation operation)
+    {
+        long action = 1L << operation.ordinal();
+        return evaluate(user, groups, bucket, prefix, action, true) == ALLOWED;
+    }
+
+    private int evaluate(String user, List<String> groups, String bucket, String key, long action, boolean listing)
+    {
+        int result = anyBucket.evaluate(key, user, groups, action, listing);
+        Node bucketNode = buckets.get(bucket);
+        if (bucketNode != null) {
+            result |= bucketNode.evaluate(key, user, groups, action, listing);
+        }
+        return result;
+    }
+
+    private static long actionMask(S3PolicyRule rule)
+    {
+        if (rule.actions().isEmpty() || rule.actions().contains(ANY)) {
+            return -1L;
+        }
+        long mask = 0;
+        for (String action : rule.actions()) {
+            S3Operation operation = Arrays.stream(S3Operation.values())
+                    .filter(candidate -> candidate.apiName().equalsIgnoreCase(action))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown S3 action in policy: " + action));
+            mask |= 1L << operation.ordinal();
+        }
+        return mask;
+    }
+
+    private record Rule(String user, String group, long actions, boolean allow)
+    {
+        private boolean matches(String requestUser, List<String> requestGroups, long action)
+        {
+            return ((actions & action) != 0)
+                    && ((user == null) || user.equals(requestUser))
+                    && ((group == null) || requestGroups.contains(group));
+        }
+    }
+
+    private static final class Node
+    {
+        // labels are sorted so that children are found with a binary search
+        private final char[] labels;
+        private final Node[] children;
+        private final Rule[] rules;
+
+        private Node(char[] labels, Node[] children, Rule[] rules)
+        {
+            checkArgument(labels.length == children.length, "labels and children do not match");
+            this.labels = labels;
+            this.children = children;
+            this.rules = rules;
+        }
+
+        private int evaluate(String key, String user, List<String> groups, long action, boolean listing)
+        {
+            int result = 0;
+            Node node = this;
+            int position = 0;
+            while (true) {
+                for (Rule rule : node.rules) {
+                    if (rule.matches(user, groups, action)) {
+                        result |= rule.allow() ? ALLOWED : DENIED;
+                    }
+                }
+                if ((result & DENIED) != 0) {
+                    return result;
+                }
+                if (position == key.length()) {
+                    // keys below the prefix of a listing are listed as well
+                    return (listing && node.isDeniedBelow(user, groups, action)) ? result | DENIED : result;
+                }
+                int child = Arrays.binarySearch(node.labels, key.charAt(position++));
+                if (child < 0) {
+                    return result;
+                }
+                node = node.children[child];
+            }
+        }
+
+        private boolean isDeniedBelow(String user, List<String> groups, long action)
+        {
+            for (Node child : children) {
+                for (Rule rule : child.rules) {
+                    if (!rule.allow() && rule.matches(user, groups, action)) {
+                        return true;
+                    }
+                }
+                if (child.isDeniedBelow(user, groups, action)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class NodeBuilder
+    {
+        private final TreeMap<Character, NodeBuilder> children = new TreeMap<>();
+        private final List<Rule> rules = new ArrayList<>();
+
+        private Node build()
+        {
+            char[] labels = new char[children.size()];
+            Node[] childNodes = new Node[children.size()];
+            int index = 0;
+            for (Map.Entry<Character, NodeBuilder> child : children.entrySet()) {
+                labels[index] = child.getKey();
+                childNodes[index] = child.getValue().build();
+                index++;
+            }
+            return new Node(labels, childNodes, rules.toArray(Rule[]::new));
+        }
+    }
+}
@@ -13,18 +13,34 @@
  */
 package io.trino.aws.proxy.server.security.opa;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.Request;
 import io.airlift.json.JsonCodec;
+import io.airlift.stats.TimeStat;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.security.opa.OpaClient;
 import io.trino.aws.proxy.spi.security.opa.OpaRequest;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
+import java.net.URI;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static io.airlift.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static io.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.preparePost;
@@ -34,22 +50,117 @@ import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
 import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class DefaultOpaClient
         implements OpaClient
 {
     private static final JsonCodec<Map<String, Object>> CODEC = mapJsonCodec(String.class, Object.class);
 
+    // decisions only depend on the server, the headers and the (projected) document
+    private record DecisionKey(URI opaServerUri, Object document, Map<String, List<String>> additionalHeaders)
+    {
+        private DecisionKey
+        {
+            requireNonNull(opaServerUri, "opaServerUri is null");
+            requireNonNull(document, "document is null");
+            additionalHeaders = ImmutableMap.copyOf(additionalHeaders);
+        }
+    }
+
     private final HttpClient httpClient;
+    private final List<List<String>> decisionKeyPaths;
+    private final Optional<AsyncCache<DecisionKey, SecurityResponse>> decisionCache;
+    private final TimeStat opaLatency = new TimeStat(MILLISECONDS);
+
+    public DefaultOpaClient(HttpClient httpClient)
+    {
+        this(httpClient, new OpaS3SecurityConfig());
+    }
 
     @Inject
-    public DefaultOpaClient(@ForOpa HttpClient httpClient)
+    public DefaultOpaClient(@ForOpa HttpClient httpClient, OpaS3SecurityConfig config)
+    {
+        this(httpClient, config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DefaultOpaClient(HttpClient httpClient, OpaS3SecurityConfig config, Ticker ticker)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.decisionKeyPaths = config.getDecisionCacheKeyFields().stream()
+                .map(field -> Splitter.on('.').splitToList(field))
+                .collect(toImmutableList());
+        if (config.getDecisionCacheSize() > 0 && config.getDecisionCacheTtl().toMillis() > 0) {
+            this.decisionCache = Optional.of(Caffeine.newBuilder()
+                    .maximumSize(config.getDecisionCacheSize())
+                    .expireAfterWrite(config.getDecisionCacheTtl().toJavaTime())
+                    .ticker(ticker)
+                    .recordStats()
+                    .buildAsync());
+        }
+        else {
+            this.decisionCache = Optional.empty();
+        }
     }
 
     @Override
     public SecurityResponse getSecurityResponse(OpaRequest request)
+    {
+        return decisionCache.map(cache -> cachedSecurityResponse(cache, request))
+                .orElseGet(() -> fetchSecurityResponse(request));
+    }
+
+    @Managed
+    public long getDecisionCacheHitCount()
+    {
+        return decisionCache.map(cache -> cache.synchronous().stats().hitCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getDecisionCacheMissCount()
+    {
+        return decisionCache.map(cache -> cache.synchronous().stats().missCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getDecisionCacheSize()
+    {
+        return decisionCache.map(cache -> cache.synchronous().estimatedSize()).orElse(0L);
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getOpaLatency()
+    {
+        return opaLatency;
+    }
+
+    private SecurityResponse cachedSecurityResponse(AsyncCache<DecisionKey, SecurityResponse> cache, OpaRequest request)
+    {
+        // only the pending decision is added inside the cache, OPA is called by the first caller outside of it and
+        // concurrent lookups of the same decision wait for that call. A failed decision is removed from the cache.
+        CompletableFuture<SecurityResponse> pending = new CompletableFuture<>();
+        CompletableFuture<SecurityResponse> decision = cache.get(decisionKey(request), (_, _) -> pending);
+        if (decision == pending) {
+            try {
+                pending.complete(fetchSecurityResponse(request));
+            }
+            catch (RuntimeException | Error e) {
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return decision.join();
+        }
+        catch (CompletionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private SecurityResponse fetchSecurityResponse(OpaRequest request)
     {
         Map<String, Object> inputDocument = toInputDocument(request.document());
 
@@ -59,10 +170,39 @@ public class DefaultOpaClient
                 .setBodyGenerator(jsonBodyGenerator(CODEC, inputDocument));
         request.additionalHeaders().forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
 
-        Map<String, Object> responseDocument = httpClient.execute(builder.build(), createJsonResponseHandler(CODEC));
+        Map<String, Object> responseDocument;
+        try (TimeStat.BlockTimer _ = opaLatency.time()) {
+            responseDocument = httpClient.execute(builder.build(), createJsonResponseHandler(CODEC));
+        }
         return toSecurityResponse(responseDocument);
     }
 
+    private DecisionKey decisionKey(OpaRequest request)
+    {
+        Object document = request.document();
+        if (!decisionKeyPaths.isEmpty()) {
+            // missing fields are part of the key as well
+            document = decisionKeyPaths.stream()
+                    .map(path -> field(request.document(), path))
+                    .collect(toImmutableList());
+        }
+        Map<String, List<String>> additionalHeaders = request.additionalHeaders().entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, entry -> ImmutableList.copyOf(entry.getValue())));
+        return new DecisionKey(request.opaServerUri(), document, additionalHeaders);
+    }
+
+    private static Optional<Object> field(Object document, List<String> path)
+    {
+        Object value = document;
+        for (String name : path) {
+            if (!(value instanceof Map<?, ?> map)) {
+                return Optional.empty();
+            }
+            value = map.get(name);
+        }
+        return Optional.ofNullable(value);
+    }
+
     protected Map<String, Object> toInputDocument(Map<String, Object> document)
     {
         /*
@@ -13,14 +13,24 @@
  */
 package io.trino.aws.proxy.server.security.opa;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.net.URI;
+import java.util.List;
 
 public class OpaS3SecurityConfig
 {
     private URI opaServerBaseUri;
+    private long decisionCacheSize;
+    private Duration decisionCacheTtl = Duration.ZERO;
+    private List<String> decisionCacheKeyFields = ImmutableList.of();
 
     @NotNull
     public URI getOpaServerBaseUri()
@@ -34,4 +44,46 @@ public class OpaS3SecurityConfig
         this.opaServerBaseUri = URI.create(opaServerBaseUri);
         return this;
     }
+
+    @Min(0)
+    public long getDecisionCacheSize()
+    {
+        return decisionCacheSize;
+    }
+
+    @Config("opa-s3-security.decision-cache-size")
+    @ConfigDescription("In-memory cache size for OPA decisions, defaults to 0 (no caching)")
+    public OpaS3SecurityConfig setDecisionCacheSize(long decisionCacheSize)
+    {
+        this.decisionCacheSize = decisionCacheSize;
+        return this;
+    }
+
+    @MinDuration("0s")
+    public Duration getDecisionCacheTtl()
+    {
+        return decisionCacheTtl;
+    }
+
+    @Config("opa-s3-security.decision-cache-ttl")
+    @ConfigDescription("In-memory cache TTL for OPA decisions, defaults to 0 seconds (no caching)")
+    public OpaS3SecurityConfig setDecisionCacheTtl(Duration decisionCacheTtl)
+    {
+        this.decisionCacheTtl = decisionCacheTtl;
+        return this;
+    }
+
+    public List<String> getDecisionCacheKeyFields()
+    {
+        return decisionCacheKeyFields;
+    }
+
+    @Config("opa-s3-security.decision-cache-key-fields")
+    @ConfigDescription("Comma separated paths of the input document fields that decisions depend on, e.g. identity.user,bucket,keyPrefix,action. " +
+            "Nested fields are separated by dots. Decisions are cached by the whole input document if not set")
+    public OpaS3SecurityConfig setDecisionCacheKeyFields(String decisionCacheKeyFields)
+    {
+        this.decisionCacheKeyFields = Splitter.on(",").trimResults().omitEmptyStrings().splitToList(decisionCacheKeyFields);
+        return this;
+    }
 }
@@ -18,13 +18,22 @@ import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.security.S3SecurityFacade;
 import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.security.opa.OpaS3SecurityFacade;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.UriBuilder;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
 public class OpaS3SecurityFacadeProvider
@@ -46,4 +55,39 @@ public class OpaS3SecurityFacadeProvider
     {
         return lowercaseAction -> opaS3SecurityFacade.apply(request, lowercaseAction, opaServerBaseUri, identity);
     }
+
+    @Override
+    public List<SecurityResponse> securityResponsesForRequests(List<ParsedS3Request> requests, Optional<Identity> identity, Function<ParsedS3Request, Optional<String>> lowercaseAction)
+            throws WebApplicationException
+    {
+        if (requests.size() <= 1) {
+            return S3SecurityFacadeProvider.super.securityResponsesForRequests(requests, identity, lowercaseAction);
+        }
+
+        // each facade call is a blocking round trip to OPA, make them concurrently
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<SecurityResponse>> futures = requests.stream()
+                    .map(request -> executor.submit(() -> opaS3SecurityFacade.apply(request, lowercaseAction.apply(request), opaServerBaseUri, identity)))
+                    .collect(toImmutableList());
+
+            return futures.stream()
+                    .map(OpaS3SecurityFacadeProvider::getSecurityResponse)
+                    .collect(toImmutableList());
+        }
+    }
+
+    private static SecurityResponse getSecurityResponse(Future<SecurityResponse> future)
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
 }
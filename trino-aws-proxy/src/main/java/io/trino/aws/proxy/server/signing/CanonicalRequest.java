@@ -0,0 +1,301 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Builds SigV4 canonical requests and strings to sign.
+ * See <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/reference_sigv-create-signed-request.html">Create a signed AWS API request</a>.
+ * The output matches what the AWS SDK's {@code AbstractAws4Signer} generates for the same request with double URL encoding disabled.
+ */
+final class CanonicalRequest
+{
+    static final String SIGNING_ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int BUILDER_SIZE = 1024;
+    // larger builders are not kept by the thread
+    private static final int MAX_RETAINED_BUILDER_SIZE = 64 * 1024;
+
+    // only pooled platform threads keep a builder, virtual threads are created per task and allocate one per call
+    private static final ThreadLocal<StringBuilder> BUILDERS = ThreadLocal.withInitial(() -> new StringBuilder(BUILDER_SIZE));
+
+    private CanonicalRequest() {}
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the canonical request
+     */
+    static String canonicalRequestHash(
+            String httpMethod,
+            String canonicalPath,
+            Map<String, List<String>> queryParameters,
+            SortedMap<String, List<String>> lowercaseHeaders,
+            String contentHash)
+    {
+        StringBuilder builder = builder();
+        builder.append(httpMethod).append('\n')
+                .append(canonicalPath).append('\n');
+        appendCanonicalQueryString(builder, queryParameters);
+        builder.append('\n');
+        lowercaseHeaders.forEach((name, values) -> {
+            builder.append(name).append(':');
+            for (String value : values) {
+                appendTrimmed(builder, value);
+                builder.append(',');
+            }
+            builder.setLength(builder.length() - 1);
+            builder.append('\n');
+        });
+        builder.append('\n');
+        appendSignedHeaders(builder, lowercaseHeaders);
+        builder.append('\n').append(contentHash);
+        return hashAndRelease(builder);
+    }
+
+    static String stringToSign(String amzDate, String scope, String canonicalRequestHash)
+    {
+        StringBuilder builder = builder();
+        builder.append(SIGNING_ALGORITHM).append('\n')
+                .append(amzDate).append('\n')
+                .append(scope).append('\n')
+                .append(canonicalRequestHash);
+        return release(builder);
+    }
+
+    static String signedHeaders(SortedMap<String, List<String>> lowercaseHeaders)
+    {
+        StringBuilder builder = builder();
+        appendSignedHeaders(builder, lowercaseHeaders);
+        return release(builder);
+    }
+
+    static String canonicalPath(URI uri, boolean normalize)
+    {
+        String rawPath = uri.getRawPath();
+        String path = normalize ? uri.normalize().getRawPath() : rawPath;
+        if ((path == null) || path.isEmpty()) {
+            return "/";
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        // normalization can leave a trailing slash that the original path doesn't have, e.g. "/foo/bar/."
+        if (normalize && (path.length() > 1) && path.endsWith("/") && ((rawPath == null) || !rawPath.endsWith("/"))) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the URI with the given query parameters replacing its query
+     */
+    static URI uriWithQuery(URI uri, Map<String, List<String>> queryParameters)
+    {
+        StringBuilder builder = builder();
+        builder.append(uri.getScheme()).append("://").append(uri.getHost());
+        if (!isStandardPort(uri)) {
+            builder.append(':').append(uri.getPort());
+        }
+        if (uri.getRawPath() != null) {
+            builder.append(uri.getRawPath());
+        }
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : queryParameters.entrySet()) {
+            for (String value : entry.getValue()) {
+                builder.append(first ? '?' : '&');
+                first = false;
+                appendUriEncoded(builder, entry.getKey());
+                if (value != null) {
+                    builder.append('=');
+                    appendUriEncoded(builder, value);
+                }
+            }
+        }
+        return URI.create(release(builder));
+    }
+
+    static String hostHeader(URI uri)
+    {
+        if (isStandardPort(uri)) {
+            return uri.getHost();
+        }
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    // https://docs.aws.amazon.com/IAM/latest/UserGuide/reference_sigv-create-signed-request.html#create-canonical-request
+    // only unreserved characters are left as is, everything else is percent encoded with upper case hex digits
+    static void appendUriEncoded(StringBuilder builder, String value)
+    {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                builder.append(c);
+            }
+            else if (c < 0x80) {
+                appendPercentEncoded(builder, c);
+            }
+            else {
+                // encode the rest of the value in one go. Unpaired surrogates become '?' like with String.getBytes().
+                int end = i + 1;
+                while ((end < length) && !isUnreserved(value.charAt(end))) {
+                    end++;
+                }
+                for (byte b : value.substring(i, end).getBytes(UTF_8)) {
+                    appendPercentEncoded(builder, b & 0xFF);
+                }
+                i = end - 1;
+            }
+        }
+    }
+
+    private static void appendCanonicalQueryString(StringBuilder builder, Map<String, List<String>> queryParameters)
+    {
+        if (queryParameters.isEmpty()) {
+            return;
+        }
+        // parameters are sorted by encoded name, values by their encoded value
+        SortedMap<String, List<String>> encodedParameters = new TreeMap<>();
+        StringBuilder encoder = new StringBuilder();
+        queryParameters.forEach((name, values) -> {
+            if (name.isEmpty()) {
+                // empty names are not signed
+                return;
+            }
+            List<String> encodedValues = new ArrayList<>(values.size());
+            for (String value : values) {
+                encodedValues.add((value == null) ? "" : uriEncoded(encoder, value));
+            }
+            Collections.sort(encodedValues);
+            encodedParameters.put(uriEncoded(encoder, name), encodedValues);
+        });
+
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : encodedParameters.entrySet()) {
+            for (String value : entry.getValue()) {
+                if (!first) {
+                    builder.append('&');
+                }
+                first = false;
+                builder.append(entry.getKey()).append('=').append(value);
+            }
+        }
+    }
+
+    private static void appendSignedHeaders(StringBuilder builder, SortedMap<String, List<String>> lowercaseHeaders)
+    {
+        boolean first = true;
+        for (String name : lowercaseHeaders.keySet()) {
+            if (!first) {
+                builder.append(';');
+            }
+            first = false;
+            builder.append(name);
+        }
+    }
+
+    // removes leading and trailing whitespace and collapses sequential whitespace into a single space
+    private static void appendTrimmed(StringBuilder builder, String value)
+    {
+        boolean pendingSpace = false;
+        boolean start = true;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isWhitespace(c)) {
+                pendingSpace = !start;
+                continue;
+            }
+            if (pendingSpace) {
+                builder.append(' ');
+                pendingSpace = false;
+            }
+            builder.append(c);
+            start = false;
+        }
+    }
+
+    private static String uriEncoded(StringBuilder encoder, String value)
+    {
+        encoder.setLength(0);
+        appendUriEncoded(encoder, value);
+        return encoder.toString();
+    }
+
+    private static void appendPercentEncoded(StringBuilder builder, int b)
+    {
+        builder.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(char c)
+    {
+        return ((c >= 'a') && (c <= 'z'))
+                || ((c >= 'A') && (c <= 'Z'))
+                || ((c >= '0') && (c <= '9'))
+                || (c == '-') || (c == '_') || (c == '.') || (c == '~');
+    }
+
+    // same as the \s regex character class
+    private static boolean isWhitespace(char c)
+    {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000b') || (c == '\r') || (c == '\f');
+    }
+
+    private static boolean isStandardPort(URI uri)
+    {
+        int port = uri.getPort();
+        return (port == -1)
+                || (port == 80 && "http".equalsIgnoreCase(uri.getScheme()))
+                || (port == 443 && "https".equalsIgnoreCase(uri.getScheme()));
+    }
+
+    private static StringBuilder builder()
+    {
+        if (Thread.currentThread().isVirtual()) {
+            return new StringBuilder(BUILDER_SIZE);
+        }
+        StringBuilder builder = BUILDERS.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static String hashAndRelease(StringBuilder builder)
+    {
+        String hash = SigningHashes.sha256Hex(builder);
+        trim(builder);
+        return hash;
+    }
+
+    private static String release(StringBuilder builder)
+    {
+        String result = builder.toString();
+        trim(builder);
+        return result;
+    }
+
+    private static void trim(StringBuilder builder)
+    {
+        if ((builder.capacity() > MAX_RETAINED_BUILDER_SIZE) && !Thread.currentThread().isVirtual()) {
+            BUILDERS.set(new StringBuilder(BUILDER_SIZE));
+        }
+    }
+}
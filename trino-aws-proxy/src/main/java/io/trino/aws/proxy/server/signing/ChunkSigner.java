@@ -13,66 +13,118 @@
  */
 package io.trino.aws.proxy.server.signing;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.hash.HashCode;
 import io.trino.aws.proxy.spi.util.AwsTimestamp;
-import software.amazon.awssdk.auth.signer.internal.AbstractAws4Signer;
-import software.amazon.awssdk.auth.signer.internal.SigningAlgorithm;
-import software.amazon.awssdk.auth.signer.internal.chunkedencoding.AwsS3V4ChunkSigner;
-import software.amazon.awssdk.utils.BinaryUtils;
 
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.time.Instant;
 
+import static io.trino.aws.proxy.server.signing.SigningHashes.EMPTY_CONTENT_SHA256;
+import static io.trino.aws.proxy.server.signing.SigningHashes.HMAC_SHA256;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
- * Extracted/copied from {@link AwsS3V4ChunkSigner} and <a href="https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html">sigv4-streaming</a>.
- * We don't want to use {@link AwsS3V4ChunkSigner} directly as it works with {@code byte[]} and doesn't allow for streaming.
+ * Signs chunks of aws-chunked content as described in <a href="https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html">sigv4-streaming</a>.
+ * The string to sign is fed to a {@link Mac} initialized once with the signing key and signatures are written into
+ * caller provided arrays so that signing a chunk doesn't allocate. Not thread safe: a signer belongs to a single session.
  */
 class ChunkSigner
 {
+    static final int SIGNATURE_HEX_LENGTH = 64;
+
     private static final String CHUNK_STRING_TO_SIGN_PREFIX = "AWS4-HMAC-SHA256-PAYLOAD";
+    private static final String TRAILER_STRING_TO_SIGN_PREFIX = "AWS4-HMAC-SHA256-TRAILER";
+    private static final byte[] EMPTY_CONTENT_SHA256_LINE = ("\n" + EMPTY_CONTENT_SHA256 + "\n").getBytes(US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(US_ASCII);
 
-    private final String dateTime;
+    private final Instant requestDate;
     private final String keyPath;
-    private final Mac hmacSha256;
+    private final byte[] stringToSignPrefix;
+    private final Mac mac;
+    private final byte[] contentHashHex = new byte[SIGNATURE_HEX_LENGTH];
+    private final byte[] signature = new byte[SIGNATURE_HEX_LENGTH / 2];
 
     ChunkSigner(Instant requestDate, String keyPath, byte[] signingKey)
     {
-        this.dateTime = AwsTimestamp.toRequestFormat(requestDate);
+        this.requestDate = requestDate;
         this.keyPath = keyPath;
+        this.stringToSignPrefix = stringToSignPrefix(CHUNK_STRING_TO_SIGN_PREFIX, requestDate, keyPath);
+        try {
+            mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(new SecretKeySpec(signingKey, HMAC_SHA256));
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
 
+    /**
+     * Signs a chunk given the SHA-256 of its content and the hex encoded signature of the previous chunk (the seed
+     * signature for the first chunk). The hex encoded signature is written into {@code signatureHex}.
+     */
+    void signChunk(byte[] contentHash, byte[] previousSignatureHex, byte[] signatureHex)
+    {
+        encodeHex(contentHash, contentHashHex);
+
+        mac.update(stringToSignPrefix);
+        mac.update(previousSignatureHex);
+        mac.update(EMPTY_CONTENT_SHA256_LINE);
+        mac.update(contentHashHex);
         try {
-            String signingAlgorithm = SigningAlgorithm.HmacSHA256.toString();
-            this.hmacSha256 = Mac.getInstance(signingAlgorithm);
-            hmacSha256.init(new SecretKeySpec(signingKey, signingAlgorithm));
+            mac.doFinal(signature, 0);
         }
-        catch (NoSuchAlgorithmException e) {
+        catch (ShortBufferException e) {
             throw new IllegalStateException(e);
         }
-        catch (InvalidKeyException e) {
-            throw new IllegalArgumentException(e);
-        }
+        encodeHex(signature, signatureHex);
     }
 
-    String signChunk(HashCode hashCode, String previousSignature)
+    /**
+     * Signs the trailing headers given the SHA-256 of their canonical form and the hex encoded signature of the last
+     * chunk. The hex encoded signature is written into {@code signatureHex}.
+     */
+    void signTrailer(byte[] trailerHash, byte[] previousSignatureHex, byte[] signatureHex)
     {
-        String chunkStringToSign =
-                CHUNK_STRING_TO_SIGN_PREFIX + "\n" +
-                        dateTime + "\n" +
-                        keyPath + "\n" +
-                        previousSignature + "\n" +
-                        AbstractAws4Signer.EMPTY_STRING_SHA256_HEX + "\n" +
-                        hashCode.toString();
+        encodeHex(trailerHash, contentHashHex);
+
+        // trailers are signed once per request
+        mac.update(stringToSignPrefix(TRAILER_STRING_TO_SIGN_PREFIX, requestDate, keyPath));
+        mac.update(previousSignatureHex);
+        mac.update((byte) '\n');
+        mac.update(contentHashHex);
         try {
-            byte[] bytes = hmacSha256.doFinal(chunkStringToSign.getBytes(StandardCharsets.UTF_8));
-            return BinaryUtils.toHex(bytes);
+            mac.doFinal(signature, 0);
         }
-        catch (Exception e) {
-            throw new RuntimeException("Could not sign chunk", e);
+        catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        encodeHex(signature, signatureHex);
+    }
+
+    @VisibleForTesting
+    String signChunk(HashCode hashCode, String previousSignature)
+    {
+        byte[] signatureHex = new byte[SIGNATURE_HEX_LENGTH];
+        signChunk(hashCode.asBytes(), previousSignature.getBytes(UTF_8), signatureHex);
+        return new String(signatureHex, US_ASCII);
+    }
+
+    private static byte[] stringToSignPrefix(String algorithm, Instant requestDate, String keyPath)
+    {
+        return (algorithm + "\n" + AwsTimestamp.toRequestFormat(requestDate) + "\n" + keyPath + "\n").getBytes(UTF_8);
+    }
+
+    private static void encodeHex(byte[] bytes, byte[] hex)
+    {
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[(i * 2) + 1] = HEX_DIGITS[bytes[i] & 0xF];
         }
     }
 }
@@ -14,16 +14,21 @@
 package io.trino.aws.proxy.server.signing;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
 import jakarta.ws.rs.WebApplicationException;
 
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static com.google.common.base.Preconditions.checkState;
+import static io.trino.aws.proxy.server.signing.ChunkSigner.SIGNATURE_HEX_LENGTH;
 import static jakarta.ws.rs.core.Response.Status.UNAUTHORIZED;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 
-@SuppressWarnings("UnstableApiUsage")
 class InternalChunkSigningSession
         implements ChunkSigningSession
 {
@@ -31,52 +36,129 @@ class InternalChunkSigningSession
 
     @VisibleForTesting
     protected final ChunkSigner chunkSigner;
-    private String previousSignature;
-    private String expectedSignature;
-    private Hasher hasher;
+    private final MessageDigest sha256;
+    private final byte[] contentHash;
+    private final byte[] signature = new byte[SIGNATURE_HEX_LENGTH];
+    // only the first SIGNATURE_HEX_LENGTH bytes are kept, longer signatures can't match anyway
+    private final byte[] expectedSignature = new byte[SIGNATURE_HEX_LENGTH];
+    private int expectedSignatureLength;
+    private byte[] previousSignature;
+    private boolean chunkStarted;
 
     public InternalChunkSigningSession(ChunkSigner chunkSigner, String seed)
     {
         this.chunkSigner = requireNonNull(chunkSigner, "chunkSigner is null");
-        previousSignature = requireNonNull(seed, "seed is null");
+        previousSignature = requireNonNull(seed, "seed is null").getBytes(UTF_8);
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        contentHash = new byte[sha256.getDigestLength()];
     }
 
     @Override
     public void startChunk(String expectedSignature)
+    {
+        byte[] bytes = requireNonNull(expectedSignature, "expectedSignature is null").getBytes(US_ASCII);
+        startChunk(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void startChunk(byte[] expectedSignature, int offset, int length)
     {
         complete();
 
-        hasher = Hashing.sha256().newHasher();
-        this.expectedSignature = requireNonNull(expectedSignature, "expectedSignature is null");
+        System.arraycopy(expectedSignature, offset, this.expectedSignature, 0, Math.min(length, SIGNATURE_HEX_LENGTH));
+        expectedSignatureLength = length;
+        sha256.reset();
+        chunkStarted = true;
     }
 
     @Override
     public void complete()
     {
-        if ((hasher == null) || (expectedSignature == null)) {
+        if (!chunkStarted) {
             return;
         }
 
-        String thisSignature = chunkSigner.signChunk(hasher.hash(), previousSignature);
-        if (!thisSignature.equals(expectedSignature)) {
-            log.debug("Chunk signature does not match expected signature. Expected: %s, Actual: %s", expectedSignature, thisSignature);
+        signContent();
+        if ((expectedSignatureLength != SIGNATURE_HEX_LENGTH) || !MessageDigest.isEqual(signature, expectedSignature)) {
+            log.debug("Chunk signature does not match expected signature. Expected: %s, Actual: %s",
+                    new String(expectedSignature, 0, Math.min(expectedSignatureLength, SIGNATURE_HEX_LENGTH), US_ASCII),
+                    new String(signature, US_ASCII));
             throw new WebApplicationException(UNAUTHORIZED);
         }
-        previousSignature = expectedSignature;
 
-        hasher = null;
-        expectedSignature = null;
+        chainSignature();
+        chunkStarted = false;
+    }
+
+    @Override
+    public void signChunk(byte[] signature, int offset)
+    {
+        checkState(!chunkStarted, "Chunks of this session are being validated");
+
+        signContent();
+        chainSignature();
+        System.arraycopy(this.signature, 0, signature, offset, SIGNATURE_HEX_LENGTH);
+    }
+
+    @Override
+    public boolean supportsChunkSigning()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean supportsTrailerValidation()
+    {
+        return true;
+    }
+
+    @Override
+    public void validateTrailer(String canonicalTrailer, String expectedSignature)
+    {
+        complete();
+
+        chunkSigner.signTrailer(sha256.digest(canonicalTrailer.getBytes(UTF_8)), previousSignature, signature);
+        if (!MessageDigest.isEqual(signature, expectedSignature.getBytes(US_ASCII))) {
+            log.debug("Trailer signature does not match expected signature. Expected: %s, Actual: %s", expectedSignature, new String(signature, US_ASCII));
+            throw new WebApplicationException(UNAUTHORIZED);
+        }
     }
 
     @Override
     public void write(byte b)
     {
-        hasher.putByte(b);
+        sha256.update(b);
     }
 
     @Override
     public void write(byte[] b, int off, int len)
     {
-        hasher.putBytes(b, off, len);
+        sha256.update(b, off, len);
+    }
+
+    // signs the content written since the last chunk, resetting the digest
+    private void signContent()
+    {
+        try {
+            sha256.digest(contentHash, 0, contentHash.length);
+        }
+        catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        chunkSigner.signChunk(contentHash, previousSignature, signature);
+    }
+
+    private void chainSignature()
+    {
+        if (previousSignature.length != SIGNATURE_HEX_LENGTH) {
+            // the seed can have any length
+            previousSignature = new byte[SIGNATURE_HEX_LENGTH];
+        }
+        System.arraycopy(signature, 0, previousSignature, 0, SIGNATURE_HEX_LENGTH);
     }
 }
@@ -46,13 +46,19 @@ public class InternalSigningController
     private final Duration maxClockDrift;
     private final RequestLoggerController requestLoggerController;
     private final CredentialsProvider credentialsProvider;
+    private final SigningKeyCache signingKeyCache;
 
     private static final Set<String> LOWERCASE_HEADERS = ImmutableSet.of("content-type");
 
     @Inject
-    public InternalSigningController(CredentialsProvider credentialsProvider, SigningControllerConfig signingControllerConfig, RequestLoggerController requestLoggerController)
+    public InternalSigningController(
+            CredentialsProvider credentialsProvider,
+            SigningControllerConfig signingControllerConfig,
+            RequestLoggerController requestLoggerController,
+            SigningKeyCache signingKeyCache)
     {
         this.credentialsProvider = requireNonNull(credentialsProvider, "credentialsProvider is null");
+        this.signingKeyCache = requireNonNull(signingKeyCache, "signingKeyCache is null");
         this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
 
         maxClockDrift = signingControllerConfig.getMaxClockDrift().toJavaTime();
@@ -144,6 +150,7 @@ public class InternalSigningController
                 expiry,
                 httpMethod,
                 credential,
+                signingKeyCache,
                 maxClockDrift,
                 requestContent)
         ).orElseGet(() -> Signer.sign(
@@ -155,6 +162,7 @@ public class InternalSigningController
                 requestDate,
                 httpMethod,
                 credential,
+                signingKeyCache,
                 maxClockDrift,
                 requestContent));
     }
@@ -15,7 +15,6 @@ package io.trino.aws.proxy.server.signing;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.airlift.log.Logger;
-import io.trino.aws.proxy.server.signing.Signers.SigningApi;
 import io.trino.aws.proxy.spi.credentials.Credential;
 import io.trino.aws.proxy.spi.rest.RequestContent;
 import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
@@ -23,40 +22,47 @@ import io.trino.aws.proxy.spi.signing.RequestAuthorization;
 import io.trino.aws.proxy.spi.signing.SigningContext;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import io.trino.aws.proxy.spi.util.AwsTimestamp;
-import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
 import io.trino.aws.proxy.spi.util.MultiMap;
 import jakarta.ws.rs.WebApplicationException;
-import jakarta.ws.rs.core.UriBuilder;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
-import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
-import software.amazon.awssdk.auth.signer.params.Aws4PresignerParams;
-import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
-import software.amazon.awssdk.auth.signer.params.AwsS3V4SignerParams;
-import software.amazon.awssdk.http.SdkHttpFullRequest;
-import software.amazon.awssdk.http.SdkHttpMethod;
-import software.amazon.awssdk.regions.Region;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.function.BiFunction;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
-import static io.trino.aws.proxy.server.signing.Signers.OVERRIDE_CONTENT_HASH;
-import static io.trino.aws.proxy.server.signing.Signers.awsS3V4Signer;
-import static io.trino.aws.proxy.server.signing.Signers.awsV4Signer;
-import static io.trino.aws.proxy.server.signing.Signers.legacyS3AwsV4Signer;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.SIGNING_ALGORITHM;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.canonicalPath;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.canonicalRequestHash;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.hostHeader;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.signedHeaders;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.stringToSign;
+import static io.trino.aws.proxy.server.signing.CanonicalRequest.uriWithQuery;
+import static io.trino.aws.proxy.server.signing.SigningHashes.EMPTY_CONTENT_SHA256;
+import static io.trino.aws.proxy.server.signing.SigningHashes.hmacSha256Hex;
+import static io.trino.aws.proxy.server.signing.SigningHashes.sha256Hex;
 import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.AWS_CHUNKED;
 import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.AWS_CHUNKED_IN_W3C_CHUNKED;
 import static io.trino.aws.proxy.spi.signing.SigningTrait.S3V4_SIGNER;
 import static io.trino.aws.proxy.spi.signing.SigningTrait.STREAM_CONTENT;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
 import static jakarta.ws.rs.core.Response.Status.UNAUTHORIZED;
-import static java.util.Objects.requireNonNull;
 
+/**
+ * SigV4 signing of requests, compatible with the signatures generated by the AWS SDK signers (which were used
+ * here before). This includes the legacy signatures that include the {@code user-agent} header that the
+ * SDK signer ignores.
+ */
 final class Signer
 {
     private static final Logger log = Logger.get(Signer.class);
@@ -67,12 +73,15 @@ final class Signer
     @VisibleForTesting
     static final Duration MAX_PRESIGNED_REQUEST_AGE = Duration.ofDays(7);
 
-    private Signer() {}
+    private static final String CONTENT_SHA256_HEADER = "x-amz-content-sha256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String STREAMING_PAYLOAD = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
 
-    static byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
-    {
-        return awsS3V4Signer.signingKey(credentials, signerRequestParams);
-    }
+    // headers the SDK signer never signs. Legacy S3 signatures include user-agent.
+    private static final Set<String> IGNORED_HEADERS = Set.of("connection", "x-amzn-trace-id", "user-agent", "expect");
+    private static final Set<String> LEGACY_IGNORED_HEADERS = Set.of("connection", "x-amzn-trace-id", "expect");
+
+    private Signer() {}
 
     static SigningContext presign(
             SigningServiceType serviceType,
@@ -84,6 +93,7 @@ final class Signer
             Instant requestExpiry,
             String httpMethod,
             Credential credential,
+            SigningKeyCache signingKeyCache,
             Duration maxClockDrift,
             RequestContent requestContent)
     {
@@ -93,29 +103,38 @@ final class Signer
             throw new WebApplicationException(BAD_REQUEST);
         }
         enforceMaxDrift(requestDate, MAX_PRESIGNED_REQUEST_AGE, maxClockDrift);
-        Aws4PresignerParams.Builder presignerParamsBuilder = Aws4PresignerParams.builder().expirationTime(requestExpiry);
-
-        return internalSign(
-                (signingApi, requestToSign) -> {
-                    SdkHttpFullRequest signedRequest = signingApi.presign(requestToSign, presignerParamsBuilder.build());
-                    RequestAuthorization requestAuthorization = SigningQueryParameters.splitQueryParameters(ImmutableMultiMap.copyOf(signedRequest.rawQueryParameters().entrySet()))
-                            .toRequestAuthorization()
-                            .orElseThrow(() -> {
-                                log.debug("Presigner did not generate a valid request");
-                                return new WebApplicationException(BAD_REQUEST);
-                            });
-                    return new InternalRequestAuthorization(requestAuthorization, signedRequest.getUri());
-                },
-                SdkHttpFullRequest.builder(),
-                presignerParamsBuilder,
-                serviceType,
-                requestURI,
-                signingHeaders,
-                queryParameters,
-                region,
-                requestDate,
-                httpMethod,
-                credential);
+
+        boolean s3Signer = serviceType.hasTrait(S3V4_SIGNER);
+        String accessKey = credential.accessKey().trim();
+        String amzDate = AwsTimestamp.toRequestFormat(requestDate);
+        String scope = scope(amzDate, region, serviceType);
+
+        SortedMap<String, List<String>> headers = lowercaseHeadersToSign(signingHeaders, serviceType);
+        headers.put("host", List.of(hostHeader(requestURI)));
+        String signedHeaders = signedHeaders(headers);
+
+        long expiresSeconds = requestExpiry.getEpochSecond() - (requestDate.toEpochMilli() / 1000);
+        Map<String, List<String>> signedQueryParameters = new LinkedHashMap<>();
+        queryParameters.forEach(signedQueryParameters::put);
+        credential.session().ifPresent(session -> signedQueryParameters.put("X-Amz-Security-Token", List.of(session.trim())));
+        signedQueryParameters.put("X-Amz-Algorithm", List.of(SIGNING_ALGORITHM));
+        signedQueryParameters.put("X-Amz-Date", List.of(amzDate));
+        signedQueryParameters.put("X-Amz-SignedHeaders", List.of(signedHeaders));
+        signedQueryParameters.put("X-Amz-Expires", List.of(Long.toString(expiresSeconds)));
+        signedQueryParameters.put("X-Amz-Credential", List.of(accessKey + "/" + scope));
+
+        // S3 presigned requests never sign the payload
+        String contentHash = s3Signer ? UNSIGNED_PAYLOAD : EMPTY_CONTENT_SHA256;
+        String canonicalRequestHash = canonicalRequestHash(httpMethod(httpMethod), canonicalPath(requestURI, !s3Signer), signedQueryParameters, headers, contentHash);
+
+        byte[] signingKey = signingKeyCache.signingKey(credential, requestDate, region, serviceType.serviceName());
+        String signature = hmacSha256Hex(signingKey, stringToSign(amzDate, scope, canonicalRequestHash));
+        signedQueryParameters.put("X-Amz-Signature", List.of(signature));
+
+        // the request date only has a precision of seconds in the X-Amz-Date parameter
+        Instant expiry = Instant.ofEpochSecond(requestDate.getEpochSecond()).plusSeconds(expiresSeconds);
+        RequestAuthorization requestAuthorization = new RequestAuthorization(accessKey, region, scope, headers.keySet(), signature, Optional.of(expiry), Optional.empty());
+        return buildSigningContext(requestAuthorization, uriWithQuery(requestURI, signedQueryParameters), signingKey, requestDate, signingHeaders.getFirst(CONTENT_SHA256_HEADER));
     }
 
     static SigningContext sign(
@@ -127,115 +146,113 @@ final class Signer
             Instant requestDate,
             String httpMethod,
             Credential credential,
+            SigningKeyCache signingKeyCache,
             Duration maxClockDrift,
             RequestContent requestContent)
     {
         enforceMaxDrift(requestDate, maxClockDrift, maxClockDrift);
-        boolean enableChunkedEncoding = requestContent.contentType() == AWS_CHUNKED || requestContent.contentType() == AWS_CHUNKED_IN_W3C_CHUNKED;
-        AwsS3V4SignerParams.Builder signerParamsBuilder = AwsS3V4SignerParams.builder()
-                .enablePayloadSigning(true)
-                .enableChunkedEncoding(enableChunkedEncoding);
-        SdkHttpFullRequest.Builder requestBuilder = SdkHttpFullRequest.builder();
 
+        String accessKey = credential.accessKey().trim();
+        String amzDate = AwsTimestamp.toRequestFormat(requestDate);
+        String scope = scope(amzDate, region, serviceType);
+
+        SortedMap<String, List<String>> headers = lowercaseHeadersToSign(signingHeaders, serviceType);
+        credential.session().ifPresent(session -> headers.put("x-amz-security-token", List.of(session.trim())));
+        headers.put("host", List.of(hostHeader(requestURI)));
+        headers.put("x-amz-date", List.of(amzDate));
+
+        String contentHash = contentHash(serviceType, signingHeaders, headers, requestContent);
+        // a "required" content hash header is a placeholder for the actual hash
+        List<String> contentHashHeader = headers.get(CONTENT_SHA256_HEADER);
+        if ((contentHashHeader != null) && contentHashHeader.getFirst().equals("required")) {
+            headers.put(CONTENT_SHA256_HEADER, List.of(contentHash));
+        }
+
+        Map<String, List<String>> signedQueryParameters = new LinkedHashMap<>();
+        queryParameters.forEach(signedQueryParameters::put);
+        String canonicalRequestHash = canonicalRequestHash(httpMethod(httpMethod), canonicalPath(requestURI, false), signedQueryParameters, headers, contentHash);
+
+        byte[] signingKey = signingKeyCache.signingKey(credential, requestDate, region, serviceType.serviceName());
+        String signature = hmacSha256Hex(signingKey, stringToSign(amzDate, scope, canonicalRequestHash));
+
+        RequestAuthorization requestAuthorization = new RequestAuthorization(accessKey, region, scope, headers.keySet(), signature, Optional.empty(), credential.session());
+        return buildSigningContext(requestAuthorization, uriWithQuery(requestURI, signedQueryParameters), signingKey, requestDate, signingHeaders.getFirst(CONTENT_SHA256_HEADER));
+    }
+
+    private static String contentHash(SigningServiceType serviceType, SigningHeaders signingHeaders, SortedMap<String, List<String>> headers, RequestContent requestContent)
+    {
         if (serviceType.hasTrait(STREAM_CONTENT)) {
             // because we stream content without spooling we want to re-use the provided content hash
-            // so that we don't have to calculate it to validate the incoming signature.
-            // Stash the hash in the OVERRIDE_CONTENT_HASH so that aws4Signer can find it and
-            // return it.
-            signingHeaders.getFirst("x-amz-content-sha256")
-                    .ifPresent(contentHashHeader -> requestBuilder.putHeader(OVERRIDE_CONTENT_HASH, contentHashHeader));
+            // so that we don't have to calculate it to validate the incoming signature
+            Optional<String> providedContentHash = signingHeaders.getFirst(CONTENT_SHA256_HEADER);
+            if (providedContentHash.isPresent()) {
+                return providedContentHash.get();
+            }
+        }
+
+        boolean s3Signer = serviceType.hasTrait(S3V4_SIGNER);
+        String contentHash;
+        if (s3Signer && ((requestContent.contentType() == AWS_CHUNKED) || (requestContent.contentType() == AWS_CHUNKED_IN_W3C_CHUNKED))) {
+            // S3 requires the content hash header for chunked requests, so this can only be reached by invalid requests
+            contentHash = STREAMING_PAYLOAD;
+        }
+        else if (serviceType.hasTrait(STREAM_CONTENT)) {
+            contentHash = EMPTY_CONTENT_SHA256;
         }
         else {
-            requestContent.inputStream().ifPresent(inputStream -> requestBuilder.contentStreamProvider(() -> inputStream));
+            contentHash = requestContent.inputStream().map(Signer::contentHash).orElse(EMPTY_CONTENT_SHA256);
         }
-
-        return internalSign(
-                (signingApi, requestToSign) -> {
-                    SdkHttpFullRequest signedRequest = signingApi.sign(requestToSign, signerParamsBuilder.build());
-                    RequestAuthorization requestAuthorization = RequestAuthorization.parse(
-                            signedRequest.firstMatchingHeader("Authorization").orElseThrow(() -> {
-                                log.debug("Signer did not generate \"Authorization\" header");
-                                return new WebApplicationException(BAD_REQUEST);
-                            }),
-                            credential.session());
-                    return new InternalRequestAuthorization(requestAuthorization, signedRequest.getUri());
-                },
-                requestBuilder,
-                signerParamsBuilder,
-                serviceType,
-                requestURI,
-                signingHeaders,
-                queryParameters,
-                region,
-                requestDate,
-                httpMethod,
-                credential);
+        if (s3Signer) {
+            // S3 requires the content hash header
+            headers.put(CONTENT_SHA256_HEADER, List.of(contentHash));
+        }
+        return contentHash;
     }
 
-    private record InternalRequestAuthorization(RequestAuthorization requestAuthorization, URI signingUri)
+    private static String contentHash(InputStream inputStream)
     {
-        private InternalRequestAuthorization
-        {
-            requireNonNull(requestAuthorization, "requestAuthorization is null");
-            requireNonNull(signingUri, "signingUri is null");
+        try {
+            return sha256Hex(inputStream);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    private static <R extends Aws4SignerParams.Builder<R>> SigningContext internalSign(
-            BiFunction<SigningApi, SdkHttpFullRequest, InternalRequestAuthorization> authorizationBuilder,
-            SdkHttpFullRequest.Builder requestBuilder,
-            R paramsBuilder,
-            SigningServiceType serviceType,
-            URI requestURI,
-            SigningHeaders signingHeaders,
-            MultiMap queryParameters,
-            String region,
-            Instant requestDate,
-            String httpMethod,
-            Credential credential)
+    private static SortedMap<String, List<String>> lowercaseHeadersToSign(SigningHeaders signingHeaders, SigningServiceType serviceType)
     {
-        requestBuilder.uri(UriBuilder.fromUri(requestURI).replaceQuery("").build()).method(SdkHttpMethod.fromValue(httpMethod));
-
-        signingHeaders.lowercaseHeadersToSign().forEach(entry -> entry.getValue().forEach(value -> requestBuilder.appendHeader(entry.getKey(), value)));
-
-        queryParameters.forEach(requestBuilder::putRawQueryParameter);
+        Set<String> ignoredHeaders = (serviceType.hasTrait(S3V4_SIGNER) && isLegacy(signingHeaders)) ? LEGACY_IGNORED_HEADERS : IGNORED_HEADERS;
 
-        AwsCredentials credentials = credential.session()
-                .map(session -> (AwsCredentials) AwsSessionCredentials.create(credential.accessKey(), credential.secretKey(), session))
-                .orElseGet(() -> AwsBasicCredentials.create(credential.accessKey(), credential.secretKey()));
-        paramsBuilder.signingName(serviceType.serviceName())
-                .signingRegion(Region.of(region))
-                .doubleUrlEncode(false)
-                .awsCredentials(credentials);
+        SortedMap<String, List<String>> headers = new TreeMap<>();
+        signingHeaders.lowercaseHeadersToSign().forEach(entry -> {
+            String name = entry.getKey().toLowerCase(Locale.ROOT);
+            if (!ignoredHeaders.contains(name)) {
+                headers.computeIfAbsent(name, _ -> new ArrayList<>()).addAll(entry.getValue());
+            }
+        });
+        return headers;
+    }
 
-        // because we're verifying the signature provided we must match the clock that they used
-        Clock clock = Clock.fixed(requestDate, AwsTimestamp.ZONE);
-        paramsBuilder.signingClockOverride(clock);
+    private static String scope(String amzDate, String region, SigningServiceType serviceType)
+    {
+        // the date of the scope is the date part of the request timestamp
+        return amzDate.substring(0, 8) + "/" + region + "/" + serviceType.serviceName() + "/aws4_request";
+    }
 
-        SigningApi signer;
-        if (serviceType.hasTrait(S3V4_SIGNER)) {
-            signer = isLegacy(signingHeaders) ? legacyS3AwsV4Signer : awsS3V4Signer;
-        }
-        else {
-            signer = awsV4Signer;
-        }
-        InternalRequestAuthorization internalRequestAuthorization = authorizationBuilder.apply(signer, requestBuilder.build());
-        return buildSigningContext(
-                internalRequestAuthorization,
-                signingKey(credentials, new Aws4SignerRequestParams(paramsBuilder.build())),
-                requestDate,
-                signingHeaders.getFirst("x-amz-content-sha256"));
+    private static String httpMethod(String httpMethod)
+    {
+        return httpMethod.toUpperCase(Locale.ROOT);
     }
 
-    private static SigningContext buildSigningContext(InternalRequestAuthorization internalRequestAuthorization, byte[] signingKey, Instant requestDate, Optional<String> contentHash)
+    private static SigningContext buildSigningContext(RequestAuthorization requestAuthorization, URI signingUri, byte[] signingKey, Instant requestDate, Optional<String> contentHash)
     {
-        if (!internalRequestAuthorization.requestAuthorization.isValid()) {
-            log.debug("Invalid RequestAuthorization. RequestAuthorization: %s", internalRequestAuthorization);
+        if (!requestAuthorization.isValid()) {
+            log.debug("Invalid RequestAuthorization. RequestAuthorization: %s", requestAuthorization);
             throw new WebApplicationException(UNAUTHORIZED);
         }
-        ChunkSigner chunkSigner = new ChunkSigner(requestDate, internalRequestAuthorization.requestAuthorization.keyPath(), signingKey);
-        ChunkSigningSession chunkSigningSession = new InternalChunkSigningSession(chunkSigner, internalRequestAuthorization.requestAuthorization.signature());
-        return new SigningContext(internalRequestAuthorization.requestAuthorization, chunkSigningSession, contentHash, internalRequestAuthorization.signingUri);
+        ChunkSigner chunkSigner = new ChunkSigner(requestDate, requestAuthorization.keyPath(), signingKey);
+        ChunkSigningSession chunkSigningSession = new InternalChunkSigningSession(chunkSigner, requestAuthorization.signature());
+        return new SigningContext(requestAuthorization, chunkSigningSession, contentHash, signingUri);
     }
 
     private static void enforceMaxDrift(Instant requestDate, Duration pastMaxClockDrift, Duration futureMaxClockDrift)
@@ -16,12 +16,14 @@ package io.trino.aws.proxy.server.signing;
 import io.airlift.configuration.Config;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
 
 import java.util.concurrent.TimeUnit;
 
 public class SigningControllerConfig
 {
     private Duration maxClockDrift = new Duration(15, TimeUnit.MINUTES);
+    private int signingKeyCacheSize = 10_000;
 
     @MinDuration("0s")
     public Duration getMaxClockDrift()
@@ -35,4 +37,17 @@ public class SigningControllerConfig
         this.maxClockDrift = maxClockDrift;
         return this;
     }
+
+    @Min(1)
+    public int getSigningKeyCacheSize()
+    {
+        return signingKeyCacheSize;
+    }
+
+    @Config("signing-controller.signing-key-cache.max-size")
+    public SigningControllerConfig setSigningKeyCacheSize(int signingKeyCacheSize)
+    {
+        this.signingKeyCacheSize = signingKeyCacheSize;
+        return this;
+    }
 }
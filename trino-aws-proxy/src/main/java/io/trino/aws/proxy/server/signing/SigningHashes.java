@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * SHA-256 and HMAC-SHA256 helpers for SigV4. {@link MessageDigest}, {@link Mac} and the buffer used
+ * to UTF-8 encode strings are expensive to create and not thread safe. Pooled platform threads, e.g. the
+ * threads of the server validating inbound requests, keep their own. Virtual threads are created per task,
+ * e.g. for the outbound requests to the remote, so they borrow them from a pool bounded by the number of
+ * carrier threads instead.
+ */
+final class SigningHashes
+{
+    static final String HMAC_SHA256 = "HmacSHA256";
+    static final String EMPTY_CONTENT_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+    // larger buffers are not kept by the thread
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<SigningHashes> INSTANCES = ThreadLocal.withInitial(SigningHashes::new);
+    private static final BlockingQueue<SigningHashes> POOL = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private final MessageDigest sha256;
+    private final Mac hmacSha256;
+    private byte[] buffer = new byte[1024];
+
+    private SigningHashes()
+    {
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+            hmacSha256 = Mac.getInstance(HMAC_SHA256);
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String sha256Hex(CharSequence data)
+    {
+        SigningHashes instance = acquire();
+        try {
+            int length = instance.encode(data);
+            instance.sha256.update(instance.buffer, 0, length);
+            return HEX_FORMAT.formatHex(instance.sha256.digest());
+        }
+        finally {
+            instance.release();
+        }
+    }
+
+    static String sha256Hex(InputStream inputStream)
+            throws IOException
+    {
+        SigningHashes instance = acquire();
+        try {
+            byte[] buffer = instance.buffer;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                instance.sha256.update(buffer, 0, read);
+            }
+            return HEX_FORMAT.formatHex(instance.sha256.digest());
+        }
+        finally {
+            instance.release();
+        }
+    }
+
+    static byte[] hmacSha256(byte[] key, CharSequence data)
+    {
+        SigningHashes instance = acquire();
+        try {
+            int length = instance.encode(data);
+            try {
+                instance.hmacSha256.init(new SecretKeySpec(key, HMAC_SHA256));
+            }
+            catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException(e);
+            }
+            instance.hmacSha256.update(instance.buffer, 0, length);
+            return instance.hmacSha256.doFinal();
+        }
+        finally {
+            instance.release();
+        }
+    }
+
+    static String hmacSha256Hex(byte[] key, CharSequence data)
+    {
+        return HEX_FORMAT.formatHex(hmacSha256(key, data));
+    }
+
+    private static SigningHashes acquire()
+    {
+        if (!Thread.currentThread().isVirtual()) {
+            return INSTANCES.get();
+        }
+        SigningHashes instance = POOL.poll();
+        return (instance == null) ? new SigningHashes() : instance;
+    }
+
+    private void release()
+    {
+        // a failed hash must not leak into the next one
+        sha256.reset();
+        if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new byte[MAX_RETAINED_BUFFER_SIZE];
+        }
+        if (Thread.currentThread().isVirtual()) {
+            // instances beyond the pool size are dropped
+            POOL.offer(this);
+        }
+    }
+
+    // UTF-8 encodes the data into the buffer, replacing malformed surrogates with '?' like String.getBytes(UTF_8)
+    private int encode(CharSequence data)
+    {
+        int length = data.length();
+        ensureCapacity(length * 3);
+        byte[] buffer = this.buffer;
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(data.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, data.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            }
+            else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+        }
+    }
+}
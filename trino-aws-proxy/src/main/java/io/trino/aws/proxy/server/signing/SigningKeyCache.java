@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.inject.Inject;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import org.weakref.jmx.Managed;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static io.trino.aws.proxy.server.signing.SigningHashes.hmacSha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches derived SigV4 signing keys. A signing key only depends on the secret key, the date, the region and
+ * the service so it can be shared by every request signed or verified for a credential on the same day.
+ * Entries expire once requests for their date can no longer be accepted, i.e. at the end of the day plus
+ * the max clock drift.
+ */
+public class SigningKeyCache
+{
+    private static final DateTimeFormatter DATE_STAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(AwsTimestamp.ZONE);
+
+    // presigned requests can be used for days, keys for past dates are kept for a short time only
+    private static final Duration MIN_EXPIRY = Duration.ofMinutes(1);
+
+    private final Cache<SigningKeyId, byte[]> cache;
+    private final Clock clock;
+    private final Duration maxClockDrift;
+
+    private record SigningKeyId(String secretKey, LocalDate date, String region, String serviceName)
+    {
+        private SigningKeyId
+        {
+            requireNonNull(secretKey, "secretKey is null");
+            requireNonNull(date, "date is null");
+            requireNonNull(region, "region is null");
+            requireNonNull(serviceName, "serviceName is null");
+        }
+    }
+
+    @Inject
+    public SigningKeyCache(SigningControllerConfig config)
+    {
+        this(config, Ticker.systemTicker(), Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    SigningKeyCache(SigningControllerConfig config, Ticker ticker, Clock clock)
+    {
+        this.clock = requireNonNull(clock, "clock is null");
+        maxClockDrift = config.getMaxClockDrift().toJavaTime();
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getSigningKeyCacheSize())
+                .ticker(ticker::read)
+                .expireAfter(new Expiry<SigningKeyId, byte[]>()
+                {
+                    @Override
+                    public long expireAfterCreate(SigningKeyId signingKeyId, byte[] signingKey, long currentTime)
+                    {
+                        return expiryNanos(signingKeyId);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(SigningKeyId signingKeyId, byte[] signingKey, long currentTime, long currentDuration)
+                    {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(SigningKeyId signingKeyId, byte[] signingKey, long currentTime, long currentDuration)
+                    {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public byte[] signingKey(Credential credential, Instant requestDate, String region, String serviceName)
+    {
+        SigningKeyId signingKeyId = new SigningKeyId(credential.secretKey(), LocalDate.ofInstant(requestDate, AwsTimestamp.ZONE), region, serviceName);
+        return cache.get(signingKeyId, id -> deriveSigningKey(id.secretKey(), DATE_STAMP_FORMAT.format(requestDate), id.region(), id.serviceName()));
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.estimatedSize();
+    }
+
+    // https://docs.aws.amazon.com/IAM/latest/UserGuide/reference_sigv-create-signed-request.html#derive-signing-key
+    @VisibleForTesting
+    static byte[] deriveSigningKey(String secretKey, String dateStamp, String region, String serviceName)
+    {
+        // like the AWS SDK, surrounding whitespace of the secret key is ignored
+        byte[] dateKey = hmacSha256(("AWS4" + secretKey.trim()).getBytes(UTF_8), dateStamp);
+        byte[] regionKey = hmacSha256(dateKey, region);
+        byte[] serviceKey = hmacSha256(regionKey, serviceName);
+        return hmacSha256(serviceKey, "aws4_request");
+    }
+
+    private long expiryNanos(SigningKeyId signingKeyId)
+    {
+        Instant endOfDay = signingKeyId.date().plusDays(1).atStartOfDay(AwsTimestamp.ZONE).toInstant();
+        Duration expiry = Duration.between(clock.instant(), endOfDay.plus(maxClockDrift));
+        if (expiry.compareTo(MIN_EXPIRY) < 0) {
+            return MIN_EXPIRY.toNanos();
+        }
+        try {
+            return expiry.toNanos();
+        }
+        catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.google.inject.Scopes;
 import io.trino.aws.proxy.spi.signing.SigningController;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class SigningModule
         implements Module
@@ -28,6 +29,9 @@ public class SigningModule
     {
         configBinder(binder).bindConfig(SigningControllerConfig.class);
 
+        binder.bind(SigningKeyCache.class).in(Scopes.SINGLETON);
         binder.bind(SigningController.class).to(InternalSigningController.class).in(Scopes.SINGLETON);
+
+        newExporter(binder).export(SigningKeyCache.class).withGeneratedName();
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.sync;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Objects.requireNonNullElse;
+
+/**
+ * One page of a full or delta listing served by a bulk endpoint, see {@link HttpBulkSync}.
+ *
+ * @param version the version of the data set the page belongs to, used as the cursor of the next delta listing
+ * @param items entries to add or replace
+ * @param removed keys of entries to remove, only used by delta listings
+ * @param nextPageToken token of the next page of the same listing, empty on the last page
+ */
+public record BulkSyncPage<T, K>(long version, List<T> items, List<K> removed, Optional<String> nextPageToken)
+{
+    public BulkSyncPage
+    {
+        items = ImmutableList.copyOf(requireNonNullElse(items, ImmutableList.of()));
+        removed = ImmutableList.copyOf(requireNonNullElse(removed, ImmutableList.of()));
+        requireNonNull(nextPageToken, "nextPageToken is null");
+    }
+}
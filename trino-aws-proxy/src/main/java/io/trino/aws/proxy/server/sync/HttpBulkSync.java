@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.sync;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import jakarta.ws.rs.core.UriBuilder;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Keeps an in-memory index of a data set served by a bulk endpoint. The full data set is listed page by page at
+ * startup, afterward only the changes since the version of the last listing are polled:
+ * <pre>
+ *     GET endpoint?pageSize=1000[&amp;pageToken=...]                  full listing
+ *     GET endpoint?pageSize=1000&amp;sinceVersion=42[&amp;pageToken=...]  delta listing
+ * </pre>
+ * Each response is a {@link BulkSyncPage}. An endpoint that can't serve the changes since a version anymore
+ * answers {@code 410 Gone}, which causes a new full listing. Until the first full listing succeeds the index is
+ * empty, and a failed sync keeps the current index. Callers are expected to fall back to a lookup of the
+ * individual key on a miss. Nothing is listed until {@link #start()} is called.
+ */
+public final class HttpBulkSync<T, K, V>
+{
+    private static final Logger log = Logger.get(HttpBulkSync.class);
+
+    private final String name;
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final Multimap<String, String> headers;
+    private final int pageSize;
+    private final JsonCodec<BulkSyncPage<T, K>> pageCodec;
+    private final Function<T, K> keyFunction;
+    private final Function<T, V> valueFunction;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicLong fullSyncCount = new AtomicLong();
+    private final AtomicLong deltaSyncCount = new AtomicLong();
+    private final AtomicLong syncFailureCount = new AtomicLong();
+    private final Optional<Duration> syncInterval;
+    private final Optional<ScheduledExecutorService> syncExecutor;
+    private volatile Map<K, V> index = new ConcurrentHashMap<>();
+    private volatile OptionalLong version = OptionalLong.empty();
+
+    public HttpBulkSync(
+            String name,
+            HttpClient httpClient,
+            URI endpoint,
+            Map<String, String> headers,
+            int pageSize,
+            Duration syncInterval,
+            JsonCodec<BulkSyncPage<T, K>> pageCodec,
+            Function<T, K> keyFunction,
+            Function<T, V> valueFunction)
+    {
+        this(name, httpClient, endpoint, headers, pageSize, Optional.of(syncInterval), pageCodec, keyFunction, valueFunction);
+    }
+
+    @VisibleForTesting
+    HttpBulkSync(
+            String name,
+            HttpClient httpClient,
+            URI endpoint,
+            Map<String, String> headers,
+            int pageSize,
+            Optional<Duration> syncInterval,
+            JsonCodec<BulkSyncPage<T, K>> pageCodec,
+            Function<T, K> keyFunction,
+            Function<T, V> valueFunction)
+    {
+        this.name = requireNonNull(name, "name is null");
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.endpoint = requireNonNull(endpoint, "endpoint is null");
+        this.headers = ImmutableListMultimap.copyOf(Multimaps.forMap(headers));
+        checkArgument(pageSize > 0, "pageSize must be positive");
+        this.pageSize = pageSize;
+        this.pageCodec = requireNonNull(pageCodec, "pageCodec is null");
+        this.keyFunction = requireNonNull(keyFunction, "keyFunction is null");
+        this.valueFunction = requireNonNull(valueFunction, "valueFunction is null");
+        this.syncInterval = requireNonNull(syncInterval, "syncInterval is null");
+        this.syncExecutor = syncInterval.map(_ -> Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name(name + "-bulk-sync").factory()));
+    }
+
+    public void start()
+    {
+        // lookups fall back to the individual keys, so an unavailable bulk endpoint does not fail the startup
+        sync();
+
+        syncExecutor.ifPresent(executor -> {
+            long intervalMillis = syncInterval.orElseThrow().toMillis();
+            executor.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, MILLISECONDS);
+        });
+    }
+
+    public void shutdown()
+    {
+        syncExecutor.ifPresent(ScheduledExecutorService::shutdownNow);
+    }
+
+    public Optional<V> get(K key)
+    {
+        return Optional.ofNullable(index.get(key));
+    }
+
+    public long getIndexSize()
+    {
+        return index.size();
+    }
+
+    public long getVersion()
+    {
+        return version.orElse(-1);
+    }
+
+    public long getFullSyncCount()
+    {
+        return fullSyncCount.get();
+    }
+
+    public long getDeltaSyncCount()
+    {
+        return deltaSyncCount.get();
+    }
+
+    public long getSyncFailureCount()
+    {
+        return syncFailureCount.get();
+    }
+
+    public void sync()
+    {
+        syncLock.lock();
+        try {
+            OptionalLong currentVersion = version;
+            if (currentVersion.isEmpty() || !deltaSync(currentVersion.getAsLong())) {
+                fullSync();
+            }
+        }
+        catch (RuntimeException e) {
+            syncFailureCount.incrementAndGet();
+            log.error(e, "Failed to sync %s from %s, keeping %s entries of version %s", name, endpoint, index.size(), version);
+        }
+        finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void fullSync()
+    {
+        // the current index keeps serving lookups until the new one is complete
+        Map<K, V> loadedIndex = new ConcurrentHashMap<>();
+        long loadedVersion = listPages(OptionalLong.empty(), page -> page.items().forEach(item -> loadedIndex.put(keyFunction.apply(item), valueFunction.apply(item))))
+                .orElseThrow(() -> new IllegalStateException("Full listing of %s is gone".formatted(endpoint)));
+        index = loadedIndex;
+        version = OptionalLong.of(loadedVersion);
+        fullSyncCount.incrementAndGet();
+    }
+
+    private boolean deltaSync(long sinceVersion)
+    {
+        // applying a page is idempotent, so pages applied before a failure are simply applied again by the next sync
+        Map<K, V> currentIndex = index;
+        OptionalLong deltaVersion = listPages(OptionalLong.of(sinceVersion), page -> {
+            page.items().forEach(item -> currentIndex.put(keyFunction.apply(item), valueFunction.apply(item)));
+            page.removed().forEach(currentIndex::remove);
+        });
+        if (deltaVersion.isEmpty()) {
+            return false;
+        }
+        version = deltaVersion;
+        deltaSyncCount.incrementAndGet();
+        return true;
+    }
+
+    private OptionalLong listPages(OptionalLong sinceVersion, Consumer<BulkSyncPage<T, K>> pageConsumer)
+    {
+        Optional<String> pageToken = Optional.empty();
+        while (true) {
+            UriBuilder uriBuilder = UriBuilder.fromUri(endpoint).queryParam("pageSize", pageSize);
+            sinceVersion.ifPresent(value -> uriBuilder.queryParam("sinceVersion", value));
+            pageToken.ifPresent(value -> uriBuilder.queryParam("pageToken", value));
+            JsonResponse<BulkSyncPage<T, K>> response = httpClient.execute(
+                    prepareGet().setUri(uriBuilder.build()).addHeaders(headers).build(),
+                    createFullJsonResponseHandler(pageCodec));
+            int statusCode = response.getStatusCode();
+            if (statusCode == HttpStatus.GONE.code()) {
+                return OptionalLong.empty();
+            }
+            // unknown status codes have no HttpStatus
+            if (HttpStatus.familyForStatusCode(statusCode) != HttpStatus.Family.SUCCESSFUL || !response.hasValue()) {
+                throw new RuntimeException("Failed to list %s from %s. Response code: %s".formatted(name, endpoint, statusCode), response.getException());
+            }
+            BulkSyncPage<T, K> page = response.getValue();
+            pageConsumer.accept(page);
+            if (page.nextPageToken().isEmpty()) {
+                return OptionalLong.of(page.version());
+            }
+            pageToken = page.nextPageToken();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.trino.aws.proxy.server.testing.TestingCredentialsRolesProvider;
+import io.trino.aws.proxy.server.testing.TestingTrinoAwsProxyServer;
+import io.trino.aws.proxy.server.testing.containers.S3Container.ForS3Container;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTest;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTestCommonModules.WithConfiguredBuckets;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import io.trino.aws.proxy.spi.remote.RemoteS3Connection.StaticRemoteS3Connection;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static io.airlift.http.client.HttpStatus.FORBIDDEN;
+import static io.airlift.http.client.HttpStatus.NOT_FOUND;
+import static io.trino.aws.proxy.server.testing.TestingUtil.TESTING_IDENTITY_CREDENTIAL;
+import static io.trino.aws.proxy.server.testing.TestingUtil.clientBuilder;
+import static io.trino.aws.proxy.server.testing.containers.S3Container.POLICY_USER_CREDENTIAL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.InstanceOfAssertFactories.type;
+
+@TrinoAwsProxyTest(filters = TestCachedReadsAfterWrite.Filter.class)
+public class TestCachedReadsAfterWrite
+{
+    private static final String KEY = "read-after-write";
+
+    private final S3Client s3Client;
+    // its remote credential is only allowed to assume a role, any direct request is denied by the remote
+    private final S3Client deniedS3Client;
+    private final String bucket;
+
+    public static class Filter
+            extends WithConfiguredBuckets
+    {
+        @Override
+        public TestingTrinoAwsProxyServer.Builder filter(TestingTrinoAwsProxyServer.Builder builder)
+        {
+            try {
+                return super.filter(builder)
+                        .withProperty("aws.proxy.metadata-cache.enabled", "true")
+                        .withProperty("aws.proxy.range-cache.directory", Files.createTempDirectory("range-cache").toString());
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Inject
+    public TestCachedReadsAfterWrite(
+            S3Client s3Client,
+            @ForS3Container List<String> configuredBuckets,
+            TestingCredentialsRolesProvider credentialsRolesProvider,
+            TestingHttpServer httpServer,
+            TrinoAwsProxyConfig trinoAwsProxyConfig)
+    {
+        this.s3Client = requireNonNull(s3Client, "s3Client is null");
+        this.bucket = ImmutableList.copyOf(configuredBuckets).getFirst();
+
+        IdentityCredential deniedCredential = new IdentityCredential(new Credential(UUID.randomUUID().toString(), UUID.randomUUID().toString()), TESTING_IDENTITY_CREDENTIAL.identity());
+        credentialsRolesProvider.addCredentials(deniedCredential, new StaticRemoteS3Connection(POLICY_USER_CREDENTIAL));
+        AwsBasicCredentials awsBasicCredentials = AwsBasicCredentials.create(deniedCredential.emulated().accessKey(), deniedCredential.emulated().secretKey());
+        this.deniedS3Client = clientBuilder(httpServer.getBaseUrl(), Optional.of(trinoAwsProxyConfig.getS3Path()))
+                .credentialsProvider(() -> awsBasicCredentials)
+                .build();
+    }
+
+    @Test
+    public void testReadsAfterWrite()
+            throws IOException
+    {
+        put("first version");
+        // fill the caches
+        assertThat(head().contentLength()).isEqualTo("first version".length());
+        assertThat(getRange("bytes=0-4")).isEqualTo("first");
+
+        put("second, longer version");
+        assertThat(head().contentLength()).isEqualTo("second, longer version".length());
+        assertThat(getRange("bytes=0-5")).isEqualTo("second");
+        assertThat(getRange("bytes=8-21")).isEqualTo("longer version");
+
+        s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(KEY).build());
+        assertThatThrownBy(this::head)
+                .asInstanceOf(type(S3Exception.class))
+                .extracting(SdkServiceException::statusCode)
+                .isEqualTo(NOT_FOUND.code());
+        assertThatThrownBy(() -> getRange("bytes=0-5"))
+                .asInstanceOf(type(S3Exception.class))
+                .extracting(SdkServiceException::statusCode)
+                .isEqualTo(NOT_FOUND.code());
+    }
+
+    @Test
+    public void testCachedReadsAreNotSharedBetweenRemoteCredentials()
+            throws IOException
+    {
+        put("cached with the remote credential of the first client");
+        assertThat(head().contentLength()).isEqualTo("cached with the remote credential of the first client".length());
+        assertThat(getRange(s3Client, "bytes=0-5")).isEqualTo("cached");
+
+        // the cached metadata and blocks must not be served without the remote authorizing the other remote credential
+        assertThatThrownBy(() -> deniedS3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(KEY).build()))
+                .asInstanceOf(type(S3Exception.class))
+                .extracting(SdkServiceException::statusCode)
+                .isEqualTo(FORBIDDEN.code());
+        assertThatThrownBy(() -> getRange(deniedS3Client, "bytes=0-5"))
+                .asInstanceOf(type(S3Exception.class))
+                .extracting(SdkServiceException::statusCode)
+                .isEqualTo(FORBIDDEN.code());
+        assertThat(getRange(s3Client, "bytes=0-5")).isEqualTo("cached");
+    }
+
+    private void put(String content)
+    {
+        s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(KEY).build(), RequestBody.fromString(content));
+    }
+
+    private HeadObjectResponse head()
+    {
+        return s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(KEY).build());
+    }
+
+    private String getRange(String range)
+            throws IOException
+    {
+        return getRange(s3Client, range);
+    }
+
+    private String getRange(S3Client client, String range)
+            throws IOException
+    {
+        GetObjectRequest request = GetObjectRequest.builder().bucket(bucket).key(KEY).range(range).build();
+        return new String(client.getObject(request).readAllBytes(), UTF_8);
+    }
+}
@@ -24,6 +24,7 @@ import io.trino.aws.proxy.server.rest.RequestLoggerConfig;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
 import io.trino.aws.proxy.server.signing.InternalSigningController;
 import io.trino.aws.proxy.server.signing.SigningControllerConfig;
+import io.trino.aws.proxy.server.signing.SigningKeyCache;
 import io.trino.aws.proxy.server.signing.TestingChunkSigningSession;
 import io.trino.aws.proxy.server.testing.TestingCredentialsRolesProvider;
 import io.trino.aws.proxy.server.testing.TestingTrinoAwsProxyServer;
@@ -114,7 +115,8 @@ public class TestGenericRestRequests
         this.signingController = new InternalSigningController(
                 credentialsRolesProvider,
                 new SigningControllerConfig().setMaxClockDrift(new Duration(10, TimeUnit.SECONDS)),
-                new RequestLoggerController(new RequestLoggerConfig()));
+                new RequestLoggerController(new RequestLoggerConfig()),
+                new SigningKeyCache(new SigningControllerConfig()));
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.testingCredentials = requireNonNull(testingCredentials, "testingCredentials is null");
         this.storageClient = requireNonNull(storageClient, "storageClient is null");
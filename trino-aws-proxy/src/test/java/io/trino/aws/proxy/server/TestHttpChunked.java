@@ -22,6 +22,7 @@ import io.trino.aws.proxy.server.rest.RequestLoggerConfig;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
 import io.trino.aws.proxy.server.signing.InternalSigningController;
 import io.trino.aws.proxy.server.signing.SigningControllerConfig;
+import io.trino.aws.proxy.server.signing.SigningKeyCache;
 import io.trino.aws.proxy.server.signing.TestingChunkSigningSession;
 import io.trino.aws.proxy.server.testing.TestingCredentialsRolesProvider;
 import io.trino.aws.proxy.server.testing.TestingUtil.ForTesting;
@@ -260,18 +261,53 @@ public class TestHttpChunked
         assertFileNotInS3(storageClient, bucket, "test-upload");
     }
 
+    @Test
+    public void testHttpChunkedWithoutDecodedContentLength()
+            throws IOException
+    {
+        String bucket = "http-chunked-without-decoded-length";
+        storageClient.createBucket(r -> r.bucket(bucket).build());
+
+        assertThat(doHttpChunkedUploadWithoutDecodedContentLength(bucket, "unsigned-upload")).isEqualTo(411);
+        assertFileNotInS3(storageClient, bucket, "unsigned-upload");
+        assertThat(doAwsChunkedUploadWithoutDecodedContentLength(bucket, "aws-chunked-upload")).isEqualTo(411);
+        assertFileNotInS3(storageClient, bucket, "aws-chunked-upload");
+    }
+
+    int doHttpChunkedUploadWithoutDecodedContentLength(String bucket, String key)
+    {
+        MultiMap requestHeaders = ImmutableMultiMap.builder(false)
+                .add("X-Amz-Content-Sha256", "UNSIGNED-PAYLOAD")
+                .build();
+        return doCustomHttpChunkedUpload(bucket, key, 3, requestHeaders, Optional.empty(), _ -> LOREM_IPSUM);
+    }
+
+    int doAwsChunkedUploadWithoutDecodedContentLength(String bucket, String key)
+    {
+        MultiMap requestHeaders = ImmutableMultiMap.builder(false)
+                .add("X-Amz-Content-Sha256", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD")
+                .add("Content-Encoding", "aws-chunked")
+                .build();
+        return doCustomHttpChunkedUpload(bucket, key, 3, requestHeaders, Optional.empty(), signature -> TestingChunkSigningSession.build(VALID_CREDENTIAL, signature).generateChunkedStream(LOREM_IPSUM, 3));
+    }
+
     private int doHttpChunkedUpload(String bucket, String key, String content, int chunkCount, MultiMap extraHeaders)
     {
         return doCustomHttpChunkedUpload(bucket, key, chunkCount, extraHeaders, content.length(), _ -> content);
     }
 
     private int doCustomHttpChunkedUpload(String bucket, String key, int chunkCount, MultiMap extraHeaders, int decodedContentLength, Function<String, String> payloadBuilder)
+    {
+        return doCustomHttpChunkedUpload(bucket, key, chunkCount, extraHeaders, Optional.of(decodedContentLength), payloadBuilder);
+    }
+
+    private int doCustomHttpChunkedUpload(String bucket, String key, int chunkCount, MultiMap extraHeaders, Optional<Integer> decodedContentLength, Function<String, String> payloadBuilder)
     {
         Instant requestDate = Instant.now();
         ImmutableMultiMap.Builder requestHeaderBuilder = ImmutableMultiMap.builder(false)
                 .add("Transfer-Encoding", "chunked")
-                .add("X-Amz-Date", AwsTimestamp.toRequestFormat(requestDate))
-                .add("X-Amz-Decoded-Content-Length", String.valueOf(decodedContentLength));
+                .add("X-Amz-Date", AwsTimestamp.toRequestFormat(requestDate));
+        decodedContentLength.ifPresent(length -> requestHeaderBuilder.add("X-Amz-Decoded-Content-Length", String.valueOf(length)));
         extraHeaders.forEach(requestHeaderBuilder::addAll);
 
         URI requestUri = UriBuilder.fromUri(baseUri).path(bucket).path(key).build();
@@ -279,7 +315,8 @@ public class TestHttpChunked
         InternalSigningController signingController = new InternalSigningController(
                 credentialsRolesProvider,
                 new SigningControllerConfig().setMaxClockDrift(new Duration(10, TimeUnit.SECONDS)),
-                new RequestLoggerController(new RequestLoggerConfig()));
+                new RequestLoggerController(new RequestLoggerConfig()),
+                new SigningKeyCache(new SigningControllerConfig()));
         RequestAuthorization requestAuthorization = signingController.signRequest(new SigningMetadata(SigningServiceType.S3, VALID_CREDENTIAL, Optional.empty()),
                 "us-east-1", requestDate, Optional.empty(), requestUri, requestHeaderBuilder.build(), ImmutableMultiMap.empty(), "PUT").signingAuthorization();
 
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server;
+
+import com.google.inject.Inject;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.trino.aws.proxy.server.testing.TestingCredentialsRolesProvider;
+import io.trino.aws.proxy.server.testing.TestingTrinoAwsProxyServer;
+import io.trino.aws.proxy.server.testing.TestingUtil.ForTesting;
+import io.trino.aws.proxy.server.testing.containers.S3Container.ForS3Container;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTest;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+
+import static io.trino.aws.proxy.server.testing.TestingUtil.LOREM_IPSUM;
+import static io.trino.aws.proxy.server.testing.TestingUtil.getFileFromStorage;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TrinoAwsProxyTest(filters = TestHttpChunkedWithoutDecodedContentLength.Filter.class)
+public class TestHttpChunkedWithoutDecodedContentLength
+        extends TestHttpChunked
+{
+    private final S3Client storageClient;
+
+    public static class Filter
+            extends TestGenericRestRequests.Filter
+    {
+        @Override
+        public TestingTrinoAwsProxyServer.Builder filter(TestingTrinoAwsProxyServer.Builder builder)
+        {
+            return super.filter(builder).withProperty("aws.proxy.request.chunked-without-decoded-length.enabled", "true");
+        }
+    }
+
+    @Inject
+    public TestHttpChunkedWithoutDecodedContentLength(
+            TestingHttpServer httpServer,
+            TestingCredentialsRolesProvider credentialsRolesProvider,
+            @ForTesting HttpClient httpClient,
+            @ForTesting IdentityCredential testingCredentials,
+            @ForS3Container S3Client storageClient,
+            TrinoAwsProxyConfig trinoAwsProxyConfig)
+    {
+        super(httpServer, credentialsRolesProvider, httpClient, testingCredentials, storageClient, trinoAwsProxyConfig);
+        this.storageClient = requireNonNull(storageClient, "storageClient is null");
+    }
+
+    @Test
+    @Override
+    public void testHttpChunkedWithoutDecodedContentLength()
+            throws IOException
+    {
+        String bucket = "http-chunked-without-decoded-length";
+        storageClient.createBucket(r -> r.bucket(bucket).build());
+
+        // the content is forwarded to the remote as signed aws-chunked content of unknown length
+        assertThat(doHttpChunkedUploadWithoutDecodedContentLength(bucket, "unsigned-upload")).isEqualTo(200);
+        assertThat(getFileFromStorage(storageClient, bucket, "unsigned-upload")).isEqualTo(LOREM_IPSUM);
+        assertThat(doAwsChunkedUploadWithoutDecodedContentLength(bucket, "aws-chunked-upload")).isEqualTo(200);
+        assertThat(getFileFromStorage(storageClient, bucket, "aws-chunked-upload")).isEqualTo(LOREM_IPSUM);
+    }
+}
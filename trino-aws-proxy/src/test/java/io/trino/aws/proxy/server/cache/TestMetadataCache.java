@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.http.client.Request.Builder.prepareHead;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMetadataCache
+{
+    private static final URI REMOTE_URI = URI.create("http://remote/bucket/dir/key");
+    private static final String REMOTE_ACCESS_KEY = "remote-access-key";
+    private static final String OTHER_REMOTE_ACCESS_KEY = "other-remote-access-key";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    public void testCacheSuccessfulResponses()
+    {
+        MetadataCache metadataCache = new MetadataCache(config(), ticker);
+
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+
+        CachedMetadata cachedMetadata = metadataCache.get(REMOTE_ACCESS_KEY, URI.create(REMOTE_URI + "?x-id=HeadObject")).orElseThrow();
+        assertThat(cachedMetadata.statusCode()).isEqualTo(200);
+        assertThat(cachedMetadata.headers().get("ETag")).containsExactly("\"etag\"");
+        assertThat(cachedMetadata.headers().get("Content-Length")).containsExactly("1234");
+        assertThat(cachedMetadata.headers().containsKey("x-amz-request-id")).isFalse();
+        assertThat(cachedMetadata.headers().containsKey("Date")).isFalse();
+
+        assertThat(metadataCache.getHits().getTotalCount()).isEqualTo(1);
+        assertThat(metadataCache.getMisses().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedResponsesAreNotCached()
+    {
+        MetadataCache metadataCache = new MetadataCache(config(), ticker);
+
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.NOT_FOUND);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+    }
+
+    @Test
+    public void testTtl()
+    {
+        MetadataCache metadataCache = new MetadataCache(config(), ticker);
+
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        nanos.addAndGet(SECONDS.toNanos(4));
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isPresent();
+        nanos.addAndGet(SECONDS.toNanos(2));
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        MetadataCache metadataCache = new MetadataCache(config(), ticker);
+
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        metadataCache.invalidate(URI.create(REMOTE_URI + "?uploadId=123"));
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+
+        // a HEAD that was sent before the object was modified must not be cached
+        ResponseHandler<Void, RuntimeException> inFlight = metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler());
+        nanos.incrementAndGet();
+        metadataCache.invalidate(REMOTE_URI);
+        head(inFlight, HttpStatus.OK);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+
+        nanos.incrementAndGet();
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isPresent();
+    }
+
+    @Test
+    public void testInvalidateBucket()
+    {
+        MetadataCache metadataCache = new MetadataCache(config(), ticker);
+        URI otherBucketUri = URI.create("http://remote/bucket2/key");
+
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, otherBucketUri, new NoopResponseHandler()), HttpStatus.OK);
+
+        ResponseHandler<Void, RuntimeException> inFlight = metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler());
+        nanos.incrementAndGet();
+        metadataCache.invalidateBucket(URI.create("http://remote/bucket?delete"));
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, otherBucketUri)).isPresent();
+
+        head(inFlight, HttpStatus.OK);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+    }
+
+    @Test
+    public void testResponsesAreNotSharedBetweenRemoteCredentials()
+    {
+        MetadataCache metadataCache = new MetadataCache(config(), ticker);
+
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isPresent();
+        // the remote has to authorize the other credential
+        assertThat(metadataCache.get(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+
+        head(metadataCache.caching(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        assertThat(metadataCache.get(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI)).isPresent();
+        assertThat(metadataCache.getSize()).isEqualTo(2);
+
+        // a modification drops the object for all credentials
+        metadataCache.invalidate(REMOTE_URI);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+        assertThat(metadataCache.get(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+        assertThat(metadataCache.getSize()).isEqualTo(0);
+
+        nanos.addAndGet(SECONDS.toNanos(1));
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        head(metadataCache.caching(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        metadataCache.invalidateBucket(URI.create("http://remote/bucket?delete"));
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+        assertThat(metadataCache.get(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        MetadataCache metadataCache = new MetadataCache(new MetadataCacheConfig(), ticker);
+
+        head(metadataCache.caching(REMOTE_ACCESS_KEY, REMOTE_URI, new NoopResponseHandler()), HttpStatus.OK);
+        assertThat(metadataCache.get(REMOTE_ACCESS_KEY, REMOTE_URI)).isEmpty();
+        assertThat(metadataCache.getSize()).isEqualTo(0);
+    }
+
+    private static MetadataCacheConfig config()
+    {
+        return new MetadataCacheConfig()
+                .setEnabled(true)
+                .setTtl(new Duration(5, SECONDS));
+    }
+
+    private static void head(ResponseHandler<Void, RuntimeException> responseHandler, HttpStatus status)
+    {
+        Response response = new TestingResponse(status, ImmutableListMultimap.of(
+                "ETag", "\"etag\"",
+                "Content-Length", "1234",
+                "Date", "Wed, 21 Oct 2015 07:28:00 GMT",
+                "x-amz-request-id", "request-id"),
+                new byte[0]);
+        responseHandler.handle(prepareHead().setUri(REMOTE_URI).build(), response);
+    }
+
+    private static class NoopResponseHandler
+            implements ResponseHandler<Void, RuntimeException>
+    {
+        @Override
+        public Void handleException(Request request, Exception exception)
+        {
+            throw new RuntimeException(exception);
+        }
+
+        @Override
+        public Void handle(Request request, Response response)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TestMetadataCacheConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(MetadataCacheConfig.class)
+                .setEnabled(false)
+                .setTtl(new Duration(5, SECONDS))
+                .setMaxEntries(100_000));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.metadata-cache.enabled", "true")
+                .put("aws.proxy.metadata-cache.ttl", "30s")
+                .put("aws.proxy.metadata-cache.max-entries", "1000")
+                .buildOrThrow();
+        MetadataCacheConfig expected = new MetadataCacheConfig()
+                .setEnabled(true)
+                .setTtl(new Duration(30, SECONDS))
+                .setMaxEntries(1000);
+        assertFullMapping(properties, expected);
+    }
+}
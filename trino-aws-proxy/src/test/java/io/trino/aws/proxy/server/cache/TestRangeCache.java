@@ -0,0 +1,384 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.StreamingResponse;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.cache.RangeCache.ByteRange;
+import io.trino.aws.proxy.server.cache.RangeCache.RangeReader;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult.NotServed;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult.RemoteResponse;
+import io.trino.aws.proxy.server.cache.RangeCache.ReadResult.Served;
+import io.trino.aws.proxy.server.rest.TestingStreamingHttpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class TestRangeCache
+{
+    private static final URI REMOTE_URI = URI.create("http://remote/bucket/key");
+    private static final String REMOTE_ACCESS_KEY = "remote-access-key";
+    private static final String OTHER_REMOTE_ACCESS_KEY = "other-remote-access-key";
+    private static final int BLOCK_SIZE = 4096;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testMissThenHit()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        assertThat(read(rangeCache, "bytes=100-5000", remoteObject)).isEqualTo(remoteObject.range(100, 5000));
+        assertThat(remoteObject.requestedRanges).containsExactly("bytes=0-8191");
+        assertThat(rangeCache.getMisses().getTotalCount()).isEqualTo(1);
+
+        assertThat(read(rangeCache, "bytes=200-6000", remoteObject)).isEqualTo(remoteObject.range(200, 6000));
+        assertThat(remoteObject.requestedRanges).hasSize(1);
+        assertThat(rangeCache.getHits().getTotalCount()).isEqualTo(1);
+        assertThat(rangeCache.getBytesSaved().getTotalCount()).isEqualTo(5801);
+
+        // the last block is shorter than the block size
+        assertThat(read(rangeCache, "bytes=9000-20000", remoteObject)).isEqualTo(remoteObject.range(9000, 9999));
+        assertThat(remoteObject.requestedRanges).containsExactly("bytes=0-8191", "bytes=8192-9999");
+        assertThat(remoteObject.ifMatches).containsExactly(Optional.empty(), Optional.of(remoteObject.eTag));
+    }
+
+    @Test
+    public void testSuffixAndOpenRanges()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        // the object's size is probed before the range can be resolved
+        assertThat(read(rangeCache, "bytes=-100", remoteObject)).isEqualTo(remoteObject.range(9900, 9999));
+        assertThat(remoteObject.requestedRanges).containsExactly("bytes=0-0", "bytes=8192-9999");
+
+        assertThat(read(rangeCache, "bytes=9950-", remoteObject)).isEqualTo(remoteObject.range(9950, 9999));
+        assertThat(remoteObject.requestedRanges).hasSize(2);
+    }
+
+    @Test
+    public void testChangedObject()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        assertThat(read(rangeCache, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        remoteObject.replace(10_000);
+
+        // a block that isn't cached yet is read with the known ETag which no longer matches
+        assertThat(rangeCache.read(REMOTE_ACCESS_KEY, REMOTE_URI, "bytes=5000-5099", remoteObject)).isInstanceOf(NotServed.class);
+
+        // the new ETag is learned by the next read and the old blocks aren't used anymore
+        assertThat(read(rangeCache, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+    }
+
+    @Test
+    public void testInvalidate()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        assertThat(read(rangeCache, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        remoteObject.replace(10_000);
+        rangeCache.invalidate(URI.create(REMOTE_URI + "?uploadId=x"));
+        assertThat(read(rangeCache, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+    }
+
+    @Test
+    public void testUnsatisfiableRange()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        assertThat(read(rangeCache, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        assertThat(rangeCache.read(REMOTE_ACCESS_KEY, REMOTE_URI, "bytes=10000-10099", remoteObject)).isInstanceOf(NotServed.class);
+        assertThat(rangeCache.read(REMOTE_ACCESS_KEY, REMOTE_URI, "bytes=0-1,5-6", remoteObject)).isInstanceOf(NotServed.class);
+    }
+
+    @Test
+    public void testEviction()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10 * BLOCK_SIZE);
+        RangeCache rangeCache = new RangeCache(config().setMaxSize(DataSize.of(2 * BLOCK_SIZE, DataSize.Unit.BYTE)));
+
+        for (int block = 0; block < 10; block++) {
+            long start = (long) block * BLOCK_SIZE;
+            assertThat(read(rangeCache, "bytes=%s-%s".formatted(start, start + 10), remoteObject)).isEqualTo(remoteObject.range(start, start + 10));
+        }
+        await().until(() -> rangeCache.getCachedBytes() <= 2 * BLOCK_SIZE);
+        await().until(() -> directory.toFile().list().length <= 2);
+    }
+
+    @Test
+    public void testStreamsWhileCaching()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        ReadResult readResult = rangeCache.read(REMOTE_ACCESS_KEY, REMOTE_URI, "bytes=100-9999", remoteObject);
+        assertThat(readResult).isInstanceOf(Served.class);
+        try (CachedRange cachedRange = ((Served) readResult).range()) {
+            // nothing of the remote response has been read or cached before the range is transferred
+            assertThat(remoteObject.bytesRead.get()).isEqualTo(0);
+            assertThat(rangeCache.getCachedBytes()).isEqualTo(0);
+
+            AtomicLong bytesReadBeforeFirstWrite = new AtomicLong(-1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream()
+            {
+                @Override
+                public synchronized void write(byte[] bytes, int offset, int length)
+                {
+                    bytesReadBeforeFirstWrite.compareAndSet(-1, remoteObject.bytesRead.get());
+                    super.write(bytes, offset, length);
+                }
+            };
+            cachedRange.transferTo(output);
+            assertThat(output.toByteArray()).isEqualTo(remoteObject.range(100, 9999));
+            assertThat(bytesReadBeforeFirstWrite.get()).isEqualTo(BLOCK_SIZE);
+        }
+        assertThat(remoteObject.requestedRanges).containsExactly("bytes=0-12287");
+
+        assertThat(read(rangeCache, "bytes=0-9999", remoteObject)).isEqualTo(remoteObject.range(0, 9999));
+        assertThat(remoteObject.requestedRanges).hasSize(1);
+    }
+
+    @Test
+    public void testRemoteErrorIsPassedThrough()
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        remoteObject.errorStatus = Optional.of(HttpStatus.FORBIDDEN);
+        RangeCache rangeCache = new RangeCache(config());
+
+        ReadResult readResult = rangeCache.read(REMOTE_ACCESS_KEY, REMOTE_URI, "bytes=0-99", remoteObject);
+        assertThat(readResult).isInstanceOf(RemoteResponse.class);
+        try (StreamingResponse response = ((RemoteResponse) readResult).response()) {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN.code());
+        }
+        assertThat(remoteObject.requestedRanges).hasSize(1);
+    }
+
+    @Test
+    public void testBlocksAreNotSharedBetweenRemoteCredentials()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        RangeCache rangeCache = new RangeCache(config());
+
+        assertThat(read(rangeCache, REMOTE_ACCESS_KEY, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+
+        // the remote decides whether the other credential has access to the object
+        remoteObject.errorStatus = Optional.of(HttpStatus.FORBIDDEN);
+        ReadResult readResult = rangeCache.read(OTHER_REMOTE_ACCESS_KEY, REMOTE_URI, "bytes=0-99", remoteObject);
+        assertThat(readResult).isInstanceOf(RemoteResponse.class);
+        try (StreamingResponse response = ((RemoteResponse) readResult).response()) {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN.code());
+        }
+        assertThat(remoteObject.requestedRanges).hasSize(2);
+
+        // the blocks read with the first credential are still served to it
+        remoteObject.errorStatus = Optional.empty();
+        assertThat(read(rangeCache, REMOTE_ACCESS_KEY, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        assertThat(remoteObject.requestedRanges).hasSize(2);
+
+        // the other credential reads and caches its own blocks
+        assertThat(read(rangeCache, OTHER_REMOTE_ACCESS_KEY, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        assertThat(read(rangeCache, OTHER_REMOTE_ACCESS_KEY, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        assertThat(remoteObject.requestedRanges).hasSize(3);
+
+        // invalidating the object drops what is known for all credentials
+        remoteObject.replace(10_000);
+        rangeCache.invalidate(REMOTE_URI);
+        assertThat(read(rangeCache, REMOTE_ACCESS_KEY, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        assertThat(read(rangeCache, OTHER_REMOTE_ACCESS_KEY, "bytes=0-99", remoteObject)).isEqualTo(remoteObject.range(0, 99));
+        assertThat(remoteObject.requestedRanges).hasSize(5);
+    }
+
+    @Test
+    public void testFailedCacheWriteServesRemoteResponse()
+            throws IOException
+    {
+        RemoteObject remoteObject = new RemoteObject(10_000);
+        Path blockDirectory = directory.resolve("blocks");
+        RangeCache rangeCache = new RangeCache(config().setDirectory(blockDirectory.toFile()));
+        Files.delete(blockDirectory);
+
+        // the block can't be written, the range is still served from the response that has been read
+        assertThat(read(rangeCache, "bytes=0-5000", remoteObject)).isEqualTo(remoteObject.range(0, 5000));
+        assertThat(remoteObject.requestedRanges).hasSize(1);
+        assertThat(rangeCache.getFailures().getTotalCount()).isEqualTo(1);
+        assertThat(rangeCache.getCachedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testParseByteRange()
+    {
+        assertThat(ByteRange.parse("bytes=0-99")).contains(new ByteRange(0, 99));
+        assertThat(ByteRange.parse("bytes=100-")).contains(new ByteRange(100, -1));
+        assertThat(ByteRange.parse("bytes=-100")).contains(new ByteRange(-100, -1));
+        assertThat(ByteRange.parse("bytes=99-0")).isEmpty();
+        assertThat(ByteRange.parse("bytes=-0")).isEmpty();
+        assertThat(ByteRange.parse("bytes=-")).isEmpty();
+        assertThat(ByteRange.parse("bytes=0-1,3-4")).isEmpty();
+        assertThat(ByteRange.parse("items=0-1")).isEmpty();
+
+        assertThat(new ByteRange(-100, -1).resolve(50)).contains(new ByteRange(0, 49));
+        assertThat(new ByteRange(10, -1).resolve(50)).contains(new ByteRange(10, 49));
+        assertThat(new ByteRange(10, 100).resolve(50)).contains(new ByteRange(10, 49));
+        assertThat(new ByteRange(50, 100).resolve(50)).isEmpty();
+    }
+
+    private RangeCacheConfig config()
+    {
+        return new RangeCacheConfig()
+                .setDirectory(directory.toFile())
+                .setBlockSize(DataSize.of(BLOCK_SIZE / 1024, KILOBYTE))
+                .setObjectInfoTtl(new Duration(1, MINUTES));
+    }
+
+    private static byte[] read(RangeCache rangeCache, String range, RangeReader rangeReader)
+            throws IOException
+    {
+        return read(rangeCache, REMOTE_ACCESS_KEY, range, rangeReader);
+    }
+
+    private static byte[] read(RangeCache rangeCache, String remoteAccessKey, String range, RangeReader rangeReader)
+            throws IOException
+    {
+        ReadResult readResult = rangeCache.read(remoteAccessKey, REMOTE_URI, range, rangeReader);
+        assertThat(readResult).isInstanceOf(Served.class);
+        try (CachedRange cachedRange = ((Served) readResult).range()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            cachedRange.transferTo(output);
+            assertThat(cachedRange.contentLength()).isEqualTo(output.size());
+            assertThat(cachedRange.headers().get("Content-Length")).containsExactly(Integer.toString(output.size()));
+            return output.toByteArray();
+        }
+    }
+
+    private static class RemoteObject
+            implements RangeReader
+    {
+        private final List<String> requestedRanges = new ArrayList<>();
+        private final List<Optional<String>> ifMatches = new ArrayList<>();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final TestingStreamingHttpClient httpClient = new TestingStreamingHttpClient(this::respond);
+        private Optional<HttpStatus> errorStatus = Optional.empty();
+        private byte[] data;
+        private String eTag;
+        private int version;
+
+        private RemoteObject(int size)
+        {
+            replace(size);
+        }
+
+        private void replace(int size)
+        {
+            data = new byte[size];
+            ThreadLocalRandom.current().nextBytes(data);
+            eTag = "\"etag-" + (++version) + "\"";
+        }
+
+        private byte[] range(long start, long end)
+        {
+            return Arrays.copyOfRange(data, (int) start, (int) end + 1);
+        }
+
+        @Override
+        public StreamingResponse read(String range, Optional<String> ifMatch)
+        {
+            requestedRanges.add(range);
+            ifMatches.add(ifMatch);
+            Request.Builder request = prepareGet().setUri(REMOTE_URI).addHeader("Range", range);
+            ifMatch.ifPresent(value -> request.addHeader("If-Match", value));
+            return httpClient.executeStreaming(request.build());
+        }
+
+        private Response respond(Request request)
+        {
+            if (errorStatus.isPresent()) {
+                return new TestingResponse(errorStatus.get(), ImmutableListMultimap.of(), new byte[0]);
+            }
+            String ifMatch = request.getHeader("If-Match");
+            if ((ifMatch != null) && !ifMatch.equals(eTag)) {
+                return new TestingResponse(HttpStatus.PRECONDITION_FAILED, ImmutableListMultimap.of(), new byte[0]);
+            }
+            ByteRange range = ByteRange.parse(request.getHeader("Range")).orElseThrow().resolve(data.length).orElse(null);
+            if (range == null) {
+                return new TestingResponse(HttpStatus.fromStatusCode(416), ImmutableListMultimap.of(), new byte[0]);
+            }
+            long end = min(range.end(), data.length - 1);
+            return new TestingResponse(HttpStatus.PARTIAL_CONTENT, ImmutableListMultimap.of(
+                    "ETag", eTag,
+                    "Content-Range", "bytes %s-%s/%s".formatted(range.start(), end, data.length),
+                    "Content-Type", "application/octet-stream"),
+                    countingInputStream(range(range.start(), end)));
+        }
+
+        private InputStream countingInputStream(byte[] bytes)
+        {
+            return new FilterInputStream(new ByteArrayInputStream(bytes))
+            {
+                @Override
+                public int read(byte[] buffer, int offset, int length)
+                        throws IOException
+                {
+                    int count = super.read(buffer, offset, length);
+                    if (count > 0) {
+                        bytesRead.addAndGet(count);
+                    }
+                    return count;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TestRangeCacheConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RangeCacheConfig.class)
+                .setDirectory(null)
+                .setMaxSize(DataSize.of(10, GIGABYTE))
+                .setBlockSize(DataSize.of(1, MEGABYTE))
+                .setMaxRangeSize(DataSize.of(64, MEGABYTE))
+                .setObjectInfoTtl(new Duration(1, MINUTES)));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.range-cache.directory", "/mnt/ssd/cache")
+                .put("aws.proxy.range-cache.max-size", "100GB")
+                .put("aws.proxy.range-cache.block-size", "256kB")
+                .put("aws.proxy.range-cache.max-range-size", "8MB")
+                .put("aws.proxy.range-cache.object-info-ttl", "30s")
+                .buildOrThrow();
+        RangeCacheConfig expected = new RangeCacheConfig()
+                .setDirectory(new File("/mnt/ssd/cache"))
+                .setMaxSize(DataSize.of(100, GIGABYTE))
+                .setBlockSize(DataSize.of(256, KILOBYTE))
+                .setMaxRangeSize(DataSize.of(8, MEGABYTE))
+                .setObjectInfoTtl(new Duration(30, SECONDS));
+        assertFullMapping(properties, expected);
+    }
+}
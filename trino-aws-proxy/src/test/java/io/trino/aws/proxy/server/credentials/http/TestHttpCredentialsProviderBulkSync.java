@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.credentials.http;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.jetty.JettyHttpClient;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.json.ObjectMapperProvider;
+import io.trino.aws.proxy.server.credentials.JsonIdentityProvider;
+import io.trino.aws.proxy.server.credentials.http.HttpCredentialsProvider.CredentialsKey;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
+import io.trino.aws.proxy.server.testing.TestingHttpBulkSyncServlet;
+import io.trino.aws.proxy.server.testing.TestingHttpCredentialsProviderServlet;
+import io.trino.aws.proxy.server.testing.TestingIdentity;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static io.trino.aws.proxy.server.testing.TestingHttpCredentialsProviderServlet.DUMMY_EMULATED_ACCESS_KEY;
+import static io.trino.aws.proxy.server.testing.TestingHttpCredentialsProviderServlet.DUMMY_EMULATED_SECRET_KEY;
+import static io.trino.aws.proxy.server.testing.TestingUtil.createTestingHttpServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHttpCredentialsProviderBulkSync
+{
+    private static final JsonCodecFactory JSON_CODEC_FACTORY = new JsonCodecFactory(
+            new ObjectMapperProvider().withModules(Set.of(new JsonIdentityProvider(TestingIdentity.class).get())));
+    private static final JsonCodec<IdentityCredential> JSON_CODEC = JSON_CODEC_FACTORY.jsonCodec(IdentityCredential.class);
+    private static final JsonCodec<BulkSyncPage<IdentityCredential, CredentialsKey>> BULK_PAGE_CODEC = JSON_CODEC_FACTORY.jsonCodec(new TypeToken<BulkSyncPage<IdentityCredential, CredentialsKey>>() {});
+
+    private TestingHttpCredentialsProviderServlet credentialsServlet;
+    private TestingHttpBulkSyncServlet bulkServlet;
+    private TestingHttpServer credentialsServer;
+    private TestingHttpServer bulkServer;
+    private HttpClient httpClient;
+    private HttpCredentialsProvider provider;
+
+    @BeforeEach
+    public void setup()
+            throws Exception
+    {
+        credentialsServlet = new TestingHttpCredentialsProviderServlet(ImmutableMap.of("Authorization", "some-auth"));
+        credentialsServer = createTestingHttpServer(credentialsServlet);
+        credentialsServer.start();
+        bulkServlet = new TestingHttpBulkSyncServlet();
+        bulkServer = createTestingHttpServer(bulkServlet);
+        bulkServer.start();
+        httpClient = new JettyHttpClient();
+
+        putCredential("bulk-only-key", Optional.empty());
+        putCredential(DUMMY_EMULATED_ACCESS_KEY, Optional.of("%s-token".formatted(DUMMY_EMULATED_ACCESS_KEY)));
+
+        HttpCredentialsProviderConfig config = new HttpCredentialsProviderConfig()
+                .setEndpoint(credentialsServer.getBaseUrl())
+                .setHttpHeaders("Authorization: some-auth")
+                .setBulkEndpoint(bulkServer.getBaseUrl())
+                .setBulkPageSize(1);
+        provider = new HttpCredentialsProvider(httpClient, config, JSON_CODEC, BULK_PAGE_CODEC);
+        provider.start();
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        provider.shutdown();
+        httpClient.close();
+        credentialsServer.stop();
+        bulkServer.stop();
+    }
+
+    @Test
+    public void testCredentialsFromBulkIndex()
+    {
+        assertThat(provider.getBulkIndexSize()).isEqualTo(2);
+        assertThat(provider.getBulkVersion()).isEqualTo(2);
+
+        assertThat(secretKey("bulk-only-key", Optional.empty())).isEqualTo("bulk-only-key-secret");
+        assertThat(secretKey(DUMMY_EMULATED_ACCESS_KEY, Optional.of("%s-token".formatted(DUMMY_EMULATED_ACCESS_KEY)))).isEqualTo(DUMMY_EMULATED_ACCESS_KEY + "-secret");
+        assertThat(credentialsServlet.getRequestCount()).isEqualTo(0);
+        assertThat(bulkServlet.getRequestQueries()).containsExactly("pageSize=1", "pageSize=1&pageToken=1");
+    }
+
+    @Test
+    public void testFallbackToCredentialsEndpoint()
+    {
+        // not listed with this session
+        assertThat(secretKey(DUMMY_EMULATED_ACCESS_KEY, Optional.empty())).isEqualTo(DUMMY_EMULATED_SECRET_KEY);
+        assertThat(credentialsServlet.getRequestCount()).isEqualTo(1);
+
+        assertThat(provider.credentials("non-existent-key", Optional.empty())).isEmpty();
+        assertThat(credentialsServlet.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDeltaSync()
+    {
+        putCredential("new-key", Optional.empty());
+        bulkServlet.remove("bulk-only-key", "{\"emulatedAccessKey\": \"bulk-only-key\"}");
+        provider.getBulkSync().orElseThrow().sync();
+
+        assertThat(provider.getBulkVersion()).isEqualTo(4);
+        assertThat(secretKey("new-key", Optional.empty())).isEqualTo("new-key-secret");
+        assertThat(credentialsServlet.getRequestCount()).isEqualTo(0);
+
+        // removed credentials are looked up individually, and the credentials endpoint doesn't know them
+        assertThat(provider.credentials("bulk-only-key", Optional.empty())).isEmpty();
+        assertThat(credentialsServlet.getRequestCount()).isEqualTo(1);
+        assertThat(bulkServlet.getRequestQueries()).endsWith("pageSize=1&sinceVersion=2", "pageSize=1&sinceVersion=2&pageToken=1");
+    }
+
+    private String secretKey(String emulatedAccessKey, Optional<String> session)
+    {
+        return provider.credentials(emulatedAccessKey, session).orElseThrow().emulated().secretKey();
+    }
+
+    private void putCredential(String emulatedAccessKey, Optional<String> session)
+    {
+        IdentityCredential credential = new IdentityCredential(
+                new Credential(emulatedAccessKey, emulatedAccessKey + "-secret", session),
+                new TestingIdentity("test-username", ImmutableList.of(), emulatedAccessKey));
+        bulkServlet.put(emulatedAccessKey + session.map(value -> "/" + value).orElse(""), JSON_CODEC.toJson(credential));
+    }
+}
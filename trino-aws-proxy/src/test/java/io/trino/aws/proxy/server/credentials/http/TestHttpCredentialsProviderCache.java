@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.credentials.http;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.reflect.TypeToken;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.json.ObjectMapperProvider;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.credentials.JsonIdentityProvider;
+import io.trino.aws.proxy.server.credentials.http.HttpCredentialsProvider.CredentialsKey;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
+import io.trino.aws.proxy.server.testing.TestingIdentity;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestHttpCredentialsProviderCache
+{
+    private static final JsonCodecFactory JSON_CODEC_FACTORY = new JsonCodecFactory(
+            new ObjectMapperProvider().withModules(Set.of(new JsonIdentityProvider(TestingIdentity.class).get())));
+    private static final JsonCodec<IdentityCredential> JSON_CODEC = JSON_CODEC_FACTORY.jsonCodec(IdentityCredential.class);
+    private static final JsonCodec<BulkSyncPage<IdentityCredential, CredentialsKey>> BULK_PAGE_CODEC = JSON_CODEC_FACTORY.jsonCodec(new TypeToken<BulkSyncPage<IdentityCredential, CredentialsKey>>() {});
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger credentialsVersion = new AtomicInteger(1);
+    private final AtomicBoolean failRequests = new AtomicBoolean();
+    private volatile Optional<HttpStatus> errorStatus = Optional.empty();
+    private final AtomicLong nanos = new AtomicLong();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Test
+    public void testRefreshServesCurrentValue()
+            throws Exception
+    {
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            HttpCredentialsProvider provider = provider(httpClient(executor), cacheConfig().setCacheRefreshAfter(new Duration(1, MINUTES)));
+
+            assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+            credentialsVersion.set(2);
+            release = new CountDownLatch(1);
+
+            // lookups keep getting the current value while the reload is in flight
+            nanos.addAndGet(MINUTES.toNanos(2));
+            assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+            assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+
+            release.countDown();
+            while (!secretKey(provider, "known").equals("secret-2")) {
+                Thread.sleep(10);
+            }
+            assertThat(requestCount.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testFailedRefreshKeepsCurrentValue()
+    {
+        HttpCredentialsProvider provider = provider(httpClient(), cacheConfig().setCacheRefreshAfter(new Duration(1, MINUTES)));
+
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        failRequests.set(true);
+
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+
+        // once expired the failure surfaces to the caller
+        nanos.addAndGet(MINUTES.toNanos(10));
+        assertThatThrownBy(() -> provider.credentials("known", Optional.empty())).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    public void testServerErrorKeepsCurrentValue()
+    {
+        HttpCredentialsProvider provider = provider(httpClient(), cacheConfig().setCacheRefreshAfter(new Duration(1, MINUTES)));
+
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        errorStatus = Optional.of(HttpStatus.SERVICE_UNAVAILABLE);
+
+        // an error status fails the refresh, it does not replace the value with an unknown credential
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+
+        nanos.addAndGet(MINUTES.toNanos(10));
+        assertThatThrownBy(() -> provider.credentials("known", Optional.empty())).hasMessageContaining("Response code: 503");
+
+        // the failure is not cached for the negative TTL
+        errorStatus = Optional.empty();
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+    }
+
+    @Test
+    public void testNegativeCacheTtl()
+    {
+        HttpCredentialsProvider provider = provider(httpClient(), cacheConfig());
+
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertThat(requestCount.get()).isEqualTo(2);
+
+        // the unknown key expires after the negative TTL, the known key is still cached
+        nanos.addAndGet(SECONDS.toNanos(31));
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        assertThat(requestCount.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testJitteredExpiry()
+    {
+        HttpCredentialsProvider provider = provider(httpClient(), cacheConfig().setCacheTtlJitter(new Duration(5, MINUTES)));
+
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+
+        // entries expire somewhere between TTL minus jitter and TTL
+        nanos.addAndGet(MINUTES.toNanos(5) - 1);
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        assertThat(requestCount.get()).isEqualTo(1);
+
+        nanos.addAndGet(MINUTES.toNanos(5) + 1);
+        assertThat(secretKey(provider, "known")).isEqualTo("secret-1");
+        assertThat(requestCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testConcurrentLoadsShareRequest()
+            throws Exception
+    {
+        release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            HttpCredentialsProvider provider = provider(httpClient(executor), cacheConfig());
+            ImmutableList.Builder<Future<String>> lookups = ImmutableList.builder();
+            for (int i = 0; i < 4; i++) {
+                lookups.add(executor.submit(() -> secretKey(provider, "known")));
+            }
+            while (provider.getMissCount() + provider.getHitCount() < 4) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> lookup : lookups.build()) {
+                assertThat(lookup.get()).isEqualTo("secret-1");
+            }
+            assertThat(requestCount.get()).isEqualTo(1);
+        }
+    }
+
+    private HttpCredentialsProvider provider(HttpClient httpClient, HttpCredentialsProviderConfig config)
+    {
+        return new HttpCredentialsProvider(httpClient, config, JSON_CODEC, BULK_PAGE_CODEC, nanos::get);
+    }
+
+    private static HttpCredentialsProviderConfig cacheConfig()
+    {
+        return new HttpCredentialsProviderConfig()
+                .setEndpoint(URI.create("http://credentials/api/v1/credentials"))
+                .setCacheSize(10)
+                .setCacheTtl(new Duration(10, MINUTES))
+                .setNegativeCacheTtl(new Duration(30, SECONDS));
+    }
+
+    private static String secretKey(HttpCredentialsProvider provider, String emulatedAccessKey)
+    {
+        return provider.credentials(emulatedAccessKey, Optional.empty()).orElseThrow().emulated().secretKey();
+    }
+
+    private HttpClient httpClient()
+    {
+        // responses complete on the calling thread
+        return new TestingHttpClient(this::respond);
+    }
+
+    private HttpClient httpClient(ExecutorService executor)
+    {
+        return new TestingHttpClient(this::respond, executor);
+    }
+
+    private Response respond(Request request)
+            throws InterruptedException
+    {
+        release.await();
+        requestCount.incrementAndGet();
+        if (failRequests.get()) {
+            throw new UncheckedIOException(new IOException("credentials service unavailable"));
+        }
+        if (errorStatus.isPresent()) {
+            return new TestingResponse(errorStatus.get(), ImmutableListMultimap.of(), new byte[0]);
+        }
+        if (!request.getUri().getPath().endsWith("/known")) {
+            return new TestingResponse(HttpStatus.NOT_FOUND, ImmutableListMultimap.of(), new byte[0]);
+        }
+        IdentityCredential credential = new IdentityCredential(
+                new Credential("known", "secret-" + credentialsVersion.get()),
+                new TestingIdentity("user", ImmutableList.of(), "known"));
+        return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(CONTENT_TYPE, "application/json"), JSON_CODEC.toJsonBytes(credential));
+    }
+}
@@ -37,12 +37,24 @@ public class TestHttpCredentialsProviderConfig
                 .put("credentials-provider.http.headers", "x-api-key: xyz123, Content-Type: application/json")
                 .put("credentials-provider.http.cache-size", "123")
                 .put("credentials-provider.http.cache-ttl", "2m")
+                .put("credentials-provider.http.cache-refresh-after", "1m")
+                .put("credentials-provider.http.negative-cache-ttl", "5s")
+                .put("credentials-provider.http.cache-ttl-jitter", "10s")
+                .put("credentials-provider.http.bulk-endpoint", "http://usersvc:9000/api/v1/credentials")
+                .put("credentials-provider.http.bulk-page-size", "500")
+                .put("credentials-provider.http.bulk-sync-interval", "1m")
                 .buildOrThrow();
         HttpCredentialsProviderConfig expected = new HttpCredentialsProviderConfig()
                 .setEndpoint(URI.create("http://usersvc:9000/api/v1/users"))
                 .setHttpHeaders("x-api-key: xyz123, Content-Type: application/json")
                 .setCacheSize(123)
-                .setCacheTtl(new Duration(2, TimeUnit.MINUTES));
+                .setCacheTtl(new Duration(2, TimeUnit.MINUTES))
+                .setCacheRefreshAfter(new Duration(1, TimeUnit.MINUTES))
+                .setNegativeCacheTtl(new Duration(5, TimeUnit.SECONDS))
+                .setCacheTtlJitter(new Duration(10, TimeUnit.SECONDS))
+                .setBulkEndpoint(URI.create("http://usersvc:9000/api/v1/credentials"))
+                .setBulkPageSize(500)
+                .setBulkSyncInterval(new Duration(1, TimeUnit.MINUTES));
         assertFullMapping(properties, expected);
     }
 
@@ -53,7 +65,38 @@ public class TestHttpCredentialsProviderConfig
                 .setEndpoint(null)
                 .setHttpHeaders("")
                 .setCacheSize(0)
-                .setCacheTtl(Duration.ZERO));
+                .setCacheTtl(Duration.ZERO)
+                .setCacheRefreshAfter(Duration.ZERO)
+                .setNegativeCacheTtl(new Duration(30, TimeUnit.SECONDS))
+                .setCacheTtlJitter(Duration.ZERO)
+                .setBulkEndpoint(null)
+                .setBulkPageSize(1000)
+                .setBulkSyncInterval(new Duration(30, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void testRefreshAndJitterBelowTtl()
+    {
+        HttpCredentialsProviderConfig config = new HttpCredentialsProviderConfig()
+                .setCacheTtl(new Duration(1, TimeUnit.MINUTES));
+        assertThat(config.isCacheRefreshAfterValid()).isTrue();
+        assertThat(config.isCacheTtlJitterValid()).isTrue();
+
+        config.setCacheRefreshAfter(new Duration(1, TimeUnit.MINUTES)).setCacheTtlJitter(new Duration(2, TimeUnit.MINUTES));
+        assertThat(config.isCacheRefreshAfterValid()).isFalse();
+        assertThat(config.isCacheTtlJitterValid()).isFalse();
+
+        config.setCacheRefreshAfter(new Duration(30, TimeUnit.SECONDS)).setCacheTtlJitter(new Duration(10, TimeUnit.SECONDS));
+        assertThat(config.isCacheRefreshAfterValid()).isTrue();
+        assertThat(config.isCacheTtlJitterValid()).isTrue();
+
+        // the jitter must not let an entry expire before it is refreshed
+        config.setCacheRefreshAfter(new Duration(50, TimeUnit.SECONDS)).setCacheTtlJitter(new Duration(10, TimeUnit.SECONDS));
+        assertThat(config.isCacheRefreshAfterValid()).isTrue();
+        assertThat(config.isCacheTtlJitterValid()).isFalse();
+
+        config.setCacheRefreshAfter(Duration.ZERO).setCacheTtlJitter(new Duration(50, TimeUnit.SECONDS));
+        assertThat(config.isCacheTtlJitterValid()).isTrue();
     }
 
     @Test
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote.provider.http;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.jetty.JettyHttpClient;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.json.ObjectMapperProvider;
+import io.trino.aws.proxy.server.remote.provider.SerializableRemoteS3Connection;
+import io.trino.aws.proxy.server.sync.BulkSyncPage;
+import io.trino.aws.proxy.server.testing.TestingHttpBulkSyncServlet;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.ws.rs.core.UriBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static io.trino.aws.proxy.server.remote.provider.http.RequestQuery.BUCKET;
+import static io.trino.aws.proxy.server.remote.provider.http.RequestQuery.EMULATED_ACCESS_KEY;
+import static io.trino.aws.proxy.server.testing.TestingUtil.createTestingHttpServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHttpRemoteS3ConnectionProviderBulkSync
+{
+    private static final JsonCodecFactory JSON_CODEC_FACTORY = new JsonCodecFactory();
+    private static final JsonCodec<BulkSyncPage<RemoteS3ConnectionEntry, Map<String, String>>> BULK_PAGE_CODEC =
+            JSON_CODEC_FACTORY.jsonCodec(new TypeToken<BulkSyncPage<RemoteS3ConnectionEntry, Map<String, String>>>() {});
+
+    private TestingHttpRemoteS3ConnectionProviderServlet connectionServlet;
+    private TestingHttpBulkSyncServlet bulkServlet;
+    private TestingHttpServer connectionServer;
+    private TestingHttpServer bulkServer;
+    private HttpClient httpClient;
+    private HttpRemoteS3ConnectionProvider provider;
+
+    @BeforeEach
+    public void setup()
+            throws Exception
+    {
+        connectionServlet = new TestingHttpRemoteS3ConnectionProviderServlet();
+        connectionServer = createTestingHttpServer(connectionServlet);
+        connectionServer.start();
+        bulkServlet = new TestingHttpBulkSyncServlet();
+        bulkServer = createTestingHttpServer(bulkServlet);
+        bulkServer.start();
+        httpClient = new JettyHttpClient();
+
+        putConnection("bucket-1", "key-1", "remote-1");
+        putConnection("bucket-2", "key-1", "remote-2");
+
+        HttpRemoteS3ConnectionProviderConfig config = new HttpRemoteS3ConnectionProviderConfig()
+                .setEndpoint(UriBuilder.fromUri(connectionServer.getBaseUrl()).path("/api/v1/remote_s3_connection").build())
+                .setRequestFields(ImmutableList.of(BUCKET, EMULATED_ACCESS_KEY))
+                .setBulkEndpoint(bulkServer.getBaseUrl());
+        provider = new HttpRemoteS3ConnectionProvider(
+                httpClient,
+                config,
+                JSON_CODEC_FACTORY.jsonCodec(SerializableRemoteS3Connection.class),
+                BULK_PAGE_CODEC,
+                new ObjectMapperProvider().get());
+        provider.start();
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        provider.shutdown();
+        httpClient.close();
+        connectionServer.stop();
+        bulkServer.stop();
+    }
+
+    @Test
+    public void testConnectionsFromBulkIndex()
+    {
+        assertThat(provider.getBulkIndexSize()).isEqualTo(2);
+        assertThat(remoteAccessKey("bucket-1", "key-1")).contains("remote-1");
+        assertThat(remoteAccessKey("bucket-2", "key-1")).contains("remote-2");
+        assertThat(connectionServlet.getRequestParameters()).isEmpty();
+    }
+
+    @Test
+    public void testFallbackToConnectionEndpoint()
+    {
+        connectionServlet.setResponse(connectionJson("remote-fallback"));
+
+        assertThat(remoteAccessKey("bucket-1", "key-2")).contains("remote-fallback");
+        assertThat(connectionServlet.getRequestParameters()).hasSize(1);
+        assertThat(connectionServlet.getRequestParameters().getFirst().get("bucket")).containsExactly("bucket-1");
+        assertThat(connectionServlet.getRequestParameters().getFirst().get("emulated_access_key")).containsExactly("key-2");
+    }
+
+    @Test
+    public void testDeltaSync()
+    {
+        putConnection("bucket-1", "key-1", "remote-1-updated");
+        bulkServlet.remove("bucket-2/key-1", "{\"bucket\": \"bucket-2\", \"emulated_access_key\": \"key-1\"}");
+        provider.getBulkSync().orElseThrow().sync();
+
+        assertThat(provider.getBulkIndexSize()).isEqualTo(1);
+        assertThat(provider.getBulkVersion()).isEqualTo(4);
+        assertThat(remoteAccessKey("bucket-1", "key-1")).contains("remote-1-updated");
+        assertThat(connectionServlet.getRequestParameters()).isEmpty();
+    }
+
+    private Optional<String> remoteAccessKey(String bucket, String emulatedAccessKey)
+    {
+        SigningMetadata signingMetadata = new SigningMetadata(SigningServiceType.S3, new Credential(emulatedAccessKey, "secret"), Optional.empty());
+        ParsedS3Request request = new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                bucket,
+                "object",
+                RequestHeaders.EMPTY,
+                ImmutableMultiMap.empty(),
+                "GET",
+                "/" + bucket + "/object",
+                Optional.empty(),
+                RequestContent.EMPTY);
+        return provider.remoteConnection(signingMetadata, Optional.empty(), request)
+                .map(connection -> connection.remoteCredential().accessKey());
+    }
+
+    private void putConnection(String bucket, String emulatedAccessKey, String remoteAccessKey)
+    {
+        bulkServlet.put(bucket + "/" + emulatedAccessKey, """
+                {
+                    "query": {"bucket": "%s", "emulated_access_key": "%s"},
+                    "connection": %s
+                }
+                """.formatted(bucket, emulatedAccessKey, connectionJson(remoteAccessKey)));
+    }
+
+    private static String connectionJson(String remoteAccessKey)
+    {
+        return """
+                {"remoteCredential": {"accessKey": "%s", "secretKey": "%s-secret"}}
+                """.formatted(remoteAccessKey, remoteAccessKey);
+    }
+}
@@ -38,12 +38,18 @@ public class TestHttpRemoteS3ConnectionProviderConfig
                 .put("remote-s3-connection-provider.http.request-fields", "bucket,key,emulated-access-key")
                 .put("remote-s3-connection-provider.http.cache-size", "100")
                 .put("remote-s3-connection-provider.http.cache-ttl", "10s")
+                .put("remote-s3-connection-provider.http.bulk-endpoint", "http://localhost:8080/all")
+                .put("remote-s3-connection-provider.http.bulk-page-size", "500")
+                .put("remote-s3-connection-provider.http.bulk-sync-interval", "1m")
                 .buildOrThrow();
         HttpRemoteS3ConnectionProviderConfig expected = new HttpRemoteS3ConnectionProviderConfig()
                 .setEndpoint(new URI("http://localhost:8080"))
                 .setRequestFields(List.of(RequestQuery.BUCKET, RequestQuery.KEY, RequestQuery.EMULATED_ACCESS_KEY))
                 .setCacheSize(100)
-                .setCacheTtl(Duration.valueOf("10s"));
+                .setCacheTtl(Duration.valueOf("10s"))
+                .setBulkEndpoint(new URI("http://localhost:8080/all"))
+                .setBulkPageSize(500)
+                .setBulkSyncInterval(Duration.valueOf("1m"));
         assertFullMapping(properties, expected);
     }
 
@@ -54,6 +60,9 @@ public class TestHttpRemoteS3ConnectionProviderConfig
                 .setEndpoint(null)
                 .setRequestFields(EnumSet.allOf(RequestQuery.class).stream().collect(toImmutableList()))
                 .setCacheSize(0)
-                .setCacheTtl(Duration.valueOf("1s")));
+                .setCacheTtl(Duration.valueOf("1s"))
+                .setBulkEndpoint(null)
+                .setBulkPageSize(1000)
+                .setBulkSyncInterval(Duration.valueOf("30s")));
     }
 }
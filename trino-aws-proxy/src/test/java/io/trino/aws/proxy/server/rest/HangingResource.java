@@ -19,6 +19,7 @@ import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.Request;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
 import io.trino.aws.proxy.server.rest.TestHangingStreamingResponseHandler.ForTimeout;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
@@ -31,6 +32,7 @@ import jakarta.ws.rs.core.UriInfo;
 
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -64,7 +66,7 @@ public class HangingResource
     {
         // simulate calling a remote request and streaming the result while the remote server hangs
         Request request = prepareGet().setUri(uriInfo.getBaseUri().resolve("hang")).build();
-        httpClient.execute(request, new StreamingResponseHandler(asyncResponse, ImmutableMap.of(), () -> {}, new LimitStreamController(new TrinoAwsProxyConfig())));
+        httpClient.execute(request, new StreamingResponseHandler(asyncResponse, ImmutableMap.of(), () -> {}, new RequestStats(Optional.empty()).newSession(SigningServiceType.S3), new LimitStreamController(new TrinoAwsProxyConfig()), BandwidthShapingController.UNSHAPED, 1024));
     }
 
     @GET
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import io.trino.aws.proxy.server.rest.AdmissionController.Admission;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.collect.Iterators.getOnlyElement;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestAdmissionController
+{
+    @Test
+    public void testConcurrencyLimit()
+            throws InterruptedException
+    {
+        AdmissionController admissionController = new AdmissionController(new AdmissionControllerConfig().setMaxConcurrentRequests(2));
+
+        Admission first = admissionController.reserve("a");
+        Admission second = admissionController.reserve("b");
+        Admission third = admissionController.reserve("a");
+        assertThat(first.isAdmitted()).isTrue();
+        assertThat(second.isAdmitted()).isTrue();
+        assertThat(third.isAdmitted()).isFalse();
+        assertThat(admissionController.getRunningRequests()).isEqualTo(2);
+        assertThat(admissionController.getQueuedRequests()).isEqualTo(1);
+
+        first.close();
+        assertThat(third.isAdmitted()).isTrue();
+        third.awaitAdmission();
+        assertThat(admissionController.getRunningRequests()).isEqualTo(2);
+        assertThat(admissionController.getQueuedRequests()).isEqualTo(0);
+
+        // closing twice has no effect
+        first.close();
+        second.close();
+        third.close();
+        assertThat(admissionController.getRunningRequests()).isEqualTo(0);
+        assertThat(admissionController.getQueueWaitTime().getAllTime().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testQueueLimits()
+    {
+        AdmissionController admissionController = new AdmissionController(new AdmissionControllerConfig()
+                .setMaxConcurrentRequests(1)
+                .setMaxQueuedRequests(3)
+                .setMaxQueuedRequestsPerKey(2));
+
+        Admission running = admissionController.reserve("a");
+        admissionController.reserve("a");
+        Admission queued = admissionController.reserve("a");
+        assertSlowDown(() -> admissionController.reserve("a"));
+
+        admissionController.reserve("b");
+        assertSlowDown(() -> admissionController.reserve("c"));
+        assertThat(admissionController.getRejectedRequests().getTotalCount()).isEqualTo(2);
+
+        // cancelling a queued request frees up its queue slot
+        queued.close();
+        assertThat(queued.isAdmitted()).isFalse();
+        admissionController.reserve("a");
+        assertThat(admissionController.getQueuedRequests()).isEqualTo(3);
+
+        running.close();
+        assertThat(admissionController.getQueuedRequests()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFairOrder()
+    {
+        assertThat(admissionOrder(new AdmissionControllerConfig().setMaxConcurrentRequests(1)))
+                .containsExactly("a", "b", "a", "b", "a", "b");
+        assertThat(admissionOrder(new AdmissionControllerConfig().setMaxConcurrentRequests(1).setWeights("a:2")))
+                .containsExactly("a", "a", "b", "a", "b", "b");
+    }
+
+    @Test
+    public void testUnlimited()
+    {
+        AdmissionController admissionController = new AdmissionController(new AdmissionControllerConfig());
+        for (int i = 0; i < 10_000; ++i) {
+            assertThat(admissionController.reserve(Optional.empty(), null).isAdmitted()).isTrue();
+        }
+        assertThat(admissionController.getRunningRequests()).isEqualTo(0);
+    }
+
+    private static List<String> admissionOrder(AdmissionControllerConfig config)
+    {
+        AdmissionController admissionController = new AdmissionController(config);
+        Admission running = admissionController.reserve("busy");
+
+        // "a" queues all of its requests before "b" queues any
+        Map<Admission, String> queued = new LinkedHashMap<>();
+        for (String key : ImmutableList.of("a", "a", "a", "b", "b", "b")) {
+            queued.put(admissionController.reserve(key), key);
+        }
+
+        List<String> order = new ArrayList<>();
+        while (!queued.isEmpty()) {
+            running.close();
+            running = getOnlyElement(queued.keySet().stream().filter(Admission::isAdmitted).iterator());
+            order.add(queued.remove(running));
+        }
+        return order;
+    }
+
+    private static void assertSlowDown(Runnable runnable)
+    {
+        assertThatThrownBy(runnable::run)
+                .isInstanceOfSatisfying(S3ErrorException.class, e -> {
+                    assertThat(e.errorCode()).isEqualTo("SlowDown");
+                    assertThat(e.getResponse().getStatus()).isEqualTo(503);
+                });
+    }
+}
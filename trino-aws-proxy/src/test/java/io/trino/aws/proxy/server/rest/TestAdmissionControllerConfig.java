@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.trino.aws.proxy.server.rest.AdmissionControllerConfig.FairShareKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestAdmissionControllerConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(AdmissionControllerConfig.class)
+                .setMaxConcurrentRequests(null)
+                .setMaxQueuedRequests(1000)
+                .setMaxQueuedRequestsPerKey(100)
+                .setFairShareKey(FairShareKey.EMULATED_ACCESS_KEY)
+                .setWeights(""));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.admission.max-concurrent-requests", "64")
+                .put("aws.proxy.admission.max-queued-requests", "500")
+                .put("aws.proxy.admission.max-queued-requests-per-key", "50")
+                .put("aws.proxy.admission.fair-share-key", "IDENTITY")
+                .put("aws.proxy.admission.weights", "etl:4, adhoc:1")
+                .buildOrThrow();
+        AdmissionControllerConfig expected = new AdmissionControllerConfig()
+                .setMaxConcurrentRequests(64)
+                .setMaxQueuedRequests(500)
+                .setMaxQueuedRequestsPerKey(50)
+                .setFairShareKey(FairShareKey.IDENTITY)
+                .setWeights("etl:4,adhoc:1");
+        assertFullMapping(properties, expected);
+    }
+
+    @Test
+    public void testWeights()
+    {
+        assertThat(new AdmissionControllerConfig().setWeights("etl:4, adhoc:1").getWeights())
+                .isEqualTo(ImmutableMap.of("etl", 4, "adhoc", 1));
+        assertThatThrownBy(() -> new AdmissionControllerConfig().setWeights("etl"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AdmissionControllerConfig().setWeights("etl:x"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AdmissionControllerConfig().setWeights("etl:0"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -13,22 +13,37 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import io.trino.aws.proxy.server.signing.TestingChunkSigningSession;
 import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
 import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
 import io.trino.aws.proxy.spi.util.AwsTimestamp;
 import jakarta.ws.rs.WebApplicationException;
 import org.junit.jupiter.api.Test;
 import software.amazon.awssdk.auth.signer.internal.chunkedencoding.AwsS3V4ChunkSigner;
+import software.amazon.awssdk.auth.signer.internal.chunkedencoding.AwsSignedChunkedEncodingInputStream;
+import software.amazon.awssdk.core.checksums.Algorithm;
+import software.amazon.awssdk.core.checksums.SdkChecksum;
+import software.amazon.awssdk.core.internal.chunked.AwsChunkedEncodingConfig;
+import software.amazon.awssdk.core.internal.io.AwsUnsignedChunkedEncodingInputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -47,6 +62,10 @@ public class TestAwsChunkedInputStream
     private static final String BAD_SEED = "THIS IS A FAKE BAD SEED";
     private static final String ILLEGAL_CHUNK_SIGNATURE = "0".repeat(AwsS3V4ChunkSigner.getSignatureLength());
 
+    // the checksums supported by the AWS SDK version used for testing
+    private static final List<ChecksumAlgorithm> SDK_CHECKSUM_ALGORITHMS = ImmutableList.of(ChecksumAlgorithm.CRC32, ChecksumAlgorithm.CRC32C, ChecksumAlgorithm.SHA1, ChecksumAlgorithm.SHA256);
+    private static final AwsChunkedEncodingConfig SDK_CHUNKED_ENCODING_CONFIG = AwsChunkedEncodingConfig.builder().chunkSize(64 * 1024).build();
+
     private interface ChunkReader
     {
         void read(String chunkedData, int decodedContentLength, TestingChunkSigningSession signingSession, ByteArrayOutputStream output)
@@ -110,6 +129,195 @@ public class TestAwsChunkedInputStream
         assertThat(readChunked(chunkedStream, goodTestSigningSession())).isEqualTo(GOOD_CONTENT.getBytes(UTF_8));
     }
 
+    @Test
+    public void testExtensionWhitespaceAndCase()
+            throws IOException
+    {
+        String chunkedStream = goodTestSigningSession().generateChunkedStream(GOOD_CONTENT, 3);
+        chunkedStream = chunkedStream.replace(";chunk-signature=", "; foo = bar ; Chunk-Signature =\t");
+
+        assertThat(readChunked(chunkedStream, goodTestSigningSession())).isEqualTo(GOOD_CONTENT.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testLargeContent()
+            throws IOException
+    {
+        String content = "0123456789abcdef".repeat(64 * 1024);
+        String chunkedStream = fixedTimeGoodTestSigningSession().generateChunkedStream(content, 16);
+
+        // reads smaller and larger than the internal buffer and chunks
+        for (int bytesToReadAtATime : ImmutableList.of(1, 1000, 8192, 100_000, 2 * 1024 * 1024)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            tryReadAwsChunkedDataBatch(chunkedStream, content.length(), fixedTimeGoodTestSigningSession(), output, bytesToReadAtATime);
+            assertThat(output.toString(UTF_8)).isEqualTo(content);
+        }
+    }
+
+    @Test
+    public void testContentLargerThan2GiB()
+            throws IOException
+    {
+        // streamed, not buffered: 2049 chunks of 1 MiB
+        byte[] chunk = "0123456789abcdef".repeat(65536).getBytes(UTF_8);
+        int chunkCount = 2049;
+        long length = (long) chunkCount * chunk.length;
+        TestingChunkSigningSession generatingSession = fixedTimeGoodTestSigningSession();
+        HashCode chunkHash = Hashing.sha256().hashBytes(chunk);
+
+        Iterator<InputStream> chunks = new AbstractIterator<>()
+        {
+            private int index;
+            private String previousSignature = GOOD_SEED;
+
+            @Override
+            protected InputStream computeNext()
+            {
+                if (index > chunkCount) {
+                    return endOfData();
+                }
+                boolean finalChunk = (index++ == chunkCount);
+                previousSignature = generatingSession.getChunkSignature(finalChunk ? Hashing.sha256().hashBytes(new byte[0]) : chunkHash, previousSignature);
+                String header = "%s;chunk-signature=%s\r\n".formatted(Integer.toHexString(finalChunk ? 0 : chunk.length), previousSignature);
+                if (finalChunk) {
+                    return new ByteArrayInputStream((header + "\r\n").getBytes(UTF_8));
+                }
+                return new SequenceInputStream(Iterators.asEnumeration(Iterators.forArray(
+                        new ByteArrayInputStream(header.getBytes(UTF_8)),
+                        new ByteArrayInputStream(chunk),
+                        new ByteArrayInputStream("\r\n".getBytes(UTF_8)))));
+            }
+        };
+
+        try (InputStream in = new AwsChunkedInputStream(new SequenceInputStream(Iterators.asEnumeration(chunks)), fixedTimeGoodTestSigningSession(), length)) {
+            assertThat(in.transferTo(OutputStream.nullOutputStream())).isEqualTo(length);
+        }
+    }
+
+    @Test
+    public void testChunkHeaderTooLong()
+    {
+        String chunkedStream = goodTestSigningSession().generateChunkedStream(GOOD_CONTENT, 3);
+        chunkedStream = chunkedStream.replace(";chunk-signature=", ";foo=%s;chunk-signature=".formatted("x".repeat(10_000)));
+        String invalidChunkedStream = chunkedStream;
+
+        assertThatThrownBy(() -> readChunked(invalidChunkedStream, goodTestSigningSession()))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Chunk header is longer than");
+    }
+
+    @Test
+    public void testUnsignedTrailer()
+            throws IOException
+    {
+        byte[] content = "0123456789abcdef".repeat(20_000).getBytes(UTF_8);
+        for (ChecksumAlgorithm algorithm : SDK_CHECKSUM_ALGORITHMS) {
+            byte[] encoded = sdkEncodeUnsigned(content, algorithm);
+
+            assertThat(decode(encoded, Optional.empty(), content.length, Optional.of(algorithm))).isEqualTo(content);
+        }
+
+        // unsigned chunks may have extensions, trailers don't need to be declared
+        assertThat(decode("5;foo=bar\r\nhello\r\n0\r\n\r\n".getBytes(UTF_8), Optional.empty(), 5, Optional.empty())).isEqualTo("hello".getBytes(UTF_8));
+    }
+
+    @Test
+    public void testSignedTrailer()
+            throws IOException
+    {
+        byte[] content = "0123456789abcdef".repeat(20_000).getBytes(UTF_8);
+        for (ChecksumAlgorithm algorithm : SDK_CHECKSUM_ALGORITHMS) {
+            byte[] encoded = sdkEncodeSigned(content, algorithm);
+
+            assertThat(decode(encoded, Optional.of(fixedTimeGoodTestSigningSession()), content.length, Optional.of(algorithm))).isEqualTo(content);
+        }
+    }
+
+    @Test
+    public void testSignedTrailerWithoutValidation()
+    {
+        // the session can't validate the trailer signature, so the upload is rejected before any content is read
+        InputStream content = InputStream.nullInputStream();
+        assertThatThrownBy(() -> new AwsChunkedInputStream(content, Optional.of(new DummyChunkSigningSession()), Optional.empty(), Optional.of(ChecksumAlgorithm.CRC32C)))
+                .isInstanceOf(S3ErrorException.class)
+                .satisfies(e -> assertThat(((S3ErrorException) e).getResponse().getStatus()).isEqualTo(501))
+                .satisfies(e -> assertThat(((S3ErrorException) e).errorCode()).isEqualTo("NotImplemented"));
+
+        // unsigned chunks don't need it
+        assertThat(new AwsChunkedInputStream(content, Optional.empty(), Optional.empty(), Optional.of(ChecksumAlgorithm.CRC32C))).isNotNull();
+    }
+
+    @Test
+    public void testInvalidTrailer()
+            throws IOException
+    {
+        byte[] content = GOOD_CONTENT.getBytes(UTF_8);
+        String unsigned = new String(sdkEncodeUnsigned(content, ChecksumAlgorithm.CRC32C), UTF_8);
+        String signed = new String(sdkEncodeSigned(content, ChecksumAlgorithm.CRC32C), UTF_8);
+        String checksum = unsigned.substring(unsigned.indexOf("x-amz-checksum-crc32c:"), unsigned.indexOf("x-amz-checksum-crc32c:") + 30);
+        String badChecksum = "x-amz-checksum-crc32c:AAAAAA==";
+
+        // checksum mismatch
+        assertThatThrownBy(() -> decode(unsigned.replace(checksum, badChecksum).getBytes(UTF_8), Optional.empty(), content.length, Optional.of(ChecksumAlgorithm.CRC32C)))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Checksum mismatch");
+        // the trailer signature doesn't match the checksum
+        assertThatThrownBy(() -> decode(signed.replace(checksum, badChecksum).getBytes(UTF_8), Optional.of(fixedTimeGoodTestSigningSession()), content.length, Optional.of(ChecksumAlgorithm.CRC32C)))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Unauthorized");
+        // missing trailers
+        assertThatThrownBy(() -> decode(unsigned.replace(checksum + "\r\n", "").getBytes(UTF_8), Optional.empty(), content.length, Optional.of(ChecksumAlgorithm.CRC32C)))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Missing trailer: x-amz-checksum-crc32c");
+        assertThatThrownBy(() -> decode(signed.replaceAll("x-amz-trailer-signature:\\w+\r\n", "").getBytes(UTF_8), Optional.of(fixedTimeGoodTestSigningSession()), content.length, Optional.of(ChecksumAlgorithm.CRC32C)))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Missing trailer: x-amz-trailer-signature");
+        // undeclared trailer
+        assertThatThrownBy(() -> decode(unsigned.getBytes(UTF_8), Optional.empty(), content.length, Optional.of(ChecksumAlgorithm.CRC32)))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Unexpected trailer: x-amz-checksum-crc32c");
+        // unsigned chunks when signed chunks are expected
+        assertThatThrownBy(() -> decode(unsigned.getBytes(UTF_8), Optional.of(fixedTimeGoodTestSigningSession()), content.length, Optional.of(ChecksumAlgorithm.CRC32C)))
+                .isInstanceOf(WebApplicationException.class)
+                .hasMessageContaining("Invalid chunk header");
+    }
+
+    private static byte[] sdkEncodeUnsigned(byte[] content, ChecksumAlgorithm algorithm)
+            throws IOException
+    {
+        AwsUnsignedChunkedEncodingInputStream.Builder builder = AwsUnsignedChunkedEncodingInputStream.builder();
+        builder.inputStream(new ByteArrayInputStream(content))
+                .sdkChecksum(SdkChecksum.forAlgorithm(Algorithm.valueOf(algorithm.name())))
+                .checksumHeaderForTrailer(algorithm.headerName())
+                .awsChunkedEncodingConfig(SDK_CHUNKED_ENCODING_CONFIG);
+        try (InputStream encoded = builder.build()) {
+            return encoded.readAllBytes();
+        }
+    }
+
+    private static byte[] sdkEncodeSigned(byte[] content, ChecksumAlgorithm algorithm)
+            throws IOException
+    {
+        AwsSignedChunkedEncodingInputStream.Builder builder = AwsSignedChunkedEncodingInputStream.builder()
+                .awsChunkSigner(TestingChunkSigningSession.buildSdkChunkSigner(GOOD_CREDENTIAL, AwsTimestamp.fromRequestTimestamp("20240801T010203Z")))
+                .headerSignature(GOOD_SEED);
+        builder.inputStream(new ByteArrayInputStream(content))
+                .sdkChecksum(SdkChecksum.forAlgorithm(Algorithm.valueOf(algorithm.name())))
+                .checksumHeaderForTrailer(algorithm.headerName())
+                .awsChunkedEncodingConfig(SDK_CHUNKED_ENCODING_CONFIG);
+        try (InputStream encoded = builder.build()) {
+            return encoded.readAllBytes();
+        }
+    }
+
+    private static byte[] decode(byte[] encoded, Optional<ChunkSigningSession> chunkSigningSession, long decodedContentLength, Optional<ChecksumAlgorithm> trailingChecksum)
+            throws IOException
+    {
+        try (InputStream in = new AwsChunkedInputStream(new ByteArrayInputStream(encoded), chunkSigningSession, Optional.of(decodedContentLength), trailingChecksum)) {
+            return in.readAllBytes();
+        }
+    }
+
     @Test
     public void testAwsChunkedCornerCases()
             throws IOException
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.AdmissionControllerConfig.FairShareKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestBandwidthShapingConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(BandwidthShapingConfig.class)
+                .setRequestRate(null)
+                .setResponseRate(null)
+                .setKeyRequestRates("")
+                .setKeyResponseRates("")
+                .setBurstSize(DataSize.of(1, MEGABYTE))
+                .setShapingKey(FairShareKey.EMULATED_ACCESS_KEY));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.bandwidth.request-rate", "100MB")
+                .put("aws.proxy.bandwidth.response-rate", "200MB")
+                .put("aws.proxy.bandwidth.key-request-rates", "etl:10MB, adhoc:1GB")
+                .put("aws.proxy.bandwidth.key-response-rates", "etl:20MB")
+                .put("aws.proxy.bandwidth.burst-size", "8MB")
+                .put("aws.proxy.bandwidth.shaping-key", "IDENTITY")
+                .buildOrThrow();
+        BandwidthShapingConfig expected = new BandwidthShapingConfig()
+                .setRequestRate(DataSize.of(100, MEGABYTE))
+                .setResponseRate(DataSize.of(200, MEGABYTE))
+                .setKeyRequestRates("etl:10MB,adhoc:1GB")
+                .setKeyResponseRates("etl:20MB")
+                .setBurstSize(DataSize.of(8, MEGABYTE))
+                .setShapingKey(FairShareKey.IDENTITY);
+        assertFullMapping(properties, expected);
+    }
+
+    @Test
+    public void testKeyRates()
+    {
+        assertThat(new BandwidthShapingConfig().setKeyRequestRates("etl:10MB, adhoc:512kB").getKeyRequestRates())
+                .isEqualTo(ImmutableMap.of("etl", DataSize.of(10, MEGABYTE), "adhoc", DataSize.of(512, KILOBYTE)));
+        assertThatThrownBy(() -> new BandwidthShapingConfig().setKeyResponseRates("etl"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BandwidthShapingConfig().setKeyResponseRates("etl:fast"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BandwidthShapingConfig().setKeyResponseRates("etl:1B"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.base.Ticker;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.BandwidthShapingController.StreamShaper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.io.ByteStreams.nullOutputStream;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestBandwidthShapingController
+{
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    public void testUnshaped()
+    {
+        BandwidthShapingController controller = new BandwidthShapingController(new BandwidthShapingConfig(), ticker);
+
+        assertThat(controller.shaper("a")).isSameAs(BandwidthShapingController.UNSHAPED);
+        assertThat(controller.getRequestRates()).isEmpty();
+        assertThat(controller.getResponseRates()).isEmpty();
+    }
+
+    @Test
+    public void testResponseShaping()
+            throws IOException
+    {
+        BandwidthShapingController controller = new BandwidthShapingController(new BandwidthShapingConfig()
+                .setResponseRate(DataSize.of(1, MEGABYTE))
+                .setBurstSize(DataSize.of(1, KILOBYTE)), ticker);
+        StreamShaper shaper = controller.shaper("a");
+
+        // the request content is not shaped
+        InputStream inputStream = new ByteArrayInputStream(new byte[0]);
+        assertThat(shaper.shape(inputStream)).isSameAs(inputStream);
+
+        try (OutputStream outputStream = shaper.shape(nullOutputStream())) {
+            // the burst is available at once
+            outputStream.write(new byte[1024]);
+            assertThat(controller.getThrottleTime().getAllTime().getCount()).isEqualTo(0);
+
+            // ~10ms worth of bytes beyond the burst
+            outputStream.write(new byte[10 * 1024]);
+            assertThat(controller.getThrottleTime().getAllTime().getCount()).isEqualTo(1);
+            assertThat(controller.getThrottleTime().getAllTime().getMax()).isBetween(9.0, 11.0);
+
+            // the debt is paid off and the bucket is full again after 20ms
+            nanos.addAndGet(MILLISECONDS.toNanos(20));
+            outputStream.write(new byte[1024]);
+            outputStream.write(1);
+            assertThat(controller.getThrottleTime().getAllTime().getCount()).isEqualTo(2);
+        }
+
+        assertThat(controller.getResponseRates()).containsOnlyKeys("a");
+        assertThat(controller.getRequestRates()).isEmpty();
+    }
+
+    @Test
+    public void testRequestShaping()
+            throws IOException
+    {
+        BandwidthShapingController controller = new BandwidthShapingController(new BandwidthShapingConfig()
+                .setRequestRate(DataSize.of(1, MEGABYTE))
+                .setBurstSize(DataSize.of(1, KILOBYTE)), ticker);
+        byte[] content = new byte[11 * 1024];
+
+        try (InputStream inputStream = controller.shaper("a").shape(new ByteArrayInputStream(content))) {
+            assertThat(inputStream.markSupported()).isFalse();
+            assertThat(inputStream.read()).isEqualTo(0);
+            assertThat(inputStream.readAllBytes()).hasSize(content.length - 1);
+        }
+        assertThat(controller.getThrottleTime().getAllTime().getCount()).isGreaterThan(0);
+        assertThat(controller.getRequestRates()).containsOnlyKeys("a");
+    }
+
+    @Test
+    public void testRequestShapingWaitsOnVirtualThread()
+            throws IOException
+    {
+        BandwidthShapingController controller = new BandwidthShapingController(new BandwidthShapingConfig()
+                .setRequestRate(DataSize.of(1, MEGABYTE))
+                .setBurstSize(DataSize.of(1, KILOBYTE)), ticker);
+        byte[] content = new byte[16 * 1024];
+        ThreadLocalRandom.current().nextBytes(content);
+        Set<Boolean> sourceThreadsVirtual = ConcurrentHashMap.newKeySet();
+        InputStream source = new FilterInputStream(new ByteArrayInputStream(content))
+        {
+            @Override
+            public int read(byte[] b, int off, int len)
+                    throws IOException
+            {
+                sourceThreadsVirtual.add(Thread.currentThread().isVirtual());
+                return super.read(b, off, len);
+            }
+        };
+
+        // the HTTP client reads request content on platform threads, the source is read and shaped by a virtual thread
+        assertThat(Thread.currentThread().isVirtual()).isFalse();
+        try (InputStream inputStream = controller.shaper("a").shape(source)) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(content);
+        }
+        assertThat(sourceThreadsVirtual).containsExactly(true);
+        assertThat(controller.getThrottleTime().getAllTime().getCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testClosedRequestShapingStopsReading()
+            throws Exception
+    {
+        BandwidthShapingController controller = new BandwidthShapingController(new BandwidthShapingConfig()
+                .setRequestRate(DataSize.of(1, KILOBYTE))
+                .setBurstSize(DataSize.of(8, KILOBYTE)), ticker);
+        CountDownLatch sourceClosed = new CountDownLatch(1);
+        InputStream source = new FilterInputStream(new ByteArrayInputStream(new byte[1024 * 1024]))
+        {
+            @Override
+            public void close()
+                    throws IOException
+            {
+                sourceClosed.countDown();
+                super.close();
+            }
+        };
+
+        InputStream inputStream = controller.shaper("a").shape(source);
+        assertThat(inputStream.read()).isEqualTo(0);
+        // the pump is waiting for the bucket, closing the stream stops it
+        inputStream.close();
+        assertThat(sourceClosed.await(10, SECONDS)).isTrue();
+        assertThatThrownBy(inputStream::read).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testKeys()
+            throws IOException
+    {
+        BandwidthShapingController controller = new BandwidthShapingController(new BandwidthShapingConfig()
+                .setKeyResponseRates("etl:1MB")
+                .setBurstSize(DataSize.of(1, KILOBYTE)), ticker);
+
+        // only keys with a rate are shaped
+        assertThat(controller.shaper("adhoc")).isSameAs(BandwidthShapingController.UNSHAPED);
+
+        // streams of the same key share the bucket
+        try (OutputStream first = controller.shaper("etl").shape(nullOutputStream());
+                OutputStream second = controller.shaper("etl").shape(nullOutputStream())) {
+            first.write(new byte[1024]);
+            assertThat(controller.getThrottleTime().getAllTime().getCount()).isEqualTo(0);
+            second.write(new byte[1]);
+            assertThat(controller.getThrottleTime().getAllTime().getCount()).isEqualTo(1);
+        }
+        assertThat(controller.getResponseRates()).containsOnlyKeys("etl");
+    }
+}
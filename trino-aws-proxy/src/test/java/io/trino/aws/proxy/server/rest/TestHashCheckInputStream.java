@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.Iterators;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestHashCheckInputStream
+{
+    private static final byte[] CONTENT = "The quick brown fox jumps over the lazy dog's head".getBytes(UTF_8);
+    private static final String CONTENT_HASH = Hashing.sha256().hashBytes(CONTENT).toString();
+    private static final byte[] LARGE_CONTENT_BLOCK = "0123456789abcdef".repeat(65536).getBytes(UTF_8);
+
+    @Test
+    public void testMatchingHash()
+            throws IOException
+    {
+        try (InputStream inputStream = new HashCheckInputStream(new ByteArrayInputStream(CONTENT), CONTENT_HASH, Optional.of((long) CONTENT.length))) {
+            assertThat(StreamingResponseHandler.stream(inputStream, OutputStream.nullOutputStream(), new byte[7])).isEqualTo(CONTENT.length);
+        }
+    }
+
+    @Test
+    public void testMismatchedHashFailsBeforeLastBytesAreReturned()
+            throws IOException
+    {
+        byte[] tampered = CONTENT.clone();
+        tampered[0] = 'X';
+        try (InputStream inputStream = new HashCheckInputStream(new ByteArrayInputStream(tampered), CONTENT_HASH, Optional.of((long) tampered.length))) {
+            assertThat(inputStream.readNBytes(tampered.length - 1)).hasSize(tampered.length - 1);
+            assertThatThrownBy(inputStream::read)
+                    .isInstanceOf(WebApplicationException.class)
+                    .extracting(e -> ((WebApplicationException) e).getResponse().getStatus())
+                    .isEqualTo(401);
+        }
+    }
+
+    @Test
+    public void testContentLargerThan2GiB()
+            throws IOException
+    {
+        // streamed, not buffered: 2 GiB + 1 MiB
+        int blockCount = 2049;
+        long length = (long) blockCount * LARGE_CONTENT_BLOCK.length;
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        try (InputStream inputStream = largeContent(blockCount)) {
+            inputStream.transferTo(Funnels.asOutputStream(hasher));
+        }
+
+        try (InputStream inputStream = new HashCheckInputStream(largeContent(blockCount), hasher.hash().toString(), Optional.of(length))) {
+            assertThat(StreamingResponseHandler.stream(inputStream, OutputStream.nullOutputStream(), new byte[65536])).isEqualTo(length);
+        }
+    }
+
+    @Test
+    public void testTooManyBytes()
+            throws IOException
+    {
+        try (InputStream inputStream = new HashCheckInputStream(new ByteArrayInputStream(CONTENT), CONTENT_HASH, Optional.of(CONTENT.length - 1L))) {
+            assertThatThrownBy(inputStream::readAllBytes)
+                    .isInstanceOf(WebApplicationException.class);
+        }
+    }
+
+    private static InputStream largeContent(int blockCount)
+    {
+        return new SequenceInputStream(Iterators.asEnumeration(Stream.generate(() -> (InputStream) new ByteArrayInputStream(LARGE_CONTENT_BLOCK))
+                .limit(blockCount)
+                .iterator()));
+    }
+}
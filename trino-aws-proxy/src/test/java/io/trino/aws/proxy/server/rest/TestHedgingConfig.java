@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TestHedgingConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(HedgingConfig.class)
+                .setEnabled(false)
+                .setDelayPercentile(95)
+                .setMinDelay(new Duration(20, MILLISECONDS))
+                .setMaxDelay(new Duration(1, SECONDS))
+                .setBudget(0.05));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.hedging.enabled", "true")
+                .put("aws.proxy.hedging.delay-percentile", "99")
+                .put("aws.proxy.hedging.min-delay", "5ms")
+                .put("aws.proxy.hedging.max-delay", "2s")
+                .put("aws.proxy.hedging.budget", "0.1")
+                .buildOrThrow();
+        HedgingConfig expected = new HedgingConfig()
+                .setEnabled(true)
+                .setDelayPercentile(99)
+                .setMinDelay(new Duration(5, MILLISECONDS))
+                .setMaxDelay(new Duration(2, SECONDS))
+                .setBudget(0.1);
+        assertFullMapping(properties, expected);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHedgingController
+{
+    private static final HedgingConfig CONFIG = new HedgingConfig()
+            .setEnabled(true)
+            .setMinDelay(new Duration(1, MILLISECONDS))
+            .setMaxDelay(new Duration(50, MILLISECONDS))
+            .setBudget(1);
+
+    @Test
+    public void testFastResponseIsNotHedged()
+    {
+        AtomicInteger requests = new AtomicInteger();
+        HedgingController hedgingController = new HedgingController(new TestingStreamingHttpClient(request -> {
+            requests.incrementAndGet();
+            return response(request);
+        }), new HedgingConfig()
+                .setEnabled(true)
+                .setMaxDelay(new Duration(1, MINUTES)));
+
+        assertThat(hedgingController.execute(request(1), () -> request(2), new StringResponseHandler())).isEqualTo("1");
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(hedgingController.getHedgedRequests().getTotalCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSlowResponseIsHedged()
+            throws InterruptedException
+    {
+        CountDownLatch firstRequestAborted = new CountDownLatch(1);
+        HedgingController hedgingController = new HedgingController(new TestingStreamingHttpClient(request -> {
+            if (attempt(request) == 1) {
+                try {
+                    new CountDownLatch(1).await();
+                }
+                catch (InterruptedException e) {
+                    firstRequestAborted.countDown();
+                    throw e;
+                }
+            }
+            return response(request);
+        }), CONFIG);
+
+        assertThat(hedgingController.execute(request(1), () -> request(2), new StringResponseHandler())).isEqualTo("2");
+        assertThat(firstRequestAborted.await(10, SECONDS)).isTrue();
+        assertThat(hedgingController.getHedgedRequests().getTotalCount()).isEqualTo(1);
+        assertThat(hedgingController.getHedgeWins().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFirstResponseStillWins()
+    {
+        CountDownLatch hedgeStarted = new CountDownLatch(1);
+        HedgingController hedgingController = new HedgingController(new TestingStreamingHttpClient(request -> {
+            if (attempt(request) == 1) {
+                hedgeStarted.await();
+            }
+            else {
+                hedgeStarted.countDown();
+                new CountDownLatch(1).await();
+            }
+            return response(request);
+        }), CONFIG);
+
+        assertThat(hedgingController.execute(request(1), () -> request(2), new StringResponseHandler())).isEqualTo("1");
+        assertThat(hedgingController.getHedgedRequests().getTotalCount()).isEqualTo(1);
+        assertThat(hedgingController.getHedgeWins().getTotalCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testBudget()
+    {
+        AtomicInteger requests = new AtomicInteger();
+        HedgingController hedgingController = new HedgingController(new TestingStreamingHttpClient(request -> {
+            requests.incrementAndGet();
+            MILLISECONDS.sleep(200);
+            return response(request);
+        }), new HedgingConfig()
+                .setEnabled(true)
+                .setMaxDelay(new Duration(10, MILLISECONDS))
+                .setBudget(0));
+
+        assertThat(hedgingController.execute(request(1), () -> request(2), new StringResponseHandler())).isEqualTo("1");
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(hedgingController.getBudgetExhausted().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailureOfAllRequests()
+    {
+        HedgingController hedgingController = new HedgingController(new TestingStreamingHttpClient(request -> {
+            if (attempt(request) == 1) {
+                MILLISECONDS.sleep(200);
+            }
+            throw new IOException("failed " + attempt(request));
+        }), CONFIG);
+
+        // the first failure doesn't end the race, the last one does
+        assertThat(hedgingController.execute(request(1), () -> request(2), new StringResponseHandler())).isEqualTo("failed 1");
+    }
+
+    @Test
+    public void testDelayWithoutRecordedLatencies()
+    {
+        assertThat(new HedgingController(new TestingStreamingHttpClient(_ -> {
+            throw new UnsupportedOperationException();
+        }), new HedgingConfig()).hedgeDelayNanos()).isEqualTo(new HedgingConfig().getMaxDelay().roundTo(NANOSECONDS));
+    }
+
+    private static Request request(int attempt)
+    {
+        return prepareGet().setUri(URI.create("http://localhost/bucket/key")).addHeader("X-Attempt", Integer.toString(attempt)).build();
+    }
+
+    private static int attempt(Request request)
+    {
+        return Integer.parseInt(request.getHeader("X-Attempt"));
+    }
+
+    private static Response response(Request request)
+    {
+        return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), Integer.toString(attempt(request)).getBytes(UTF_8));
+    }
+
+    private static class StringResponseHandler
+            implements ResponseHandler<String, RuntimeException>
+    {
+        @Override
+        public String handleException(Request request, Exception exception)
+        {
+            Throwable cause = exception;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause.getMessage();
+        }
+
+        @Override
+        public String handle(Request request, Response response)
+        {
+            try {
+                return new String(response.getInputStream().readAllBytes(), UTF_8);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestPayloadChecksum
+{
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(US_ASCII);
+
+    @Test
+    public void testCheckValues()
+    {
+        // the check values of the CRC catalogue
+        assertThat(checksum(ChecksumAlgorithm.CRC32, CHECK_INPUT)).isEqualTo(base64("cbf43926"));
+        assertThat(checksum(ChecksumAlgorithm.CRC32C, CHECK_INPUT)).isEqualTo(base64("e3069283"));
+        assertThat(checksum(ChecksumAlgorithm.CRC64NVME, CHECK_INPUT)).isEqualTo(base64("ae8b14860a799888"));
+        assertThat(checksum(ChecksumAlgorithm.SHA1, CHECK_INPUT)).isEqualTo(base64("f7c3bc1d808e04732adf679965ccc34ca7ae3441"));
+        assertThat(checksum(ChecksumAlgorithm.SHA256, CHECK_INPUT)).isEqualTo(base64("15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225"));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        assertThat(checksum(ChecksumAlgorithm.CRC32C, new byte[0])).isEqualTo("AAAAAA==");
+        assertThat(checksum(ChecksumAlgorithm.CRC64NVME, new byte[0])).isEqualTo("AAAAAAAAAAA=");
+    }
+
+    @Test
+    public void testBase64Length()
+    {
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            assertThat(checksum(algorithm, CHECK_INPUT)).hasSize(PayloadChecksum.base64Length(algorithm));
+        }
+    }
+
+    @Test
+    public void testCrc64NvmeUpdates()
+    {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+
+        Checksum expected = new Crc64Nvme();
+        for (byte b : data) {
+            expected.update(b);
+        }
+
+        // updates of any length and alignment use the 8 byte at a time path
+        for (int split : new int[] {0, 1, 7, 8, 9, 500, 999}) {
+            Checksum actual = new Crc64Nvme();
+            actual.update(data, 0, split);
+            actual.update(data, split, data.length - split);
+            assertThat(actual.getValue()).isEqualTo(expected.getValue());
+        }
+
+        Checksum reset = new Crc64Nvme();
+        reset.update(data, 0, data.length);
+        reset.reset();
+        reset.update(CHECK_INPUT, 0, CHECK_INPUT.length);
+        assertThat(reset.getValue()).isEqualTo(0xae8b14860a799888L);
+    }
+
+    private static String checksum(ChecksumAlgorithm algorithm, byte[] data)
+    {
+        PayloadChecksum checksum = PayloadChecksum.create(algorithm);
+        checksum.update(data, 0, data.length);
+        return checksum.base64();
+    }
+
+    private static String base64(String hex)
+    {
+        return Base64.getEncoder().encodeToString(HexFormat.of().parseHex(hex));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
+import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestPersistentRequestLog
+{
+    private static final Set<String> S3 = ImmutableSet.of(SigningServiceType.S3.serviceName());
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testReadAcrossMemoryAndDisk()
+            throws Exception
+    {
+        RequestLoggerController controller = new RequestLoggerController(config().setRequestLoggerSavedQty(5), Clock.systemUTC());
+        try {
+            logRequests(controller, 20);
+            controller.awaitPersisted();
+
+            // only the last 5 requests are in memory, all of them are on disk
+            assertThat(controller.savedEntries(true, _ -> true)).hasSize(10);
+            List<SaveEntry> entries = ImmutableList.copyOf(controller.indexedEntries(S3, Range.all(), true));
+            assertThat(entries).hasSize(40);
+            assertThat(entries).extracting(SaveEntry::entryId).isSorted().doesNotHaveDuplicates();
+            assertThat(entries)
+                    .filteredOn(entry -> entry.message().equals("RequestEnd"))
+                    .extracting(entry -> entry.entries().get("request.properties"))
+                    .containsExactlyElementsOf(IntStream.range(0, 20).mapToObj("{index=%s}"::formatted).collect(toImmutableList()));
+
+            List<String> entryIds = entries.stream().map(SaveEntry::entryId).collect(toImmutableList());
+            assertThat(controller.indexedEntries(S3, Range.all(), false)).toIterable().extracting(SaveEntry::entryId).isEqualTo(entryIds.reversed());
+            assertThat(controller.indexedEntries(S3, Range.greaterThan(entryIds.get(29)), true)).toIterable().extracting(SaveEntry::entryId).isEqualTo(entryIds.subList(30, 40));
+            assertThat(controller.indexedEntries(ImmutableSet.of(SigningServiceType.STS.serviceName()), Range.all(), true)).isExhausted();
+        }
+        finally {
+            controller.closePersistentLog();
+        }
+    }
+
+    @Test
+    public void testReopen()
+            throws Exception
+    {
+        RequestLoggerController controller = new RequestLoggerController(config(), Clock.systemUTC());
+        logRequests(controller, 10);
+        List<SaveEntry> entries = ImmutableList.copyOf(controller.indexedEntries(S3, Range.all(), true));
+        controller.closePersistentLog();
+
+        RequestLoggerController reopened = new RequestLoggerController(config().setRequestLoggerSavedQty(0), Clock.systemUTC());
+        try {
+            List<SaveEntry> recovered = ImmutableList.copyOf(reopened.indexedEntries(S3, Range.all(), true));
+            assertThat(recovered).extracting(SaveEntry::entryId).isEqualTo(entries.stream().map(SaveEntry::entryId).collect(toImmutableList()));
+            assertThat(recovered).extracting(SaveEntry::entries).isEqualTo(entries.stream().map(SaveEntry::entries).collect(toImmutableList()));
+            assertThat(recovered).extracting(SaveEntry::timestamp).isEqualTo(entries.stream().map(SaveEntry::timestamp).collect(toImmutableList()));
+            assertThat(recovered).extracting(SaveEntry::serviceType).containsOnly(SigningServiceType.S3);
+
+            // new entries go to a new segment
+            logRequests(reopened, 1);
+            reopened.awaitPersisted();
+            assertThat(reopened.indexedEntries(S3, Range.all(), true)).toIterable().hasSize(22);
+            assertThat(segments()).hasSize(2);
+        }
+        finally {
+            reopened.closePersistentLog();
+        }
+    }
+
+    @Test
+    public void testTornRecord()
+            throws Exception
+    {
+        RequestLoggerController controller = new RequestLoggerController(config(), Clock.systemUTC());
+        logRequests(controller, 2);
+        controller.closePersistentLog();
+
+        // corrupt the payload of the last record
+        Path segment = segments().getFirst();
+        try (FileChannel channel = FileChannel.open(segment, WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+            int position = 0;
+            int last = 0;
+            while (data.getInt(position) > 0) {
+                last = position;
+                position += (Integer.BYTES * 2) + data.getInt(position);
+            }
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~data.get(last + 20)}), last + 20);
+        }
+
+        RequestLoggerController reopened = new RequestLoggerController(config().setRequestLoggerSavedQty(0), Clock.systemUTC());
+        try {
+            assertThat(reopened.indexedEntries(S3, Range.all(), true)).toIterable().hasSize(3);
+        }
+        finally {
+            reopened.closePersistentLog();
+        }
+    }
+
+    @Test
+    public void testSizeRetention()
+            throws Exception
+    {
+        RequestLoggerConfig config = config()
+                .setRequestLoggerSavedQty(0)
+                .setPersistentSegmentSize(DataSize.of(4, KILOBYTE))
+                .setPersistentMaxSize(DataSize.of(16, KILOBYTE));
+        RequestLoggerController controller = new RequestLoggerController(config, Clock.systemUTC());
+        try {
+            logRequests(controller, 200);
+            controller.awaitPersisted();
+
+            assertThat(controller.getPersistentSegmentCount()).isEqualTo(4);
+            assertThat(controller.getPersistentSize()).isEqualTo(DataSize.of(16, KILOBYTE).toBytes());
+            assertThat(segments()).hasSize(4);
+
+            // the newest entries are kept
+            List<SaveEntry> entries = ImmutableList.copyOf(controller.indexedEntries(S3, Range.all(), false));
+            assertThat(entries).hasSizeBetween(10, 399);
+            assertThat(entries).extracting(SaveEntry::entryId).isSortedAccordingTo((left, right) -> right.compareTo(left)).doesNotHaveDuplicates();
+            assertThat(entries.getFirst().entries().get("request.properties")).isEqualTo("{index=199}");
+        }
+        finally {
+            controller.closePersistentLog();
+        }
+    }
+
+    @Test
+    public void testAgeRetention()
+            throws Exception
+    {
+        RequestLoggerController controller = new RequestLoggerController(config(), Clock.systemUTC());
+        logRequests(controller, 10);
+        controller.closePersistentLog();
+        assertThat(segments()).hasSize(1);
+
+        Clock later = Clock.fixed(Instant.now().plus(8, DAYS), ZoneId.of("UTC"));
+        RequestLoggerController reopened = new RequestLoggerController(config(), later);
+        try {
+            assertThat(reopened.indexedEntries(S3, Range.all(), true)).isExhausted();
+            assertThat(segments()).isEmpty();
+        }
+        finally {
+            reopened.closePersistentLog();
+        }
+    }
+
+    private RequestLoggerConfig config()
+    {
+        return new RequestLoggerConfig().setPersistentDirectory(directory.toFile());
+    }
+
+    private List<Path> segments()
+            throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(toImmutableList());
+        }
+    }
+
+    private static void logRequests(RequestLoggerController controller, int count)
+    {
+        for (int index = 0; index < count; index++) {
+            try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.S3)) {
+                session.logProperty("index", index);
+            }
+        }
+    }
+
+    private static Request dummyRequest()
+    {
+        RequestAuthorization requestAuthorization = new RequestAuthorization("dummy", "us-east-1", "/", ImmutableSet.of(), "dummy", Optional.empty(), Optional.empty());
+        return new Request(UUID.randomUUID(), requestAuthorization, Instant.now(), URI.create("http://dummy.com"), RequestHeaders.EMPTY, ImmutableMultiMap.empty(), "GET", RequestContent.EMPTY);
+    }
+}
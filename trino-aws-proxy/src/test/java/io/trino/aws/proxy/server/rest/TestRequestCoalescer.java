@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.RequestCoalescer.CoalescingKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class TestRequestCoalescer
+{
+    private static final CoalescingKey KEY = new CoalescingKey("access-key", "GET", URI.create("http://localhost/bucket/key"), ImmutableMap.of());
+    private static final RequestCoalescingConfig CONFIG = new RequestCoalescingConfig()
+            .setEnabled(true)
+            .setBufferSize(DataSize.of(64, KILOBYTE));
+
+    @Test
+    public void testFollowersShareResponse()
+            throws Exception
+    {
+        // larger than the buffer so that the leader has to wait for the followers
+        byte[] body = new byte[1024 * 1024];
+        new Random(42).nextBytes(body);
+
+        RequestCoalescer requestCoalescer = new RequestCoalescer(CONFIG);
+        AtomicInteger remoteCalls = new AtomicInteger();
+        CountDownLatch followersJoined = new CountDownLatch(1);
+        RemoteCall<byte[], RuntimeException> remoteCall = handler -> {
+            remoteCalls.incrementAndGet();
+            awaitUninterruptibly(followersJoined);
+            return handler.handle(request(), new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of("ETag", "tag"), body));
+        };
+
+        try (ExecutorService executor = executor("share", 3)) {
+            List<Future<byte[]>> results = new ArrayList<>();
+            results.add(executor.submit(() -> requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler())));
+            await().atMost(10, SECONDS).until(() -> requestCoalescer.getInFlightRequests() == 1);
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler())));
+            }
+            // the followers block until the leader's response arrives
+            await().atMost(10, SECONDS).until(() -> waitingThreads("share") == 3);
+            followersJoined.countDown();
+
+            for (Future<byte[]> result : results) {
+                assertThat(result.get(10, SECONDS)).isEqualTo(body);
+            }
+        }
+        assertThat(remoteCalls.get()).isEqualTo(1);
+        assertThat(requestCoalescer.getCollapsedRequests().getTotalCount()).isEqualTo(2);
+        assertThat(requestCoalescer.getInFlightRequests()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFollowerThatDoesNotReadBody()
+            throws Exception
+    {
+        byte[] body = new byte[256 * 1024];
+        RequestCoalescer requestCoalescer = new RequestCoalescer(CONFIG);
+        CountDownLatch followerJoined = new CountDownLatch(1);
+        RemoteCall<byte[], RuntimeException> remoteCall = handler -> {
+            awaitUninterruptibly(followerJoined);
+            return handler.handle(request(), new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), body));
+        };
+
+        try (ExecutorService executor = executor("head", 2)) {
+            Future<byte[]> leader = executor.submit(() -> requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler()));
+            await().atMost(10, SECONDS).until(() -> requestCoalescer.getInFlightRequests() == 1);
+            Future<byte[]> follower = executor.submit(() -> requestCoalescer.execute(KEY, remoteCall, new StatusResponseHandler()));
+            await().atMost(10, SECONDS).until(() -> waitingThreads("head") == 2);
+            followerJoined.countDown();
+
+            assertThat(follower.get(10, SECONDS)).isEqualTo(new byte[] {(byte) HttpStatus.OK.code()});
+            assertThat(leader.get(10, SECONDS)).isEqualTo(body);
+        }
+        assertThat(requestCoalescer.getCollapsedRequests().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFallbackWhenLeaderFails()
+            throws Exception
+    {
+        RequestCoalescer requestCoalescer = new RequestCoalescer(CONFIG);
+        AtomicInteger remoteCalls = new AtomicInteger();
+        CountDownLatch followerJoined = new CountDownLatch(1);
+        RemoteCall<byte[], RuntimeException> remoteCall = handler -> {
+            if (remoteCalls.incrementAndGet() == 1) {
+                awaitUninterruptibly(followerJoined);
+                return handler.handleException(request(), new SocketException("Connection reset"));
+            }
+            return handler.handle(request(), new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), new byte[] {1, 2, 3}));
+        };
+
+        try (ExecutorService executor = executor("fallback", 2)) {
+            Future<byte[]> leader = executor.submit(() -> requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler()));
+            await().atMost(10, SECONDS).until(() -> requestCoalescer.getInFlightRequests() == 1);
+            Future<byte[]> follower = executor.submit(() -> requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler()));
+            await().atMost(10, SECONDS).until(() -> waitingThreads("fallback") == 2);
+            followerJoined.countDown();
+
+            assertThat(leader.get(10, SECONDS)).isEmpty();
+            assertThat(follower.get(10, SECONDS)).isEqualTo(new byte[] {1, 2, 3});
+        }
+        assertThat(remoteCalls.get()).isEqualTo(2);
+        assertThat(requestCoalescer.getFallbacks().getTotalCount()).isEqualTo(1);
+        assertThat(requestCoalescer.getCollapsedRequests().getTotalCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSequentialRequestsAreNotCoalesced()
+    {
+        RequestCoalescer requestCoalescer = new RequestCoalescer(CONFIG);
+        AtomicInteger remoteCalls = new AtomicInteger();
+        RemoteCall<byte[], RuntimeException> remoteCall = handler -> {
+            remoteCalls.incrementAndGet();
+            return handler.handle(request(), new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), new byte[] {1}));
+        };
+
+        assertThat(requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler())).isEqualTo(new byte[] {1});
+        assertThat(requestCoalescer.execute(KEY, remoteCall, new BodyResponseHandler())).isEqualTo(new byte[] {1});
+        assertThat(remoteCalls.get()).isEqualTo(2);
+        assertThat(requestCoalescer.getInFlightRequests()).isEqualTo(0);
+    }
+
+    private static ExecutorService executor(String name, int threads)
+    {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("test-coalescer-" + name + "-%s").build());
+    }
+
+    private static long waitingThreads(String name)
+    {
+        // the leader waits for the test, the followers wait for the leader's response
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("test-coalescer-" + name + "-"))
+                .filter(thread -> thread.getState() == Thread.State.WAITING)
+                .count();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch)
+    {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Request request()
+    {
+        return prepareGet().setUri(KEY.remoteUri()).build();
+    }
+
+    private static class BodyResponseHandler
+            implements ResponseHandler<byte[], RuntimeException>
+    {
+        @Override
+        public byte[] handleException(Request request, Exception exception)
+        {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] handle(Request request, Response response)
+        {
+            try {
+                return response.getInputStream().readAllBytes();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class StatusResponseHandler
+            implements ResponseHandler<byte[], RuntimeException>
+    {
+        @Override
+        public byte[] handleException(Request request, Exception exception)
+        {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] handle(Request request, Response response)
+        {
+            return new byte[] {(byte) response.getStatusCode()};
+        }
+    }
+}
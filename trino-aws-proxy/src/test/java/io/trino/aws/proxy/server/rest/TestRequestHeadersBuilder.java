@@ -13,8 +13,10 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import io.trino.aws.proxy.server.rest.RequestHeadersBuilder.InternalRequestHeaders;
+import io.trino.aws.proxy.spi.rest.RequestContent.ChecksumAlgorithm;
 import io.trino.aws.proxy.spi.rest.RequestContent.ContentType;
 import io.trino.aws.proxy.spi.signing.RequestAuthorization;
 import io.trino.aws.proxy.spi.util.AwsTimestamp;
@@ -72,6 +74,14 @@ public class TestRequestHeadersBuilder
                 ContentType.AWS_CHUNKED);
     }
 
+    @Test
+    public void testBuildHeadersLargerThan2GiB()
+    {
+        testBuildHeadersAwsChunkedPayload(
+                ImmutableMultiMap.builder(false).add("Content-Length", "5368719360").add("X-Amz-Decoded-Content-Length", "5368709120").build(),
+                ContentType.AWS_CHUNKED);
+    }
+
     @Test
     public void testBuildHeadersHttpAndAwsChunked()
     {
@@ -80,6 +90,56 @@ public class TestRequestHeadersBuilder
                 ContentType.AWS_CHUNKED_IN_W3C_CHUNKED);
     }
 
+    @Test
+    public void testBuildHeadersChunkedWithoutDecodedContentLength()
+    {
+        testBuildHeadersAwsChunkedPayload(
+                ImmutableMultiMap.builder(false).add("Content-Length", "1234").build(),
+                ContentType.AWS_CHUNKED);
+        testBuildHeadersAwsChunkedPayload(
+                ImmutableMultiMap.builder(false).add("Transfer-Encoding", "chunked").build(),
+                ContentType.AWS_CHUNKED_IN_W3C_CHUNKED);
+        testBuildHeaders(
+                ImmutableMultiMap.builder(false).add("X-Amz-Content-Sha256", "UNSIGNED-PAYLOAD").add("Transfer-Encoding", "chunked").build(),
+                ImmutableMultiMap.empty(),
+                Optional.of(W3C_CHUNKED));
+    }
+
+    @Test
+    public void testBuildHeadersTrailer()
+    {
+        MultiMap trailerHeaders = ImmutableMultiMap.builder(false)
+                .add("Content-Length", "1234")
+                .add("X-Amz-Decoded-Content-Length", "1000")
+                .add("Content-Encoding", "aws-chunked")
+                .add("X-Amz-Trailer", "x-amz-checksum-crc32c")
+                .build();
+        for (String contentSha256 : ImmutableList.of("STREAMING-UNSIGNED-PAYLOAD-TRAILER", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD-TRAILER")) {
+            InternalRequestHeaders headers = doBuildHeaders(mergeMaps(trailerHeaders, ImmutableMultiMap.builder(false).add("X-Amz-Content-Sha256", contentSha256).build()));
+            assertThat(headers.requestPayloadContentType()).contains(ContentType.AWS_CHUNKED);
+            assertThat(headers.trailingChecksum()).contains(ChecksumAlgorithm.CRC32C);
+            assertThat(headers.requestHeaders().passthroughHeaders().entrySet()).isEmpty();
+        }
+
+        assertThat(doBuildHeaders(ImmutableMultiMap.builder(false).add("X-Amz-Content-Sha256", "UNSIGNED-PAYLOAD").build()).trailingChecksum()).isEmpty();
+
+        // unknown trailer
+        assertThatThrownBy(() -> doBuildHeaders(mergeMaps(
+                ImmutableMultiMap.builder(false).add("Content-Length", "1234").add("Content-Encoding", "aws-chunked").add("X-Amz-Content-Sha256", "STREAMING-UNSIGNED-PAYLOAD-TRAILER").build(),
+                ImmutableMultiMap.builder(false).add("X-Amz-Trailer", "x-amz-checksum-md5").build())))
+                .isInstanceOf(WebApplicationException.class);
+        // trailer without aws-chunked content
+        assertThatThrownBy(() -> doBuildHeaders(ImmutableMultiMap.builder(false)
+                .add("Content-Length", "1234")
+                .add("X-Amz-Content-Sha256", "UNSIGNED-PAYLOAD")
+                .add("X-Amz-Trailer", "x-amz-checksum-crc32c")
+                .build()))
+                .isInstanceOf(WebApplicationException.class);
+        // trailer without a trailer payload hash
+        assertThatThrownBy(() -> doBuildHeaders(mergeMaps(trailerHeaders, ImmutableMultiMap.builder(false).add("X-Amz-Content-Sha256", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD").build())))
+                .isInstanceOf(WebApplicationException.class);
+    }
+
     private void testBuildHeadersAwsChunkedPayload(MultiMap baseHeaders, ContentType expectedContentType)
     {
         assertThatThrownBy(() -> doBuildHeaders(mergeMaps(baseHeaders, ImmutableMultiMap.builder(false)
@@ -176,8 +236,8 @@ public class TestRequestHeadersBuilder
     {
         InternalRequestHeaders constructedHeaders = doBuildHeaders(extraHeaders);
 
-        Optional<Integer> contentLength = extraHeaders.getFirst("Content-Length").map(Integer::parseInt);
-        Optional<Integer> decodedContentLength = extraHeaders.getFirst("X-Amz-Decoded-Content-Length").map(Integer::parseInt);
+        Optional<Long> contentLength = extraHeaders.getFirst("Content-Length").map(Long::parseLong);
+        Optional<Long> decodedContentLength = extraHeaders.getFirst("X-Amz-Decoded-Content-Length").map(Long::parseLong);
         assertThat(constructedHeaders.requestAuthorization()).contains(SAMPLE_PARSED_AUTHORIZATION);
         assertThat(constructedHeaders.requestDate()).contains(AwsTimestamp.fromRequestTimestamp(SAMPLE_TIMESTAMP));
         assertThat(constructedHeaders.contentLength()).isEqualTo(contentLength);
@@ -202,6 +262,9 @@ public class TestRequestHeadersBuilder
         testBuildHeadersThrowsOnIllegalHeader("X-Amz-Date", "not a date", true);
         testBuildHeadersThrowsOnIllegalHeader("X-Amz-Decoded-Content-Length", "not a number", true);
         testBuildHeadersThrowsOnIllegalHeader("Content-Length", "not a number", true);
+        testBuildHeadersThrowsOnIllegalHeader("Content-Length", "-1", true);
+        testBuildHeadersThrowsOnIllegalHeader("Content-Length", "9223372036854775808", true);
+        testBuildHeadersThrowsOnIllegalHeader("X-Amz-Decoded-Content-Length", "18446744073709551615", true);
     }
 
     private void testBuildHeadersThrowsOnIllegalHeader(String extraHeader, String extraHeaderValue, boolean replaceHeader)
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+public class TestRequestLoggerConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RequestLoggerConfig.class)
+                .setRequestLoggerSavedQty(10000)
+                .setPersistentDirectory(null)
+                .setPersistentSegmentSize(DataSize.of(64, MEGABYTE))
+                .setPersistentMaxSize(DataSize.of(1, GIGABYTE))
+                .setPersistentMaxAge(new Duration(7, DAYS))
+                .setPersistentQueueSize(10000));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.request.logger.saved-qty", "100")
+                .put("aws.proxy.request.logger.persistent.directory", "/var/log/proxy")
+                .put("aws.proxy.request.logger.persistent.segment-size", "8MB")
+                .put("aws.proxy.request.logger.persistent.max-size", "10GB")
+                .put("aws.proxy.request.logger.persistent.max-age", "12h")
+                .put("aws.proxy.request.logger.persistent.queue-size", "500")
+                .buildOrThrow();
+        RequestLoggerConfig expected = new RequestLoggerConfig()
+                .setRequestLoggerSavedQty(100)
+                .setPersistentDirectory(new File("/var/log/proxy"))
+                .setPersistentSegmentSize(DataSize.of(8, MEGABYTE))
+                .setPersistentMaxSize(DataSize.of(10, GIGABYTE))
+                .setPersistentMaxAge(new Duration(12, HOURS))
+                .setPersistentQueueSize(500);
+        assertFullMapping(properties, expected);
+    }
+}
@@ -25,11 +25,18 @@ import org.junit.jupiter.api.Test;
 
 import java.net.URI;
 import java.time.Instant;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TestRequestLoggerController
@@ -82,6 +89,64 @@ public class TestRequestLoggerController
                 .containsExactly("{index=5}", "{index=6}", "{index=7}", "{index=8}", "{index=9}");
     }
 
+    @Test
+    public void testClearSavedEntries()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig());
+        controller.newRequestSession(dummyRequest(), SigningServiceType.S3).close();
+        controller.clearSavedEntries();
+        assertThat(controller.savedEntries(true, _ -> true)).isEmpty();
+
+        controller.newRequestSession(dummyRequest(), SigningServiceType.S3).close();
+        assertThat(controller.savedEntries(true, _ -> true))
+                .extracting(SaveEntry::message)
+                .containsExactly("RequestStart", "RequestEnd");
+    }
+
+    @Test
+    public void testConcurrentWriters()
+            throws Exception
+    {
+        int writers = 64;
+        int requestsPerWriter = 100;
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig().setRequestLoggerSavedQty(writers * requestsPerWriter));
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            List<Future<?>> futures = IntStream.range(0, writers).<Future<?>>mapToObj(_ -> executor.submit(() -> {
+                startLatch.await();
+                for (int i = 0; i < requestsPerWriter; i++) {
+                    try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.S3)) {
+                        session.logProperty("index", i);
+                    }
+                }
+                return null;
+            })).collect(toImmutableList());
+            startLatch.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        List<SaveEntry> saveEntries = controller.savedEntries(true, _ -> true);
+        assertThat(saveEntries).hasSize(writers * requestsPerWriter * 2);
+        assertThat(saveEntries).extracting(SaveEntry::sequence).isSorted().doesNotHaveDuplicates();
+
+        // the start of a request is always saved before its end
+        Set<String> started = new HashSet<>();
+        for (SaveEntry saveEntry : saveEntries) {
+            String requestId = saveEntry.entries().get("request.id");
+            if (saveEntry.message().equals("RequestStart")) {
+                assertThat(started.add(requestId)).isTrue();
+            }
+            else {
+                assertThat(started).contains(requestId);
+            }
+        }
+
+        assertThat(controller.savedEntries(false, _ -> true)).isEqualTo(saveEntries.reversed());
+    }
+
     private static Request dummyRequest()
     {
         RequestAuthorization requestAuthorization = new RequestAuthorization("dummy", "us-east-1", "/", ImmutableSet.of(), "dummy", Optional.empty(), Optional.empty());
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.rest.RequestStats.OperationStats;
+import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.HEADER_PARSING;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.REMOTE_TIME_TO_FIRST_BYTE;
+import static io.trino.aws.proxy.server.rest.RequestStats.Stage.SIGNATURE_VALIDATION;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.STS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRequestStats
+{
+    @Test
+    public void testSession()
+            throws IOException
+    {
+        RequestStats requestStats = new RequestStats(Optional.empty());
+
+        RequestStatsSession session = requestStats.newSession(S3);
+        session.setOperation("GetObject");
+        assertThat(session.time(HEADER_PARSING, () -> "parsed")).isEqualTo("parsed");
+        session.record(SIGNATURE_VALIDATION, MILLISECONDS.toNanos(5));
+        session.remoteResponseReceived();
+        try (InputStream inputStream = session.countBytesIn(new ByteArrayInputStream(new byte[100]))) {
+            inputStream.readAllBytes();
+        }
+        session.addBytesOut(1000);
+        session.complete(200);
+        // only the first completion counts
+        session.complete(500);
+
+        OperationStats stats = requestStats.operationStats("s3", "GetObject");
+        assertThat(stats.getSuccessfulResponses().getTotalCount()).isEqualTo(1);
+        assertThat(stats.getServerErrorResponses().getTotalCount()).isEqualTo(0);
+        assertThat(stats.getRequestTime().getAllTime().getCount()).isEqualTo(1);
+        assertThat(stats.getHeaderParsing().getAllTime().getCount()).isEqualTo(1);
+        assertThat(stats.getSignatureValidation().getAllTime().getMax()).isEqualTo(5);
+        // the remote request was never started
+        assertThat(stats.stageTime(REMOTE_TIME_TO_FIRST_BYTE).getAllTime().getCount()).isEqualTo(0);
+        assertThat(stats.getBytesIn().getTotalCount()).isEqualTo(100);
+        assertThat(stats.getBytesOut().getTotalCount()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testStatusClasses()
+    {
+        RequestStats requestStats = new RequestStats(Optional.empty());
+        for (int statusCode : new int[] {100, 204, 304, 403, 404, 503}) {
+            requestStats.newSession(STS).complete(statusCode);
+        }
+
+        OperationStats stats = requestStats.operationStats("sts", RequestStats.OTHER_OPERATION);
+        assertThat(stats.getInformationalResponses().getTotalCount()).isEqualTo(1);
+        assertThat(stats.getSuccessfulResponses().getTotalCount()).isEqualTo(1);
+        assertThat(stats.getRedirectionResponses().getTotalCount()).isEqualTo(1);
+        assertThat(stats.getClientErrorResponses().getTotalCount()).isEqualTo(2);
+        assertThat(stats.getServerErrorResponses().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOperationNames()
+    {
+        RequestStats requestStats = new RequestStats(Optional.empty());
+
+        RequestStatsSession session = requestStats.newSession(S3);
+        session.setOperation("Get,Object=\"x\"");
+        session.complete(200);
+        assertThat(requestStats.operationStats("s3", "GetObjectx").getSuccessfulResponses().getTotalCount()).isEqualTo(1);
+
+        session = requestStats.newSession(S3);
+        session.setOperation("!!");
+        session.complete(200);
+        assertThat(requestStats.operationStats("s3", RequestStats.OTHER_OPERATION).getSuccessfulResponses().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOperationLimit()
+    {
+        RequestStats requestStats = new RequestStats(Optional.empty());
+        OperationStats other = requestStats.operationStats("s3", RequestStats.OTHER_OPERATION);
+        for (int i = 0; i < 100; i++) {
+            requestStats.operationStats("s3", "Operation" + i);
+        }
+
+        assertThat(requestStats.operationStats("s3", "Operation0")).isNotSameAs(other);
+        assertThat(requestStats.operationStats("s3", "Operation99")).isSameAs(other);
+        // the limit is per service
+        assertThat(requestStats.operationStats("sts", "Operation99")).isNotSameAs(other);
+    }
+
+    @Test
+    public void testExport()
+    {
+        MBeanExporter exporter = new MBeanExporter(new TestingMBeanServer());
+        RequestStats requestStats = new RequestStats(Optional.of(exporter));
+
+        requestStats.newSession(S3).complete(200);
+        RequestStatsSession session = requestStats.newSession(S3);
+        session.setOperation("GetObject");
+        session.complete(200);
+
+        assertThat(exporter.getExportedObjects().keySet())
+                .hasSize(2)
+                .anyMatch(name -> name.contains("name=s3_GetObject"))
+                .anyMatch(name -> name.contains("name=s3_Other"));
+
+        requestStats.shutDown();
+        assertThat(exporter.getExportedObjects()).isEmpty();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TestRetryConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RetryConfig.class)
+                .setMaxAttempts(1)
+                .setInitialBackoff(new Duration(50, MILLISECONDS))
+                .setMaxBackoff(new Duration(2, SECONDS))
+                .setBudget(0.1)
+                .setMinRetriesPerEndpoint(10)
+                .setMaxBufferedBodySize(DataSize.of(1, MEGABYTE)));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.retry.max-attempts", "5")
+                .put("aws.proxy.retry.initial-backoff", "100ms")
+                .put("aws.proxy.retry.max-backoff", "10s")
+                .put("aws.proxy.retry.budget", "0.2")
+                .put("aws.proxy.retry.min-retries-per-endpoint", "20")
+                .put("aws.proxy.retry.max-buffered-body-size", "256kB")
+                .buildOrThrow();
+        RetryConfig expected = new RetryConfig()
+                .setMaxAttempts(5)
+                .setInitialBackoff(new Duration(100, MILLISECONDS))
+                .setMaxBackoff(new Duration(10, SECONDS))
+                .setBudget(0.2)
+                .setMinRetriesPerEndpoint(20)
+                .setMaxBufferedBodySize(DataSize.of(256, KILOBYTE));
+        assertFullMapping(properties, expected);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRetryController
+{
+    private static final URI REMOTE_URI = URI.create("http://localhost/bucket/key");
+    private static final RetryConfig CONFIG = new RetryConfig()
+            .setMaxAttempts(3)
+            .setInitialBackoff(new Duration(1, MILLISECONDS))
+            .setMaxBackoff(new Duration(10, MILLISECONDS));
+
+    @Test
+    public void testRetryableStatus()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(CONFIG);
+
+        String result = execute(retryController, attempts, attempt -> (attempt == 1) ? response(HttpStatus.SERVICE_UNAVAILABLE, attempt) : response(HttpStatus.OK, attempt));
+        assertThat(result).isEqualTo("200 2");
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(retryController.getRetries().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testConnectionReset()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(CONFIG);
+
+        String result = execute(retryController, attempts, attempt -> {
+            if (attempt == 1) {
+                throw new SocketException("Connection reset");
+            }
+            return response(HttpStatus.OK, attempt);
+        });
+        assertThat(result).isEqualTo("200 2");
+    }
+
+    @Test
+    public void testTimeoutIsNotRetried()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(CONFIG);
+
+        String result = execute(retryController, attempts, _ -> {
+            throw new SocketTimeoutException("Read timed out");
+        });
+        assertThat(result).isEqualTo("Read timed out");
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNonRetryableStatus()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(CONFIG);
+
+        assertThat(execute(retryController, attempts, attempt -> response(HttpStatus.NOT_FOUND, attempt))).isEqualTo("404 1");
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMaxAttempts()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(CONFIG);
+
+        // the last response is passed through to the client
+        assertThat(execute(retryController, attempts, attempt -> response(HttpStatus.INTERNAL_SERVER_ERROR, attempt))).isEqualTo("500 3");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(retryController.getRetries().getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDisabledByDefault()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(new RetryConfig());
+
+        assertThat(execute(retryController, attempts, attempt -> response(HttpStatus.SERVICE_UNAVAILABLE, attempt))).isEqualTo("503 1");
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(retryController.getRetries().getTotalCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testBudget()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryController retryController = new RetryController(new RetryConfig()
+                .setMaxAttempts(3)
+                .setInitialBackoff(new Duration(1, MILLISECONDS))
+                .setMaxBackoff(new Duration(10, MILLISECONDS))
+                .setBudget(0)
+                .setMinRetriesPerEndpoint(1));
+
+        assertThat(execute(retryController, attempts, attempt -> response(HttpStatus.SERVICE_UNAVAILABLE, attempt))).isEqualTo("503 2");
+        assertThat(retryController.getRetries().getTotalCount()).isEqualTo(1);
+        assertThat(retryController.getBudgetExhausted().getTotalCount()).isEqualTo(1);
+
+        // the budget is shared by all requests to the endpoint
+        attempts.set(0);
+        assertThat(execute(retryController, attempts, attempt -> response(HttpStatus.SERVICE_UNAVAILABLE, attempt))).isEqualTo("503 1");
+        assertThat(retryController.getBudgetExhausted().getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testBackoff()
+    {
+        RetryController retryController = new RetryController(new RetryConfig()
+                .setInitialBackoff(new Duration(10, MILLISECONDS))
+                .setMaxBackoff(new Duration(50, MILLISECONDS)));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryController.backoffNanos(1)).isBetween(0L, MILLISECONDS.toNanos(10));
+            assertThat(retryController.backoffNanos(2)).isBetween(0L, MILLISECONDS.toNanos(20));
+            assertThat(retryController.backoffNanos(100)).isBetween(0L, MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private static String execute(RetryController retryController, AtomicInteger attempts, Attempt attempt)
+    {
+        HttpClient httpClient = new TestingHttpClient(_ -> attempt.respond(attempts.incrementAndGet()));
+        return retryController.execute(REMOTE_URI, responseHandler -> httpClient.execute(prepareGet().setUri(REMOTE_URI).build(), responseHandler), new StringResponseHandler());
+    }
+
+    private static Response response(HttpStatus status, int attempt)
+    {
+        return new TestingResponse(status, ImmutableListMultimap.of(), Integer.toString(attempt).getBytes(UTF_8));
+    }
+
+    private interface Attempt
+    {
+        Response respond(int attempt)
+                throws Exception;
+    }
+
+    private static class StringResponseHandler
+            implements ResponseHandler<String, RuntimeException>
+    {
+        @Override
+        public String handleException(Request request, Exception exception)
+        {
+            Throwable cause = exception;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause.getMessage();
+        }
+
+        @Override
+        public String handle(Request request, Response response)
+        {
+            try {
+                return response.getStatusCode() + " " + new String(response.getInputStream().readAllBytes(), UTF_8);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static io.trino.aws.proxy.server.rest.S3Operation.ABORT_MULTIPART_UPLOAD;
+import static io.trino.aws.proxy.server.rest.S3Operation.COMPLETE_MULTIPART_UPLOAD;
+import static io.trino.aws.proxy.server.rest.S3Operation.COPY_OBJECT;
+import static io.trino.aws.proxy.server.rest.S3Operation.CREATE_BUCKET;
+import static io.trino.aws.proxy.server.rest.S3Operation.CREATE_MULTIPART_UPLOAD;
+import static io.trino.aws.proxy.server.rest.S3Operation.DELETE_OBJECT;
+import static io.trino.aws.proxy.server.rest.S3Operation.DELETE_OBJECTS;
+import static io.trino.aws.proxy.server.rest.S3Operation.GET_BUCKET_LOCATION;
+import static io.trino.aws.proxy.server.rest.S3Operation.GET_OBJECT;
+import static io.trino.aws.proxy.server.rest.S3Operation.HEAD_BUCKET;
+import static io.trino.aws.proxy.server.rest.S3Operation.HEAD_OBJECT;
+import static io.trino.aws.proxy.server.rest.S3Operation.LIST_BUCKETS;
+import static io.trino.aws.proxy.server.rest.S3Operation.LIST_MULTIPART_UPLOADS;
+import static io.trino.aws.proxy.server.rest.S3Operation.LIST_OBJECTS;
+import static io.trino.aws.proxy.server.rest.S3Operation.LIST_OBJECTS_V2;
+import static io.trino.aws.proxy.server.rest.S3Operation.LIST_PARTS;
+import static io.trino.aws.proxy.server.rest.S3Operation.OTHER;
+import static io.trino.aws.proxy.server.rest.S3Operation.PUT_OBJECT;
+import static io.trino.aws.proxy.server.rest.S3Operation.UPLOAD_PART;
+import static io.trino.aws.proxy.server.rest.S3Operation.UPLOAD_PART_COPY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestS3Operation
+{
+    @Test
+    public void testBucketOperations()
+    {
+        assertThat(operation("GET", "", "")).isEqualTo(LIST_BUCKETS);
+        assertThat(operation("PUT", "bucket", "")).isEqualTo(CREATE_BUCKET);
+        assertThat(operation("HEAD", "bucket", "")).isEqualTo(HEAD_BUCKET);
+        assertThat(operation("GET", "bucket", "", "location")).isEqualTo(GET_BUCKET_LOCATION);
+        assertThat(operation("GET", "bucket", "")).isEqualTo(LIST_OBJECTS);
+        assertThat(operation("GET", "bucket", "", "prefix", "max-keys")).isEqualTo(LIST_OBJECTS);
+        assertThat(operation("GET", "bucket", "", "list-type", "prefix")).isEqualTo(LIST_OBJECTS_V2);
+        assertThat(operation("GET", "bucket", "", "uploads")).isEqualTo(LIST_MULTIPART_UPLOADS);
+        assertThat(operation("POST", "bucket", "", "delete")).isEqualTo(DELETE_OBJECTS);
+        assertThat(operation("GET", "bucket", "", "tagging")).isEqualTo(OTHER);
+    }
+
+    @Test
+    public void testObjectOperations()
+    {
+        assertThat(operation("GET", "bucket", "key")).isEqualTo(GET_OBJECT);
+        assertThat(operation("GET", "bucket", "key", "versionId", "response-content-type")).isEqualTo(GET_OBJECT);
+        assertThat(operation("HEAD", "bucket", "key")).isEqualTo(HEAD_OBJECT);
+        assertThat(operation("PUT", "bucket", "key")).isEqualTo(PUT_OBJECT);
+        assertThat(operation("DELETE", "bucket", "key")).isEqualTo(DELETE_OBJECT);
+        assertThat(operation("GET", "bucket", "key", "tagging")).isEqualTo(OTHER);
+
+        // presigned URLs
+        assertThat(operation("GET", "bucket", "key", "X-Amz-Signature", "X-Amz-Expires")).isEqualTo(GET_OBJECT);
+    }
+
+    @Test
+    public void testCopyOperations()
+    {
+        RequestHeaders copyHeaders = new RequestHeaders(ImmutableMultiMap.empty(), ImmutableMultiMap.builder(false).add("x-amz-copy-source", "source/key").build());
+
+        assertThat(S3Operation.of(request("PUT", "bucket", "key", copyHeaders))).isEqualTo(COPY_OBJECT);
+        assertThat(S3Operation.of(request("PUT", "bucket", "key", copyHeaders, "uploadId", "partNumber"))).isEqualTo(UPLOAD_PART_COPY);
+    }
+
+    @Test
+    public void testMultipartUploadOperations()
+    {
+        assertThat(operation("POST", "bucket", "key", "uploads")).isEqualTo(CREATE_MULTIPART_UPLOAD);
+        assertThat(operation("PUT", "bucket", "key", "uploadId", "partNumber")).isEqualTo(UPLOAD_PART);
+        assertThat(operation("GET", "bucket", "key", "uploadId")).isEqualTo(LIST_PARTS);
+        assertThat(operation("POST", "bucket", "key", "uploadId")).isEqualTo(COMPLETE_MULTIPART_UPLOAD);
+        assertThat(operation("DELETE", "bucket", "key", "uploadId")).isEqualTo(ABORT_MULTIPART_UPLOAD);
+    }
+
+    private static S3Operation operation(String httpVerb, String bucket, String key, String... parameters)
+    {
+        return S3Operation.of(request(httpVerb, bucket, key, RequestHeaders.EMPTY, parameters));
+    }
+
+    private static ParsedS3Request request(String httpVerb, String bucket, String key, RequestHeaders requestHeaders, String... parameters)
+    {
+        ImmutableMultiMap.Builder queryParameters = ImmutableMultiMap.builder(true);
+        for (String parameter : parameters) {
+            queryParameters.add(parameter, parameter.equals("list-type") ? "2" : "");
+        }
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                bucket,
+                key,
+                requestHeaders,
+                queryParameters.build(),
+                httpVerb,
+                "/" + bucket + "/" + key,
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.json.ObjectMapperProvider;
+import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestTrinoLogsResource
+{
+    private static final SigningServiceType FAKE_SERVICE = new SigningServiceType("test");
+
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().get();
+
+    private record Page(List<String> eventIds, String nextForwardToken, String nextBackwardToken) {}
+
+    @Test
+    public void testBackwardsThenForwards()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig());
+        TrinoLogsResource resource = new TrinoLogsResource(controller, objectMapper);
+        List<String> eventIds = addFakeRequestLogs(controller, 50);
+
+        Page first = getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", false, "limit", 60));
+        assertThat(first.eventIds()).isEqualTo(eventIds.reversed().subList(0, 60));
+
+        Page second = getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", false, "limit", 60, "nextToken", first.nextBackwardToken()));
+        assertThat(second.eventIds()).isEqualTo(eventIds.reversed().subList(60, 100));
+        // pagination is done when the same token is returned
+        assertThat(second.nextBackwardToken()).isEqualTo(first.nextBackwardToken());
+
+        Page forwards = getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "limit", 60, "nextToken", second.nextForwardToken()));
+        assertThat(forwards.eventIds()).isEqualTo(eventIds.subList(40, 100));
+    }
+
+    @Test
+    public void testTokensAreStableAcrossEviction()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig().setRequestLoggerSavedQty(20));
+        TrinoLogsResource resource = new TrinoLogsResource(controller, objectMapper);
+        List<String> eventIds = addFakeRequestLogs(controller, 20);
+
+        Page first = getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "limit", 10));
+        assertThat(first.eventIds()).isEqualTo(eventIds.subList(0, 10));
+
+        // evicts the first 10 requests
+        List<String> newEventIds = addFakeRequestLogs(controller, 10);
+
+        Page second = getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "limit", 10, "nextToken", first.nextForwardToken()));
+        assertThat(second.eventIds()).isEqualTo(eventIds.subList(20, 30));
+
+        Page rest = getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "nextToken", second.nextForwardToken()));
+        assertThat(rest.eventIds()).isEqualTo(ImmutableList.builder().addAll(eventIds.subList(30, 40)).addAll(newEventIds).build());
+    }
+
+    @Test
+    public void testStreamAndTimeFilters()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig());
+        TrinoLogsResource resource = new TrinoLogsResource(controller, objectMapper);
+        List<String> eventIds = addFakeRequestLogs(controller, 5);
+
+        assertThat(getLogEvents(resource, Map.of("startFromHead", true)).eventIds()).isEmpty();
+        assertThat(getLogEvents(resource, Map.of("logStreamNames", List.of("s3", "TEST"), "startFromHead", true)).eventIds()).isEqualTo(eventIds);
+
+        long timestamp = Long.parseLong(eventIds.getFirst().substring(0, 16), 16);
+        assertThat(getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "startTime", timestamp)).eventIds()).isEqualTo(eventIds);
+        assertThat(getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "endTime", timestamp)).eventIds()).isEmpty();
+        assertThat(getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "startTime", Instant.now().plusSeconds(60).toEpochMilli())).eventIds()).isEmpty();
+        assertThat(getLogEvents(resource, Map.of("logStreamName", "test", "startFromHead", true, "startTime", timestamp + 1000, "endTime", timestamp)).eventIds()).isEmpty();
+    }
+
+    @Test
+    public void testInvalidTokens()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig());
+        TrinoLogsResource resource = new TrinoLogsResource(controller, objectMapper);
+
+        assertThatThrownBy(() -> getLogEvents(resource, Map.of("nextToken", "x/1")))
+                .isInstanceOf(WebApplicationException.class);
+        assertThatThrownBy(() -> getLogEvents(resource, Map.of("nextToken", "f/\"")))
+                .isInstanceOf(WebApplicationException.class);
+        // forward tokens require startFromHead
+        assertThatThrownBy(() -> getLogEvents(resource, Map.of("nextToken", "f/", "startFromHead", false)))
+                .isInstanceOf(WebApplicationException.class);
+    }
+
+    private Page getLogEvents(TrinoLogsResource resource, Map<String, Object> arguments)
+    {
+        try {
+            byte[] content = objectMapper.writeValueAsBytes(arguments);
+            Response response = resource.processRequest(request(content), "Logs_20140328.GetLogEvents");
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ((StreamingOutput) response.getEntity()).write(output);
+
+            JsonNode json = objectMapper.readTree(output.toByteArray());
+            List<String> eventIds = ImmutableList.copyOf(json.get("events").elements()).stream()
+                    .map(event -> event.get("eventId").asText())
+                    .collect(toImmutableList());
+            return new Page(eventIds, json.get("nextForwardToken").asText(), json.get("nextBackwardToken").asText());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> addFakeRequestLogs(RequestLoggerController controller, int qty)
+    {
+        List<UUID> requestIds = IntStream.range(0, qty).mapToObj(_ -> {
+            Request request = request(new byte[0]);
+            try (RequestLoggingSession session = controller.newRequestSession(request, FAKE_SERVICE)) {
+                session.logProperty("foo", "bar");
+            }
+            return request.requestId();
+        }).collect(toImmutableList());
+
+        return controller.savedEntries(true, entry -> requestIds.contains(UUID.fromString(entry.entries().get("request.id")))).stream()
+                .map(RequestLoggerController.SaveEntry::entryId)
+                .sorted()
+                .collect(toImmutableList());
+    }
+
+    private static Request request(byte[] content)
+    {
+        RequestAuthorization requestAuthorization = new RequestAuthorization("dummy", "us-east-1", "/", ImmutableSet.of(), "dummy", Optional.empty(), Optional.empty());
+        RequestContent requestContent = new RequestContent()
+        {
+            @Override
+            public ContentType contentType()
+            {
+                return ContentType.STANDARD;
+            }
+
+            @Override
+            public Optional<byte[]> standardBytes()
+            {
+                return Optional.of(content);
+            }
+
+            @Override
+            public Optional<InputStream> inputStream()
+            {
+                return Optional.of(new ByteArrayInputStream(content));
+            }
+        };
+        return new Request(UUID.randomUUID(), requestAuthorization, Instant.now(), URI.create("http://dummy.com"), RequestHeaders.EMPTY, ImmutableMultiMap.empty(), "POST", requestContent);
+    }
+}
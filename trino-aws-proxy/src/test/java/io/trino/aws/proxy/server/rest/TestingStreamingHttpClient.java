@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ListMultimap;
+import io.airlift.http.client.HeaderName;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpVersion;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.RequestStats;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.StreamingResponse;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingHttpClient.Processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link TestingHttpClient} with support for {@link HttpClient#executeStreaming(Request)}
+ */
+public class TestingStreamingHttpClient
+        implements HttpClient
+{
+    private final Processor processor;
+    private final TestingHttpClient delegate;
+
+    public TestingStreamingHttpClient(Processor processor)
+    {
+        this.processor = requireNonNull(processor, "processor is null");
+        this.delegate = new TestingHttpClient(processor);
+    }
+
+    @Override
+    public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        return delegate.execute(request, responseHandler);
+    }
+
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        return delegate.executeAsync(request, responseHandler);
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request)
+    {
+        Response response;
+        try {
+            response = processor.handle(request);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (Exception e) {
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+
+        return new StreamingResponse()
+        {
+            @Override
+            public HttpVersion getHttpVersion()
+            {
+                return response.getHttpVersion();
+            }
+
+            @Override
+            public int getStatusCode()
+            {
+                return response.getStatusCode();
+            }
+
+            @Override
+            public ListMultimap<HeaderName, String> getHeaders()
+            {
+                return response.getHeaders();
+            }
+
+            @Override
+            public long getBytesRead()
+            {
+                return response.getBytesRead();
+            }
+
+            @Override
+            public InputStream getInputStream()
+                    throws IOException
+            {
+                return response.getInputStream();
+            }
+
+            @Override
+            public void close()
+            {
+                try {
+                    response.getInputStream().close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public RequestStats getStats()
+    {
+        return delegate.getStats();
+    }
+
+    @Override
+    public void close()
+    {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return delegate.isClosed();
+    }
+}
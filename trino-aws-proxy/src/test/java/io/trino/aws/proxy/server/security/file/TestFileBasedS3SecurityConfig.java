@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public class TestFileBasedS3SecurityConfig
+{
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testExplicitPropertyMappings()
+            throws IOException
+    {
+        Path policyFile = Files.createFile(directory.resolve("policy.json"));
+        Map<String, String> properties = ImmutableMap.of(
+                "file-s3-security.policy-file-path", policyFile.toString(),
+                "file-s3-security.refresh-period", "1m");
+        FileBasedS3SecurityConfig expected = new FileBasedS3SecurityConfig()
+                .setPolicyFile(policyFile.toFile())
+                .setRefreshPeriod(new Duration(1, MINUTES));
+        assertFullMapping(properties, expected);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.file;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.json.ObjectMapperProvider;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static io.trino.aws.proxy.spi.security.SecurityResponse.FAILURE;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestFileBasedS3SecurityFacadeProvider
+{
+    private static final JsonCodec<List<S3PolicyRule>> JSON_CODEC = new JsonCodecFactory(new ObjectMapperProvider()).listJsonCodec(S3PolicyRule.class);
+
+    private static final String POLICY = """
+            [
+              {"group": "analysts", "bucket": "warehouse", "keyPrefix": "tables/", "actions": ["GetObject", "HeadObject"], "effect": "allow"},
+              {"bucket": "warehouse", "actions": ["ListObjectsV2"], "effect": "allow"},
+              {"user": "etl", "bucket": "warehouse", "effect": "allow"},
+              {"bucket": "warehouse", "keyPrefix": "tables/secret/", "effect": "deny"},
+              {"user": "admin", "effect": "allow"}
+            ]
+            """;
+
+    private record TestingIdentity(String user, List<String> groups)
+            implements Identity {}
+
+    private static final Optional<Identity> ANALYST = Optional.of(new TestingIdentity("alice", ImmutableList.of("analysts")));
+    private static final Optional<Identity> ETL = Optional.of(new TestingIdentity("etl", ImmutableList.of()));
+    private static final Optional<Identity> ADMIN = Optional.of(new TestingIdentity("admin", ImmutableList.of()));
+
+    @TempDir
+    private Path directory;
+
+    private FileBasedS3SecurityFacadeProvider provider;
+
+    @AfterEach
+    public void shutdown()
+    {
+        if (provider != null) {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    public void testRules()
+    {
+        provider = provider(POLICY);
+
+        assertThat(apply("GET", "warehouse", "tables/orders/part-0", ANALYST)).isEqualTo(SUCCESS);
+        assertThat(apply("HEAD", "warehouse", "tables/orders/part-0", ANALYST)).isEqualTo(SUCCESS);
+        assertThat(apply("PUT", "warehouse", "tables/orders/part-0", ANALYST)).isEqualTo(FAILURE);
+        assertThat(apply("GET", "warehouse", "staging/part-0", ANALYST)).isEqualTo(FAILURE);
+        assertThat(apply("GET", "other", "tables/orders/part-0", ANALYST)).isEqualTo(FAILURE);
+        assertThat(apply("GET", "warehouse", "tables/orders/part-0", Optional.empty())).isEqualTo(FAILURE);
+
+        // rules without identity constraints apply to everyone
+        assertThat(list("warehouse", "list-type=2&prefix=staging/", Optional.empty())).isEqualTo(SUCCESS);
+
+        assertThat(apply("PUT", "warehouse", "staging/part-0", ETL)).isEqualTo(SUCCESS);
+        assertThat(apply("DELETE", "warehouse", "staging/part-0", ETL)).isEqualTo(SUCCESS);
+        assertThat(apply("PUT", "other", "staging/part-0", ETL)).isEqualTo(FAILURE);
+
+        // deny wins over allow
+        assertThat(apply("GET", "warehouse", "tables/secret/keys", ANALYST)).isEqualTo(FAILURE);
+        assertThat(apply("GET", "warehouse", "tables/secret/keys", ETL)).isEqualTo(FAILURE);
+        assertThat(apply("GET", "warehouse", "tables/secret/keys", ADMIN)).isEqualTo(FAILURE);
+
+        assertThat(apply("PUT", "any-bucket", "any/key", ADMIN)).isEqualTo(SUCCESS);
+        assertThat(apply("GET", "", "", ADMIN)).isEqualTo(SUCCESS);
+    }
+
+    @Test
+    public void testListings()
+    {
+        provider = provider("""
+                [
+                  {"group": "analysts", "bucket": "warehouse", "keyPrefix": "tables/", "actions": ["ListObjects", "ListObjectsV2"], "effect": "allow"},
+                  {"user": "etl", "bucket": "warehouse", "effect": "allow"},
+                  {"bucket": "warehouse", "keyPrefix": "tables/secret/", "effect": "deny"},
+                  {"user": "etl", "bucket": "warehouse", "keyPrefix": "staging/tmp/", "actions": ["GetObject"], "effect": "deny"}
+                ]
+                """);
+
+        // the requested prefix must lie under the prefix of an allowing rule
+        assertThat(list("warehouse", "list-type=2&prefix=tables/orders/", ANALYST)).isEqualTo(SUCCESS);
+        assertThat(list("warehouse", "prefix=tables/orders/", ANALYST)).isEqualTo(SUCCESS);
+        assertThat(list("warehouse", "list-type=2&prefix=tables/", ANALYST)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2&prefix=tables", ANALYST)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2&prefix=staging/", ANALYST)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2", ANALYST)).isEqualTo(FAILURE);
+        assertThat(list("other", "list-type=2&prefix=tables/orders/", ANALYST)).isEqualTo(FAILURE);
+
+        // a denying rule below the requested prefix denies the listing
+        assertThat(list("warehouse", "list-type=2&prefix=tables/", ETL)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2", ETL)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2&prefix=tables/secret/", ETL)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2&prefix=tables/secret/2024/", ETL)).isEqualTo(FAILURE);
+        assertThat(list("warehouse", "list-type=2&prefix=tables/orders/", ETL)).isEqualTo(SUCCESS);
+
+        // only denying rules of the listing action count
+        assertThat(list("warehouse", "list-type=2&prefix=staging/", ETL)).isEqualTo(SUCCESS);
+        assertThat(apply("GET", "warehouse", "staging/tmp/part-0", ETL)).isEqualTo(FAILURE);
+    }
+
+    @Test
+    public void testInvalidPolicy()
+    {
+        assertThatThrownBy(() -> provider("""
+                [{"bucket": "warehouse", "actions": ["GetObjekt"], "effect": "allow"}]
+                """))
+                .hasMessageContaining("Unknown S3 action in policy: GetObjekt");
+    }
+
+    @Test
+    public void testReload()
+            throws IOException
+    {
+        provider = provider(POLICY);
+        assertThat(apply("PUT", "warehouse", "tables/orders/part-0", ANALYST)).isEqualTo(FAILURE);
+
+        // unchanged file
+        provider.refresh();
+        assertThat(provider.getReloadCount()).isEqualTo(1);
+
+        writePolicy("""
+                [{"group": "analysts", "bucket": "warehouse", "effect": "allow"}]
+                """, Instant.now().plusSeconds(10));
+        provider.refresh();
+        assertThat(provider.getReloadCount()).isEqualTo(2);
+        assertThat(apply("PUT", "warehouse", "tables/orders/part-0", ANALYST)).isEqualTo(SUCCESS);
+
+        // an invalid file keeps the current policy
+        writePolicy("[{\"effect\": ", Instant.now().plusSeconds(20));
+        provider.refresh();
+        assertThat(provider.getReloadFailureCount()).isEqualTo(1);
+        assertThat(apply("PUT", "warehouse", "tables/orders/part-0", ANALYST)).isEqualTo(SUCCESS);
+    }
+
+    private FileBasedS3SecurityFacadeProvider provider(String policy)
+    {
+        writePolicy(policy, Instant.now());
+        FileBasedS3SecurityConfig config = new FileBasedS3SecurityConfig()
+                .setPolicyFile(directory.resolve("policy.json").toFile())
+                .setRefreshPeriod(new Duration(1, HOURS));
+        return new FileBasedS3SecurityFacadeProvider(config, JSON_CODEC);
+    }
+
+    private void writePolicy(String policy, Instant lastModified)
+    {
+        try {
+            Path policyFile = directory.resolve("policy.json");
+            Files.writeString(policyFile, policy, UTF_8);
+            Files.setLastModifiedTime(policyFile, FileTime.from(lastModified));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SecurityResponse apply(String httpVerb, String bucket, String key, Optional<Identity> identity)
+    {
+        return provider.securityFacadeForRequest(request(httpVerb, bucket, key, ""), identity).apply(Optional.empty());
+    }
+
+    private SecurityResponse list(String bucket, String rawQuery, Optional<Identity> identity)
+    {
+        return provider.securityFacadeForRequest(request("GET", bucket, "", rawQuery), identity).apply(Optional.empty());
+    }
+
+    private static ParsedS3Request request(String httpVerb, String bucket, String key, String rawQuery)
+    {
+        ImmutableMultiMap.Builder queryParameters = ImmutableMultiMap.builder(true);
+        if (!rawQuery.isEmpty()) {
+            for (String entry : rawQuery.split("&")) {
+                String[] parameter = entry.split("=", 2);
+                queryParameters.add(parameter[0], parameter[1]);
+            }
+        }
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                bucket,
+                key,
+                RequestHeaders.EMPTY,
+                queryParameters.build(),
+                httpVerb,
+                "/" + bucket + "/" + key,
+                rawQuery.isEmpty() ? Optional.empty() : Optional.of(rawQuery),
+                RequestContent.EMPTY);
+    }
+}
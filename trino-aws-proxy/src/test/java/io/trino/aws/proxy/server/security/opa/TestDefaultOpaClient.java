@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.opa;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.StaticBodyGenerator;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+import io.trino.aws.proxy.spi.security.opa.OpaRequest;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.FAILURE;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestDefaultOpaClient
+{
+    private static final URI OPA_URI = URI.create("http://opa/v1/data/allow");
+
+    private final AtomicInteger opaCalls = new AtomicInteger();
+
+    @Test
+    public void testNoCache()
+    {
+        DefaultOpaClient client = new DefaultOpaClient(httpClient(new CountDownLatch(0)));
+
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("bob", "bucket", "a/1", "get"))).isEqualTo(FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(3);
+        assertThat(client.getOpaLatency().getAllTime().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testCacheByDocument()
+    {
+        AtomicLong nanos = new AtomicLong();
+        DefaultOpaClient client = new DefaultOpaClient(httpClient(new CountDownLatch(0)), cacheConfig(), nanos::get);
+
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("bob", "bucket", "a/1", "get"))).isEqualTo(FAILURE);
+        assertThat(client.getSecurityResponse(request("bob", "bucket", "a/1", "get"))).isEqualTo(FAILURE);
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/2", "get"))).isEqualTo(SUCCESS);
+        assertThat(opaCalls.get()).isEqualTo(3);
+        assertThat(client.getDecisionCacheHitCount()).isEqualTo(2);
+        assertThat(client.getDecisionCacheMissCount()).isEqualTo(3);
+
+        // different headers are different decisions
+        client.getSecurityResponse(new OpaRequest(OPA_URI, document("alice", "bucket", "a/1", "get"), ImmutableMultiMap.builder(false).add("x-tenant", "one").build()));
+        assertThat(opaCalls.get()).isEqualTo(4);
+
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(opaCalls.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void testCacheByProjection()
+    {
+        OpaS3SecurityConfig config = cacheConfig().setDecisionCacheKeyFields("identity.user, bucket, action, missing.field");
+        DefaultOpaClient client = new DefaultOpaClient(httpClient(new CountDownLatch(0)), config, System::nanoTime);
+
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/2", "get"))).isEqualTo(SUCCESS);
+        assertThat(opaCalls.get()).isEqualTo(1);
+
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "put"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("alice", "other", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(client.getSecurityResponse(request("bob", "bucket", "a/1", "get"))).isEqualTo(FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testConcurrentLookupsAreCollapsed()
+            throws Exception
+    {
+        CountDownLatch opaLatch = new CountDownLatch(1);
+        DefaultOpaClient client = new DefaultOpaClient(httpClient(opaLatch), cacheConfig(), System::nanoTime);
+
+        int callers = 8;
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            List<Future<SecurityResponse>> futures = IntStream.range(0, callers)
+                    .mapToObj(_ -> executor.submit(() -> client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))))
+                    .collect(toImmutableList());
+            // let the callers pile up behind the first OPA call
+            SECONDS.sleep(1);
+            opaLatch.countDown();
+            for (Future<SecurityResponse> future : futures) {
+                assertThat(future.get()).isEqualTo(SUCCESS);
+            }
+        }
+        assertThat(opaCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOpaIsCalledOutsideOfTheCache()
+    {
+        Set<Thread> opaThreads = ConcurrentHashMap.newKeySet();
+        DefaultOpaClient client = new DefaultOpaClient(new TestingHttpClient(_ -> {
+            opaThreads.add(Thread.currentThread());
+            return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(CONTENT_TYPE, "application/json"), "{\"result\": true}".getBytes(UTF_8));
+        }), cacheConfig(), System::nanoTime);
+
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(opaThreads).containsExactly(Thread.currentThread());
+        assertThat(client.getDecisionCacheMissCount()).isEqualTo(1);
+        assertThat(client.getDecisionCacheSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedLookupsAreNotCached()
+    {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        DefaultOpaClient client = new DefaultOpaClient(new TestingHttpClient(_ -> {
+            opaCalls.incrementAndGet();
+            if (failing.get()) {
+                throw new UncheckedIOException(new IOException("OPA is down"));
+            }
+            return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(CONTENT_TYPE, "application/json"), "{\"result\": true}".getBytes(UTF_8));
+        }), cacheConfig(), System::nanoTime);
+
+        assertThatThrownBy(() -> client.getSecurityResponse(request("alice", "bucket", "a/1", "get")))
+                .hasRootCauseMessage("OPA is down");
+        failing.set(false);
+        assertThat(client.getSecurityResponse(request("alice", "bucket", "a/1", "get"))).isEqualTo(SUCCESS);
+        assertThat(opaCalls.get()).isEqualTo(2);
+    }
+
+    private TestingHttpClient httpClient(CountDownLatch opaLatch)
+    {
+        return new TestingHttpClient(request -> {
+            opaCalls.incrementAndGet();
+            opaLatch.await();
+            String body = new String(((StaticBodyGenerator) request.getBodyGenerator()).getBody(), UTF_8);
+            boolean allowed = body.contains("\"alice\"");
+            return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(CONTENT_TYPE, "application/json"), "{\"result\": %s}".formatted(allowed).getBytes(UTF_8));
+        });
+    }
+
+    private static OpaS3SecurityConfig cacheConfig()
+    {
+        return new OpaS3SecurityConfig()
+                .setDecisionCacheSize(100)
+                .setDecisionCacheTtl(new Duration(1, MINUTES));
+    }
+
+    private static OpaRequest request(String user, String bucket, String key, String action)
+    {
+        return new OpaRequest(OPA_URI, document(user, bucket, key, action));
+    }
+
+    private static Map<String, Object> document(String user, String bucket, String key, String action)
+    {
+        return ImmutableMap.of(
+                "identity", ImmutableMap.of("user", user),
+                "bucket", bucket,
+                "key", key,
+                "action", action);
+    }
+}
@@ -14,12 +14,14 @@
 package io.trino.aws.proxy.server.security.opa;
 
 import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.util.Map;
 
 import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class TestOpaS3SecurityConfig
 {
@@ -28,8 +30,15 @@ public class TestOpaS3SecurityConfig
             throws IOException
     {
         Map<String, String> properties = ImmutableMap.of(
-                "opa-s3-security.server-base-uri", "http://localhost");
-        OpaS3SecurityConfig expected = new OpaS3SecurityConfig().setOpaServerBaseUri("http://localhost");
+                "opa-s3-security.server-base-uri", "http://localhost",
+                "opa-s3-security.decision-cache-size", "1000",
+                "opa-s3-security.decision-cache-ttl", "30s",
+                "opa-s3-security.decision-cache-key-fields", "identity.user,bucket,action");
+        OpaS3SecurityConfig expected = new OpaS3SecurityConfig()
+                .setOpaServerBaseUri("http://localhost")
+                .setDecisionCacheSize(1000)
+                .setDecisionCacheTtl(new Duration(30, SECONDS))
+                .setDecisionCacheKeyFields("identity.user,bucket,action");
         assertFullMapping(properties, expected);
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.opa;
+
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+import io.trino.aws.proxy.spi.security.opa.OpaS3SecurityFacade;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.FAILURE;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestOpaS3SecurityFacadeProvider
+{
+    private static final List<ParsedS3Request> REQUESTS = Stream.of("GET", "PUT", "POST", "DELETE")
+            .map(TestOpaS3SecurityFacadeProvider::request)
+            .collect(toImmutableList());
+
+    @Test
+    public void testRequestsAreEvaluatedConcurrently()
+    {
+        // every facade call waits for all of them to start, which only completes if they run concurrently
+        CountDownLatch started = new CountDownLatch(REQUESTS.size());
+        OpaS3SecurityFacade facade = (request, lowercaseAction, _, _) -> {
+            started.countDown();
+            try {
+                assertThat(started.await(10, SECONDS)).isTrue();
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            assertThat(lowercaseAction).contains("uploads");
+            return request.httpVerb().equals("GET") ? SUCCESS : FAILURE;
+        };
+
+        List<SecurityResponse> responses = provider(facade).securityResponsesForRequests(REQUESTS, Optional.empty(), _ -> Optional.of("uploads"));
+        assertThat(responses).containsExactly(SUCCESS, FAILURE, FAILURE, FAILURE);
+    }
+
+    @Test
+    public void testFailure()
+    {
+        OpaS3SecurityFacade facade = (request, _, _, _) -> {
+            if (request.httpVerb().equals("POST")) {
+                throw new WebApplicationException(503);
+            }
+            return SUCCESS;
+        };
+
+        assertThatThrownBy(() -> provider(facade).securityResponsesForRequests(REQUESTS, Optional.empty(), _ -> Optional.empty()))
+                .isInstanceOf(WebApplicationException.class);
+    }
+
+    private static OpaS3SecurityFacadeProvider provider(OpaS3SecurityFacade facade)
+    {
+        return new OpaS3SecurityFacadeProvider(facade, new OpaS3SecurityConfig().setOpaServerBaseUri("http://opa"));
+    }
+
+    private static ParsedS3Request request(String httpVerb)
+    {
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                "bucket",
+                "key",
+                RequestHeaders.EMPTY,
+                ImmutableMultiMap.empty(),
+                httpVerb,
+                "/bucket/key",
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.server.signing.Signers.SigningApi;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import jakarta.ws.rs.core.UriBuilder;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
+import software.amazon.awssdk.auth.signer.params.Aws4PresignerParams;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.auth.signer.params.AwsS3V4SignerParams;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.function.BiFunction;
+
+import static io.trino.aws.proxy.server.signing.Signers.OVERRIDE_CONTENT_HASH;
+import static io.trino.aws.proxy.server.signing.Signers.awsS3V4Signer;
+import static io.trino.aws.proxy.server.signing.Signers.awsV4Signer;
+import static io.trino.aws.proxy.server.signing.Signers.legacyS3AwsV4Signer;
+import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.AWS_CHUNKED;
+import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.AWS_CHUNKED_IN_W3C_CHUNKED;
+import static io.trino.aws.proxy.spi.signing.SigningTrait.S3V4_SIGNER;
+import static io.trino.aws.proxy.spi.signing.SigningTrait.STREAM_CONTENT;
+
+/**
+ * Signs requests with the AWS SDK signers the way {@link Signer} used to. Used to verify that {@link Signer}
+ * generates the same signatures as the SDK.
+ */
+final class ReferenceSigner
+{
+    record SignedRequest(RequestAuthorization requestAuthorization, URI signingUri) {}
+
+    private ReferenceSigner() {}
+
+    static byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
+    {
+        return awsS3V4Signer.signingKey(credentials, signerRequestParams);
+    }
+
+    static SignedRequest presign(
+            SigningServiceType serviceType,
+            URI requestURI,
+            SigningHeaders signingHeaders,
+            MultiMap queryParameters,
+            String region,
+            Instant requestDate,
+            Instant requestExpiry,
+            String httpMethod,
+            Credential credential)
+    {
+        Aws4PresignerParams.Builder presignerParamsBuilder = Aws4PresignerParams.builder().expirationTime(requestExpiry);
+
+        return internalSign(
+                (signingApi, requestToSign) -> {
+                    SdkHttpFullRequest signedRequest = signingApi.presign(requestToSign, presignerParamsBuilder.build());
+                    RequestAuthorization requestAuthorization = SigningQueryParameters.splitQueryParameters(ImmutableMultiMap.copyOf(signedRequest.rawQueryParameters().entrySet()))
+                            .toRequestAuthorization()
+                            .orElseThrow();
+                    return new SignedRequest(requestAuthorization, signedRequest.getUri());
+                },
+                SdkHttpFullRequest.builder(),
+                presignerParamsBuilder,
+                serviceType,
+                requestURI,
+                signingHeaders,
+                queryParameters,
+                region,
+                requestDate,
+                httpMethod,
+                credential);
+    }
+
+    static SignedRequest sign(
+            SigningServiceType serviceType,
+            URI requestURI,
+            SigningHeaders signingHeaders,
+            MultiMap queryParameters,
+            String region,
+            Instant requestDate,
+            String httpMethod,
+            Credential credential,
+            RequestContent requestContent)
+    {
+        boolean enableChunkedEncoding = requestContent.contentType() == AWS_CHUNKED || requestContent.contentType() == AWS_CHUNKED_IN_W3C_CHUNKED;
+        AwsS3V4SignerParams.Builder signerParamsBuilder = AwsS3V4SignerParams.builder()
+                .enablePayloadSigning(true)
+                .enableChunkedEncoding(enableChunkedEncoding);
+        SdkHttpFullRequest.Builder requestBuilder = SdkHttpFullRequest.builder();
+
+        if (serviceType.hasTrait(STREAM_CONTENT)) {
+            signingHeaders.getFirst("x-amz-content-sha256")
+                    .ifPresent(contentHashHeader -> requestBuilder.putHeader(OVERRIDE_CONTENT_HASH, contentHashHeader));
+        }
+        else {
+            requestContent.inputStream().ifPresent(inputStream -> requestBuilder.contentStreamProvider(() -> inputStream));
+        }
+
+        return internalSign(
+                (signingApi, requestToSign) -> {
+                    SdkHttpFullRequest signedRequest = signingApi.sign(requestToSign, signerParamsBuilder.build());
+                    RequestAuthorization requestAuthorization = RequestAuthorization.parse(signedRequest.firstMatchingHeader("Authorization").orElseThrow(), credential.session());
+                    return new SignedRequest(requestAuthorization, signedRequest.getUri());
+                },
+                requestBuilder,
+                signerParamsBuilder,
+                serviceType,
+                requestURI,
+                signingHeaders,
+                queryParameters,
+                region,
+                requestDate,
+                httpMethod,
+                credential);
+    }
+
+    private static <R extends Aws4SignerParams.Builder<R>> SignedRequest internalSign(
+            BiFunction<SigningApi, SdkHttpFullRequest, SignedRequest> authorizationBuilder,
+            SdkHttpFullRequest.Builder requestBuilder,
+            R paramsBuilder,
+            SigningServiceType serviceType,
+            URI requestURI,
+            SigningHeaders signingHeaders,
+            MultiMap queryParameters,
+            String region,
+            Instant requestDate,
+            String httpMethod,
+            Credential credential)
+    {
+        requestBuilder.uri(UriBuilder.fromUri(requestURI).replaceQuery("").build()).method(SdkHttpMethod.fromValue(httpMethod));
+
+        signingHeaders.lowercaseHeadersToSign().forEach(entry -> entry.getValue().forEach(value -> requestBuilder.appendHeader(entry.getKey(), value)));
+
+        queryParameters.forEach(requestBuilder::putRawQueryParameter);
+
+        AwsCredentials credentials = credential.session()
+                .map(session -> (AwsCredentials) AwsSessionCredentials.create(credential.accessKey(), credential.secretKey(), session))
+                .orElseGet(() -> AwsBasicCredentials.create(credential.accessKey(), credential.secretKey()));
+        paramsBuilder.signingName(serviceType.serviceName())
+                .signingRegion(Region.of(region))
+                .doubleUrlEncode(false)
+                .awsCredentials(credentials)
+                .signingClockOverride(Clock.fixed(requestDate, AwsTimestamp.ZONE));
+
+        SigningApi signer;
+        if (serviceType.hasTrait(S3V4_SIGNER)) {
+            signer = signingHeaders.hasHeaderToSign("user-agent") ? legacyS3AwsV4Signer : awsS3V4Signer;
+        }
+        else {
+            signer = awsV4Signer;
+        }
+        return authorizationBuilder.apply(signer, requestBuilder.build());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.server.signing.ReferenceSigner.SignedRequest;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.SigningContext;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSigner
+{
+    private static final int ITERATIONS = 2_000;
+    private static final Duration MAX_CLOCK_DRIFT = Duration.ofMinutes(15);
+
+    private static final List<SigningServiceType> SERVICE_TYPES = List.of(SigningServiceType.S3, SigningServiceType.STS, SigningServiceType.LOGS);
+    private static final List<String> HTTP_METHODS = List.of("GET", "HEAD", "PUT", "POST", "DELETE");
+    private static final List<String> HOSTS = List.of("http://localhost", "http://localhost:80", "http://localhost:443", "https://127.0.0.1:443", "https://s3.amazonaws.com", "http://minio:9000");
+    private static final List<String> PATHS = List.of("", "/", "/bucket", "/bucket/", "/bucket/key", "/bucket/dir/../key", "/bucket/./dir/.", "/bucket/a%20b/c+d", "/bucket/%C3%BC%2Fx", "/bucket/a~b_c-d.e*f=g", "/bucket//double");
+    private static final List<String> NAMES = List.of("", "prefix", "list-type", "X-Amz-Date", "a b", "ü", "A", "a", "key=", "~tilde*star", "uploadId");
+    private static final List<String> VALUES = List.of("", "1", "value", "a b", "a+b", "a/b?c&d=e", "ü€😀", "~*'()!", "%20", " padded ", "\uD800");
+    private static final List<String> HEADER_NAMES = List.of("Content-Type", "content-md5", "Range", "X-Amz-Meta-Key", "x-amz-meta-key", "User-Agent", "Connection", "Expect", "x-amzn-trace-id", "Host", "x-amz-date", "X-Amz-Content-SHA256", "x-amz-security-token");
+    private static final List<String> HEADER_VALUES = List.of("", "value", "  leading", "trailing  ", "in  between \t tabs", "a,b", "UNSIGNED-PAYLOAD", "required", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", "bytes=0-100");
+    private static final List<Credential> CREDENTIALS = List.of(
+            new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY"),
+            new Credential(" padded-access-key ", " padded-secret-key ", Optional.of(" padded-session ")),
+            new Credential("ACCESS", "SECRET", Optional.of("SESSION_TOKEN")));
+
+    @Test
+    public void testSignMatchesSdk()
+    {
+        assertSignMatchesSdk(0);
+    }
+
+    @Test
+    public void testSignOnVirtualThreadsMatchesSdk()
+            throws Exception
+    {
+        // virtual threads share pooled hashes instead of keeping their own
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = LongStream.range(0, 4)
+                    .mapToObj(seed -> executor.submit(() -> assertSignMatchesSdk(seed)))
+                    .collect(toImmutableList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private static void assertSignMatchesSdk(long seed)
+    {
+        Random random = new Random(seed);
+        for (int i = 0; i < ITERATIONS; i++) {
+            SigningServiceType serviceType = pick(random, SERVICE_TYPES);
+            URI requestUri = URI.create(pick(random, HOSTS) + pick(random, PATHS));
+            SigningHeaders signingHeaders = signingHeaders(random);
+            MultiMap queryParameters = queryParameters(random);
+            Instant requestDate = Instant.now().minusMillis(random.nextInt(60_000));
+            String httpMethod = pick(random, HTTP_METHODS);
+            Credential credential = pick(random, CREDENTIALS);
+            byte[] content = pick(random, VALUES).getBytes(UTF_8);
+            RequestContent requestContent = random.nextBoolean() ? RequestContent.EMPTY : standardContent(content);
+
+            SigningContext signingContext = Signer.sign(serviceType, requestUri, signingHeaders, queryParameters, "us-east-1", requestDate, httpMethod, credential,
+                    new SigningKeyCache(new SigningControllerConfig()), MAX_CLOCK_DRIFT, requestContent);
+            SignedRequest expected = ReferenceSigner.sign(serviceType, requestUri, signingHeaders, queryParameters, "us-east-1", requestDate, httpMethod, credential,
+                    requestContent);
+
+            assertThat(signingContext.signingAuthorization()).describedAs("%s %s %s", httpMethod, requestUri, signingHeaders).isEqualTo(expected.requestAuthorization());
+            assertThat(signingContext.signingUri()).isEqualTo(expected.signingUri());
+        }
+    }
+
+    @Test
+    public void testPresignMatchesSdk()
+    {
+        Random random = new Random(0);
+        for (int i = 0; i < ITERATIONS; i++) {
+            SigningServiceType serviceType = pick(random, SERVICE_TYPES);
+            URI requestUri = URI.create(pick(random, HOSTS) + pick(random, PATHS));
+            SigningHeaders signingHeaders = signingHeaders(random);
+            MultiMap queryParameters = queryParameters(random);
+            Instant requestDate = Instant.now().minusMillis(random.nextInt(60_000));
+            Instant requestExpiry = requestDate.truncatedTo(SECONDS).plusSeconds(1 + random.nextInt(86400));
+            String httpMethod = pick(random, HTTP_METHODS);
+            Credential credential = pick(random, CREDENTIALS);
+
+            SigningContext signingContext = Signer.presign(serviceType, requestUri, signingHeaders, queryParameters, "eu-west-1", requestDate, requestExpiry, httpMethod, credential,
+                    new SigningKeyCache(new SigningControllerConfig()), MAX_CLOCK_DRIFT, RequestContent.EMPTY);
+            SignedRequest expected = ReferenceSigner.presign(serviceType, requestUri, signingHeaders, queryParameters, "eu-west-1", requestDate, requestExpiry, httpMethod, credential);
+
+            assertThat(signingContext.signingAuthorization()).describedAs("%s %s %s", httpMethod, requestUri, signingHeaders).isEqualTo(expected.requestAuthorization());
+            assertThat(signingContext.signingUri()).isEqualTo(expected.signingUri());
+        }
+    }
+
+    private static SigningHeaders signingHeaders(Random random)
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(false);
+        int count = random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            String name = pick(random, HEADER_NAMES);
+            String value = pick(random, HEADER_VALUES);
+            if (name.equalsIgnoreCase("x-amz-content-sha256") && value.isEmpty()) {
+                // the SDK based signing ignored an empty content hash and signed it as a header named "__trino__override_content_hash__"
+                value = "UNSIGNED-PAYLOAD";
+            }
+            builder.add(name, value);
+        }
+        MultiMap headers = builder.build();
+        return SigningHeaders.build(headers);
+    }
+
+    private static MultiMap queryParameters(Random random)
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        int count = random.nextInt(5);
+        for (int i = 0; i < count; i++) {
+            builder.add(pick(random, NAMES), pick(random, VALUES));
+        }
+        return builder.build();
+    }
+
+    private static RequestContent standardContent(byte[] content)
+    {
+        return new RequestContent()
+        {
+            @Override
+            public ContentType contentType()
+            {
+                return ContentType.STANDARD;
+            }
+
+            @Override
+            public Optional<InputStream> inputStream()
+            {
+                return Optional.of(new ByteArrayInputStream(content));
+            }
+        };
+    }
+
+    private static <T> T pick(Random random, List<T> values)
+    {
+        return values.get(random.nextInt(values.size()));
+    }
+}
@@ -46,7 +46,8 @@ public class TestSigningController
     private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY");
     private static final CredentialsProvider CREDENTIALS_PROVIDER = (_, _) -> Optional.of(new IdentityCredential(CREDENTIAL));
     private static final SigningController LARGE_DRIFT_SIGNING_CONTROLLER = new InternalSigningController(CREDENTIALS_PROVIDER,
-            new SigningControllerConfig().setMaxClockDrift(new Duration(99999, TimeUnit.DAYS)), new RequestLoggerController(new RequestLoggerConfig()));
+            new SigningControllerConfig().setMaxClockDrift(new Duration(99999, TimeUnit.DAYS)), new RequestLoggerController(new RequestLoggerConfig()),
+            new SigningKeyCache(new SigningControllerConfig()));
 
     @Test
     public void testRootLs()
@@ -175,7 +176,7 @@ public class TestSigningController
     {
         RequestLoggerController requestLoggerController = new RequestLoggerController(new RequestLoggerConfig());
         SigningController requestSigningController = new InternalSigningController(CREDENTIALS_PROVIDER, new SigningControllerConfig().setMaxClockDrift(maxClockDrift),
-                requestLoggerController);
+                requestLoggerController, new SigningKeyCache(new SigningControllerConfig()));
 
         URI requestUri = URI.create("http://dummy-url");
         MultiMap requestHeaderValues = ImmutableMultiMap.builder(false).putOrReplaceSingle("Host", "http://127.0.0.1:8888").build();
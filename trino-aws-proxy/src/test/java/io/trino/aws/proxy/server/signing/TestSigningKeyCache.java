@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.google.common.base.Ticker;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.regions.Region;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSigningKeyCache
+{
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY");
+    private static final Instant REQUEST_DATE = AwsTimestamp.fromRequestTimestamp("20240516T024511Z");
+
+    @Test
+    public void testMatchesSdkDerivation()
+    {
+        Aws4SignerParams signerParams = Aws4SignerParams.builder()
+                .awsCredentials(AwsBasicCredentials.create(CREDENTIAL.accessKey(), CREDENTIAL.secretKey()))
+                .doubleUrlEncode(false)
+                .signingName("s3")
+                .signingRegion(Region.US_WEST_2)
+                .signingClockOverride(Clock.fixed(REQUEST_DATE, AwsTimestamp.ZONE))
+                .build();
+        byte[] expected = ReferenceSigner.signingKey(signerParams.awsCredentials(), new Aws4SignerRequestParams(signerParams));
+
+        SigningKeyCache signingKeyCache = new SigningKeyCache(new SigningControllerConfig());
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-west-2", "s3")).isEqualTo(expected);
+        assertThat(SigningKeyCache.deriveSigningKey(CREDENTIAL.secretKey(), "20240516", "us-west-2", "s3")).isEqualTo(expected);
+    }
+
+    @Test
+    public void testKeysAreCachedPerDay()
+    {
+        SigningKeyCache signingKeyCache = new SigningKeyCache(new SigningControllerConfig());
+
+        byte[] signingKey = signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-east-1", "s3");
+        // a later request of the same day uses the same key
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE.plusSeconds(3600), "us-east-1", "s3")).isSameAs(signingKey);
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(1);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(1);
+
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE.plusSeconds(86400), "us-east-1", "s3")).isNotEqualTo(signingKey);
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-east-2", "s3")).isNotEqualTo(signingKey);
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-east-1", "sts")).isNotEqualTo(signingKey);
+        assertThat(signingKeyCache.signingKey(new Credential(CREDENTIAL.accessKey(), "ANOTHER_SECRET_KEY"), REQUEST_DATE, "us-east-1", "s3")).isNotEqualTo(signingKey);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void testExpiresAtEndOfDay()
+    {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker()
+        {
+            @Override
+            public long read()
+            {
+                return nanos.get();
+            }
+        };
+        // 2024-05-16T23:50:00Z, ten minutes before the end of the request's day
+        Clock clock = Clock.fixed(AwsTimestamp.fromRequestTimestamp("20240516T235000Z"), AwsTimestamp.ZONE);
+        SigningKeyCache signingKeyCache = new SigningKeyCache(new SigningControllerConfig().setMaxClockDrift(new Duration(5, MINUTES)), ticker, clock);
+
+        signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-east-1", "s3");
+        nanos.addAndGet(SECONDS.toNanos(14 * 60));
+        signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-east-1", "s3");
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(1);
+
+        // end of day plus max clock drift
+        nanos.addAndGet(SECONDS.toNanos(61));
+        signingKeyCache.signingKey(CREDENTIAL, REQUEST_DATE, "us-east-1", "s3");
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(2);
+    }
+}
@@ -13,9 +13,11 @@
  */
 package io.trino.aws.proxy.server.signing;
 
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
@@ -23,6 +25,7 @@ import software.amazon.awssdk.auth.signer.internal.chunkedencoding.AwsS3V4ChunkS
 import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
 import software.amazon.awssdk.regions.Region;
 
+import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -53,16 +56,31 @@ public class TestingChunkSigningSession
     }
 
     public static TestingChunkSigningSession build(Credential credential, String seed, Instant instant)
+    {
+        byte[] signingKey = sdkSigningKey(credential, instant);
+
+        return new TestingChunkSigningSession(seed, instant, signingKey, "%s/us-east-1/s3/aws4_request".formatted(CHUNK_DATETIME_FORMAT.format(instant)));
+    }
+
+    // the chunk signer of the AWS SDK with the same signing key as the session built by build(credential, seed, instant)
+    public static AwsS3V4ChunkSigner buildSdkChunkSigner(Credential credential, Instant instant)
+    {
+        byte[] signingKey = sdkSigningKey(credential, instant);
+
+        return new AwsS3V4ChunkSigner(signingKey, AwsTimestamp.toRequestFormat(instant), "%s/us-east-1/s3/aws4_request".formatted(CHUNK_DATETIME_FORMAT.format(instant)));
+    }
+
+    // derived by the AWS SDK rather than the SigningKeyCache so that the signatures don't depend on the code under test
+    private static byte[] sdkSigningKey(Credential credential, Instant instant)
     {
         AwsCredentials credentials = AwsBasicCredentials.create(credential.accessKey(), credential.secretKey());
         Aws4SignerParams.Builder<?> builder = Aws4SignerParams.builder()
                 .awsCredentials(credentials)
                 .doubleUrlEncode(false)
                 .signingName("s3")
-                .signingRegion(Region.US_EAST_1);
-        byte[] signingKey = Signer.signingKey(credentials, new Aws4SignerRequestParams(builder.build()));
-
-        return new TestingChunkSigningSession(seed, instant, signingKey, "%s/us-east-1/s3/aws4_request".formatted(CHUNK_DATETIME_FORMAT.format(instant)));
+                .signingRegion(Region.US_EAST_1)
+                .signingClockOverride(Clock.fixed(instant, AwsTimestamp.ZONE));
+        return ReferenceSigner.signingKey(credentials, new Aws4SignerRequestParams(builder.build()));
     }
 
     public static int getExpectedChunkedStreamSize(String rawContent, int partitions)
@@ -122,7 +140,12 @@ public class TestingChunkSigningSession
     {
         Hasher hasher = Hashing.sha256().newHasher();
         hasher.putString(chunkContent, UTF_8);
-        return chunkSigner.signChunk(hasher.hash(), previousSignature);
+        return getChunkSignature(hasher.hash(), previousSignature);
+    }
+
+    public String getChunkSignature(HashCode chunkContentHash, String previousSignature)
+    {
+        return chunkSigner.signChunk(chunkContentHash, previousSignature);
     }
 
     private TestingChunkSigningSession(String seed, Instant instant, byte[] signingKey, String keyPath)
@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.sync;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.jetty.JettyHttpClient;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.trino.aws.proxy.server.testing.TestingHttpBulkSyncServlet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static io.trino.aws.proxy.server.testing.TestingUtil.createTestingHttpServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHttpBulkSync
+{
+    public record Item(String key, String value) {}
+
+    private static final JsonCodec<Item> ITEM_CODEC = jsonCodec(Item.class);
+    private static final JsonCodec<BulkSyncPage<Item, String>> PAGE_CODEC = new JsonCodecFactory().jsonCodec(new TypeToken<BulkSyncPage<Item, String>>() {});
+
+    private TestingHttpBulkSyncServlet servlet;
+    private TestingHttpServer server;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    public void setup()
+            throws Exception
+    {
+        servlet = new TestingHttpBulkSyncServlet();
+        server = createTestingHttpServer(servlet);
+        server.start();
+        httpClient = new JettyHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        httpClient.close();
+        server.stop();
+    }
+
+    @Test
+    public void testPagedFullSync()
+    {
+        for (int i = 0; i < 5; i++) {
+            put("key-" + i, "value-" + i);
+        }
+        servlet.remove("removed", "\"removed\"");
+
+        HttpBulkSync<Item, String, String> bulkSync = bulkSync();
+
+        assertThat(bulkSync.getIndexSize()).isEqualTo(5);
+        assertThat(bulkSync.get("key-0")).contains("value-0");
+        assertThat(bulkSync.get("key-4")).contains("value-4");
+        assertThat(bulkSync.get("removed")).isEmpty();
+        assertThat(bulkSync.getVersion()).isEqualTo(6);
+        assertThat(servlet.getRequestQueries()).containsExactly(
+                "pageSize=2",
+                "pageSize=2&pageToken=2",
+                "pageSize=2&pageToken=4");
+    }
+
+    @Test
+    public void testDeltaSync()
+    {
+        put("key-1", "value-1");
+        put("key-2", "value-2");
+        HttpBulkSync<Item, String, String> bulkSync = bulkSync();
+        assertThat(bulkSync.getVersion()).isEqualTo(2);
+
+        put("key-2", "value-2-updated");
+        put("key-3", "value-3");
+        servlet.remove("key-1", "\"key-1\"");
+        bulkSync.sync();
+
+        assertThat(bulkSync.get("key-1")).isEmpty();
+        assertThat(bulkSync.get("key-2")).contains("value-2-updated");
+        assertThat(bulkSync.get("key-3")).contains("value-3");
+        assertThat(bulkSync.getVersion()).isEqualTo(5);
+        assertThat(bulkSync.getFullSyncCount()).isEqualTo(1);
+        assertThat(bulkSync.getDeltaSyncCount()).isEqualTo(1);
+        assertThat(servlet.getRequestQueries()).endsWith(
+                "pageSize=2&sinceVersion=2",
+                "pageSize=2&sinceVersion=2&pageToken=2");
+
+        // no changes
+        bulkSync.sync();
+        assertThat(bulkSync.getVersion()).isEqualTo(5);
+        assertThat(bulkSync.getIndexSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFullSyncWhenDeltaIsGone()
+    {
+        put("key-1", "value-1");
+        HttpBulkSync<Item, String, String> bulkSync = bulkSync();
+
+        put("key-2", "value-2");
+        servlet.remove("key-1", "\"key-1\"");
+        servlet.expireDeltas();
+        bulkSync.sync();
+
+        assertThat(bulkSync.get("key-1")).isEmpty();
+        assertThat(bulkSync.get("key-2")).contains("value-2");
+        assertThat(bulkSync.getVersion()).isEqualTo(3);
+        assertThat(bulkSync.getFullSyncCount()).isEqualTo(2);
+        assertThat(bulkSync.getDeltaSyncCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFailedSyncKeepsIndex()
+    {
+        servlet.setErrorStatus(Optional.of(503));
+        put("key-1", "value-1");
+
+        // the endpoint is unavailable at startup
+        HttpBulkSync<Item, String, String> bulkSync = bulkSync();
+        assertThat(bulkSync.getIndexSize()).isEqualTo(0);
+        assertThat(bulkSync.getVersion()).isEqualTo(-1);
+        assertThat(bulkSync.getSyncFailureCount()).isEqualTo(1);
+
+        servlet.setErrorStatus(Optional.empty());
+        bulkSync.sync();
+        assertThat(bulkSync.get("key-1")).contains("value-1");
+
+        servlet.setErrorStatus(Optional.of(500));
+        put("key-2", "value-2");
+        bulkSync.sync();
+        assertThat(bulkSync.get("key-1")).contains("value-1");
+        assertThat(bulkSync.get("key-2")).isEmpty();
+        assertThat(bulkSync.getVersion()).isEqualTo(1);
+        assertThat(bulkSync.getSyncFailureCount()).isEqualTo(2);
+
+        // a status code without a name
+        servlet.setErrorStatus(Optional.of(599));
+        bulkSync.sync();
+        assertThat(bulkSync.get("key-2")).isEmpty();
+        assertThat(bulkSync.getSyncFailureCount()).isEqualTo(3);
+
+        servlet.setErrorStatus(Optional.empty());
+        bulkSync.sync();
+        assertThat(bulkSync.get("key-2")).contains("value-2");
+        assertThat(bulkSync.getVersion()).isEqualTo(2);
+    }
+
+    private HttpBulkSync<Item, String, String> bulkSync()
+    {
+        HttpBulkSync<Item, String, String> bulkSync = new HttpBulkSync<>("items", httpClient, server.getBaseUrl(), ImmutableMap.of(), 2, Optional.empty(), PAGE_CODEC, Item::key, Item::value);
+        bulkSync.start();
+        return bulkSync;
+    }
+
+    private void put(String key, String value)
+    {
+        servlet.put(key, ITEM_CODEC.toJson(new Item(key, value)));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.testing;
+
+import com.google.common.collect.ImmutableList;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.lang.Math.min;
+
+/**
+ * Serves a versioned data set the way a bulk endpoint of an HTTP provider does. Items and keys of removed items
+ * are kept as JSON and served as is. Every change bumps the version of the data set.
+ */
+public class TestingHttpBulkSyncServlet
+        extends HttpServlet
+{
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private record Change(long version, Optional<String> itemJson, Optional<String> removedKeyJson) {}
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Change> changes = new TreeMap<>();
+    private final List<String> requestQueries = new ArrayList<>();
+    private long version;
+    private long oldestDeltaVersion;
+    private Optional<Integer> errorStatus = Optional.empty();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws IOException
+    {
+        lock.lock();
+        try {
+            requestQueries.add(Optional.ofNullable(request.getQueryString()).orElse(""));
+            if (errorStatus.isPresent()) {
+                response.sendError(errorStatus.get());
+                return;
+            }
+            int pageSize = Integer.parseInt(request.getParameter("pageSize"));
+            int offset = Optional.ofNullable(request.getParameter("pageToken")).map(Integer::parseInt).orElse(0);
+            Optional<Long> sinceVersion = Optional.ofNullable(request.getParameter("sinceVersion")).map(Long::parseLong);
+            if (sinceVersion.isPresent() && sinceVersion.get() < oldestDeltaVersion) {
+                response.sendError(HttpServletResponse.SC_GONE);
+                return;
+            }
+
+            // a full listing only has the current items, a delta listing has all changes since the version
+            List<Change> listed = changes.values().stream()
+                    .filter(change -> sinceVersion.map(since -> change.version() > since).orElse(change.itemJson().isPresent()))
+                    .collect(toImmutableList());
+            List<Change> page = listed.subList(min(offset, listed.size()), min(offset + pageSize, listed.size()));
+
+            StringBuilder json = new StringBuilder();
+            json.append("{\"version\":").append(version);
+            json.append(",\"items\":[").append(String.join(",", page.stream().flatMap(change -> change.itemJson().stream()).toList())).append("]");
+            json.append(",\"removed\":[").append(String.join(",", page.stream().flatMap(change -> change.removedKeyJson().stream()).toList())).append("]");
+            if (offset + pageSize < listed.size()) {
+                json.append(",\"nextPageToken\":\"").append(offset + pageSize).append("\"");
+            }
+            json.append("}");
+
+            response.setContentType(APPLICATION_JSON);
+            response.getWriter().print(json);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String key, String itemJson)
+    {
+        change(key, Optional.of(itemJson), Optional.empty());
+    }
+
+    public void remove(String key, String keyJson)
+    {
+        change(key, Optional.empty(), Optional.of(keyJson));
+    }
+
+    // delta listings since versions before the current one are answered with 410 Gone
+    public void expireDeltas()
+    {
+        lock.lock();
+        try {
+            oldestDeltaVersion = version;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void setErrorStatus(Optional<Integer> errorStatus)
+    {
+        lock.lock();
+        try {
+            this.errorStatus = errorStatus;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public List<String> getRequestQueries()
+    {
+        lock.lock();
+        try {
+            return ImmutableList.copyOf(requestQueries);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void change(String key, Optional<String> itemJson, Optional<String> removedKeyJson)
+    {
+        lock.lock();
+        try {
+            version++;
+            changes.put(key, new Change(version, itemJson, removedKeyJson));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}